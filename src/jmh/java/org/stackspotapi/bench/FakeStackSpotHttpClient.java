@@ -0,0 +1,218 @@
+package org.stackspotapi.bench;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link HttpClient} em memória que responde como a StackSpot, para medir o caminho completo de {@code ask}
+ * sem rede, TLS ou cota: token do Keycloak, {@code create-execution}, {@code callback} já concluído e o stream SSE
+ * do {@code /v3/chat} a partir de uma fixture, entregue um evento por buffer.
+ * <p>
+ * O corpo é entregue respeitando a demanda do {@link HttpResponse.BodySubscriber}, na thread que a pede, então
+ * handlers como {@code ofInputStream} funcionam como com o cliente real.
+ */
+public final class FakeStackSpotHttpClient extends HttpClient {
+    private static final HttpHeaders JSON_HEADERS = headers("application/json");
+    private static final HttpHeaders SSE_HEADERS = headers("text/event-stream");
+
+    private final List<ByteBuffer> chatEvents;
+    private final AtomicInteger executionCount = new AtomicInteger();
+
+    public FakeStackSpotHttpClient(byte[] chatStream) {
+        this.chatEvents = Fixtures.splitEvents(chatStream);
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException {
+        try {
+            return sendAsync(request, bodyHandler).get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        String path = request.uri().getPath();
+        if (path.endsWith("/protocol/openid-connect/token")) {
+            return respond(request, bodyHandler, JSON_HEADERS,
+                    List.of(utf8("{\"access_token\":\"bench-token\",\"expires_in\":3600,\"token_type\":\"Bearer\"}")));
+        }
+        if (path.contains("/quick-commands/create-execution/")) {
+            return respond(request, bodyHandler, JSON_HEADERS, List.of(utf8("\"bench-exec-" + executionCount.incrementAndGet() + "\"")));
+        }
+        if (path.contains("/quick-commands/callback/")) {
+            String executionId = path.substring(path.lastIndexOf('/') + 1);
+            return respond(request, bodyHandler, JSON_HEADERS, List.of(utf8(
+                    "{\"execution_id\":\"" + executionId + "\",\"conversation_id\":\"conv-" + executionId
+                            + "\",\"progress\":{\"status\":\"COMPLETED\"}}")));
+        }
+        if (path.endsWith("/v3/chat")) {
+            return respond(request, bodyHandler, SSE_HEADERS, chatEvents);
+        }
+        return respond(request, bodyHandler, JSON_HEADERS, List.of(utf8("{\"error\":\"not found\"}")), 404);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return sendAsync(request, bodyHandler);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> respond(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                           HttpHeaders headers, List<ByteBuffer> body) {
+        return respond(request, bodyHandler, headers, body, 200);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> respond(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                           HttpHeaders headers, List<ByteBuffer> body, int status) {
+        HttpResponse.ResponseInfo info = new ResponseInfo(status, headers);
+        HttpResponse.BodySubscriber<T> subscriber = bodyHandler.apply(info);
+        subscriber.onSubscribe(new BufferSubscription(subscriber, body));
+        return subscriber.getBody().toCompletableFuture().thenApply(value -> new Response<>(request, status, headers, value));
+    }
+
+    private static ByteBuffer utf8(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    private static HttpHeaders headers(String contentType) {
+        return HttpHeaders.of(Map.of("content-type", List.of(contentType)), (name, value) -> true);
+    }
+
+    /**
+     * Entrega os buffers conforme a demanda, sem reentrância quando o subscriber pede mais dentro de {@code onNext}.
+     */
+    private static final class BufferSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<ByteBuffer>> subscriber;
+        private final List<ByteBuffer> buffers;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private int next;
+        private volatile boolean cancelled;
+
+        BufferSubscription(Flow.Subscriber<? super List<ByteBuffer>> subscriber, List<ByteBuffer> buffers) {
+            this.subscriber = subscriber;
+            this.buffers = buffers;
+        }
+
+        @Override
+        public void request(long n) {
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!cancelled && next < buffers.size() && demand.get() > 0) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(List.of(buffers.get(next++).duplicate()));
+                }
+                if (!cancelled && next == buffers.size()) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private record ResponseInfo(int statusCode, HttpHeaders headers) implements HttpResponse.ResponseInfo {
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_2;
+        }
+    }
+
+    private record Response<T>(HttpRequest request, int statusCode, HttpHeaders headers, T body) implements HttpResponse<T> {
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_2;
+        }
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return Redirect.NEVER;
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return Optional.empty();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return null;
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return null;
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return HttpClient.Version.HTTP_2;
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,98 @@
+package org.stackspotapi.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Respostas SSE do {@code /v3/chat} gravadas para os benchmarks.
+ * <ul>
+ *     <li>{@code small}: resposta curta, ~36 eventos (~5 KB);</li>
+ *     <li>{@code medium}: classe Java com explicação, ~870 eventos (~120 KB);</li>
+ *     <li>{@code large}: a resposta {@code medium} repetida 10 vezes, ~8.700 eventos (~1,2 MB).</li>
+ * </ul>
+ * Todas terminam com o evento final da StackSpot ({@code stop_reason}, {@code sources} e {@code tokens}).
+ */
+public final class Fixtures {
+    private static final int LARGE_REPEATS = 10;
+
+    private Fixtures() {
+    }
+
+    /**
+     * O stream SSE completo do tamanho pedido.
+     */
+    public static byte[] chatStream(String size) {
+        return switch (size) {
+            case "small" -> load("chat-small.sse");
+            case "medium" -> load("chat-medium.sse");
+            case "large" -> repeatAnswer(load("chat-medium.sse"), LARGE_REPEATS);
+            default -> throw new IllegalArgumentException("Fixture desconhecida: " + size);
+        };
+    }
+
+    /**
+     * Divide o stream em um buffer por evento, como os frames chegam da StackSpot durante a geração.
+     */
+    public static List<ByteBuffer> splitEvents(byte[] stream) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i + 1 < stream.length; i++) {
+            if (stream[i] == '\n' && stream[i + 1] == '\n') {
+                chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(stream, start, i + 2)).asReadOnlyBuffer());
+                start = i + 2;
+                i++;
+            }
+        }
+        if (start < stream.length) {
+            chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(stream, start, stream.length)).asReadOnlyBuffer());
+        }
+        return chunks;
+    }
+
+    /**
+     * Descarta o que ainda for escrito em {@code System.out}/{@code System.err}, para que nada do fluxo de chat
+     * inunde a saída do JMH. Os logs SLF4J da aplicação ficam em {@code WARN} pelo {@code logback.xml} dos benchmarks.
+     */
+    public static void silenceConsole() {
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        System.setOut(discard);
+        System.setErr(discard);
+    }
+
+    private static byte[] load(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture não encontrada no classpath: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Repete os eventos de resposta do stream, mantendo um único evento final.
+     */
+    private static byte[] repeatAnswer(byte[] stream, int times) {
+        String text = new String(stream, StandardCharsets.UTF_8);
+        int finalEvent = text.lastIndexOf("data: ");
+        byte[] answer = text.substring(0, finalEvent).getBytes(StandardCharsets.UTF_8);
+        byte[] tail = text.substring(finalEvent).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(answer.length * times + tail.length);
+        for (int i = 0; i < times; i++) {
+            out.writeBytes(answer);
+        }
+        out.writeBytes(tail);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package org.stackspotapi.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialização dos payloads enviados à StackSpot: o corpo do {@code /v3/chat} e o do {@code create-execution}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Param({"64", "4096"})
+    public int promptLength;
+
+    private ChatRequestDto chatRequest;
+    private CreateExecutionRequestDto executionRequest;
+
+    @Setup
+    public void setUp() {
+        String sample = "Explique o padrão Strategy em Java com um exemplo de pedidos e descontos, \"passo a passo\". ";
+        StringBuilder prompt = new StringBuilder(promptLength);
+        while (prompt.length() < promptLength) {
+            prompt.append(sample);
+        }
+        prompt.setLength(promptLength);
+
+        chatRequest = new ChatRequestDto(new ChatRequestDto.Context("01J8Z4QC3N7R1S5V9X2B6M0P8Q", "01J8Z4Q9D5M3V2X7K6N1P0R8ST"), prompt.toString());
+        executionRequest = new CreateExecutionRequestDto("query.java", prompt.toString());
+    }
+
+    @Benchmark
+    public String chatRequest() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(chatRequest);
+    }
+
+    @Benchmark
+    public String createExecutionRequest() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(executionRequest);
+    }
+}
@@ -0,0 +1,67 @@
+package org.stackspotapi.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stackspotapi.bench.FakeStackSpotHttpClient;
+import org.stackspotapi.bench.Fixtures;
+import org.stackspotapi.transport.StackSpotTransport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caminho completo de {@link AiChatService#ask(String)} e {@link AiChatService#askAsync(String, String)} contra o
+ * {@link FakeStackSpotHttpClient}: token, pool de conversações, montagem do payload, stream SSE e resposta JSON.
+ * <p>
+ * {@code uncached} usa um prompt diferente a cada chamada, então sempre passa pela StackSpot falsa;
+ * {@code cached} repete o mesmo prompt e mede o acerto no cache de respostas.
+ * O tempo inclui a reposição do pool quando o orçamento das conversações acaba, que espera o primeiro
+ * {@code CONVERSATION_POLL_INITIAL_MS}; reduza esse valor no {@code .env} para medir só o custo de CPU.
+ * Requer um {@code .env} com credenciais não vazias (qualquer valor, a StackSpot falsa não as valida).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AskPathBenchmark {
+    private static final String PROMPT = "Crie uma classe Java para representar um Pedido (Order) com id, data e valor total.";
+
+    @Param({"small", "medium"})
+    public String size;
+
+    private final AtomicLong promptCounter = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        Fixtures.silenceConsole();
+        StackSpotTransport.install(new FakeStackSpotHttpClient(Fixtures.chatStream(size)));
+        new AiChatService(); // Dispara o token e o pool de conversações, como o Spring faz na inicialização
+        AiChatService.ask(PROMPT);
+    }
+
+    @Benchmark
+    public String askUncached() {
+        return AiChatService.ask(PROMPT + " #" + promptCounter.incrementAndGet());
+    }
+
+    @Benchmark
+    public String askCached() {
+        return AiChatService.ask(PROMPT);
+    }
+
+    @Benchmark
+    public String askAsyncUncached() {
+        return AiChatService.askAsync(PROMPT + " #" + promptCounter.incrementAndGet(), null).join();
+    }
+}
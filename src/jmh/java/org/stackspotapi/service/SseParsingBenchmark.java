@@ -0,0 +1,88 @@
+package org.stackspotapi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stackspotapi.bench.Fixtures;
+import org.stackspotapi.transport.SseParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificação do stream SSE do {@code /v3/chat} e montagem da resposta, como feito em
+ * {@code AiChatService.sendPromptToChat}, a partir dos buffers de cada evento.
+ * <p>
+ * {@link #lineReadTree()} reproduz a leitura anterior (uma {@code String} por linha e um {@code readTree} por evento)
+ * como referência.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseParsingBenchmark {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private List<ByteBuffer> events;
+    private byte[] stream;
+
+    @Setup
+    public void setUp() {
+        stream = Fixtures.chatStream(size);
+        events = Fixtures.splitEvents(stream);
+    }
+
+    @Benchmark
+    public String byteParser() throws IOException {
+        StringBuilder answerBuilder = new StringBuilder();
+        ChatEventDecoder decoder = new ChatEventDecoder(answerBuilder::append);
+        SseParser parser = new SseParser(decoder);
+        for (ByteBuffer event : events) {
+            parser.feed(event.duplicate());
+        }
+        if (!decoder.isEnded()) {
+            parser.finish();
+        }
+        return answerBuilder.toString().strip();
+    }
+
+    @Benchmark
+    public String lineReadTree() throws IOException {
+        StringBuilder answerBuilder = new StringBuilder();
+        Iterator<String> lines = new String(stream, StandardCharsets.UTF_8).lines().iterator();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (!line.startsWith("data: ")) {
+                continue;
+            }
+            String jsonData = line.substring(6);
+            if (jsonData.trim().isEmpty()) {
+                continue;
+            }
+            JsonNode parsed = objectMapper.readTree(jsonData);
+            if (parsed.has("answer")) {
+                answerBuilder.append(parsed.get("answer").asText());
+            }
+        }
+        return answerBuilder.toString().strip();
+    }
+}
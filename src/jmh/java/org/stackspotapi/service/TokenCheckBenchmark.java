@@ -0,0 +1,51 @@
+package org.stackspotapi.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stackspotapi.bench.Fixtures;
+import org.stackspotapi.dto.EnsureDto;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificação de validade do token feita a cada requisição, com um token ainda válido (o caso comum):
+ * {@link EnsureTokenService#ensureValidToken(EnsureDto)} e o caminho rápido de {@link TokenManager#getToken()}.
+ * Requer um {@code .env} com credenciais não vazias (qualquer valor, nenhuma chamada é feita).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenCheckBenchmark {
+    private EnsureDto validToken;
+    private TokenManager tokenManager;
+
+    @Setup
+    public void setUp() {
+        Fixtures.silenceConsole();
+        validToken = new EnsureDto("bench-token", Instant.now().plusSeconds(3600));
+        tokenManager = new TokenManager(() -> validToken);
+        tokenManager.getToken();
+    }
+
+    @Benchmark
+    public EnsureDto ensureValidToken() {
+        return EnsureTokenService.ensureValidToken(validToken);
+    }
+
+    @Benchmark
+    public EnsureDto tokenManager() {
+        return tokenManager.getToken();
+    }
+}
@@ -0,0 +1,72 @@
+package org.stackspotapi.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribuição de latência usada pelo stub, descrita em texto:
+ * <ul>
+ *     <li>{@code fixed:20} — sempre 20 ms;</li>
+ *     <li>{@code uniform:10:50} — uniforme entre 10 e 50 ms;</li>
+ *     <li>{@code lognormal:40:400} — log-normal com mediana de 40 ms e p99 de 400 ms (cauda longa, como APIs reais).</li>
+ * </ul>
+ */
+final class LatencyDistribution {
+    // Quantil 0,99 da normal padrão
+    private static final double Z_99 = 2.326348;
+
+    private enum Kind { FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a;
+    private final double b;
+    private final String spec;
+
+    private LatencyDistribution(Kind kind, double a, double b, String spec) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.spec = spec;
+    }
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new LatencyDistribution(Kind.FIXED, Double.parseDouble(parts[1]), 0, spec);
+                case "uniform":
+                    return new LatencyDistribution(Kind.UNIFORM, Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), spec);
+                case "lognormal":
+                    double median = Double.parseDouble(parts[1]);
+                    double p99 = Double.parseDouble(parts[2]);
+                    if (median <= 0 || p99 < median) {
+                        throw new IllegalArgumentException("lognormal exige 0 < mediana <= p99: " + spec);
+                    }
+                    // mu = ln(mediana); sigma tal que exp(mu + Z_99 * sigma) = p99
+                    return new LatencyDistribution(Kind.LOGNORMAL, Math.log(median), Math.log(p99 / median) / Z_99, spec);
+                default:
+                    throw new IllegalArgumentException("Distribuição desconhecida: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Distribuição inválida: " + spec, e);
+        }
+    }
+
+    /**
+     * Sorteia uma latência em milissegundos.
+     */
+    long sampleMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double value = switch (kind) {
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextDouble() * (b - a);
+            case LOGNORMAL -> Math.exp(a + b * random.nextGaussian());
+        };
+        return Math.max(0, Math.round(value));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
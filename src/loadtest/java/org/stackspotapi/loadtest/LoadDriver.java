@@ -0,0 +1,196 @@
+package org.stackspotapi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gerador de carga em malha aberta para o {@code POST /api/v1/chat}.
+ * <p>
+ * As requisições saem em uma taxa fixa, independente de quanto as anteriores demoram, e a latência é medida a partir
+ * do instante em que cada requisição <em>deveria</em> ter saído. Assim, um servidor lento não reduz a carga nem
+ * esconde a fila que se forma (omissão coordenada). Respostas 200 com {@code "answer": "Erro: ..."} contam como erro.
+ * <p>
+ * Opções ({@code --chave=valor}):
+ * <pre>
+ *   --target=http://localhost:8080/api/v1/chat
+ *   --rate=20             requisições por segundo
+ *   --duration=60s        duração da medição
+ *   --warmup=10s          aquecimento antes da medição (não entra nas estatísticas)
+ *   --max-in-flight=2000  requisições pendentes a partir das quais novas são descartadas e contadas
+ *   --timeout=120s        timeout de cada requisição
+ *   --prompt="..."        prompt enviado
+ *   --unique=true         acrescenta um número ao prompt para não acertar o cache de respostas
+ * </pre>
+ */
+public final class LoadDriver {
+
+    public static void main(String[] rawArgs) throws InterruptedException {
+        Args args = new Args(rawArgs);
+        URI target = URI.create(args.get("target", "http://localhost:8080/api/v1/chat"));
+        double rate = args.getDouble("rate", 20);
+        Duration duration = args.getDuration("duration", Duration.ofSeconds(60));
+        Duration warmup = args.getDuration("warmup", Duration.ofSeconds(10));
+        int maxInFlight = args.getInt("max-in-flight", 2000);
+        Duration timeout = args.getDuration("timeout", Duration.ofSeconds(120));
+        String prompt = args.get("prompt", "Explique o padrão Strategy em Java com um exemplo curto.");
+        boolean unique = args.getBoolean("unique", true);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        int warmupRequests = (int) (warmup.toNanos() / intervalNanos);
+        int measuredRequests = (int) (duration.toNanos() / intervalNanos);
+        int totalRequests = warmupRequests + measuredRequests;
+
+        LatencyRecorder recorder = new LatencyRecorder(measuredRequests);
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong measuredEnd = new AtomicLong();
+        CountDownLatch finished = new CountDownLatch(totalRequests);
+
+        System.out.printf("Enviando %.1f req/s para %s: %s de aquecimento + %s de medição (%d requisições)%n",
+                rate, target, warmup, duration, totalRequests);
+
+        long start = System.nanoTime();
+        long measuredStart = start + warmupRequests * intervalNanos;
+        for (int i = 0; i < totalRequests; i++) {
+            long intendedStart = start + i * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            boolean measured = i >= warmupRequests;
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    increment(outcomes, "descartada (max-in-flight)");
+                }
+                finished.countDown();
+                continue;
+            }
+
+            String body = "{\"user_prompt\":" + quote(unique ? prompt + " #" + i : prompt) + "}";
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                long end = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (measured) {
+                    recorder.record(end - intendedStart);
+                    measuredEnd.accumulateAndGet(end, Math::max);
+                    increment(outcomes, classify(response, error));
+                }
+                finished.countDown();
+            });
+        }
+
+        if (!finished.await(timeout.toMillis() + 5_000, TimeUnit.MILLISECONDS)) {
+            System.out.println("Aviso: " + finished.getCount() + " requisições não terminaram a tempo.");
+        }
+
+        double elapsedSeconds = Math.max(1, measuredEnd.get() - measuredStart) / 1e9;
+        long completed = recorder.count();
+        long ok = outcomes.getOrDefault("ok", new LongAdder()).sum();
+
+        System.out.println();
+        System.out.printf("Requisições medidas: %d em %.1f s%n", completed, elapsedSeconds);
+        System.out.printf("Vazão: %.2f req/s (sucesso: %.2f req/s)%n", completed / elapsedSeconds, ok / elapsedSeconds);
+        System.out.println("Resultados:");
+        new TreeMap<>(outcomes).forEach((outcome, count) -> System.out.printf("  %-30s %d%n", outcome, count.sum()));
+        System.out.println("Latência (desde o envio planejado):");
+        System.out.printf("  p50   %10.1f ms%n", recorder.percentileMillis(50));
+        System.out.printf("  p90   %10.1f ms%n", recorder.percentileMillis(90));
+        System.out.printf("  p99   %10.1f ms%n", recorder.percentileMillis(99));
+        System.out.printf("  p99.9 %10.1f ms%n", recorder.percentileMillis(99.9));
+        System.out.printf("  máx   %10.1f ms%n", recorder.percentileMillis(100));
+        System.exit(0);
+    }
+
+    private static String classify(HttpResponse<String> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            return "falha: " + cause.getClass().getSimpleName();
+        }
+        if (response.statusCode() != 200) {
+            return "status " + response.statusCode();
+        }
+        if (response.body() != null && response.body().startsWith("{\"answer\":\"Erro")) {
+            return "erro na resposta";
+        }
+        return "ok";
+    }
+
+    private static void increment(Map<String, LongAdder> outcomes, String key) {
+        outcomes.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Guarda todas as latências medidas para calcular percentis exatos ao final.
+     */
+    private static final class LatencyRecorder {
+        private final long[] samples;
+        private final AtomicInteger size = new AtomicInteger();
+
+        LatencyRecorder(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        void record(long nanos) {
+            int index = size.getAndIncrement();
+            if (index < samples.length) {
+                samples[index] = nanos;
+            }
+        }
+
+        long count() {
+            return Math.min(size.get(), samples.length);
+        }
+
+        double percentileMillis(double percentile) {
+            int count = (int) count();
+            if (count == 0) {
+                return Double.NaN;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.stackspotapi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor local que imita a StackSpot para testes de carga sem gastar cota.
+ * <p>
+ * Atende os endpoints usados pela aplicação:
+ * <ul>
+ *     <li>{@code POST /realms/{realm}/protocol/openid-connect/token} — token do Keycloak;</li>
+ *     <li>{@code POST /v1/quick-commands/create-execution/{slug}} — devolve o ID da execução;</li>
+ *     <li>{@code GET /v1/quick-commands/callback/{id}} — {@code RUNNING} até o tempo da execução passar, depois {@code COMPLETED};</li>
+ *     <li>{@code POST /v3/chat} — stream SSE token a token, com atraso configurável entre os tokens;</li>
+ *     <li>{@code POST /v1/file-upload/form} — formulário de upload apontando para {@code POST /stub-storage/{id}},
+ *     que descarta o arquivo e responde 204.</li>
+ * </ul>
+ * Cada endpoint tem sua distribuição de latência ({@link LatencyDistribution}) e todas as requisições podem receber
+ * erros 500 ou 429 (com {@code Retry-After}) em uma fração configurável. Para apontar a aplicação para o stub:
+ * {@code STACKSPOT_API_BASE_URL=http://localhost:8089}, {@code STACKSPOT_AUTH_BASE_URL=http://localhost:8089} e
+ * {@code STACKSPOT_HTTP_VERSION=HTTP_1_1}.
+ * <p>
+ * Opções ({@code --chave=valor}):
+ * <pre>
+ *   --port=8089                       porta HTTP
+ *   --threads=256                     threads do servidor (cada stream de chat ocupa uma)
+ *   --auth-latency=fixed:30           latência do token
+ *   --create-latency=lognormal:80:400 latência do create-execution
+ *   --callback-latency=fixed:20       latência de cada consulta ao callback
+ *   --execution-time=lognormal:600:2500 tempo até a execução ficar COMPLETED
+ *   --first-token=lognormal:400:2000  tempo até o primeiro token do chat
+ *   --token-delay=uniform:5:25        intervalo entre os tokens do chat
+ *   --answer-tokens=150               tokens por resposta
+ *   --token-expires-in=3600           validade do token, em segundos
+ *   --error-rate=0.0                  fração de respostas 500
+ *   --throttle-rate=0.0               fração de respostas 429
+ *   --retry-after=1                   valor do Retry-After das respostas 429, em segundos
+ *   --context-growth=0                atraso extra do primeiro token, em ms, por troca anterior na mesma conversação
+ * </pre>
+ */
+public final class StubStackSpotServer {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String[] WORDS = (
+            "Claro! Abaixo está uma explicação do padrão Strategy em Java, com uma interface para a regra de desconto, "
+                    + "implementações concretas para cada tipo de cliente e um contexto que escolhe a estratégia em tempo de execução. "
+                    + "Isso evita condicionais espalhadas e facilita adicionar novas regras sem alterar o código existente.").split(" ");
+
+    private final LatencyDistribution authLatency;
+    private final LatencyDistribution createLatency;
+    private final LatencyDistribution callbackLatency;
+    private final LatencyDistribution executionTime;
+    private final LatencyDistribution firstToken;
+    private final LatencyDistribution tokenDelay;
+    private final int answerTokens;
+    private final long tokenExpiresIn;
+    private final double errorRate;
+    private final double throttleRate;
+    private final int retryAfterSeconds;
+    private final long contextGrowthMillis;
+
+    // Momento em que cada execução fica pronta
+    private final Map<String, Long> executionReadyAt = new ConcurrentHashMap<>();
+    private final AtomicInteger executionCount = new AtomicInteger();
+    private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    // Trocas já atendidas em cada conversação, para simular o contexto que cresce
+    private final Map<String, Integer> conversationExchanges = new ConcurrentHashMap<>();
+
+    StubStackSpotServer(Args args) {
+        this.authLatency = args.getLatency("auth-latency", "fixed:30");
+        this.createLatency = args.getLatency("create-latency", "lognormal:80:400");
+        this.callbackLatency = args.getLatency("callback-latency", "fixed:20");
+        this.executionTime = args.getLatency("execution-time", "lognormal:600:2500");
+        this.firstToken = args.getLatency("first-token", "lognormal:400:2000");
+        this.tokenDelay = args.getLatency("token-delay", "uniform:5:25");
+        this.answerTokens = args.getInt("answer-tokens", 150);
+        this.tokenExpiresIn = args.getInt("token-expires-in", 3600);
+        this.errorRate = args.getDouble("error-rate", 0.0);
+        this.throttleRate = args.getDouble("throttle-rate", 0.0);
+        this.retryAfterSeconds = args.getInt("retry-after", 1);
+        this.contextGrowthMillis = args.getInt("context-growth", 0);
+    }
+
+    public static void main(String[] rawArgs) throws IOException {
+        Args args = new Args(rawArgs);
+        int port = args.getInt("port", 8089);
+        StubStackSpotServer stub = new StubStackSpotServer(args);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(args.getInt("threads", 256), runnable -> {
+            Thread thread = new Thread(runnable, "stub-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", stub::handle);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(0);
+            System.out.println("Requisições atendidas: " + stub.requestCounts);
+        }));
+        System.out.printf("Stub da StackSpot ouvindo em http://localhost:%d (auth=%s, create=%s, callback=%s, execução=%s, "
+                        + "primeiro token=%s, entre tokens=%s, tokens=%d, erros=%.3f, 429=%.3f)%n",
+                port, stub.authLatency, stub.createLatency, stub.callbackLatency, stub.executionTime,
+                stub.firstToken, stub.tokenDelay, stub.answerTokens, stub.errorRate, stub.throttleRate);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            byte[] requestBody = path.equals("/v3/chat") ? exchange.getRequestBody().readAllBytes() : null;
+            if (requestBody == null) {
+                exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            }
+
+            if ("POST".equals(method) && path.endsWith("/protocol/openid-connect/token")) {
+                count("auth");
+                if (!injectFailure(exchange, authLatency)) {
+                    Map<String, Object> token = new LinkedHashMap<>();
+                    token.put("access_token", "stub-" + UUID.randomUUID());
+                    token.put("expires_in", tokenExpiresIn);
+                    token.put("token_type", "Bearer");
+                    sendJson(exchange, 200, objectMapper.writeValueAsString(token));
+                }
+            } else if ("POST".equals(method) && path.startsWith("/v1/quick-commands/create-execution/")) {
+                count("create-execution");
+                if (!injectFailure(exchange, createLatency)) {
+                    String executionId = "stub-exec-" + executionCount.incrementAndGet();
+                    executionReadyAt.put(executionId, System.currentTimeMillis() + executionTime.sampleMillis());
+                    sendJson(exchange, 200, "\"" + executionId + "\"");
+                }
+            } else if ("GET".equals(method) && path.startsWith("/v1/quick-commands/callback/")) {
+                count("callback");
+                if (!injectFailure(exchange, callbackLatency)) {
+                    handleCallback(exchange, path.substring(path.lastIndexOf('/') + 1));
+                }
+            } else if ("POST".equals(method) && path.equals("/v3/chat")) {
+                count("chat");
+                String conversationId = objectMapper.readTree(requestBody).path("context").path("conversation_id").asText("");
+                int previous = conversationExchanges.merge(conversationId, 1, Integer::sum) - 1;
+                Thread.sleep(previous * contextGrowthMillis);
+                if (!injectFailure(exchange, firstToken)) {
+                    streamAnswer(exchange);
+                }
+            } else if ("POST".equals(method) && path.equals("/v1/file-upload/form")) {
+                count("upload-form");
+                if (!injectFailure(exchange, createLatency)) {
+                    String uploadId = "stub-upload-" + UUID.randomUUID();
+                    Map<String, Object> form = new LinkedHashMap<>();
+                    form.put("id", uploadId);
+                    form.put("url", "http://" + exchange.getRequestHeaders().getFirst("Host") + "/stub-storage/" + uploadId);
+                    form.put("form", Map.of("key", uploadId));
+                    sendJson(exchange, 200, objectMapper.writeValueAsString(form));
+                }
+            } else if ("POST".equals(method) && path.startsWith("/stub-storage/")) {
+                count("upload-storage");
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                count("not-found");
+                sendJson(exchange, 404, "{\"error\":\"not found\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Cliente desconectou no meio da resposta (ex.: stream cancelado)
+        }
+    }
+
+    private void handleCallback(HttpExchange exchange, String executionId) throws IOException {
+        Long readyAt = executionReadyAt.get(executionId);
+        if (readyAt == null) {
+            sendJson(exchange, 404, "{\"error\":\"execution not found\"}");
+            return;
+        }
+        boolean completed = System.currentTimeMillis() >= readyAt;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("execution_id", executionId);
+        body.put("conversation_id", completed ? "stub-conv-" + executionId : null);
+        body.put("progress", Map.of("status", completed ? "COMPLETED" : "RUNNING"));
+        sendJson(exchange, 200, objectMapper.writeValueAsString(body));
+    }
+
+    private void streamAnswer(HttpExchange exchange) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        String messageId = UUID.randomUUID().toString();
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < answerTokens; i++) {
+            if (i > 0) {
+                Thread.sleep(tokenDelay.sampleMillis());
+            }
+            String token = (i == 0 ? "" : " ") + WORDS[i % WORDS.length];
+            writeEvent(out, Map.of("answer", token, "message_id", messageId));
+        }
+
+        Map<String, Object> last = new LinkedHashMap<>();
+        last.put("answer", "");
+        last.put("message_id", messageId);
+        last.put("stop_reason", "stop");
+        last.put("tokens", Map.of("output", answerTokens));
+        writeEvent(out, last);
+    }
+
+    private static void writeEvent(OutputStream out, Map<String, Object> event) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Aplica a latência do endpoint e, na fração configurada, responde com 500 ou 429.
+     *
+     * @return Verdadeiro se uma falha foi enviada e a requisição já terminou.
+     */
+    private boolean injectFailure(HttpExchange exchange, LatencyDistribution latency) throws IOException, InterruptedException {
+        Thread.sleep(latency.sampleMillis());
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < throttleRate) {
+            count("injected-429");
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            sendJson(exchange, 429, "{\"error\":\"too many requests\"}");
+            return true;
+        }
+        if (roll < throttleRate + errorRate) {
+            count("injected-500");
+            sendJson(exchange, 500, "{\"error\":\"internal error\"}");
+            return true;
+        }
+        return false;
+    }
+
+    private void count(String key) {
+        requestCounts.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
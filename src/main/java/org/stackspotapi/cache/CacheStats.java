@@ -0,0 +1,66 @@
+package org.stackspotapi.cache;
+
+/**
+ * Retrato imutável das estatísticas do {@link ResponseCache}.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long diskHits;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, long expirations, long diskHits, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.diskHits = diskHits;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * Acertos servidos pela camada em disco (também contados em {@link #getHits()}).
+     */
+    public long getDiskHits() {
+        return diskHits;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", diskHits=" + diskHits +
+                ", size=" + size +
+                '}';
+    }
+}
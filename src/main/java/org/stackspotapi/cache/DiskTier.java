@@ -0,0 +1,272 @@
+package org.stackspotapi.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Camada persistente do {@link ResponseCache}: um arquivo append-only com um índice em memória (chave → posição).
+ * <p>
+ * Cada registro tem o formato {@code [keyLen:int][valueLen:int][expiresAt:long][key][value][crc32:int]}.
+ * Na abertura, o arquivo é lido sequencialmente e um final truncado ou corrompido (ex.: queda durante a escrita)
+ * é descartado. As gravações acontecem em uma thread própria, fora do caminho da requisição. Quando o arquivo passa
+ * do tamanho máximo, ele é reescrito apenas com as entradas quentes do cache em memória e trocado de forma atômica.
+ */
+class DiskTier {
+    private static final Logger log = LoggerFactory.getLogger(DiskTier.class);
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES;
+
+    private final Path path;
+    private final long maxBytes;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "response-cache-disk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Trocados juntos na compactação; o volatile garante que leitores vejam um par consistente
+    private volatile Segment segment;
+
+    DiskTier(Path path, long maxBytes) throws IOException {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.segment = open(path);
+    }
+
+    /**
+     * Lê uma entrada ainda válida do disco.
+     *
+     * @return O valor com a validade gravada, ou nulo se a chave não existir, tiver expirado ou não puder ser lida.
+     */
+    Entry get(String key, long nowMillis) {
+        Segment current = segment;
+        Location location = current.index.get(key);
+        if (location == null) {
+            return null;
+        }
+        if (location.expiresAtMillis <= nowMillis) {
+            current.index.remove(key, location);
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(location.length);
+            readFully(current.channel, buffer, location.offset);
+            buffer.flip();
+            Record record = Record.decode(buffer);
+            return record != null && record.key.equals(key) ? new Entry(record.value, record.expiresAtMillis) : null;
+        } catch (IOException e) {
+            return null; // Arquivo trocado pela compactação ou falha de leitura: trata como ausência
+        }
+    }
+
+    /**
+     * Agenda a gravação de uma entrada no final do arquivo.
+     *
+     * @param hotEntries Entradas quentes do cache em memória, usadas se a gravação disparar uma compactação.
+     */
+    void putAsync(String key, String value, long expiresAtMillis, Iterable<? extends Map.Entry<String, ? extends Entry>> hotEntries) {
+        try {
+            writer.execute(() -> {
+                try {
+                    append(segment, key, value, expiresAtMillis);
+                    if (segment.size > maxBytes) {
+                        compact(hotEntries);
+                    }
+                } catch (IOException e) {
+                    log.warn("Falha ao gravar o cache em disco: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Camada já fechada: a entrada fica só em memória
+        }
+    }
+
+    /**
+     * Espera as gravações já agendadas terminarem e fecha o arquivo. Gravações agendadas depois são descartadas.
+     */
+    void close() throws IOException, InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        segment.channel.close();
+    }
+
+    private void compact(Iterable<? extends Map.Entry<String, ? extends Entry>> hotEntries) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(tmp);
+        long now = System.currentTimeMillis();
+        Segment compacted = new Segment(FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        for (Map.Entry<String, ? extends Entry> entry : hotEntries) {
+            if (entry.getValue().expiresAtMillis > now) {
+                append(compacted, entry.getKey(), entry.getValue().value, entry.getValue().expiresAtMillis);
+            }
+        }
+        compacted.channel.force(true);
+        compacted.channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Segment previous = segment;
+        segment = open(path);
+        previous.channel.close();
+        log.info("Cache em disco compactado: {} entradas, {} bytes.", segment.index.size(), segment.size);
+    }
+
+    private static void append(Segment target, String key, String value, long expiresAtMillis) throws IOException {
+        ByteBuffer buffer = Record.encode(key, value, expiresAtMillis);
+        int length = buffer.remaining();
+        long offset = target.size;
+        while (buffer.hasRemaining()) {
+            target.channel.write(buffer, offset + (length - buffer.remaining()));
+        }
+        target.size += length;
+        target.index.put(key, new Location(offset, length, expiresAtMillis));
+    }
+
+    private static Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment loaded = new Segment(channel);
+        long fileSize = channel.size();
+        long now = System.currentTimeMillis();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        long position = 0;
+        while (position + HEADER_BYTES <= fileSize) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int keyLength = header.getInt();
+            int valueLength = header.getInt();
+            long recordLength = (long) HEADER_BYTES + keyLength + valueLength + Integer.BYTES;
+            if (keyLength < 0 || valueLength < 0 || position + recordLength > fileSize) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate((int) recordLength);
+            readFully(channel, record, position);
+            record.flip();
+            Record decoded = Record.decode(record);
+            if (decoded == null) {
+                break;
+            }
+            if (decoded.expiresAtMillis > now) {
+                loaded.index.put(decoded.key, new Location(position, (int) recordLength, decoded.expiresAtMillis));
+            } else {
+                loaded.index.remove(decoded.key);
+            }
+            position += recordLength;
+        }
+
+        if (position < fileSize) {
+            log.warn("Cache em disco: descartando {} bytes corrompidos no final de {}", fileSize - position, path);
+            channel.truncate(position);
+        }
+        loaded.size = position;
+        return loaded;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Fim inesperado do arquivo de cache");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Valor e validade de uma entrada, como vistos pela camada em disco.
+     */
+    static class Entry {
+        final String value;
+        final long expiresAtMillis;
+
+        Entry(String value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static final class Segment {
+        final FileChannel channel;
+        final Map<String, Location> index = new ConcurrentHashMap<>();
+        long size; // Alterado apenas pela thread de gravação
+
+        Segment(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static final class Location {
+        final long offset;
+        final int length;
+        final long expiresAtMillis;
+
+        Location(long offset, int length, long expiresAtMillis) {
+            this.offset = offset;
+            this.length = length;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private static final class Record {
+        final String key;
+        final String value;
+        final long expiresAtMillis;
+
+        private Record(String key, String value, long expiresAtMillis) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        static ByteBuffer encode(String key, String value, long expiresAtMillis) {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + keyBytes.length + valueBytes.length + Integer.BYTES);
+            buffer.putInt(keyBytes.length).putInt(valueBytes.length).putLong(expiresAtMillis).put(keyBytes).put(valueBytes);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int) crc.getValue());
+            return buffer.flip();
+        }
+
+        /**
+         * @return O registro, ou nulo se o checksum não conferir.
+         */
+        static Record decode(ByteBuffer buffer) {
+            int keyLength = buffer.getInt();
+            int valueLength = buffer.getInt();
+            long expiresAt = buffer.getLong();
+            if (buffer.remaining() != keyLength + valueLength + Integer.BYTES) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - Integer.BYTES);
+            byte[] keyBytes = new byte[keyLength];
+            byte[] valueBytes = new byte[valueLength];
+            buffer.get(keyBytes).get(valueBytes);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                return null;
+            }
+            return new Record(new String(keyBytes, StandardCharsets.UTF_8), new String(valueBytes, StandardCharsets.UTF_8), expiresAt);
+        }
+    }
+}
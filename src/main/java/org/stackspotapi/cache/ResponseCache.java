@@ -0,0 +1,294 @@
+package org.stackspotapi.cache;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache de respostas da IA para prompts repetidos, com política de descarte inspirada no W-TinyLFU.
+ * <p>
+ * As entradas novas entram em uma pequena janela LRU (1% da capacidade). Ao sair da janela, uma entrada só é
+ * admitida na região principal se for mais popular, segundo o {@link FrequencySketch}, do que a vítima que ela
+ * substituiria. A região principal é um LRU segmentado: entradas acessadas de novo passam da região de
+ * experiência para a protegida. Assim, uma rajada de prompts únicos não expulsa os prompts que se repetem.
+ * <p>
+ * As leituras usam um {@link ConcurrentHashMap}; a política fica atrás de um lock que as leituras só tentam
+ * adquirir, descartando a atualização de ordem quando há disputa. Opcionalmente, as entradas também são gravadas
+ * em uma {@link DiskTier} e sobrevivem a reinícios.
+ */
+public class ResponseCache {
+    private static final Logger log = LoggerFactory.getLogger(ResponseCache.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final long ttlMillis;
+    private final DiskTier diskTier;
+
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Node[] queues = {new Node(), new Node(), new Node()};
+    private final int[] queueSizes = new int[3];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+
+    /**
+     * @param maximumSize Número máximo de entradas em memória.
+     * @param ttlMillis   Validade de cada entrada.
+     * @param diskTier    Camada persistente opcional; pode ser nula.
+     */
+    ResponseCache(int maximumSize, long ttlMillis, DiskTier diskTier) {
+        if (maximumSize < 2 || ttlMillis < 1) {
+            throw new IllegalArgumentException("maximumSize deve ser >= 2 e ttlMillis >= 1");
+        }
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.protectedMaximum = (int) ((maximumSize - windowMaximum) * 0.8);
+        this.ttlMillis = ttlMillis;
+        this.diskTier = diskTier;
+        this.sketch = new FrequencySketch(maximumSize);
+        for (Node sentinel : queues) {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+        }
+    }
+
+    public ResponseCache(int maximumSize, long ttlMillis) {
+        this(maximumSize, ttlMillis, null);
+    }
+
+    /**
+     * Cria o cache configurado pelas chaves RESPONSE_CACHE_* do .env.
+     *
+     * @return O cache, ou nulo se ele estiver desabilitado.
+     */
+    public static ResponseCache fromEnv() {
+        if (!Boolean.parseBoolean(dotenv.get("RESPONSE_CACHE_ENABLED", "true"))) {
+            return null;
+        }
+        int maximumSize = Integer.parseInt(dotenv.get("RESPONSE_CACHE_MAX_ENTRIES", "10000"));
+        long ttlMillis = Long.parseLong(dotenv.get("RESPONSE_CACHE_TTL_SECONDS", "3600")) * 1000;
+        String diskPath = dotenv.get("RESPONSE_CACHE_DISK_PATH", "");
+
+        DiskTier diskTier = null;
+        if (!diskPath.isBlank()) {
+            try {
+                diskTier = new DiskTier(Path.of(diskPath), Long.parseLong(dotenv.get("RESPONSE_CACHE_DISK_MAX_BYTES", "67108864")));
+            } catch (IOException e) {
+                log.warn("Cache em disco desabilitado, falha ao abrir {}: {}", diskPath, e.getMessage());
+            }
+        }
+        return new ResponseCache(maximumSize, ttlMillis, diskTier);
+    }
+
+    /**
+     * Monta a chave do cache a partir do modo da conversa, do agente e do prompt normalizado
+     * (Unicode NFC, sem espaços nas pontas e com sequências de espaços reduzidas a um).
+     */
+    public static String key(String mode, String agentId, String prompt) {
+        String normalized = Normalizer.normalize(prompt, Normalizer.Form.NFC).strip().replaceAll("\\s+", " ");
+        return mode + '\u0000' + agentId + '\u0000' + normalized;
+    }
+
+    /**
+     * Como {@link #key(String, String, String)}, incluindo os arquivos anexados ao prompt. A ordem dos
+     * {@code upload_ids} não muda a chave.
+     */
+    public static String key(String mode, String agentId, String prompt, List<String> uploadIds) {
+        if (uploadIds == null || uploadIds.isEmpty()) {
+            return key(mode, agentId, prompt);
+        }
+        return key(mode, agentId, prompt) + '\u0000' + String.join(",", uploadIds.stream().sorted().toList());
+    }
+
+    /**
+     * @return A resposta em cache ainda válida, ou nulo.
+     */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        Node node = data.get(key);
+        if (node != null && node.expiresAtMillis <= now) {
+            Node expired = node;
+            if (data.remove(key, expired)) {
+                expirations.increment();
+                withPolicyLock(() -> unlink(expired));
+            }
+            node = null;
+        }
+
+        if (node != null) {
+            hits.increment();
+            Node accessed = node;
+            // Leituras não esperam pelo lock: sob disputa, a atualização de frequência e ordem é descartada
+            if (policyLock.tryLock()) {
+                try {
+                    sketch.increment(key);
+                    onAccess(accessed);
+                } finally {
+                    policyLock.unlock();
+                }
+            }
+            return node.value;
+        }
+
+        if (diskTier != null) {
+            DiskTier.Entry stored = diskTier.get(key, now);
+            if (stored != null) {
+                hits.increment();
+                diskHits.increment();
+                // Mantém a validade gravada: a promoção não pode estender a vida da resposta
+                insert(key, stored.value, stored.expiresAtMillis, false);
+                return stored.value;
+            }
+        }
+        misses.increment();
+        withPolicyLock(() -> sketch.increment(key));
+        return null;
+    }
+
+    /**
+     * Armazena uma resposta, sujeita à política de admissão.
+     */
+    public void put(String key, String value) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        insert(key, value, expiresAt, true);
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), diskHits.sum(), data.size());
+    }
+
+    private void insert(String key, String value, long expiresAtMillis, boolean persist) {
+        Node node = new Node(key, value, expiresAtMillis);
+        withPolicyLock(() -> {
+            Node previous = data.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            sketch.increment(key);
+            linkLast(WINDOW, node);
+            evictIfNeeded();
+        });
+        if (persist && diskTier != null) {
+            diskTier.putAsync(key, value, expiresAtMillis, data.entrySet());
+        }
+    }
+
+    private void onAccess(Node node) {
+        int queue = node.queue;
+        if (queue < 0) {
+            return; // Já removida por outra thread
+        }
+        unlink(node);
+        if (queue == PROBATION) {
+            linkLast(PROTECTED, node);
+            // Protegida cheia: a menos recente volta para a região de experiência
+            if (queueSizes[PROTECTED] > protectedMaximum) {
+                Node demoted = queues[PROTECTED].next;
+                unlink(demoted);
+                linkLast(PROBATION, demoted);
+            }
+        } else {
+            linkLast(queue, node);
+        }
+    }
+
+    private void evictIfNeeded() {
+        // As entradas mais antigas da janela viram candidatas à região principal
+        while (queueSizes[WINDOW] > windowMaximum) {
+            Node candidate = queues[WINDOW].next;
+            unlink(candidate);
+            linkLast(PROBATION, candidate);
+        }
+
+        while (data.size() > maximumSize) {
+            Node victim;
+            Node probation = queues[PROBATION];
+            if (probation.next != probation) {
+                // Admissão TinyLFU: a candidata recém-chegada (fim da fila) só fica se for mais popular que a vítima (início)
+                Node head = probation.next;
+                Node candidate = probation.prev;
+                victim = (head != candidate && sketch.frequency(candidate.key) > sketch.frequency(head.key)) ? head : candidate;
+            } else if (queues[PROTECTED].next != queues[PROTECTED]) {
+                victim = queues[PROTECTED].next;
+            } else if (queues[WINDOW].next != queues[WINDOW]) {
+                victim = queues[WINDOW].next;
+            } else {
+                return;
+            }
+            unlink(victim);
+            if (data.remove(victim.key, victim)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private void linkLast(int queue, Node node) {
+        Node sentinel = queues[queue];
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        node.queue = queue;
+        queueSizes[queue]++;
+    }
+
+    private void unlink(Node node) {
+        if (node.queue < 0) {
+            return;
+        }
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        queueSizes[node.queue]--;
+        node.queue = -1;
+    }
+
+    private void withPolicyLock(Runnable action) {
+        policyLock.lock();
+        try {
+            action.run();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * Entrada do cache; os ponteiros e a fila são protegidos pelo lock da política.
+     */
+    private static final class Node extends DiskTier.Entry {
+        final String key;
+        Node prev;
+        Node next;
+        int queue = -1;
+
+        Node() {
+            super(null, 0L);
+            this.key = null;
+        }
+
+        Node(String key, String value, long expiresAtMillis) {
+            super(value, expiresAtMillis);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.stackspotapi.cluster;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.transport.SseParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Direciona as requisições de sessão para a instância dona da sessão, para que cada sessão continue na mesma
+ * conversação mesmo com várias instâncias atrás do balanceador.
+ * <p>
+ * Os membros vêm de {@code CLUSTER_MEMBERS} (URLs base, incluindo a desta instância, informada em
+ * {@code CLUSTER_SELF}) e são distribuídos em um {@link HashRing}. Cada instância consulta o health dos demais
+ * membros a cada {@code CLUSTER_HEALTH_INTERVAL_MS}; um membro que falha {@code CLUSTER_HEALTH_FAILURES} vezes seguidas
+ * sai do anel até responder de novo, e só as sessões dele mudam de dono. Requisições sem sessão ficam na instância
+ * que as recebeu.
+ * <p>
+ * A requisição de outra instância é encaminhada a ela ({@code CLUSTER_ROUTING=FORWARD}) ou devolvida ao cliente
+ * com um redirecionamento 307 ({@code REDIRECT}). Requisições encaminhadas levam o header {@link #FORWARDED_HEADER}
+ * e nunca são encaminhadas de novo, mesmo que os anéis das duas instâncias discordem por um instante.
+ */
+public class ClusterRouter {
+    private static final Logger log = LoggerFactory.getLogger(ClusterRouter.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    /**
+     * Header das requisições encaminhadas por outra instância, com a URL base dela.
+     */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded-By";
+
+    /**
+     * Como entregar uma requisição de sessão de outra instância.
+     */
+    public enum Routing {
+        FORWARD, REDIRECT
+    }
+
+    private static final ClusterRouter shared = fromEnv();
+
+    private final String self;
+    private final List<String> members;
+    private final int virtualNodes;
+    private final Routing routing;
+    private final Duration forwardTimeout;
+    private final String healthPath;
+    private final int failureThreshold;
+    private final HttpClient httpClient;
+
+    // Falhas seguidas de health por membro (acesso pelo lock do roteador)
+    private final Map<String, Integer> healthFailures = new LinkedHashMap<>();
+    private volatile HashRing ring;
+    private volatile List<String> liveMembers;
+
+    public ClusterRouter(String self, List<String> members, int virtualNodes, Routing routing, Duration forwardTimeout,
+                         String healthPath, int failureThreshold, Duration connectTimeout) {
+        if (!members.contains(self)) {
+            throw new IllegalArgumentException("CLUSTER_SELF precisa estar em CLUSTER_MEMBERS");
+        }
+        this.self = self;
+        this.members = List.copyOf(members);
+        this.virtualNodes = Math.max(1, virtualNodes);
+        this.routing = routing;
+        this.forwardTimeout = forwardTimeout;
+        this.healthPath = healthPath;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(connectTimeout).build();
+        for (String member : members) {
+            healthFailures.put(member, 0);
+        }
+        rebuild();
+    }
+
+    /**
+     * O roteador configurado pelas chaves CLUSTER_* do .env, ou nulo se esta instância não faz parte de um cluster.
+     */
+    public static ClusterRouter shared() {
+        return shared;
+    }
+
+    private static ClusterRouter fromEnv() {
+        String membersConfig = dotenv.get("CLUSTER_MEMBERS", "");
+        if (membersConfig.isBlank()) {
+            return null;
+        }
+        List<String> members = Arrays.stream(membersConfig.split(","))
+                .map(ClusterRouter::normalize)
+                .filter(member -> !member.isEmpty())
+                .distinct()
+                .toList();
+        String self = normalize(dotenv.get("CLUSTER_SELF", ""));
+        ClusterRouter router;
+        try {
+            router = new ClusterRouter(self, members,
+                    Integer.parseInt(dotenv.get("CLUSTER_VIRTUAL_NODES", "128")),
+                    Routing.valueOf(dotenv.get("CLUSTER_ROUTING", Routing.FORWARD.name())),
+                    Duration.ofMillis(Long.parseLong(dotenv.get("CLUSTER_FORWARD_TIMEOUT_MS", "300000"))),
+                    dotenv.get("CLUSTER_HEALTH_PATH", "/actuator/health"),
+                    Integer.parseInt(dotenv.get("CLUSTER_HEALTH_FAILURES", "2")),
+                    Duration.ofMillis(Long.parseLong(dotenv.get("CLUSTER_CONNECT_TIMEOUT_MS", "1000"))));
+        } catch (IllegalArgumentException e) {
+            log.error("Roteamento do cluster desabilitado: {}", e.getMessage());
+            return null;
+        }
+        router.startHealthChecks(Duration.ofMillis(Long.parseLong(dotenv.get("CLUSTER_HEALTH_INTERVAL_MS", "2000"))));
+        log.info("Cluster com {} membros, esta instância é {} (roteamento {}).", members.size(), self, router.routing);
+        return router;
+    }
+
+    /**
+     * A instância dona da sessão, se não for esta.
+     *
+     * @param sessionId   A chave de sessão do cliente; nula para requisições sem sessão.
+     * @param forwardedBy O valor de {@link #FORWARDED_HEADER}; requisições já encaminhadas ficam aqui.
+     * @return A URL base da dona, ou nulo se a requisição deve ser atendida nesta instância.
+     */
+    public String ownerOf(String sessionId, String forwardedBy) {
+        if (sessionId == null || sessionId.isBlank() || forwardedBy != null) {
+            return null;
+        }
+        String owner = ring.ownerOf(sessionId);
+        return owner == null || owner.equals(self) ? null : owner;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    /**
+     * O endereço de {@code path} na instância {@code owner}, para redirecionar o cliente.
+     */
+    public URI locationOf(String owner, String path) {
+        return URI.create(owner + path);
+    }
+
+    /**
+     * Encaminha uma requisição JSON à instância dona da sessão.
+     *
+     * @return Um future com a resposta da dona, ou completado com {@link IOException} em falha de comunicação. Se a
+     * conexão não pôde ser aberta ({@link #isUnreachable(Throwable)}), a dona sai do anel até o próximo health
+     * bem-sucedido e a requisição pode ser atendida aqui.
+     */
+    public CompletableFuture<HttpResponse<String>> forward(String owner, String path, String sessionId, String sessionHeader,
+                                                           String jsonBody) {
+        return httpClient.sendAsync(forwardRequest(owner, path, sessionId, sessionHeader, jsonBody, "application/json"),
+                        HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (isUnreachable(error)) {
+                        markUnreachable(owner);
+                    }
+                });
+    }
+
+    /**
+     * Encaminha uma requisição de stream à instância dona da sessão e repassa cada evento SSE da resposta ao
+     * {@code listener}, bloqueando até o fim do stream.
+     *
+     * @return O status da resposta da dona; os eventos só são repassados com 200.
+     * @throws IOException Em falha de comunicação (se a conexão não pôde ser aberta, a dona sai do anel) ou se o
+     *                     {@code listener} abortar.
+     */
+    public int forwardStream(String owner, String path, String sessionId, String sessionHeader, String jsonBody,
+                             SseParser.EventListener listener) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(forwardRequest(owner, path, sessionId, sessionHeader, jsonBody, "text/event-stream"),
+                    HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            if (isUnreachable(e)) {
+                markUnreachable(owner);
+            }
+            throw e;
+        }
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                return response.statusCode();
+            }
+            SseParser parser = new SseParser(listener);
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = body.read(chunk)) != -1) {
+                parser.feed(ByteBuffer.wrap(chunk, 0, read));
+            }
+            parser.finish();
+            return response.statusCode();
+        }
+    }
+
+    /**
+     * Indica se a falha aconteceu antes de a requisição chegar à outra instância (conexão recusada ou sem resposta
+     * no prazo de conexão), quando é seguro atendê-la aqui.
+     */
+    public static boolean isUnreachable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Número de membros no anel, incluindo esta instância.
+     */
+    public int getLiveMemberCount() {
+        return liveMembers.size();
+    }
+
+    private HttpRequest forwardRequest(String owner, String path, String sessionId, String sessionHeader, String jsonBody, String accept) {
+        return HttpRequest.newBuilder(URI.create(owner + path))
+                .timeout(forwardTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", accept)
+                .header(sessionHeader, sessionId)
+                .header(FORWARDED_HEADER, self)
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
+                .build();
+    }
+
+    private void startHealthChecks(Duration interval) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(100L, interval.toMillis());
+        scheduler.scheduleWithFixedDelay(this::checkHealth, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHealth() {
+        for (String member : members) {
+            if (member.equals(self)) {
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(member + healthPath))
+                    .timeout(Duration.ofSeconds(2))
+                    .GET()
+                    .build();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> onHealth(member, error == null && response.statusCode() / 100 == 2));
+        }
+    }
+
+    private synchronized void onHealth(String member, boolean healthy) {
+        int failures = healthy ? 0 : healthFailures.get(member) + 1;
+        boolean wasLive = healthFailures.get(member) < failureThreshold;
+        healthFailures.put(member, failures);
+        if (wasLive != failures < failureThreshold) {
+            rebuild();
+        }
+    }
+
+    private synchronized void markUnreachable(String member) {
+        if (healthFailures.get(member) < failureThreshold) {
+            healthFailures.put(member, failureThreshold);
+            rebuild();
+        }
+    }
+
+    private synchronized void rebuild() {
+        List<String> live = new ArrayList<>();
+        for (Map.Entry<String, Integer> member : healthFailures.entrySet()) {
+            if (member.getKey().equals(self) || member.getValue() < failureThreshold) {
+                live.add(member.getKey());
+            }
+        }
+        List<String> previous = liveMembers;
+        liveMembers = List.copyOf(live);
+        ring = new HashRing(live, virtualNodes);
+        if (previous != null) {
+            log.warn("Anel do cluster rebalanceado: {} de {} membros ativos {}.", live.size(), members.size(), live);
+        }
+    }
+
+    private static String normalize(String member) {
+        String trimmed = member.strip();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,72 @@
+package org.stackspotapi.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Anel de hash consistente imutável que associa cada chave de sessão a um membro do cluster.
+ * <p>
+ * Cada membro ocupa {@code virtualNodes} pontos do anel, e uma chave pertence ao primeiro ponto a partir do seu
+ * hash. Quando um membro entra ou sai, só as chaves dos pontos dele mudam de dono (cerca de 1/N das sessões); as
+ * demais continuam no mesmo membro e na mesma conversação.
+ */
+final class HashRing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Pontos do anel em ordem crescente e o dono de cada um
+    private final long[] points;
+    private final String[] owners;
+
+    HashRing(Collection<String> members, int virtualNodes) {
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String member : members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(member + "#" + i), member);
+            }
+        }
+        this.points = new long[ring.size()];
+        this.owners = new String[ring.size()];
+        int index = 0;
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            points[index] = point.getKey();
+            owners[index] = point.getValue();
+            index++;
+        }
+    }
+
+    /**
+     * O membro dono da chave, ou nulo se o anel estiver vazio.
+     */
+    String ownerOf(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre o UTF-8 da chave, com a finalização do MurmurHash3 para espalhar chaves parecidas
+     * (ex.: {@code sessao-1}, {@code sessao-2}) pelo anel todo.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
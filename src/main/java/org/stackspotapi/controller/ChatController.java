@@ -1,37 +1,403 @@
 // src/main/java/org/stackspotapi/controller/ChatController.java
 package org.stackspotapi.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.stackspotapi.cluster.ClusterRouter;
+import org.stackspotapi.dto.BatchChatRequestDto;
 import org.stackspotapi.dto.ChatRequestDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
 import org.stackspotapi.service.AiChatService;
+import org.stackspotapi.service.BatchChatService;
+import org.stackspotapi.service.ChatStreamListener;
+import org.stackspotapi.transport.CircuitOpenException;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/v1/chat" ) // Base path for chat related endpoints
 public class ChatController {
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+
+    // Optional client session key: requests with the same key share one conversation
+    static final String SESSION_HEADER = "X-Session-Id";
+    // Set when the session moved to a new conversation, so earlier exchanges are no longer in the AI's context
+    static final String ROLLOVER_HEADER = "X-Conversation-Rollover";
+
+    private static final String CHAT_PATH = "/api/v1/chat";
+    private static final String STREAM_PATH = CHAT_PATH + "/stream";
+    private static final String REACTIVE_PATH = CHAT_PATH + "/reactive";
+
+    // Streams de chat podem durar minutos enquanto a IA gera a resposta
+    private static final long STREAM_TIMEOUT_MS = 5 * 60 * 1000L;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Threads dedicadas à leitura dos streams da StackSpot, liberando as threads do servlet
+    private static final AtomicInteger streamThreadCount = new AtomicInteger();
+    private static final ExecutorService streamExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "chat-stream-" + streamThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // Spring automatically injects AiChatService if it's a Spring component
     public ChatController(AiChatService aiChatService) {
     }
 
+    /**
+     * Asks the AI and answers with the full {@code {"answer": "..."}} JSON once generation finishes.
+     * <p>
+     * The servlet thread is released right away; the response is written when the async pipeline completes.
+     * When StackSpot is throttling us, or its circuit breaker is open after repeated failures, answers {@code 503}
+     * with {@code Retry-After} right away instead of an error body, so clients back off rather than retrying immediately.
+     * <p>
+     * When the session had to move to a new conversation (budget spent, client out of rotation or conversation
+     * retired), the answer carries {@code X-Conversation-Rollover} with the reason: earlier prompts of the session are
+     * no longer part of the AI's context.
+     * <p>
+     * In a cluster, a session owned by another instance is forwarded there (or redirected with {@code 307}), so the
+     * session keeps its conversation; if the owner cannot be reached, the request is answered here.
+     * <p>
+     * Files sent to {@code /api/v1/uploads} are attached to the prompt by listing their IDs in {@code upload_ids}.
+     */
     @PostMapping
-    public ResponseEntity<String> askAi(@RequestBody ChatRequestDto requestDto) {
+    public CompletableFuture<ResponseEntity<String>> askAi(@RequestBody ChatRequestDto requestDto,
+                                                           @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+                                                           @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
         if (requestDto == null || requestDto.getPrompt() == null || requestDto.getPrompt().isBlank()) {
-            return new ResponseEntity<>("Prompt cannot be empty", HttpStatus.BAD_REQUEST);
+            return CompletableFuture.completedFuture(new ResponseEntity<>("Prompt cannot be empty", HttpStatus.BAD_REQUEST));
+        }
+
+        ClusterRouter cluster = ClusterRouter.shared();
+        String owner = cluster != null ? cluster.ownerOf(sessionId, forwardedBy) : null;
+        if (owner != null) {
+            return askOwner(cluster, owner, requestDto, sessionId);
+        }
+        if (cluster != null && sessionId != null) {
+            StackSpotMetrics.clusterRoute("local");
         }
+        return askLocally(requestDto.getPrompt(), requestDto.getUploadIds(), sessionId);
+    }
 
+    private static CompletableFuture<ResponseEntity<String>> askOwner(ClusterRouter cluster, String owner, ChatRequestDto requestDto,
+                                                                      String sessionId) {
+        if (cluster.getRouting() == ClusterRouter.Routing.REDIRECT) {
+            StackSpotMetrics.clusterRoute("redirected");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT)
+                    .location(cluster.locationOf(owner, CHAT_PATH))
+                    .build());
+        }
+        String body;
         try {
-            String response = AiChatService.ask(requestDto.getPrompt());
+            body = objectMapper.writeValueAsString(requestDto);
+        } catch (JsonProcessingException e) {
+            return askLocally(requestDto.getPrompt(), requestDto.getUploadIds(), sessionId);
+        }
+        StackSpotMetrics.clusterRoute("forwarded");
+        return cluster.forward(owner, CHAT_PATH, sessionId, SESSION_HEADER, body).handle((response, error) -> {
+            if (error == null) {
+                ResponseEntity.BodyBuilder relayed = ResponseEntity.status(response.statusCode());
+                response.headers().firstValue(HttpHeaders.RETRY_AFTER).ifPresent(value -> relayed.header(HttpHeaders.RETRY_AFTER, value));
+                response.headers().firstValue(ROLLOVER_HEADER).ifPresent(value -> relayed.header(ROLLOVER_HEADER, value));
+                return CompletableFuture.completedFuture(relayed.body(response.body()));
+            }
+            if (ClusterRouter.isUnreachable(error)) {
+                // The owner is down: answering here starts a new conversation but keeps the session usable
+                log.warn("Instance {} unreachable, answering session request locally", owner);
+                StackSpotMetrics.clusterRoute("fallback");
+                return askLocally(requestDto.getPrompt(), requestDto.getUploadIds(), sessionId);
+            }
+            log.error("Error forwarding AI chat request to {}: {}", owner, error.getMessage());
+            return CompletableFuture.completedFuture(new ResponseEntity<>("An error occurred while communicating with the AI service",
+                    HttpStatus.BAD_GATEWAY));
+        }).thenCompose(response -> response);
+    }
+
+    private static CompletableFuture<ResponseEntity<String>> askLocally(String prompt, List<String> uploadIds, String sessionId) {
+        AtomicReference<String> rollover = new AtomicReference<>();
+        return AiChatService.askAsync(prompt, sessionId, uploadIds != null ? uploadIds : List.of(), rollover::set).handle((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof UpstreamUnavailableException unavailable) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .body(unavailable instanceof CircuitOpenException
+                                ? "The AI service is temporarily unavailable, retry later"
+                                : "The AI service is overloaded, retry later");
+            }
+            if (error != null) {
+                // Log the exception for debugging
+                log.error("Error processing AI chat request: {}", error.getMessage());
+                return new ResponseEntity<>("An error occurred while communicating with the AI service", HttpStatus.INTERNAL_SERVER_ERROR);
+            }
             if (response != null) {
-                return new ResponseEntity<>(response, HttpStatus.OK);
+                ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+                if (rollover.get() != null) {
+                    ok.header(ROLLOVER_HEADER, rollover.get());
+                }
+                return ok.body(response);
             } else {
                 return new ResponseEntity<>("Failed to get response from AI service", HttpStatus.INTERNAL_SERVER_ERROR);
             }
-        } catch (Exception e) {
-            // Log the exception for debugging
-            System.err.println("Error processing AI chat request: " + e.getMessage());
-            return new ResponseEntity<>("An error occurred while communicating with the AI service", HttpStatus.INTERNAL_SERVER_ERROR);
+        });
+    }
+
+    /**
+     * Streams the AI answer as Server-Sent Events while it is generated.
+     * <p>
+     * Each {@code answer} event carries a {@code {"answer": "..."}} fragment. The stream ends with a
+     * {@code done} event, or with an {@code error} event if the upstream call fails mid-stream. A {@code rollover}
+     * event ({@code {"reason": "..."}}) comes before the first fragment when the session moved to a new conversation.
+     * If the client disconnects, the upstream StackSpot stream is closed as soon as the next fragment arrives.
+     * <p>
+     * In a cluster, a session owned by another instance is relayed from there event by event (or redirected with
+     * {@code 307}).
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> askAiStream(@RequestBody ChatRequestDto requestDto,
+                                                  @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+                                                  @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (requestDto == null || requestDto.getPrompt() == null || requestDto.getPrompt().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ClusterRouter cluster = ClusterRouter.shared();
+        String owner = cluster != null ? cluster.ownerOf(sessionId, forwardedBy) : null;
+        if (owner != null && cluster.getRouting() == ClusterRouter.Routing.REDIRECT) {
+            StackSpotMetrics.clusterRoute("redirected");
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(cluster.locationOf(owner, STREAM_PATH)).build();
+        }
+        if (owner == null && cluster != null && sessionId != null) {
+            StackSpotMetrics.clusterRoute("local");
+        }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        emitter.onCompletion(() -> clientGone.set(true));
+        emitter.onTimeout(() -> clientGone.set(true));
+        emitter.onError(error -> clientGone.set(true));
+
+        String prompt = requestDto.getPrompt();
+        List<String> uploadIds = requestDto.getUploadIds() != null ? requestDto.getUploadIds() : List.of();
+        streamExecutor.execute(() -> {
+            try {
+                if (owner == null || !relayStream(cluster, owner, requestDto, sessionId, emitter, clientGone)) {
+                    AiChatService.askStream(prompt, sessionId, uploadIds, new ChatStreamListener() {
+                        @Override
+                        public void onFragment(String fragment) throws IOException {
+                            send("answer", Map.of("answer", fragment));
+                        }
+
+                        @Override
+                        public void onRollover(String reason) throws IOException {
+                            send("rollover", Map.of("reason", reason));
+                        }
+
+                        private void send(String event, Map<String, String> body) throws IOException {
+                            if (clientGone.get()) {
+                                throw new IOException("Client disconnected");
+                            }
+                            emitter.send(SseEmitter.event()
+                                    .name(event)
+                                    .data(objectMapper.writeValueAsString(body), MediaType.APPLICATION_JSON));
+                        }
+                    });
+                    emitter.send(SseEmitter.event().name("done").data(""));
+                }
+                emitter.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.completeWithError(e);
+            } catch (Exception e) {
+                if (clientGone.get()) {
+                    return; // Nothing left to notify, the upstream stream was already closed
+                }
+                log.error("Error streaming AI chat response: {}", e.getMessage());
+                try {
+                    emitter.send(SseEmitter.event()
+                            .name("error")
+                            .data(objectMapper.writeValueAsString(errorBody(e)), MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (IOException sendError) {
+                    emitter.completeWithError(sendError);
+                }
+            }
+        });
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Relays the owner instance's stream for this session, including its final {@code done} or {@code error} event.
+     *
+     * @return {@code false} if the owner could not be reached and the stream should be answered here.
+     */
+    private static boolean relayStream(ClusterRouter cluster, String owner, ChatRequestDto requestDto, String sessionId,
+                                       SseEmitter emitter, AtomicBoolean clientGone) throws IOException, InterruptedException {
+        StackSpotMetrics.clusterRoute("forwarded");
+        int status;
+        try {
+            status = cluster.forwardStream(owner, STREAM_PATH, sessionId, SESSION_HEADER, objectMapper.writeValueAsString(requestDto),
+                    (event, data, offset, length) -> {
+                        if (clientGone.get()) {
+                            throw new IOException("Client disconnected");
+                        }
+                        emitter.send(SseEmitter.event().name(event).data(new String(data, offset, length, StandardCharsets.UTF_8)));
+                    });
+        } catch (IOException e) {
+            if (!ClusterRouter.isUnreachable(e)) {
+                throw e;
+            }
+            log.warn("Instance {} unreachable, streaming session request locally", owner);
+            StackSpotMetrics.clusterRoute("fallback");
+            return false;
+        }
+        if (status != 200) {
+            throw new IOException("Instance " + owner + " answered with status " + status);
+        }
+        return true;
+    }
+
+    /**
+     * Streams the AI answer as Server-Sent Events from a reactive pipeline, without a thread per stream.
+     * <p>
+     * Same events as {@code /stream}. The StackSpot stream is read only as fast as the client takes the events, so
+     * memory per open chat stays constant whatever the answer length. Answers are not stored in the response cache
+     * nor shared by identical prompts in flight. If the client disconnects, the upstream stream is closed right away.
+     * <p>
+     * In a cluster, a session owned by another instance is always redirected there with {@code 307}: relaying it
+     * would take a thread per stream.
+     */
+    @PostMapping(value = "/reactive", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> askAiReactive(@RequestBody ChatRequestDto requestDto,
+                                                                       @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+                                                                       @RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (requestDto == null || requestDto.getPrompt() == null || requestDto.getPrompt().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ClusterRouter cluster = ClusterRouter.shared();
+        String owner = cluster != null ? cluster.ownerOf(sessionId, forwardedBy) : null;
+        if (owner != null) {
+            StackSpotMetrics.clusterRoute("redirected");
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(cluster.locationOf(owner, REACTIVE_PATH)).build();
+        }
+        if (cluster != null && sessionId != null) {
+            StackSpotMetrics.clusterRoute("local");
+        }
+
+        List<String> uploadIds = requestDto.getUploadIds() != null ? requestDto.getUploadIds() : List.of();
+        // Known before the first fragment, since the conversation is acquired before the upstream call opens
+        AtomicReference<String> rollover = new AtomicReference<>();
+        // Spring MVC requests one event at a time and the next only after writing it, which paces the upstream reads
+        Flux<ServerSentEvent<Object>> events = JdkFlowAdapter.flowPublisherToFlux(
+                        AiChatService.askPublisher(requestDto.getPrompt(), sessionId, uploadIds, rollover::set))
+                .concatMapIterable(fragment -> afterRollover(rollover,
+                        ServerSentEvent.<Object>builder(Map.of("answer", fragment)).event("answer").build()))
+                .concatWith(Flux.defer(() -> Flux.fromIterable(afterRollover(rollover,
+                        ServerSentEvent.<Object>builder("").event("done").build()))))
+                .onErrorResume(error -> {
+                    log.error("Error streaming AI chat response: {}", error.getMessage());
+                    return Mono.just(ServerSentEvent.<Object>builder(errorBody(error)).event("error").build());
+                });
+        return ResponseEntity.ok(events);
+    }
+
+    /**
+     * Prepends the pending {@code rollover} event, if any, to a reactive stream event.
+     */
+    private static List<ServerSentEvent<Object>> afterRollover(AtomicReference<String> rollover, ServerSentEvent<Object> event) {
+        String reason = rollover.getAndSet(null);
+        if (reason == null) {
+            return List.of(event);
+        }
+        return List.of(ServerSentEvent.<Object>builder(Map.of("reason", reason)).event("rollover").build(), event);
+    }
+
+    /**
+     * Asks the AI a batch of independent prompts and streams one NDJSON line per prompt as soon as it completes.
+     * <p>
+     * Each line is {@code {"index": i, "answer": "..."}} or, when that prompt fails, {@code {"index": i, "error": "..."}};
+     * a failed item never fails the rest of the batch. At most {@code concurrency} prompts (capped by
+     * {@code BATCH_MAX_CONCURRENCY}) are in flight upstream at a time. Batch prompts are sessionless.
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> askAiBatch(@RequestBody BatchChatRequestDto requestDto) {
+        if (requestDto == null || requestDto.getPrompts() == null || requestDto.getPrompts().isEmpty()
+                || requestDto.getPrompts().size() > BatchChatService.MAX_PROMPTS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<String> prompts = new ArrayList<>(requestDto.getPrompts()); // Itens nulos ou vazios viram erro do próprio item
+        int concurrency = requestDto.getConcurrency() != null ? requestDto.getConcurrency() : BatchChatService.MAX_CONCURRENCY;
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(STREAM_TIMEOUT_MS);
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+        emitter.onCompletion(() -> clientGone.set(true));
+        emitter.onTimeout(() -> clientGone.set(true));
+        emitter.onError(error -> clientGone.set(true));
+
+        BatchChatService.run(prompts, concurrency, clientGone, (index, answer, error) -> {
+            if (clientGone.get()) {
+                return;
+            }
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("index", index);
+            if (error == null) {
+                line.put("answer", answer);
+            } else {
+                line.putAll(errorBody(error));
+            }
+            try {
+                // ResponseBodyEmitter.send is synchronized, so lines from concurrent items never interleave
+                emitter.send(objectMapper.writeValueAsString(line) + "\n", MediaType.APPLICATION_NDJSON);
+            } catch (IOException e) {
+                clientGone.set(true);
+                emitter.completeWithError(e);
+            }
+        }).whenComplete((ignored, error) -> {
+            if (!clientGone.get()) {
+                emitter.complete();
+            }
+        });
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    /**
+     * Error payload for streamed responses; overload errors also carry {@code retry_after_seconds}.
+     */
+    private static Map<String, Object> errorBody(Throwable error) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", String.valueOf(error.getMessage()));
+        if (error instanceof UpstreamUnavailableException unavailable) {
+            body.put("retry_after_seconds", unavailable.getRetryAfterSeconds());
         }
+        return body;
     }
 }
@@ -0,0 +1,423 @@
+// src/main/java/org/stackspotapi/controller/ChatWebSocketHandler.java
+package org.stackspotapi.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cdimascio.dotenv.Dotenv;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.stackspotapi.service.AiChatService;
+import org.stackspotapi.service.ChatCancellation;
+import org.stackspotapi.service.ChatStreamListener;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chat over a single WebSocket connection, so clients on high-latency links pay connection setup once.
+ * <p>
+ * Client frames are JSON text messages:
+ * <ul>
+ *     <li>{@code {"type": "prompt", "id": "r1", "prompt": "...", "upload_ids": [...]}} — starts a prompt;</li>
+ *     <li>{@code {"type": "cancel", "id": "r1"}} — cancels an in-flight prompt and closes its upstream stream.</li>
+ * </ul>
+ * Every prompt of a connection runs in the same conversation: the handshake's {@code X-Session-Id}, or one session
+ * per connection that is released when the connection closes. In a cluster, a handshake for a session owned by
+ * another instance is redirected there ({@link ClusterHandshakeInterceptor}). Server frames carry the prompt {@code id} and are interleaved as fragments arrive:
+ * {@code answer} (with an {@code answer} fragment), then exactly one of {@code done}, {@code cancelled} or
+ * {@code error} (with {@code error} and, on overload, {@code retry_after_seconds}). A {@code rollover} frame (with
+ * the {@code reason}) comes before the first {@code answer} when the session moved to a new conversation, so earlier
+ * prompts are no longer part of the AI's context.
+ * <p>
+ * Prompts stream on a shared pool of {@code CHAT_WS_STREAM_THREADS} threads, whatever the number of connections;
+ * up to {@code CHAT_WS_STREAM_QUEUE} more wait for a thread, and beyond that a prompt gets an {@code error} frame with
+ * {@code retry_after_seconds}.
+ * <p>
+ * Each connection has a bounded outbound queue ({@code CHAT_WS_OUTBOUND_QUEUE} frames). When a client reads slower
+ * than the answers arrive, its streams wait for room in the queue instead of buffering, which also stops reading
+ * from StackSpot; a client that takes nothing for {@code CHAT_WS_SEND_TIMEOUT_MS} is disconnected.
+ * <p>
+ * A cancel stops the prompt wherever it is waiting (conversation, token, StackSpot's headers or first token, room in
+ * the outbound queue) and closes its upstream stream. The exception is a prompt whose StackSpot call is being shared
+ * with identical prompts of other clients: the call goes on for them, and the cancelled prompt gets its
+ * {@code cancelled} frame at the call's next fragment.
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler implements MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static final String PATH = "/api/v1/chat/ws";
+    static final int MAX_MESSAGE_BYTES = Integer.parseInt(dotenv.get("CHAT_WS_MAX_MESSAGE_BYTES", "262144"));
+    private static final int MAX_INFLIGHT_PROMPTS = Integer.parseInt(dotenv.get("CHAT_WS_MAX_INFLIGHT_PROMPTS", "32"));
+    private static final int OUTBOUND_QUEUE = Math.max(1, Integer.parseInt(dotenv.get("CHAT_WS_OUTBOUND_QUEUE", "256")));
+    private static final long SEND_TIMEOUT_MS = Long.parseLong(dotenv.get("CHAT_WS_SEND_TIMEOUT_MS", "30000"));
+
+    private static final int STREAM_THREADS = Math.max(1, Integer.parseInt(dotenv.get("CHAT_WS_STREAM_THREADS", "64")));
+    private static final int STREAM_QUEUE = Math.max(0, Integer.parseInt(dotenv.get("CHAT_WS_STREAM_QUEUE", "256")));
+
+    // Prompts of all connections share a fixed set of threads; beyond those and the queue, prompts are refused
+    private static final AtomicInteger streamThreadCount = new AtomicInteger();
+    private static final ThreadPoolExecutor streamExecutor = newStreamExecutor();
+    // Writes to the connections, at most one drain task per connection with frames pending
+    private static final AtomicInteger sendThreadCount = new AtomicInteger();
+    private static final ExecutorService sendExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "chat-ws-send-" + sendThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        String sessionId = session.getHandshakeHeaders().getFirst(ChatController.SESSION_HEADER);
+        boolean ownSession = sessionId == null || sessionId.isBlank();
+        connections.put(session.getId(), new Connection(session, ownSession ? "ws-" + session.getId() : sessionId, ownSession));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Connection connection = connections.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+        JsonNode frame;
+        try {
+            frame = objectMapper.readTree(message.getPayload());
+        } catch (JsonProcessingException e) {
+            connection.sendQuietly(errorFrame(null, "Invalid JSON message"));
+            return;
+        }
+        String id = frame.path("id").asText("");
+        if (id.isBlank()) {
+            connection.sendQuietly(errorFrame(null, "Message id cannot be empty"));
+            return;
+        }
+        switch (frame.path("type").asText("")) {
+            case "prompt" -> startPrompt(connection, id, frame);
+            case "cancel" -> {
+                Prompt prompt = connection.prompts.get(id);
+                if (prompt != null) {
+                    prompt.cancel();
+                }
+            }
+            default -> connection.sendQuietly(errorFrame(id, "Unknown message type"));
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        Connection connection = connections.remove(session.getId());
+        if (connection != null) {
+            log.debug("WebSocket transport error: {}", exception.getMessage());
+            connection.close(CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection connection = connections.remove(session.getId());
+        if (connection != null) {
+            connection.close(status);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stackspot.ws.connections", connections, Map::size)
+                .description("Open chat WebSocket connections")
+                .register(registry);
+        Gauge.builder("stackspot.ws.prompts.inflight", connections,
+                        all -> all.values().stream().mapToInt(connection -> connection.prompts.size()).sum())
+                .description("Prompts streaming over chat WebSocket connections")
+                .register(registry);
+        Gauge.builder("stackspot.ws.outbound.queued", connections,
+                        all -> all.values().stream().mapToInt(connection -> Math.max(0, OUTBOUND_QUEUE - connection.outboundPermits.availablePermits())).sum())
+                .description("Frames waiting to be written to chat WebSocket clients")
+                .register(registry);
+        Gauge.builder("stackspot.ws.prompts.queued", streamExecutor, executor -> executor.getQueue().size())
+                .description("Chat WebSocket prompts waiting for a stream thread")
+                .register(registry);
+    }
+
+    private static void startPrompt(Connection connection, String id, JsonNode frame) {
+        String text = frame.path("prompt").asText("");
+        if (text.isBlank()) {
+            connection.sendQuietly(errorFrame(id, "Prompt cannot be empty"));
+            return;
+        }
+        // Frames of one connection are handled one at a time, so this check and the insert below do not race
+        if (connection.prompts.size() >= MAX_INFLIGHT_PROMPTS) {
+            connection.sendQuietly(errorFrame(id, "Too many prompts in flight on this connection"));
+            return;
+        }
+        List<String> uploadIds = new ArrayList<>();
+        frame.path("upload_ids").forEach(uploadId -> uploadIds.add(uploadId.asText()));
+
+        Prompt prompt = new Prompt();
+        if (connection.prompts.putIfAbsent(id, prompt) != null) {
+            connection.sendQuietly(errorFrame(id, "A prompt with this id is already in flight"));
+            return;
+        }
+        try {
+            streamExecutor.execute(() -> stream(connection, id, prompt, text, uploadIds));
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> busy = errorFrame(id, "Server is busy, too many prompts in flight");
+            busy.put("retry_after_seconds", 1);
+            end(connection, id, prompt, "rejected", busy);
+        }
+    }
+
+    private static ThreadPoolExecutor newStreamExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(STREAM_THREADS, STREAM_THREADS, 60, TimeUnit.SECONDS,
+                STREAM_QUEUE > 0 ? new ArrayBlockingQueue<>(STREAM_QUEUE) : new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "chat-ws-" + streamThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void stream(Connection connection, String id, Prompt prompt, String text, List<String> uploadIds) {
+        String outcome = StackSpotMetrics.FAILURE;
+        Map<String, Object> last;
+        try {
+            AiChatService.askStream(text, connection.sessionId, uploadIds, prompt.cancellation, new ChatStreamListener() {
+                @Override
+                public void onFragment(String fragment) throws IOException {
+                    Map<String, Object> answer = frame("answer", id);
+                    answer.put("answer", fragment);
+                    send(answer);
+                }
+
+                @Override
+                public void onRollover(String reason) throws IOException {
+                    Map<String, Object> rollover = frame("rollover", id);
+                    rollover.put("reason", reason);
+                    send(rollover);
+                }
+
+                private void send(Map<String, Object> frame) throws IOException {
+                    if (prompt.cancellation.isCancelled()) {
+                        // A shared call goes on for the other clients; this prompt ends here
+                        end(connection, id, prompt, "cancelled", frame("cancelled", id));
+                        throw new IOException("Prompt cancelled");
+                    }
+                    try {
+                        connection.send(frame, prompt.cancellation);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Prompt cancelled");
+                    }
+                }
+            });
+            outcome = StackSpotMetrics.SUCCESS;
+            last = frame("done", id);
+        } catch (Exception e) {
+            if (prompt.cancellation.isCancelled()) {
+                outcome = "cancelled";
+                last = frame("cancelled", id);
+            } else {
+                log.error("Error streaming AI chat response over WebSocket: {}", e.getMessage());
+                last = errorFrame(id, String.valueOf(e.getMessage()));
+                if (e instanceof UpstreamUnavailableException unavailable) {
+                    last.put("retry_after_seconds", unavailable.getRetryAfterSeconds());
+                }
+            }
+        }
+        end(connection, id, prompt, outcome, last);
+    }
+
+    /**
+     * Sends the prompt's final frame, once.
+     */
+    private static void end(Connection connection, String id, Prompt prompt, String outcome, Map<String, Object> last) {
+        if (!prompt.ended.compareAndSet(false, true)) {
+            return;
+        }
+        // The id can be reused as soon as the client sees the final frame
+        connection.prompts.remove(id, prompt);
+        // A cancel may have interrupted a wait this frame is sent from; clear it so the frame can still be queued
+        Thread.interrupted();
+        if (connection.closed) {
+            outcome = "disconnected";
+            connection.releaseSessionIfIdle();
+        } else {
+            connection.sendQuietly(last);
+        }
+        StackSpotMetrics.webSocketPrompt(outcome);
+    }
+
+    private static Map<String, Object> frame(String type, String id) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", type);
+        frame.put("id", id);
+        return frame;
+    }
+
+    private static Map<String, Object> errorFrame(String id, String message) {
+        Map<String, Object> frame = frame("error", id);
+        frame.put("error", message);
+        return frame;
+    }
+
+    /**
+     * A prompt streaming on a connection.
+     */
+    private static final class Prompt {
+        final ChatCancellation cancellation = new ChatCancellation();
+        // Set once the final frame has been sent
+        final AtomicBoolean ended = new AtomicBoolean();
+
+        void cancel() {
+            cancellation.cancel();
+        }
+    }
+
+    /**
+     * One client connection and its outbound queue.
+     */
+    private static final class Connection {
+        final WebSocketSession session;
+        final String sessionId;
+        // The session was created for this connection (no X-Session-Id), so it dies with it
+        final boolean ownSession;
+        final Map<String, Prompt> prompts = new ConcurrentHashMap<>();
+        // One permit per frame queued or being written, so a slow client blocks its streams instead of growing the queue
+        final Semaphore outboundPermits = new Semaphore(OUTBOUND_QUEUE);
+        private final ConcurrentLinkedQueue<TextMessage> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Connection(WebSocketSession session, String sessionId, boolean ownSession) {
+            this.session = session;
+            this.sessionId = sessionId;
+            this.ownSession = ownSession;
+        }
+
+        /**
+         * Queues a frame, waiting up to {@code CHAT_WS_SEND_TIMEOUT_MS} for room; a client that takes nothing for that
+         * long is disconnected. Cancelling the prompt ends the wait.
+         */
+        void send(Map<String, Object> frame, ChatCancellation cancellation) throws IOException, InterruptedException {
+            if (closed) {
+                throw new IOException("WebSocket connection closed");
+            }
+            TextMessage message = new TextMessage(objectMapper.writeValueAsString(frame));
+            boolean acquired;
+            cancellation.enterConsumerWait();
+            try {
+                acquired = outboundPermits.tryAcquire(SEND_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } finally {
+                cancellation.exitConsumerWait();
+            }
+            if (!acquired) {
+                log.warn("WebSocket client {} is not reading, closing the connection", session.getId());
+                close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Client is not reading"));
+                throw new IOException("WebSocket client is not reading");
+            }
+            if (closed) {
+                throw new IOException("WebSocket connection closed");
+            }
+            outbound.add(message);
+            flush();
+        }
+
+        void sendQuietly(Map<String, Object> frame) {
+            try {
+                send(frame, new ChatCancellation());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.debug("Could not send WebSocket frame: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * Schedules the writing of the queued frames. Writes happen on a single drain task per connection, because
+         * WebSocket sessions take one writer at a time and a stalled client must block only the drain: the streams
+         * keep waiting for room in the queue, which is what times out.
+         */
+        private void flush() {
+            if (draining.compareAndSet(false, true)) {
+                sendExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                TextMessage message;
+                while ((message = outbound.poll()) != null) {
+                    try {
+                        if (!closed) {
+                            session.sendMessage(message);
+                        }
+                    } catch (IOException e) {
+                        log.debug("WebSocket send failed: {}", e.getMessage());
+                        close(CloseStatus.SERVER_ERROR);
+                    } finally {
+                        outboundPermits.release();
+                    }
+                }
+                draining.set(false);
+                // A frame queued after the poll above but before the reset would otherwise wait for the next one
+            } while (!outbound.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        /**
+         * Drops the connection's own session once it is closed and no prompt still uses it.
+         */
+        void releaseSessionIfIdle() {
+            if (ownSession && closed && prompts.isEmpty()) {
+                AiChatService.endSession(sessionId);
+            }
+        }
+
+        void close(CloseStatus status) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            prompts.values().forEach(Prompt::cancel);
+            releaseSessionIfIdle();
+            // Wakes streams waiting for room in the queue; they see the connection closed and stop
+            outboundPermits.release(OUTBOUND_QUEUE);
+            try {
+                if (session.isOpen()) {
+                    session.close(status);
+                }
+            } catch (IOException e) {
+                log.debug("Error closing WebSocket connection: {}", e.getMessage());
+            }
+        }
+    }
+}
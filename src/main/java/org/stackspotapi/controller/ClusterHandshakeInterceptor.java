@@ -0,0 +1,58 @@
+// src/main/java/org/stackspotapi/controller/ClusterHandshakeInterceptor.java
+package org.stackspotapi.controller;
+
+import org.stackspotapi.cluster.ClusterRouter;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Keeps WebSocket sessions on the instance that owns them, like the HTTP chat endpoints.
+ * <p>
+ * In a cluster, a handshake whose {@code X-Session-Id} belongs to another instance is answered with {@code 307} and
+ * the owner's WebSocket address, the way {@code /reactive} redirects. Without this, a WebSocket client and an HTTP
+ * client using the same session key on different instances would each get their own conversation. Clients that do
+ * not follow redirects on the handshake see it refused and should connect to the {@code Location} instead.
+ */
+final class ClusterHandshakeInterceptor implements HandshakeInterceptor {
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                                   Map<String, Object> attributes) {
+        ClusterRouter cluster = ClusterRouter.shared();
+        if (cluster == null) {
+            return true;
+        }
+        String sessionId = request.getHeaders().getFirst(ChatController.SESSION_HEADER);
+        String owner = cluster.ownerOf(sessionId, request.getHeaders().getFirst(ClusterRouter.FORWARDED_HEADER));
+        if (owner == null) {
+            if (sessionId != null) {
+                StackSpotMetrics.clusterRoute("local");
+            }
+            return true;
+        }
+        StackSpotMetrics.clusterRoute("redirected");
+        response.setStatusCode(HttpStatus.TEMPORARY_REDIRECT);
+        response.getHeaders().setLocation(webSocketLocation(cluster.locationOf(owner, ChatWebSocketHandler.PATH)));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                               Exception exception) {
+    }
+
+    /**
+     * The owner's address with the WebSocket scheme matching its HTTP one.
+     */
+    static URI webSocketLocation(URI location) {
+        String scheme = "https".equalsIgnoreCase(location.getScheme()) ? "wss" : "ws";
+        return URI.create(scheme + location.toString().substring(location.getScheme().length()));
+    }
+}
@@ -0,0 +1,78 @@
+// src/main/java/org/stackspotapi/controller/ExecutionController.java
+package org.stackspotapi.controller;
+
+import org.stackspotapi.dto.ExecutionRequestDto;
+import org.stackspotapi.dto.GetConversationResponseDto;
+import org.stackspotapi.service.QuickCommandService;
+import org.stackspotapi.transport.CircuitOpenException;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/api/v1/executions") // Direct quick-command executions
+public class ExecutionController {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionController.class);
+
+    /**
+     * Starts a quick-command execution and answers {@code 202} with {@code {"execution_id": "..."}} as soon as
+     * StackSpot assigns the ID; the result is fetched with {@link #getExecution(String, Long)}.
+     * <p>
+     * Answers {@code 503} with {@code Retry-After} when too many executions are pending ({@code EXECUTIONS_MAX_PENDING}),
+     * StackSpot is throttling us or its circuit breaker is open, or no StackSpot client is available.
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<Object>> createExecution(@RequestBody ExecutionRequestDto requestDto) {
+        if (requestDto == null || requestDto.getInput() == null
+                || (requestDto.getInput() instanceof String text && text.isBlank())) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>("Input cannot be empty", HttpStatus.BAD_REQUEST));
+        }
+
+        return QuickCommandService.submitAsync(requestDto.getSlug(), requestDto.getInput()).handle((executionId, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof UpstreamUnavailableException unavailable) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .body(unavailable instanceof CircuitOpenException
+                                ? "The AI service is temporarily unavailable, retry later"
+                                : "The AI service is overloaded, retry later");
+            }
+            if (error != null) {
+                log.error("Error creating quick-command execution: {}", cause.getMessage());
+                return new ResponseEntity<>("An error occurred while communicating with the AI service", HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/v1/executions/" + executionId))
+                    .body(Map.of("execution_id", executionId));
+        });
+    }
+
+    /**
+     * Long-polls an execution: answers as soon as it finishes, or with its current status ({@code CREATED},
+     * {@code RUNNING}, ...) once {@code wait} seconds pass. The final status carries the full {@code result}
+     * returned by StackSpot; {@code TIMEOUT} means the execution did not finish within {@code EXECUTIONS_POLL_DEADLINE_MS}.
+     * <p>
+     * {@code wait} defaults to, and is capped by, {@code EXECUTIONS_MAX_WAIT_SECONDS}; {@code 0} answers right away.
+     * Unknown IDs, and finished executions past their retention, answer {@code 404}.
+     */
+    @GetMapping("/{executionId}")
+    public CompletableFuture<ResponseEntity<Object>> getExecution(@PathVariable String executionId,
+                                                                  @RequestParam(value = "wait", required = false) Long waitSeconds) {
+        Duration wait = waitSeconds != null ? Duration.ofSeconds(Math.max(0, waitSeconds)) : QuickCommandService.MAX_WAIT;
+        CompletableFuture<GetConversationResponseDto> status = QuickCommandService.awaitAsync(executionId, wait);
+        if (status == null) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>("Execution not found", HttpStatus.NOT_FOUND));
+        }
+        return status.thenApply(ResponseEntity::<Object>ok);
+    }
+}
@@ -0,0 +1,81 @@
+// src/main/java/org/stackspotapi/controller/UploadController.java
+package org.stackspotapi.controller;
+
+import org.stackspotapi.service.UploadService;
+import org.stackspotapi.service.UploadTooLargeException;
+import org.stackspotapi.service.UploadsDisabledException;
+import org.stackspotapi.transport.CircuitOpenException;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/api/v1/uploads") // Files attached to chat prompts through upload_ids
+public class UploadController {
+    private static final Logger log = LoggerFactory.getLogger(UploadController.class);
+    private static final String DEFAULT_NAME = "upload.bin";
+
+    /**
+     * Uploads a file to StackSpot and answers with its {@code upload_id}, to be listed in the chat {@code upload_ids}.
+     * <p>
+     * With {@code ?path=}, sends that file from {@code UPLOAD_ROOT}; otherwise sends the raw request body, named
+     * {@code ?name=}. Content already uploaded and not yet expired is not sent again: the answer reuses its
+     * {@code upload_id} with {@code "deduplicated": true}.
+     * <p>
+     * Answers {@code 413} above {@code UPLOAD_MAX_BYTES}, {@code 403} for {@code ?path=} when {@code UPLOAD_ROOT} is
+     * not set, {@code 404} for missing files, and {@code 503} with {@code Retry-After} when StackSpot is unavailable.
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<Object>> upload(@RequestParam(value = "path", required = false) String path,
+                                                            @RequestParam(value = "name", required = false) String name,
+                                                            InputStream body) {
+        CompletableFuture<?> upload;
+        try {
+            if (path != null && !path.isBlank()) {
+                upload = UploadService.uploadFile(path);
+            } else {
+                upload = UploadService.uploadStream(body, name != null && !name.isBlank() ? name : DEFAULT_NAME);
+            }
+        } catch (IOException e) {
+            upload = CompletableFuture.failedFuture(e);
+        }
+
+        return upload.handle((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                return ResponseEntity.ok(response);
+            }
+            if (cause instanceof UploadTooLargeException tooLarge) {
+                return new ResponseEntity<>("File exceeds the limit of " + tooLarge.getMaxBytes() + " bytes", HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+            if (cause instanceof UploadsDisabledException) {
+                return new ResponseEntity<>("Uploads from disk are disabled", HttpStatus.FORBIDDEN);
+            }
+            if (cause instanceof IllegalArgumentException) {
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            if (cause instanceof NoSuchFileException) {
+                return new ResponseEntity<>("File not found", HttpStatus.NOT_FOUND);
+            }
+            if (cause instanceof UpstreamUnavailableException unavailable) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .body(unavailable instanceof CircuitOpenException
+                                ? "The AI service is temporarily unavailable, retry later"
+                                : "The AI service is overloaded, retry later");
+            }
+            log.error("Error uploading file: {}", cause.getMessage());
+            return new ResponseEntity<>("An error occurred while uploading the file", HttpStatus.INTERNAL_SERVER_ERROR);
+        });
+    }
+}
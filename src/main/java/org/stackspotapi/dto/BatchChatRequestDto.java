@@ -0,0 +1,23 @@
+// src/main/java/org/stackspotapi/dto/BatchChatRequestDto.java
+package org.stackspotapi.dto;
+
+import java.util.List;
+
+public class BatchChatRequestDto {
+    private List<String> prompts;
+    private Integer concurrency; // Opcional; limitado por BATCH_MAX_CONCURRENCY
+
+    // Construtor para desserialização JSON (necessário para Jackson)
+    public BatchChatRequestDto() {
+    }
+
+    public BatchChatRequestDto(List<String> prompts, Integer concurrency) {
+        this.prompts = prompts;
+        this.concurrency = concurrency;
+    }
+
+    public List<String> getPrompts() { return prompts; }
+    public void setPrompts(List<String> prompts) { this.prompts = prompts; }
+    public Integer getConcurrency() { return concurrency; }
+    public void setConcurrency(Integer concurrency) { this.concurrency = concurrency; }
+}
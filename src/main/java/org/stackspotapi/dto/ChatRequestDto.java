@@ -1,6 +1,7 @@
 // src/main/java/org/stackspotapi/dto/ChatRequestDto.java
 package org.stackspotapi.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank; // Adicionado para validação
 import java.util.List;
@@ -11,6 +12,10 @@ public class ChatRequestDto {
     @JsonProperty("user_prompt") // Garante que o nome no JSON seja "user_prompt"
     @NotBlank(message = "User prompt cannot be empty") // Adicionado para validação
     private String userPrompt;
+    // Arquivos enviados por /api/v1/uploads para anexar ao prompt; repassados em context.upload_ids
+    @JsonProperty("upload_ids")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> uploadIds;
 
     // Construtor para desserialização JSON (necessário para Jackson)
     public ChatRequestDto() {
@@ -28,6 +33,8 @@ public class ChatRequestDto {
     public void setContext(Context context) { this.context = context; }
     public String getUserPrompt() { return userPrompt; }
     public void setUserPrompt(String userPrompt) { this.userPrompt = userPrompt; }
+    public List<String> getUploadIds() { return uploadIds; }
+    public void setUploadIds(List<String> uploadIds) { this.uploadIds = uploadIds; }
 
     /**
      * Classe interna para representar o objeto "context"
@@ -54,10 +61,15 @@ public class ChatRequestDto {
 
         // Um construtor simplificado para os campos mais importantes
         public Context(String conversationId, String agentId) {
+            this(conversationId, agentId, List.of());
+        }
+
+        // Com os IDs dos arquivos anexados ao prompt (ver /api/v1/uploads)
+        public Context(String conversationId, String agentId, List<String> uploadIds) {
             this.conversationId = conversationId;
             this.agentId = agentId;
             // Valores padrão baseados no código Python
-            this.uploadIds = List.of(); // Lista vazia
+            this.uploadIds = uploadIds != null ? List.copyOf(uploadIds) : List.of();
             this.agentBuiltIn = false;
             this.os = "Java HttpClient"; // Podemos simplificar ou usar System.getProperty
             this.platform = "java-app";
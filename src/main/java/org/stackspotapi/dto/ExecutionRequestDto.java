@@ -0,0 +1,21 @@
+// src/main/java/org/stackspotapi/dto/ExecutionRequestDto.java
+package org.stackspotapi.dto;
+
+public class ExecutionRequestDto {
+    private String slug; // Opcional
+    private Object input; // Texto ou objeto JSON, enviado como input_data do quick command
+
+    // Construtor para desserialização JSON (necessário para Jackson)
+    public ExecutionRequestDto() {
+    }
+
+    public ExecutionRequestDto(String slug, Object input) {
+        this.slug = slug;
+        this.input = input;
+    }
+
+    public String getSlug() { return slug; }
+    public void setSlug(String slug) { this.slug = slug; }
+    public Object getInput() { return input; }
+    public void setInput(Object input) { this.input = input; }
+}
@@ -2,12 +2,17 @@
 package org.stackspotapi.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 
 // Ignora campos desconhecidos no JSON para evitar erros de parsing
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class GetConversationResponseDto {
+    @JsonProperty("execution_id")
+    private String executionId;
+    // Status da execução: CREATED, RUNNING, COMPLETED ou FAILURE (TIMEOUT quando esta API desiste de esperar)
     private String status;
+    @JsonProperty("conversation_id")
     private String conversationId;
     private JsonNode result; // Usamos JsonNode para flexibilidade, pois o resultado pode ter várias estruturas
 
@@ -15,6 +20,14 @@ public class GetConversationResponseDto {
     public GetConversationResponseDto() {
     }
 
+    public String getExecutionId() {
+        return executionId;
+    }
+
+    public void setExecutionId(String executionId) {
+        this.executionId = executionId;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -31,6 +44,24 @@ public class GetConversationResponseDto {
         this.conversationId = conversationId;
     }
 
+    /**
+     * A API de callback informa o status dentro do objeto "progress"; ele é usado quando não há um "status" no topo.
+     */
+    @JsonProperty("progress")
+    private void unpackProgress(JsonNode progress) {
+        if (status == null && progress != null && progress.hasNonNull("status")) {
+            this.status = progress.get("status").asText();
+        }
+    }
+
+    public boolean isCompleted() {
+        return "COMPLETED".equalsIgnoreCase(status);
+    }
+
+    public boolean isFailed() {
+        return "FAILURE".equalsIgnoreCase(status) || "FAILED".equalsIgnoreCase(status) || "ERROR".equalsIgnoreCase(status);
+    }
+
     public JsonNode getResult() {
         return result;
     }
@@ -42,7 +73,8 @@ public class GetConversationResponseDto {
     @Override
     public String toString() {
         return "GetConversationResponseDto{" +
-                "status='" + status + '\'' +
+                "executionId='" + executionId + '\'' +
+                ", status='" + status + '\'' +
                 ", conversationId='" + conversationId + '\'' +
                 ", result=" + (result != null ? result.toString() : "null") +
                 '}';
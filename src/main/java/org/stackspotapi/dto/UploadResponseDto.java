@@ -0,0 +1,32 @@
+// src/main/java/org/stackspotapi/dto/UploadResponseDto.java
+package org.stackspotapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class UploadResponseDto {
+    @JsonProperty("upload_id")
+    private String uploadId;
+    private String sha256;
+    private long size;
+    private boolean deduplicated; // Verdadeiro se o conteúdo já tinha sido enviado e nada foi transferido
+
+    // Construtor para desserialização JSON (necessário para Jackson)
+    public UploadResponseDto() {
+    }
+
+    public UploadResponseDto(String uploadId, String sha256, long size, boolean deduplicated) {
+        this.uploadId = uploadId;
+        this.sha256 = sha256;
+        this.size = size;
+        this.deduplicated = deduplicated;
+    }
+
+    public String getUploadId() { return uploadId; }
+    public void setUploadId(String uploadId) { this.uploadId = uploadId; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public boolean isDeduplicated() { return deduplicated; }
+    public void setDeduplicated(boolean deduplicated) { this.deduplicated = deduplicated; }
+}
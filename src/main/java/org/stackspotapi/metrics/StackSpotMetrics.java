@@ -0,0 +1,332 @@
+package org.stackspotapi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.stackspotapi.cache.ResponseCache;
+import org.stackspotapi.cluster.ClusterRouter;
+import org.stackspotapi.transport.Endpoint;
+import org.stackspotapi.transport.StackSpotTransport;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Métricas do pipeline de chat, com prefixo {@code stackspot.}, expostas em {@code /actuator/prometheus}.
+ * <p>
+ * Os serviços são estáticos, então registram no {@link Metrics#globalRegistry}, ao qual o Spring Boot liga o
+ * registro do Prometheus. Antes disso (ex.: em benchmarks) as medições são descartadas sem custo relevante. Os
+ * medidores de tags fixas são registrados uma vez; os de tags variáveis usam um {@link Meter.MeterProvider}, então o
+ * caminho da requisição não monta um builder nem descrição a cada medição.
+ * <p>
+ * Timers (todos com histograma para percentis, ver {@code application.properties}):
+ * <ul>
+ *     <li>{@code stackspot.chat.requests} — ponta a ponta, por {@code api} (sync/async/stream/reactive), {@code mode} e {@code outcome};</li>
+ *     <li>{@code stackspot.token.acquire} — espera pelo token no caminho da requisição;</li>
+ *     <li>{@code stackspot.token.refresh} — renovação do token no Keycloak, por {@code outcome};</li>
+ *     <li>{@code stackspot.execution.create} — {@code create-execution}, por {@code outcome};</li>
+ *     <li>{@code stackspot.execution.run} — execução direta de quick command, da criação ao resultado, por {@code outcome};</li>
+ *     <li>{@code stackspot.conversation.resolve} — consultas ao callback até obter o {@code conversation_id}, por {@code outcome};</li>
+ *     <li>{@code stackspot.conversation.acquire} — espera por uma conversação do pool ou da sessão, por {@code mode};</li>
+ *     <li>{@code stackspot.upstream.ttfb} — do envio até o status e os headers, por {@code endpoint};</li>
+ *     <li>{@code stackspot.limiter.wait} — espera na fila do limitador de concorrência, por {@code endpoint};</li>
+ *     <li>{@code stackspot.chat.first.token} e {@code stackspot.chat.last.token} — do envio ao chat até o primeiro e o último fragmento.</li>
+ * </ul>
+ * Distribuições: {@code stackspot.conversation.requests} (requisições atendidas até a substituição, por {@code scope} e
+ * {@code reason}) e {@code stackspot.conversation.cost} (latência relativa a conversações novas, por {@code scope}).
+ * Contadores: {@code stackspot.upstream.responses} (por {@code endpoint} e {@code status}),
+ * {@code stackspot.upstream.errors} (por {@code endpoint} e {@code error}),
+ * {@code stackspot.limiter.rejections} (por {@code endpoint} e {@code reason}),
+ * {@code stackspot.breaker.transitions} (por {@code endpoint}, {@code from} e {@code to}),
+ * {@code stackspot.breaker.rejections} (por {@code endpoint}),
+ * {@code stackspot.retries} (por {@code operation} e {@code outcome}), {@code stackspot.hedges} (por {@code outcome}),
+ * {@code stackspot.conversation.rotations} (por {@code scope} e {@code reason}),
+ * {@code stackspot.credential.ejections} (por {@code credential} e {@code reason}),
+ * {@code stackspot.cluster.requests} (por {@code outcome}), {@code stackspot.uploads} (por {@code outcome}),
+ * {@code stackspot.upload.bytes}, {@code stackspot.ws.prompts} (por {@code outcome}) e {@code stackspot.sse.malformed}.
+ */
+public final class StackSpotMetrics {
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    public static final String CACHE_HIT = "cache_hit";
+    public static final String COALESCED = "coalesced";
+
+    private static final MeterRegistry registry = Metrics.globalRegistry;
+    private static final List<String> BREAKER_STATES = List.of("CLOSED", "OPEN", "HALF_OPEN");
+
+    // Medidores sem tags variáveis, registrados uma vez
+    private static final Timer TOKEN_ACQUIRE = Timer.builder("stackspot.token.acquire")
+            .description("Espera pelo token no caminho da requisição")
+            .register(registry);
+    private static final Timer CHAT_FIRST_TOKEN = Timer.builder("stackspot.chat.first.token")
+            .description("Tempo do envio ao chat até o primeiro fragmento da resposta")
+            .register(registry);
+    private static final Timer CHAT_LAST_TOKEN = Timer.builder("stackspot.chat.last.token")
+            .description("Tempo do envio ao chat até o último fragmento da resposta")
+            .register(registry);
+    private static final Counter UPLOAD_BYTES = Counter.builder("stackspot.upload.bytes")
+            .description("Bytes de arquivos enviados à StackSpot")
+            .baseUnit("bytes")
+            .register(registry);
+    private static final Map<Endpoint, Timer> UPSTREAM_TTFB = perEndpoint(endpoint -> Timer.builder("stackspot.upstream.ttfb")
+            .description("Tempo até o status e os headers da resposta")
+            .tags("endpoint", endpoint.name())
+            .register(registry));
+    private static final Map<Endpoint, Timer> LIMITER_WAIT = perEndpoint(endpoint -> Timer.builder("stackspot.limiter.wait")
+            .description("Espera na fila do limitador até o envio à StackSpot")
+            .tags("endpoint", endpoint.name())
+            .register(registry));
+    private static final Map<Endpoint, Counter> BREAKER_REJECTIONS = perEndpoint(endpoint -> Counter.builder("stackspot.breaker.rejections")
+            .description("Requisições recusadas na hora com o circuito aberto")
+            .tags("endpoint", endpoint.name())
+            .register(registry));
+
+    // Medidores com tags variáveis: o provider só monta as tags a cada medição
+    private static final Meter.MeterProvider<Timer> CHAT_REQUESTS = Timer.builder("stackspot.chat.requests")
+            .description("Tempo de ponta a ponta de uma pergunta à IA")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Timer> TOKEN_REFRESH = Timer.builder("stackspot.token.refresh")
+            .description("Renovação do token no servidor de autenticação")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Timer> EXECUTION_CREATE = Timer.builder("stackspot.execution.create")
+            .description("Criação de uma execução de quick command")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Timer> EXECUTION_RUN = Timer.builder("stackspot.execution.run")
+            .description("Execução de quick command pela API, da criação ao resultado")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Timer> CONVERSATION_RESOLVE = Timer.builder("stackspot.conversation.resolve")
+            .description("Consultas ao callback até a execução informar o conversation_id")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Timer> CONVERSATION_ACQUIRE = Timer.builder("stackspot.conversation.acquire")
+            .description("Espera por uma conversação com orçamento disponível")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> UPSTREAM_RESPONSES = Counter.builder("stackspot.upstream.responses")
+            .description("Respostas da StackSpot por grupo de endpoints e status HTTP")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> UPSTREAM_ERRORS = Counter.builder("stackspot.upstream.errors")
+            .description("Chamadas à StackSpot que falharam sem resposta completa (timeout, conexão)")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> LIMITER_REJECTIONS = Counter.builder("stackspot.limiter.rejections")
+            .description("Requisições recusadas pelo limitador sem chegar à StackSpot")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> BREAKER_TRANSITIONS = Counter.builder("stackspot.breaker.transitions")
+            .description("Mudanças de estado do disjuntor de um grupo de endpoints")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> RETRIES = Counter.builder("stackspot.retries")
+            .description("Novas tentativas de chamadas com falha transitória")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> HEDGES = Counter.builder("stackspot.hedges")
+            .description("Consultas extras ao callback enviadas quando a primeira demora além do p95")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> CONVERSATION_ROTATIONS = Counter.builder("stackspot.conversation.rotations")
+            .description("Conversações substituídas por orçamento, custo medido ou client fora do rodízio")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<DistributionSummary> CONVERSATION_REQUESTS = DistributionSummary.builder("stackspot.conversation.requests")
+            .description("Requisições atendidas por uma conversação até ser substituída")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<DistributionSummary> CONVERSATION_COST = DistributionSummary.builder("stackspot.conversation.cost")
+            .description("Latência da conversação em relação à de conversações novas (1 = nova)")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> CREDENTIAL_EJECTIONS = Counter.builder("stackspot.credential.ejections")
+            .description("Clients da StackSpot tirados do rodízio por cota esgotada ou falha de autenticação")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> CLUSTER_REQUESTS = Counter.builder("stackspot.cluster.requests")
+            .description("Requisições de sessão atendidas aqui, encaminhadas ou redirecionadas à instância dona")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> UPLOADS = Counter.builder("stackspot.uploads")
+            .description("Uploads de arquivos enviados, reaproveitados pelo hash do conteúdo ou com falha")
+            .withRegistry(registry);
+    private static final Meter.MeterProvider<Counter> WS_PROMPTS = Counter.builder("stackspot.ws.prompts")
+            .description("Prompts recebidos por WebSocket, por desfecho")
+            .withRegistry(registry);
+
+    private StackSpotMetrics() {
+    }
+
+    public static void chatRequest(String api, String mode, String outcome, long startNanos) {
+        record(CHAT_REQUESTS.withTags("api", api, "mode", mode, "outcome", outcome), startNanos);
+    }
+
+    public static void tokenAcquire(long startNanos) {
+        record(TOKEN_ACQUIRE, startNanos);
+    }
+
+    public static void tokenRefresh(String outcome, long startNanos) {
+        record(TOKEN_REFRESH.withTag("outcome", outcome), startNanos);
+    }
+
+    public static void executionCreate(String outcome, long startNanos) {
+        record(EXECUTION_CREATE.withTag("outcome", outcome), startNanos);
+    }
+
+    public static void executionRun(String outcome, long startNanos) {
+        record(EXECUTION_RUN.withTag("outcome", outcome), startNanos);
+    }
+
+    public static void conversationResolve(String outcome, long startNanos) {
+        record(CONVERSATION_RESOLVE.withTag("outcome", outcome), startNanos);
+    }
+
+    public static void conversationAcquire(String mode, long startNanos) {
+        record(CONVERSATION_ACQUIRE.withTag("mode", mode), startNanos);
+    }
+
+    public static void upstreamResponse(Endpoint endpoint, String status, long startNanos) {
+        UPSTREAM_RESPONSES.withTags("endpoint", endpoint.name(), "status", status).increment();
+        record(UPSTREAM_TTFB.get(endpoint), startNanos);
+    }
+
+    public static void upstreamError(Endpoint endpoint, Throwable error) {
+        UPSTREAM_ERRORS.withTags("endpoint", endpoint.name(), "error", error.getClass().getSimpleName()).increment();
+    }
+
+    public static void chatFirstToken(long startNanos) {
+        record(CHAT_FIRST_TOKEN, startNanos);
+    }
+
+    public static void chatLastToken(long startNanos) {
+        record(CHAT_LAST_TOKEN, startNanos);
+    }
+
+    public static void limiterWait(Endpoint endpoint, long startNanos) {
+        record(LIMITER_WAIT.get(endpoint), startNanos);
+    }
+
+    public static void limiterRejection(Endpoint endpoint, String reason) {
+        LIMITER_REJECTIONS.withTags("endpoint", endpoint.name(), "reason", reason).increment();
+    }
+
+    public static void breakerTransition(Endpoint endpoint, String from, String to) {
+        BREAKER_TRANSITIONS.withTags("endpoint", endpoint.name(), "from", from, "to", to).increment();
+    }
+
+    public static void breakerRejection(Endpoint endpoint) {
+        BREAKER_REJECTIONS.get(endpoint).increment();
+    }
+
+    public static void retry(String operation, String outcome) {
+        RETRIES.withTags("operation", operation, "outcome", outcome).increment();
+    }
+
+    public static void hedge(String outcome) {
+        HEDGES.withTag("outcome", outcome).increment();
+    }
+
+    /**
+     * Conta uma conversação substituída e quantas requisições ela atendeu.
+     *
+     * @param reason {@code budget}, {@code latency}, {@code context} ou {@code credential}.
+     */
+    public static void conversationRotation(String scope, String reason, int requests) {
+        CONVERSATION_ROTATIONS.withTags("scope", scope, "reason", reason).increment();
+        CONVERSATION_REQUESTS.withTags("scope", scope, "reason", reason).record(requests);
+    }
+
+    /**
+     * Registra a razão entre a latência de uma conversação e a de conversações novas, a cada troca.
+     */
+    public static void conversationCost(String scope, double ratio) {
+        CONVERSATION_COST.withTag("scope", scope).record(ratio);
+    }
+
+    public static void credentialEjection(String credential, String reason) {
+        CREDENTIAL_EJECTIONS.withTags("credential", credential, "reason", reason).increment();
+    }
+
+    public static void clusterRoute(String outcome) {
+        CLUSTER_REQUESTS.withTag("outcome", outcome).increment();
+    }
+
+    /**
+     * Conta um upload de arquivo ({@code uploaded}, {@code deduplicated} ou {@code failed}) e os bytes enviados.
+     */
+    public static void upload(String outcome, long bytes) {
+        UPLOADS.withTag("outcome", outcome).increment();
+        if (bytes > 0) {
+            UPLOAD_BYTES.increment(bytes);
+        }
+    }
+
+    /**
+     * Conta um prompt recebido por WebSocket pelo seu desfecho ({@code success}, {@code failure}, {@code cancelled}
+     * ou {@code disconnected}).
+     */
+    public static void webSocketPrompt(String outcome) {
+        WS_PROMPTS.withTag("outcome", outcome).increment();
+    }
+
+    /**
+     * Registra o número de membros ativos no anel do cluster.
+     */
+    public static void bindCluster(MeterRegistry target, ClusterRouter router) {
+        Gauge.builder("stackspot.cluster.members.live", router, ClusterRouter::getLiveMemberCount)
+                .description("Instâncias no anel de hash consistente, incluindo esta")
+                .register(target);
+    }
+
+    /**
+     * Registra as contagens do transporte compartilhado (conexões TLS e reaproveitamento) e o estado do limitador
+     * e do disjuntor de cada grupo de endpoints. O estado do disjuntor é um gauge por {@code state}, com 1 no
+     * estado atual e 0 nos demais.
+     */
+    public static void bindTransport(MeterRegistry target) {
+        FunctionCounter.builder("stackspot.tls.connections", StackSpotTransport.class, transport -> StackSpotTransport.getTlsConnectionCount())
+                .description("Conexões TLS abertas com a StackSpot")
+                .register(target);
+        Gauge.builder("stackspot.connection.reuse.ratio", StackSpotTransport::getConnectionReuseRatio)
+                .description("Fração das requisições que reaproveitaram uma conexão aberta")
+                .register(target);
+        for (Endpoint endpoint : Endpoint.values()) {
+            Gauge.builder("stackspot.limiter.limit", endpoint, StackSpotTransport::getConcurrencyLimit)
+                    .description("Limite atual de requisições simultâneas")
+                    .tags("endpoint", endpoint.name())
+                    .register(target);
+            Gauge.builder("stackspot.limiter.inflight", endpoint, StackSpotTransport::getInFlight)
+                    .description("Requisições em andamento na StackSpot")
+                    .tags("endpoint", endpoint.name())
+                    .register(target);
+            Gauge.builder("stackspot.limiter.queued", endpoint, StackSpotTransport::getQueued)
+                    .description("Requisições esperando uma vaga no limitador")
+                    .tags("endpoint", endpoint.name())
+                    .register(target);
+            for (String state : BREAKER_STATES) {
+                Gauge.builder("stackspot.breaker.state", endpoint, e -> state.equals(StackSpotTransport.getCircuitState(e)) ? 1 : 0)
+                        .description("Estado do disjuntor (1 no estado atual)")
+                        .tags("endpoint", endpoint.name(), "state", state)
+                        .register(target);
+            }
+        }
+    }
+
+    /**
+     * Registra as estatísticas do cache de respostas.
+     */
+    public static void bindCache(MeterRegistry target, ResponseCache cache) {
+        FunctionCounter.builder("stackspot.cache.hits", cache, c -> c.stats().getHits()).register(target);
+        FunctionCounter.builder("stackspot.cache.misses", cache, c -> c.stats().getMisses()).register(target);
+        FunctionCounter.builder("stackspot.cache.evictions", cache, c -> c.stats().getEvictions()).register(target);
+        FunctionCounter.builder("stackspot.cache.expirations", cache, c -> c.stats().getExpirations()).register(target);
+        FunctionCounter.builder("stackspot.cache.disk.hits", cache, c -> c.stats().getDiskHits()).register(target);
+        Gauge.builder("stackspot.cache.size", cache, c -> c.stats().getSize()).register(target);
+    }
+
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static <M> Map<Endpoint, M> perEndpoint(Function<Endpoint, M> meter) {
+        Map<Endpoint, M> meters = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            meters.put(endpoint, meter.apply(endpoint));
+        }
+        return meters;
+    }
+}
@@ -1,39 +1,154 @@
 package org.stackspotapi.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.github.cdimascio.dotenv.Dotenv;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.cache.ResponseCache;
+import org.stackspotapi.cluster.ClusterRouter;
 import org.stackspotapi.dto.ChatRequestDto;
-import org.stackspotapi.dto.CreateExecutionRequestDto;
-import org.stackspotapi.dto.CreateExecutionResponseDto;
 import org.stackspotapi.dto.EnsureDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.stackspotapi.transport.CircuitOpenException;
+import org.stackspotapi.transport.Endpoint;
+import org.stackspotapi.transport.SseParser;
+import org.stackspotapi.transport.StackSpotTransport;
+import org.stackspotapi.transport.UpstreamUnavailableException;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.InputStream;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.stream.Stream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
-public class AiChatService {
+public class AiChatService implements MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(AiChatService.class);
 
-    private static final String CHAT_API_URL = "https://genai-code-buddy-api.stackspot.com/v3/chat";
-    private static final HttpClient httpClient = HttpClient.newHttpClient( );
+    private static final String CHAT_API_PATH = "/v3/chat";
+    private static final int READ_CHUNK_SIZE = 8192;
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final Dotenv dotenv = Dotenv.load();
     private static final String AGENT_ID = dotenv.get("AGENT_ID");
 
-    // O estado do token agora é gerenciado de forma estática para ser reutilizado entre as chamadas.
-    private static EnsureDto tokenState = null;
+    // Clients da StackSpot configurados, cada um com token e conversações próprios, entre os quais as chamadas são distribuídas.
+    private static final CredentialPool credentialPool = CredentialPool.fromEnv();
+    // Conversação exclusiva por sessão de cliente, com tamanho e ociosidade limitados.
+    private static final SessionTable sessionTable = SessionTable.fromEnv(credentialPool);
+    // Tokens e conversações gravados em disco para sobreviver a reinícios; nulo se a persistência estiver desabilitada.
+    private static final StateCheckpointer stateCheckpointer = StateCheckpointer.fromEnv(credentialPool, sessionTable);
 
-    // Gerenciamento do estado da conversação para reutilização.
-    private static String conversationIdState = null;
-    private static int conversationRequestCount = 0;
-    private static final int MAX_REQUESTS_PER_CONVERSATION = 10;
+    // Respostas de prompts repetidos; nulo se o cache estiver desabilitado.
+    private static final ResponseCache responseCache = ResponseCache.fromEnv();
+    // Respostas dentro de uma sessão dependem do contexto acumulado, então só entram no cache se configurado.
+    private static final boolean CACHE_CONVERSATIONAL = Boolean.parseBoolean(dotenv.get("RESPONSE_CACHE_CONVERSATIONAL", "false"));
+
+    // Prompts stateless idênticos em andamento compartilham uma única chamada ao chat
+    private static final boolean COALESCING_ENABLED = Boolean.parseBoolean(dotenv.get("CHAT_COALESCING_ENABLED", "true"));
+    private static final ConcurrentHashMap<String, PromptFlight> inFlightPrompts = new ConcurrentHashMap<>();
+    // Aposenta conversações pelo custo medido antes do fim do orçamento
+    private static final RotationPolicy rotationPolicy = RotationPolicy.fromEnv();
+    private static final Consumer<String> IGNORE_ROLLOVER = reason -> {
+    };
+
+    // Valores da tag "api" de stackspot.chat.requests
+    private static final String API_SYNC = "sync";
+    private static final String API_ASYNC = "async";
+    private static final String API_STREAM = "stream";
+    private static final String API_REACTIVE = "reactive";
+
+    /**
+     * Inicia a obtenção dos tokens e a criação das conversações em segundo plano assim que o Spring cria o serviço,
+     * para que a primeira requisição não pague pela autenticação nem pela criação da conversação. Com a persistência
+     * de estado habilitada, o que foi gravado antes do reinício e ainda vale é restaurado antes disso.
+     */
+    public AiChatService() {
+        if (stateCheckpointer != null) {
+            stateCheckpointer.restore();
+            stateCheckpointer.start();
+        }
+        credentialPool.start();
+    }
+
+    /**
+     * Registra o estado dos clients e dos seus pools de conversações, das sessões, do cache e do transporte no
+     * registro de métricas do Spring (ver {@link StackSpotMetrics} para as métricas do caminho da requisição).
+     * As métricas de cada client têm a tag {@code credential}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (CredentialSlot slot : credentialPool.getSlots()) {
+            String credential = slot.getCredential().getName();
+            ConversationPool conversationPool = slot.getConversationPool();
+            Gauge.builder("stackspot.pool.ready", conversationPool, ConversationPool::getReadyCount)
+                    .description("Conversações novas prontas no pool")
+                    .tags("credential", credential)
+                    .register(registry);
+            Gauge.builder("stackspot.pool.shared", conversationPool, ConversationPool::getSharedCount)
+                    .description("Conversações no rodízio compartilhado")
+                    .tags("credential", credential)
+                    .register(registry);
+            Gauge.builder("stackspot.pool.creating", conversationPool, ConversationPool::getCreatingCount)
+                    .description("Conversações sendo criadas")
+                    .tags("credential", credential)
+                    .register(registry);
+            Gauge.builder("stackspot.credential.outstanding", slot, CredentialSlot::getOutstanding)
+                    .description("Requisições em andamento no client")
+                    .tags("credential", credential)
+                    .register(registry);
+            Gauge.builder("stackspot.credential.available", slot, s -> s.isAvailable() ? 1 : 0)
+                    .description("Client no rodízio (1) ou fora dele por cota ou autenticação (0)")
+                    .tags("credential", credential)
+                    .register(registry);
+        }
+        Gauge.builder("stackspot.sessions.active", sessionTable, SessionTable::size)
+                .description("Sessões de cliente com conversação própria")
+                .register(registry);
+        FunctionCounter.builder("stackspot.sessions.evictions", sessionTable, SessionTable::getEvictionCount)
+                .description("Sessões descartadas por limite de tamanho ou ociosidade")
+                .register(registry);
+        Gauge.builder("stackspot.chat.inflight.prompts", inFlightPrompts, ConcurrentHashMap::size)
+                .description("Chamadas ao chat compartilhadas por prompts stateless idênticos em andamento")
+                .register(registry);
+        FunctionCounter.builder("stackspot.sse.malformed", ChatEventDecoder.class, decoder -> ChatEventDecoder.getMalformedEventCount())
+                .description("Eventos do stream de chat descartados por não serem JSON válido")
+                .register(registry);
+        ExecutionRegistry executions = QuickCommandService.registry;
+        Gauge.builder("stackspot.executions.pending", executions, ExecutionRegistry::getPendingCount)
+                .description("Execuções de quick commands da API aguardando o resultado")
+                .register(registry);
+        Gauge.builder("stackspot.executions.retained", executions, ExecutionRegistry::getRetainedCount)
+                .description("Execuções terminadas ainda disponíveis para consulta")
+                .register(registry);
+        Gauge.builder("stackspot.executions.polls.inflight", executions, ExecutionRegistry::getInflightPollCount)
+                .description("Consultas ao callback em andamento disparadas pelo agendador de execuções")
+                .register(registry);
+        Gauge.builder("stackspot.uploads.indexed", UploadService.index, UploadIndex::size)
+                .description("Uploads reaproveitáveis pelo hash do conteúdo")
+                .register(registry);
+        StackSpotMetrics.bindTransport(registry);
+        if (responseCache != null) {
+            StackSpotMetrics.bindCache(registry, responseCache);
+        }
+        if (ClusterRouter.shared() != null) {
+            StackSpotMetrics.bindCluster(registry, ClusterRouter.shared());
+        }
+    }
 
     /**
      * Orquestra o fluxo completo para enviar um prompt à IA e obter uma resposta.
@@ -42,112 +157,749 @@ public class AiChatService {
      * @return A resposta da IA como uma String JSON `{"answer": "..."}` ou nulo em caso de falha.
      */
     public static String ask(String prompt) {
-        System.out.println("--- Passo 1: Garantindo token de autenticação válido ---");
-        tokenState = EnsureTokenService.ensureValidToken(tokenState);
+        return ask(prompt, null);
+    }
+
+    /**
+     * Orquestra o fluxo completo para enviar um prompt à IA dentro da conversação de uma sessão.
+     *
+     * @param prompt    O prompt do usuário.
+     * @param sessionId A chave de sessão do cliente; se nula, usa as conversações compartilhadas.
+     * @return A resposta da IA como uma String JSON `{"answer": "..."}` ou nulo em caso de falha.
+     */
+    public static String ask(String prompt, String sessionId) {
+        return ask(prompt, sessionId, List.of());
+    }
+
+    /**
+     * Como {@link #ask(String, String)}, anexando ao prompt arquivos enviados com {@link UploadService}.
+     *
+     * @param uploadIds Os {@code upload_id} dos arquivos; vazio se não houver.
+     */
+    public static String ask(String prompt, String sessionId, List<String> uploadIds) {
+        long start = System.nanoTime();
+        String mode = modeTag(sessionId);
+        String cacheKey = cacheKeyFor(prompt, sessionId, uploadIds);
+        if (cacheKey != null) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                StackSpotMetrics.chatRequest(API_SYNC, mode, StackSpotMetrics.CACHE_HIT, start);
+                try {
+                    return toAnswerJson(cached);
+                } catch (JsonProcessingException e) {
+                    return createErrorJson("Falha ao serializar a resposta em cache.");
+                }
+            }
+        }
+
+        Conversation conversation;
+        EnsureDto token;
+        try {
+            conversation = prepareConversation(sessionId);
+        } catch (IOException e) {
+            StackSpotMetrics.chatRequest(API_SYNC, mode, StackSpotMetrics.FAILURE, start);
+            return createErrorJson(e.getMessage());
+        }
+        // O formato de resposta síncrono não tem onde informar a troca; ela é consumida para não chegar a outra requisição
+        String rollover = conversation.takeRollover();
+        if (rollover != null) {
+            log.debug("Sessão passou para a conversação {} ({})", conversation.getId(), rollover);
+        }
+        try {
+            token = obtainToken(conversation);
+        } catch (IOException e) {
+            credentialPool.end(conversation, e);
+            StackSpotMetrics.chatRequest(API_SYNC, mode, StackSpotMetrics.FAILURE, start);
+            return createErrorJson(e.getMessage());
+        }
+
+        Throwable failure = null;
+        try {
+            ChatTiming timing = new ChatTiming();
+            String finalAnswer = sendPromptToChat(prompt, conversation.getId(), uploadIds, token, timing);
+            rotationPolicy.record(conversation, ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL, prompt.length(), timing);
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, finalAnswer);
+            }
+            StackSpotMetrics.chatRequest(API_SYNC, mode, StackSpotMetrics.SUCCESS, start);
+            return toAnswerJson(finalAnswer);
+        } catch (IOException e) {
+            failure = e;
+            log.warn("Erro na comunicação com a StackSpot IA: {}", e.getMessage());
+            StackSpotMetrics.chatRequest(API_SYNC, mode, StackSpotMetrics.FAILURE, start);
+            return createErrorJson("Erro na comunicação com a IA: " + e.getMessage());
+        } catch (InterruptedException e) {
+            failure = e;
+            Thread.currentThread().interrupt();
+            log.warn("Erro na comunicação com a StackSpot IA: {}", e.getMessage());
+            StackSpotMetrics.chatRequest(API_SYNC, mode, StackSpotMetrics.FAILURE, start);
+            return createErrorJson("Erro na comunicação com a IA: " + e.getMessage());
+        } finally {
+            credentialPool.end(conversation, failure);
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #ask(String, String)}: conversação, autenticação e chat são encadeados sem
+     * bloquear threads, então milhares de chamadas lentas à IA podem estar em andamento ao mesmo tempo.
+     *
+     * @param prompt    O prompt do usuário.
+     * @param sessionId A chave de sessão do cliente; se nula, usa as conversações compartilhadas.
+     * @return Um future com a resposta da IA como String JSON `{"answer": "..."}`; falhas são devolvidas no
+     * mesmo formato de erro de {@link #ask(String, String)}, exceto a sobrecarga da StackSpot, que completa o
+     * future com {@link UpstreamUnavailableException} para o cliente poder esperar o {@code Retry-After}.
+     */
+    public static CompletableFuture<String> askAsync(String prompt, String sessionId) {
+        return askAsync(prompt, sessionId, List.of());
+    }
+
+    /**
+     * Como {@link #askAsync(String, String)}, anexando ao prompt arquivos enviados com {@link UploadService}.
+     */
+    public static CompletableFuture<String> askAsync(String prompt, String sessionId, List<String> uploadIds) {
+        return askAsync(prompt, sessionId, uploadIds, IGNORE_ROLLOVER);
+    }
+
+    /**
+     * Como {@link #askAsync(String, String, List)}, avisando {@code onRollover} com o motivo quando a sessão passou
+     * para uma conversação nova (ver {@link ChatStreamListener#onRollover(String)}).
+     */
+    public static CompletableFuture<String> askAsync(String prompt, String sessionId, List<String> uploadIds, Consumer<String> onRollover) {
+        return askForAnswerAsync(prompt, sessionId, uploadIds, onRollover)
+                .thenApply(AiChatService::toAnswerJsonUnchecked)
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    log.warn("Erro na comunicação com a StackSpot IA: {}", cause.getMessage());
+                    if (cause instanceof UpstreamUnavailableException) {
+                        throw new CompletionException(cause);
+                    }
+                    return createErrorJson(cause.getMessage());
+                });
+    }
+
+    /**
+     * Executa o fluxo assíncrono e devolve apenas o texto da resposta.
+     * <p>
+     * Um prompt stateless idêntico a outro ainda em andamento não gera uma nova chamada: a requisição recebe a
+     * resposta da chamada em andamento.
+     *
+     * @return Um future com a resposta da IA, completado com a exceção original (ex.: {@link IOException}) em caso de falha.
+     */
+    public static CompletableFuture<String> askForAnswerAsync(String prompt, String sessionId) {
+        return askForAnswerAsync(prompt, sessionId, List.of());
+    }
+
+    /**
+     * Como {@link #askForAnswerAsync(String, String)}, anexando ao prompt arquivos enviados com {@link UploadService}.
+     * Só compartilham a chamada prompts com os mesmos arquivos.
+     */
+    public static CompletableFuture<String> askForAnswerAsync(String prompt, String sessionId, List<String> uploadIds) {
+        return askForAnswerAsync(prompt, sessionId, uploadIds, IGNORE_ROLLOVER);
+    }
 
-        if (tokenState == null) {
-            System.err.println("Falha na autenticação. Encerrando.");
-            return createErrorJson("Falha na autenticação. Não foi possível obter o token.");
+    /**
+     * Como {@link #askForAnswerAsync(String, String, List)}, avisando {@code onRollover} com o motivo quando a sessão
+     * passou para uma conversação nova (ver {@link ChatStreamListener#onRollover(String)}).
+     */
+    public static CompletableFuture<String> askForAnswerAsync(String prompt, String sessionId, List<String> uploadIds,
+                                                              Consumer<String> onRollover) {
+        long start = System.nanoTime();
+        String mode = modeTag(sessionId);
+        String cacheKey = cacheKeyFor(prompt, sessionId, uploadIds);
+        if (cacheKey != null) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                StackSpotMetrics.chatRequest(API_ASYNC, mode, StackSpotMetrics.CACHE_HIT, start);
+                return CompletableFuture.completedFuture(cached);
+            }
         }
 
-        // --- Passo 2 e 3: Gerenciamento do ID da Conversação ---
-        // Verifica se precisa de um novo conversation_id (se não existir ou se o limite foi atingido)
-        if (conversationIdState == null || conversationRequestCount >= MAX_REQUESTS_PER_CONVERSATION) {
-            System.out.println("\n--- Iniciando uma nova conversação ---");
-            if (conversationIdState != null) {
-                System.out.println("Limite de " + MAX_REQUESTS_PER_CONVERSATION + " requisições atingido para a conversação anterior.");
+        String flightKey = flightKeyFor(prompt, sessionId, uploadIds);
+        PromptFlight flight = null;
+        if (flightKey != null) {
+            PromptFlight created = new PromptFlight();
+            PromptFlight existing = inFlightPrompts.putIfAbsent(flightKey, created);
+            // Uma chamada que o líder abandonou não pode mais ser seguida: esta requisição faz a sua própria
+            CompletableFuture<String> shared = existing != null ? existing.answer() : null;
+            if (shared != null) {
+                return shared.whenComplete((answer, error) -> StackSpotMetrics.chatRequest(API_ASYNC, mode,
+                        error == null ? StackSpotMetrics.COALESCED : StackSpotMetrics.FAILURE, start));
+            }
+            if (existing == null) {
+                flight = created;
             }
+        }
+        PromptFlight leading = flight;
 
-            // Cria uma nova execução para obter um novo conversation_id
-            CreateExecutionRequestDto execRequest = new CreateExecutionRequestDto("query.java", prompt);
-            CreateExecutionResponseDto execResponse = ExecutionService.createExecution(execRequest, tokenState);
-            if (execResponse == null) {
-                System.err.println("Falha ao criar a execução. Encerrando.");
-                return createErrorJson("Falha ao criar a execução na plataforma.");
+        // O client da StackSpot é definido pela conversação, então o token vem depois dela
+        return acquireConversationAsync(sessionId)
+                .thenCompose(acquired -> {
+                    StackSpotMetrics.conversationAcquire(mode, start);
+                    reportRollover(acquired, onRollover);
+                    long tokenStart = System.nanoTime();
+                    ChatTiming timing = new ChatTiming();
+                    return credentialPool.slotFor(acquired).getTokenManager().getTokenAsync()
+                            .thenCompose(token -> {
+                                StackSpotMetrics.tokenAcquire(tokenStart);
+                                if (token == null) {
+                                    throw new CompletionException(authenticationFailure());
+                                }
+                                return sendPromptToChatAsync(prompt, acquired.getId(), uploadIds, token, timing, leading);
+                            })
+                            .whenComplete((answer, error) -> {
+                                if (error == null) {
+                                    rotationPolicy.record(acquired, ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL, prompt.length(), timing);
+                                }
+                                credentialPool.end(acquired, error);
+                            });
+                })
+                .thenApply(finalAnswer -> {
+                    if (cacheKey != null) {
+                        responseCache.put(cacheKey, finalAnswer);
+                    }
+                    return finalAnswer;
+                })
+                .whenComplete((answer, error) -> {
+                    if (leading != null) {
+                        inFlightPrompts.remove(flightKey, leading);
+                        leading.finish(answer, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                    StackSpotMetrics.chatRequest(API_ASYNC, mode, error == null ? StackSpotMetrics.SUCCESS : StackSpotMetrics.FAILURE, start);
+                });
+    }
+
+    /**
+     * Executa o mesmo fluxo de {@link #ask(String, String)}, mas repassa cada fragmento da resposta ao
+     * {@code listener} assim que ele chega do stream SSE, sem esperar o fim da geração.
+     * <p>
+     * Um prompt stateless idêntico a outro ainda em andamento segue a chamada em andamento: recebe os fragmentos
+     * já gerados e depois os novos.
+     *
+     * @param prompt    O prompt do usuário.
+     * @param sessionId A chave de sessão do cliente; se nula, usa as conversações compartilhadas.
+     * @param listener  Consumidor dos fragmentos de resposta.
+     * @throws IOException          Em falhas de autenticação, de criação da conversação, de status da API
+     *                              ou se o próprio {@code listener} abortar o stream.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public static void askStream(String prompt, String sessionId, ChatStreamListener listener) throws IOException, InterruptedException {
+        askStream(prompt, sessionId, List.of(), listener);
+    }
+
+    /**
+     * Como {@link #askStream(String, String, ChatStreamListener)}, anexando ao prompt arquivos enviados com
+     * {@link UploadService}.
+     */
+    public static void askStream(String prompt, String sessionId, List<String> uploadIds, ChatStreamListener listener)
+            throws IOException, InterruptedException {
+        askStream(prompt, sessionId, uploadIds, new ChatCancellation(), listener);
+    }
+
+    /**
+     * Como {@link #askStream(String, String, List, ChatStreamListener)}, podendo ser cancelada por outra thread com
+     * {@link ChatCancellation#cancel()}: a espera em andamento é interrompida ou o stream com a StackSpot é fechado, e
+     * a chamada termina com {@link IOException}.
+     * <p>
+     * Se outros prompts idênticos seguem a chamada, ela continua para eles; cabe ao {@code listener} abortar ao
+     * perceber o cancelamento ({@link ChatCancellation#isCancelled()}).
+     */
+    public static void askStream(String prompt, String sessionId, List<String> uploadIds, ChatCancellation cancellation,
+                                 ChatStreamListener listener) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String mode = modeTag(sessionId);
+        String cacheKey = cacheKeyFor(prompt, sessionId, uploadIds);
+        if (cacheKey != null) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                listener.onFragment(cached);
+                StackSpotMetrics.chatRequest(API_STREAM, mode, StackSpotMetrics.CACHE_HIT, start);
+                return;
             }
-            String executionId = execResponse.getExecutionId();
+        }
 
-            // Obtém o ID da conversação da nova execução
+        String flightKey = flightKeyFor(prompt, sessionId, uploadIds);
+        PromptFlight flight = null;
+        if (flightKey != null) {
+            PromptFlight created = new PromptFlight();
+            PromptFlight existing = inFlightPrompts.putIfAbsent(flightKey, created);
+            if (existing != null) {
+                String outcome = StackSpotMetrics.FAILURE;
+                boolean followed = false;
+                cancellation.enterWait();
+                try {
+                    followed = existing.follow(listener);
+                    outcome = StackSpotMetrics.COALESCED;
+                } finally {
+                    cancellation.exitWait();
+                    if (followed || !StackSpotMetrics.COALESCED.equals(outcome)) {
+                        StackSpotMetrics.chatRequest(API_STREAM, mode, outcome, start);
+                    }
+                }
+                if (followed) {
+                    return;
+                }
+                // O líder abandonou a chamada antes desta requisição segui-la: faz a sua própria, sem compartilhar
+            } else {
+                flight = created;
+                cancellation.guard(created::abandon);
+            }
+        }
+
+        String outcome = StackSpotMetrics.FAILURE;
+        String answer = null;
+        Throwable failure = null;
+        Conversation conversation = null;
+        try {
+            EnsureDto token;
+            cancellation.enterWait();
             try {
-                System.out.println("Aguardando 5 segundos para a IA processar...");
-                Thread.sleep(5000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("Thread interrompida durante a espera.");
-                return createErrorJson("Processo interrompido durante a espera pela IA.");
+                conversation = prepareConversation(sessionId);
+                token = obtainToken(conversation);
+            } finally {
+                cancellation.exitWait();
             }
-            conversationIdState = ExecutionService.getConversationId(executionId, tokenState);
-            if (conversationIdState == null) {
-                System.err.println("Falha ao obter o ID da conversação. Encerrando.");
-                return createErrorJson("Falha ao obter o ID da conversação após a execução.");
+            String conversationId = conversation.getId();
+            String rollover = conversation.takeRollover();
+            if (rollover != null) {
+                listener.onRollover(rollover);
+            }
+
+            log.debug("Enviando prompt para o chat da IA (streaming) na conversação {}", conversationId);
+            PromptFlight.Leader leader = flight != null ? flight.lead(listener) : null;
+            ChatStreamListener sink = leader != null ? leader : listener;
+            ChatTiming timing = new ChatTiming();
+            if (cacheKey == null && flight == null) {
+                streamPromptToChat(prompt, conversationId, uploadIds, token, timing, cancellation, sink);
+            } else {
+                StringBuilder answerBuilder = new StringBuilder();
+                streamPromptToChat(prompt, conversationId, uploadIds, token, timing, cancellation, fragment -> {
+                    answerBuilder.append(fragment);
+                    sink.onFragment(fragment);
+                });
+                answer = answerBuilder.toString().strip();
+                if (cacheKey != null) {
+                    responseCache.put(cacheKey, answer);
+                }
+            }
+            rotationPolicy.record(conversation, ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL, prompt.length(), timing);
+            if (leader != null) {
+                leader.rethrowClientFailure();
+            }
+            outcome = StackSpotMetrics.SUCCESS;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (conversation != null) {
+                credentialPool.end(conversation, failure);
+            }
+            if (flight != null) {
+                inFlightPrompts.remove(flightKey, flight);
+                // A resposta completa vale para quem segue a chamada mesmo se o cliente do líder desconectou
+                if (answer != null) {
+                    flight.finish(answer, null);
+                } else {
+                    flight.finish(null, failure != null ? failure : new IOException("Chamada ao chat interrompida."));
+                }
             }
+            StackSpotMetrics.chatRequest(API_STREAM, mode, outcome, start);
+        }
+    }
 
-            System.out.println("Nova conversação criada com ID: " + conversationIdState);
-            conversationRequestCount = 0; // Reseta o contador para a nova conversação
-        } else {
-            System.out.println("\n--- Reutilizando conversação existente ID: " + conversationIdState + " ---");
+    /**
+     * Como {@link #askStream(String, String, List, ChatStreamListener)}, mas devolve a resposta como um
+     * {@link Flow.Publisher} de fragmentos que só lê o stream da StackSpot conforme o assinante pede mais
+     * (ver {@link ChatPublisher}), sem prender uma thread por chat.
+     * <p>
+     * Nada é enviado até o primeiro {@code request(n)}. A resposta não é acumulada, então a memória por chat não cresce
+     * com o tamanho da resposta; por isso ela não entra no cache nem é compartilhada com prompts idênticos em andamento.
+     * Respostas que já estão no cache são aproveitadas. Cancelar a assinatura fecha o stream com a StackSpot.
+     *
+     * @param prompt     O prompt do usuário.
+     * @param sessionId  A chave de sessão do cliente; se nula, usa as conversações compartilhadas.
+     * @param onRollover Avisado com o motivo, antes do primeiro fragmento, quando a sessão passou para uma conversação
+     *                   nova (ver {@link ChatStreamListener#onRollover(String)}).
+     */
+    public static Flow.Publisher<String> askPublisher(String prompt, String sessionId, List<String> uploadIds, Consumer<String> onRollover) {
+        long start = System.nanoTime();
+        String mode = modeTag(sessionId);
+        String cacheKey = cacheKeyFor(prompt, sessionId, uploadIds);
+        if (cacheKey != null) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                StackSpotMetrics.chatRequest(API_REACTIVE, mode, StackSpotMetrics.CACHE_HIT, start);
+                return ChatPublisher.completed(cached);
+            }
         }
 
-        // Incrementa o contador de requisições para a conversação atual
-        conversationRequestCount++;
-        System.out.println("Requisição " + conversationRequestCount + "/" + MAX_REQUESTS_PER_CONVERSATION + " para esta conversação.");
+        ChatTiming timing = new ChatTiming();
+        AtomicReference<Conversation> acquired = new AtomicReference<>();
+        ChatPublisher.Opener opener = () -> acquireConversationAsync(sessionId).thenCompose(conversation -> {
+            acquired.set(conversation);
+            StackSpotMetrics.conversationAcquire(mode, start);
+            reportRollover(conversation, onRollover);
+            long tokenStart = System.nanoTime();
+            return credentialPool.slotFor(conversation).getTokenManager().getTokenAsync().thenCompose(token -> {
+                StackSpotMetrics.tokenAcquire(tokenStart);
+                if (token == null) {
+                    throw new CompletionException(authenticationFailure());
+                }
+                log.debug("Enviando prompt para o chat da IA (reativo) na conversação {}", conversation.getId());
+                return openChatStream(prompt, conversation.getId(), uploadIds, token, timing);
+            });
+        });
+        return new ChatPublisher(timing, opener, (error, cancelled) -> {
+            Conversation conversation = acquired.get();
+            if (conversation != null) {
+                if (error == null && !cancelled) {
+                    rotationPolicy.record(conversation, ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL, prompt.length(), timing);
+                }
+                credentialPool.end(conversation, error);
+            }
+            StackSpotMetrics.chatRequest(API_REACTIVE, mode,
+                    error == null && !cancelled ? StackSpotMetrics.SUCCESS : StackSpotMetrics.FAILURE, start);
+        });
+    }
 
-        System.out.println("\n--- Passo 4: Enviando prompt para o chat da IA ---");
-        return sendPromptToChat(prompt, conversationIdState, tokenState);
+    /**
+     * Encerra a sessão do cliente: a próxima requisição com a mesma chave começa uma conversação nova.
+     */
+    public static void endSession(String sessionId) {
+        sessionTable.remove(sessionId);
     }
 
     /**
-     * Envia o prompt para o endpoint de chat e retorna a resposta formatada como uma String JSON.
+     * Os clients da StackSpot usados pelo chat, compartilhados com as execuções diretas de quick commands.
      */
-    private static String sendPromptToChat(String userPrompt, String conversationId, EnsureDto tokenDto) {
+    static CredentialPool getCredentialPool() {
+        return credentialPool;
+    }
+
+    /**
+     * Total de eventos do stream de chat descartados por não serem JSON válido.
+     */
+    public static long getMalformedEventCount() {
+        return ChatEventDecoder.getMalformedEventCount();
+    }
+
+    /**
+     * Monta a chave do cache de respostas para o prompt, ou devolve nulo se a requisição não deve usar o cache.
+     */
+    private static String cacheKeyFor(String prompt, String sessionId, List<String> uploadIds) {
+        ChatMode mode = ChatMode.of(sessionId);
+        if (responseCache == null || (mode == ChatMode.CONVERSATIONAL && !CACHE_CONVERSATIONAL)) {
+            return null;
+        }
+        return ResponseCache.key(mode.name(), AGENT_ID, prompt, uploadIds);
+    }
+
+    /**
+     * Monta a chave que identifica chamadas idênticas em andamento, ou devolve nulo se a requisição não pode
+     * compartilhar a chamada de outra (prompts de sessão dependem do contexto da conversação).
+     */
+    private static String flightKeyFor(String prompt, String sessionId, List<String> uploadIds) {
+        if (!COALESCING_ENABLED || ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL) {
+            return null;
+        }
+        return ResponseCache.key(ChatMode.STATELESS.name(), AGENT_ID, prompt, uploadIds);
+    }
+
+    private static String modeTag(String sessionId) {
+        return ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL ? "conversational" : "stateless";
+    }
+
+    /**
+     * Obtém o token atual do client da StackSpot dono da conversação.
+     *
+     * @throws IOException Se não houver token válido e a autenticação falhar.
+     */
+    private static EnsureDto obtainToken(Conversation conversation) throws IOException {
+        long start = System.nanoTime();
+        EnsureDto token = credentialPool.slotFor(conversation).getTokenManager().getToken();
+        StackSpotMetrics.tokenAcquire(start);
+
+        if (token == null) {
+            log.warn("Falha na autenticação: nenhum token disponível.");
+            throw authenticationFailure();
+        }
+        return token;
+    }
+
+    /**
+     * A falha de quem ficou sem token: {@link CircuitOpenException} se o circuito da autenticação está aberto, para o
+     * cliente receber 503 com {@code Retry-After}, ou uma {@link IOException} comum. Usada também pelos quick
+     * commands e uploads.
+     */
+    static IOException authenticationFailure() {
+        CircuitOpenException open = StackSpotTransport.circuitOpen(Endpoint.AUTH);
+        return open != null ? open : new IOException("Falha na autenticação. Não foi possível obter o token.");
+    }
+
+    /**
+     * Reserva uma requisição na conversação da sessão, ou em uma conversação compartilhada de um dos clients. A
+     * requisição conta como em andamento no client até {@link CredentialPool#end(Conversation, Throwable)}.
+     *
+     * @throws IOException Com a mensagem de erro a ser repassada ao usuário, se nenhuma conversação estiver disponível.
+     */
+    private static Conversation prepareConversation(String sessionId) throws IOException {
+        // --- Passo 2 e 3: Conversação já criada em segundo plano pelo pool ---
+        long start = System.nanoTime();
         try {
-            ChatRequestDto.Context context = new ChatRequestDto.Context(conversationId, AGENT_ID);
-            ChatRequestDto chatRequest = new ChatRequestDto(context, userPrompt);
-            String payloadJson = objectMapper.writeValueAsString(chatRequest);
+            Conversation conversation = ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL
+                    ? credentialPool.begin(sessionTable.acquire(sessionId))
+                    : credentialPool.acquire();
+            StackSpotMetrics.conversationAcquire(modeTag(sessionId), start);
+            log.debug("Usando conversação {} (restam {} requisições)", conversation.getId(), conversation.getRemaining());
+            return conversation;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Thread interrompida durante a espera por uma conversação.");
+            throw new IOException("Processo interrompido durante a espera pela IA.");
+        }
+    }
+
+    private static void reportRollover(Conversation conversation, Consumer<String> onRollover) {
+        String rollover = conversation.takeRollover();
+        if (rollover != null) {
+            onRollover.accept(rollover);
+        }
+    }
+
+    /**
+     * Reserva sem bloquear uma requisição na conversação da sessão, ou em uma conversação compartilhada de um dos
+     * clients, como {@link #prepareConversation(String)}.
+     */
+    private static CompletableFuture<Conversation> acquireConversationAsync(String sessionId) {
+        return ChatMode.of(sessionId) == ChatMode.CONVERSATIONAL
+                ? sessionTable.acquireAsync(sessionId).thenApply(credentialPool::begin)
+                : credentialPool.acquireAsync();
+    }
+
+    /**
+     * Envia o prompt para o endpoint de chat e devolve a resposta completa.
+     */
+    private static String sendPromptToChat(String userPrompt, String conversationId, List<String> uploadIds, EnsureDto tokenDto,
+                                           ChatTiming timing) throws IOException, InterruptedException {
+        StringBuilder answerBuilder = new StringBuilder();
+        streamPromptToChat(userPrompt, conversationId, uploadIds, tokenDto, timing, new ChatCancellation(), answerBuilder::append);
+        log.debug("Resposta da IA recebida na conversação {}", conversationId);
+        return answerBuilder.toString().strip();
+    }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(CHAT_API_URL))
-                    .header("Authorization", "Bearer " + tokenDto.getJwt())
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payloadJson))
-                    .build();
+    /**
+     * Envia o prompt para o endpoint de chat sem bloquear: os bytes do stream SSE são decodificados por um
+     * {@link ChatBodySubscriber} nas threads do transporte à medida que chegam.
+     *
+     * @param flight A chamada compartilhada onde publicar os fragmentos para quem a segue; pode ser nula.
+     * @return Um future com a resposta completa, ou completado com {@link IOException} em caso de erro de status
+     * ou de erro sinalizado no stream.
+     */
+    private static CompletableFuture<String> sendPromptToChatAsync(String userPrompt, String conversationId, List<String> uploadIds,
+                                                                   EnsureDto tokenDto, ChatTiming timing, PromptFlight flight) {
+        HttpRequest request;
+        try {
+            request = buildChatRequest(userPrompt, conversationId, uploadIds, tokenDto);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines( ));
+        timing.start();
+        HttpResponse.BodyHandler<String> bodyHandler = responseInfo -> responseInfo.statusCode() == 200
+                ? new ChatBodySubscriber(timing, flight)
+                : HttpResponse.BodySubscribers.replacing(null);
 
+        return StackSpotTransport.sendAsync(Endpoint.CHAT, request, bodyHandler).thenApply(response -> {
             if (response.statusCode() != 200) {
-                System.err.printf("StackSpot IA retornou erro: %d%n", response.statusCode());
-                return createErrorJson("API da IA retornou um erro com status: " + response.statusCode());
-            }
-
-            StringBuilder answerBuilder = new StringBuilder();
-            response.body().forEach(line -> {
-                if (line.startsWith("data: ")) {
-                    String jsonData = line.substring(6);
-                    if (!jsonData.trim().isEmpty()) {
-                        try {
-                            JsonNode parsed = objectMapper.readTree(jsonData);
-                            if (parsed.has("answer")) {
-                                answerBuilder.append(parsed.get("answer").asText());
-                            }
-                        } catch (JsonProcessingException e) {
-                            // Ignora linhas JSON malformadas
-                        }
-                    }
+                log.warn("StackSpot IA retornou erro: {}", response.statusCode());
+                throw new CompletionException(new IOException("API da IA retornou um erro com status: " + response.statusCode()));
+            }
+            return response.body().strip();
+        });
+    }
+
+    /**
+     * Envia o prompt para o endpoint de chat e devolve o corpo SSE sem lê-lo: os bytes só são lidos do socket
+     * conforme quem assina o corpo pede mais.
+     *
+     * @return Um future com o corpo de uma resposta 200, ou completado com {@link IOException} em caso de erro de status.
+     */
+    private static CompletableFuture<Flow.Publisher<List<ByteBuffer>>> openChatStream(String userPrompt, String conversationId,
+                                                                                    List<String> uploadIds, EnsureDto tokenDto,
+                                                                                    ChatTiming timing) {
+        HttpRequest request;
+        try {
+            request = buildChatRequest(userPrompt, conversationId, uploadIds, tokenDto);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        timing.start();
+        HttpResponse.BodyHandler<Flow.Publisher<List<ByteBuffer>>> bodyHandler = responseInfo -> responseInfo.statusCode() == 200
+                ? HttpResponse.BodySubscribers.ofPublisher()
+                : HttpResponse.BodySubscribers.replacing(null);
+
+        return StackSpotTransport.sendAsync(Endpoint.CHAT, request, bodyHandler).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                log.warn("StackSpot IA retornou erro: {}", response.statusCode());
+                throw new CompletionException(new IOException("API da IA retornou um erro com status: " + response.statusCode()));
+            }
+            return response.body();
+        });
+    }
+
+    private static HttpRequest buildChatRequest(String userPrompt, String conversationId, List<String> uploadIds,
+                                                EnsureDto tokenDto) throws JsonProcessingException {
+        ChatRequestDto.Context context = new ChatRequestDto.Context(conversationId, AGENT_ID, uploadIds);
+        ChatRequestDto chatRequest = new ChatRequestDto(context, userPrompt);
+        String payloadJson = objectMapper.writeValueAsString(chatRequest);
+
+        return StackSpotTransport.apiRequest(Endpoint.CHAT, CHAT_API_PATH)
+                .header("Authorization", "Bearer " + tokenDto.getJwt())
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(payloadJson))
+                .build();
+    }
+
+    /**
+     * Envia o prompt para o endpoint de chat e repassa cada campo {@code answer} do stream SSE ao
+     * {@code listener} conforme os eventos chegam.
+     * <p>
+     * O stream de resposta é sempre fechado ao sair, inclusive quando o {@code listener} lança exceção,
+     * o que cancela a conexão com a StackSpot em vez de consumir o restante da geração. O {@code cancellation} fecha o
+     * stream durante a leitura e interrompe a espera pelos headers.
+     */
+    private static void streamPromptToChat(String userPrompt, String conversationId, List<String> uploadIds, EnsureDto tokenDto,
+                                           ChatTiming timing, ChatCancellation cancellation, ChatStreamListener listener)
+            throws IOException, InterruptedException {
+        HttpRequest request = buildChatRequest(userPrompt, conversationId, uploadIds, tokenDto);
+
+        timing.start();
+        HttpResponse<InputStream> response;
+        cancellation.enterWait();
+        try {
+            response = StackSpotTransport.send(Endpoint.CHAT, request, HttpResponse.BodyHandlers.ofInputStream());
+        } finally {
+            cancellation.exitWait();
+        }
+
+        try (InputStream body = response.body()) {
+            cancellation.bindStream(body);
+            if (response.statusCode() != 200) {
+                log.warn("StackSpot IA retornou erro: {}", response.statusCode());
+                throw new IOException("API da IA retornou um erro com status: " + response.statusCode());
+            }
+
+            ChatEventDecoder decoder = new ChatEventDecoder(timed(listener, timing));
+            SseParser parser = new SseParser(decoder);
+            byte[] chunk = new byte[READ_CHUNK_SIZE];
+            int read;
+            while (!decoder.isEnded() && (read = body.read(chunk)) != -1) {
+                parser.feed(ByteBuffer.wrap(chunk, 0, read));
+            }
+            if (!decoder.isEnded()) {
+                parser.finish();
+            }
+            timing.end();
+        } finally {
+            cancellation.unbindStream();
+        }
+    }
+
+    /**
+     * Mede o tempo até o primeiro fragmento e o tamanho da resposta antes de repassar cada fragmento ao {@code listener}.
+     */
+    private static ChatStreamListener timed(ChatStreamListener listener, ChatTiming timing) {
+        return fragment -> {
+            timing.onFragment(fragment);
+            listener.onFragment(fragment);
+        };
+    }
+
+    /**
+     * Decodifica o stream SSE do chat de forma assíncrona, acumulando os fragmentos {@code answer}.
+     * <p>
+     * Um erro sinalizado no stream cancela a assinatura, o que fecha o stream com a StackSpot, e completa o
+     * corpo da resposta com a exceção.
+     */
+    private static final class ChatBodySubscriber implements HttpResponse.BodySubscriber<String> {
+        private final ChatTiming timing;
+        private final StringBuilder answerBuilder = new StringBuilder();
+        private final ChatEventDecoder decoder;
+        private final SseParser parser;
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        ChatBodySubscriber(ChatTiming timing, PromptFlight flight) {
+            this.timing = timing;
+            this.decoder = new ChatEventDecoder(timed(fragment -> {
+                answerBuilder.append(fragment);
+                if (flight != null) {
+                    flight.publish(fragment);
                 }
-            });
+            }, timing));
+            this.parser = new SseParser(decoder);
+        }
 
-            String finalAnswer = answerBuilder.toString().strip();
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
 
-            ObjectNode jsonAnswerNode = objectMapper.createObjectNode();
-            jsonAnswerNode.put("answer", finalAnswer);
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
 
-            System.out.println("Resposta da IA recebida com sucesso.");
-            return objectMapper.writeValueAsString(jsonAnswerNode);
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (body.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    parser.feed(buffer);
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                body.completeExceptionally(e);
+            }
+        }
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Erro na comunicação com a StackSpot IA: " + e.getMessage());
-            Thread.currentThread().interrupt();
-            return createErrorJson("Erro na comunicação com a IA: " + e.getMessage());
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                if (!decoder.isEnded()) {
+                    parser.finish();
+                }
+                timing.end();
+                body.complete(answerBuilder.toString());
+            } catch (IOException e) {
+                body.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Formata a resposta como a String JSON `{"answer": "..."}`.
+     */
+    private static String toAnswerJson(String answer) throws JsonProcessingException {
+        ObjectNode jsonAnswerNode = objectMapper.createObjectNode();
+        jsonAnswerNode.put("answer", answer);
+        return objectMapper.writeValueAsString(jsonAnswerNode);
+    }
+
+    private static String toAnswerJsonUnchecked(String answer) {
+        try {
+            return toAnswerJson(answer);
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
         }
     }
 
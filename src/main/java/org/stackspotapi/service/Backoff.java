@@ -0,0 +1,61 @@
+package org.stackspotapi.service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Backoff exponencial com jitter, compartilhado pelas novas tentativas ({@link RetryPolicy}) e pelas consultas ao
+ * callback ({@link PollingSchedule}).
+ */
+public final class Backoff {
+    private final Duration initialDelay;
+    private final double multiplier;
+    private final Duration maxDelay;
+    private final double jitter;
+
+    /**
+     * @param initialDelay Espera do primeiro passo.
+     * @param multiplier   Fator aplicado à espera a cada passo (>= 1).
+     * @param maxDelay     Espera máxima de um passo.
+     * @param jitter       Fração aleatória (0 a 1) somada ou subtraída de cada espera.
+     */
+    public Backoff(Duration initialDelay, double multiplier, Duration maxDelay, double jitter) {
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier deve ser >= 1");
+        }
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("jitter deve estar entre 0 e 1");
+        }
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+        this.maxDelay = maxDelay;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Calcula a espera do passo {@code step} (começando em 0, que espera {@code initialDelay}), já com jitter aplicado.
+     */
+    public long delayMillis(int step) {
+        double base = initialDelay.toMillis() * Math.pow(multiplier, step);
+        double capped = Math.min(base, maxDelay.toMillis());
+        double spread = capped * jitter;
+        double withJitter = capped + ThreadLocalRandom.current().nextDouble(-spread, spread + Double.MIN_VALUE);
+        return Math.max(0L, Math.round(withJitter));
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+}
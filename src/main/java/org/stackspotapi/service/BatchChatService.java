@@ -0,0 +1,113 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Envia um lote de prompts à IA com um limite de chamadas simultâneas.
+ * <p>
+ * Cada uma das {@code concurrency} "faixas" do lote pega o próximo prompt quando a chamada anterior termina,
+ * usando o pipeline assíncrono de {@link AiChatService}, então nenhuma thread fica esperando. Os resultados são
+ * entregues na ordem em que terminam, com o índice do prompt, e a falha de um item não interrompe os demais.
+ */
+public class BatchChatService {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    public static final int MAX_CONCURRENCY = Integer.parseInt(dotenv.get("BATCH_MAX_CONCURRENCY", "8"));
+    public static final int MAX_PROMPTS = Integer.parseInt(dotenv.get("BATCH_MAX_PROMPTS", "1000"));
+
+    /**
+     * Recebe o resultado de cada item do lote assim que ele termina. Pode ser chamado por várias threads.
+     */
+    @FunctionalInterface
+    public interface BatchResultListener {
+        /**
+         * @param index  A posição do prompt no lote.
+         * @param answer A resposta da IA, ou nula se o item falhou.
+         * @param error  A falha do item, ou nula em caso de sucesso.
+         */
+        void onResult(int index, String answer, Throwable error);
+    }
+
+    /**
+     * Executa o lote.
+     *
+     * @param prompts     Os prompts, enviados sem sessão.
+     * @param concurrency O máximo de chamadas simultâneas; limitado a {@link #MAX_CONCURRENCY}.
+     * @param cancelled   Quando verdadeiro, nenhum novo item é iniciado (ex.: cliente desconectou).
+     * @param listener    Recebe cada resultado.
+     * @return Um future completado quando todos os itens iniciados terminarem.
+     */
+    public static CompletableFuture<Void> run(List<String> prompts, int concurrency, AtomicBoolean cancelled, BatchResultListener listener) {
+        return run(prompts, concurrency, cancelled, listener, prompt -> AiChatService.askForAnswerAsync(prompt, null));
+    }
+
+    /**
+     * Como {@link #run(List, int, AtomicBoolean, BatchResultListener)}, com a chamada de cada prompt em {@code ask}.
+     */
+    static CompletableFuture<Void> run(List<String> prompts, int concurrency, AtomicBoolean cancelled, BatchResultListener listener,
+                                       Function<String, CompletableFuture<String>> ask) {
+        int lanes = Math.max(1, Math.min(Math.min(concurrency, MAX_CONCURRENCY), prompts.size()));
+        AtomicInteger nextIndex = new AtomicInteger();
+        CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> laneDone = new CompletableFuture<>();
+            runLane(prompts, nextIndex, cancelled, listener, ask, laneDone);
+            laneFutures[lane] = laneDone;
+        }
+        return CompletableFuture.allOf(laneFutures);
+    }
+
+    /**
+     * Processa itens da faixa até o lote acabar. Itens já completos (cache, prompt vazio) seguem no mesmo laço; só
+     * um item pendente agenda a continuação, então a pilha não cresce com o tamanho do lote.
+     */
+    private static void runLane(List<String> prompts, AtomicInteger nextIndex, AtomicBoolean cancelled, BatchResultListener listener,
+                                Function<String, CompletableFuture<String>> ask, CompletableFuture<Void> laneDone) {
+        try {
+            while (true) {
+                int index = nextIndex.getAndIncrement();
+                if (index >= prompts.size() || cancelled.get()) {
+                    laneDone.complete(null);
+                    return;
+                }
+
+                String prompt = prompts.get(index);
+                CompletableFuture<String> item = prompt == null || prompt.isBlank()
+                        ? CompletableFuture.failedFuture(new IllegalArgumentException("Prompt cannot be empty"))
+                        : ask.apply(prompt);
+
+                if (!item.isDone()) {
+                    item.whenComplete((answer, error) -> {
+                        try {
+                            deliver(index, answer, error, listener);
+                        } catch (RuntimeException e) {
+                            laneDone.completeExceptionally(e);
+                            return;
+                        }
+                        runLane(prompts, nextIndex, cancelled, listener, ask, laneDone);
+                    });
+                    return;
+                }
+                // Já completo: handle roda nesta mesma thread, antes da próxima volta
+                item.handle((answer, error) -> {
+                    deliver(index, answer, error, listener);
+                    return null;
+                }).join();
+            }
+        } catch (RuntimeException e) {
+            laneDone.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    private static void deliver(int index, String answer, Throwable error, BatchResultListener listener) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        listener.onResult(index, cause == null ? answer : null, cause);
+    }
+}
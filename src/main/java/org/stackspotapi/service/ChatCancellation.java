@@ -0,0 +1,150 @@
+package org.stackspotapi.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cancelamento de uma chamada de {@link AiChatService#askStream(String, String, java.util.List, ChatCancellation, ChatStreamListener)}
+ * acionado por outra thread (ex.: o cliente cancelou o prompt).
+ * <p>
+ * O cancelamento nunca interrompe a thread da chamada em um ponto qualquer: só as esperas marcadas com
+ * {@link #enterWait()} (conversação, token, vaga no limitador, headers da StackSpot, chamada compartilhada, espera do
+ * consumidor) são interrompidas, e a interrupção é limpa em {@link #exitWait()}, então não chega às escritas do cache
+ * em disco. Durante a leitura da resposta, o cancelamento fecha o corpo do stream, o que encerra a conexão com a
+ * StackSpot na hora.
+ * <p>
+ * O líder de uma chamada compartilhada por prompts idênticos só é parado se ninguém estiver seguindo a chamada; do
+ * contrário ela continua para os demais e só o consumidor do líder deixa de receber fragmentos. As esperas do próprio
+ * consumidor ({@link #enterConsumerWait()}) são interrompidas em qualquer caso.
+ */
+public final class ChatCancellation {
+    private boolean cancelled;
+    // Se o cancelamento pode parar a chamada (falso quando outras requisições dependem dela)
+    private boolean stopping;
+    private BooleanSupplier guard;
+    private Thread waiter;
+    private int waitDepth;
+    private int consumerWaits;
+    private Closeable stream;
+
+    /**
+     * Cancela a chamada: interrompe a espera em andamento ou fecha o stream da resposta.
+     */
+    public void cancel() {
+        Closeable toClose;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            stopping = guard == null || guard.getAsBoolean();
+            // Sob o lock, para que exitWait() possa limpar a interrupção depois
+            if (waiter != null && (stopping || consumerWaits > 0)) {
+                waiter.interrupt();
+            }
+            if (!stopping) {
+                return;
+            }
+            toClose = stream;
+        }
+        closeQuietly(toClose);
+    }
+
+    /**
+     * Indica se {@link #cancel()} foi chamado, mesmo que a chamada continue para outras requisições.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Marca o início de uma espera que o cancelamento pode interromper. Esperas podem ser aninhadas na mesma thread.
+     *
+     * @throws IOException Se a chamada já foi cancelada.
+     */
+    public synchronized void enterWait() throws IOException {
+        if (stopping) {
+            throw cancelledError();
+        }
+        waitDepth++;
+        waiter = Thread.currentThread();
+    }
+
+    /**
+     * Como {@link #enterWait()}, para uma espera que só diz respeito ao consumidor desta chamada (ex.: espaço na fila de
+     * saída do cliente): o cancelamento a interrompe mesmo quando a chamada continua para outras requisições.
+     *
+     * @throws IOException Se a chamada já foi cancelada.
+     */
+    public synchronized void enterConsumerWait() throws IOException {
+        if (cancelled) {
+            throw cancelledError();
+        }
+        consumerWaits++;
+        waitDepth++;
+        waiter = Thread.currentThread();
+    }
+
+    /**
+     * Marca o fim da espera aberta com {@link #enterWait()} e limpa a interrupção que o cancelamento possa ter enviado.
+     */
+    public synchronized void exitWait() {
+        if (--waitDepth == 0) {
+            waiter = null;
+            if (cancelled) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Marca o fim da espera aberta com {@link #enterConsumerWait()}.
+     */
+    public synchronized void exitConsumerWait() {
+        consumerWaits--;
+        exitWait();
+    }
+
+    /**
+     * Define quem decide, no momento do cancelamento, se a chamada pode mesmo ser parada.
+     */
+    synchronized void guard(BooleanSupplier mayStop) {
+        this.guard = mayStop;
+    }
+
+    /**
+     * Associa o stream da resposta, fechado por {@link #cancel()}.
+     *
+     * @throws IOException Se a chamada já foi cancelada; o stream é fechado.
+     */
+    void bindStream(Closeable stream) throws IOException {
+        synchronized (this) {
+            if (!stopping) {
+                this.stream = stream;
+                return;
+            }
+        }
+        closeQuietly(stream);
+        throw cancelledError();
+    }
+
+    synchronized void unbindStream() {
+        stream = null;
+    }
+
+    private static IOException cancelledError() {
+        return new IOException("Chamada ao chat cancelada.");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // O stream já está sendo descartado
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.stackspotapi.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.stackspotapi.transport.SseParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lê os eventos do stream SSE do {@code /v3/chat} e repassa os fragmentos {@code answer} ao {@link ChatStreamListener}.
+ * <p>
+ * O JSON de cada evento é percorrido com o {@link JsonParser} de streaming do Jackson, sem montar uma árvore:
+ * só os campos de interesse são lidos e o resto é pulado. Além do {@code answer}, o decoder reconhece:
+ * <ul>
+ *     <li>fim do stream: evento {@code done}/{@code end}, dados {@code [DONE]}, {@code "done": true} ou um {@code stop_reason};</li>
+ *     <li>erro: evento {@code error} ou campo {@code error}, que viram {@link IOException}.</li>
+ * </ul>
+ * Eventos que não são JSON válido são descartados e contados em {@link #getMalformedEventCount()}.
+ */
+final class ChatEventDecoder implements SseParser.EventListener {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final LongAdder malformedEvents = new LongAdder();
+
+    private final ChatStreamListener listener;
+    private boolean ended;
+
+    ChatEventDecoder(ChatStreamListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Total de eventos malformados recebidos desde o início da aplicação.
+     */
+    static long getMalformedEventCount() {
+        return malformedEvents.sum();
+    }
+
+    /**
+     * Indica se o stream já sinalizou o fim da resposta; eventos posteriores são ignorados.
+     */
+    boolean isEnded() {
+        return ended;
+    }
+
+    @Override
+    public void onEvent(String event, byte[] data, int offset, int length) throws IOException {
+        if (ended) {
+            return;
+        }
+        if ("done".equals(event) || "end".equals(event)) {
+            ended = true;
+            return;
+        }
+        if (isDoneMarker(data, offset, length)) {
+            ended = true;
+            return;
+        }
+        if (isBlank(data, offset, length)) {
+            // Um evento sem dados só importa pelo nome
+            if ("error".equals(event)) {
+                throw streamError("erro sem mensagem");
+            }
+            return;
+        }
+
+        String answer = null;
+        String error = null;
+        boolean wellFormed;
+        try (JsonParser parser = jsonFactory.createParser(data, offset, length)) {
+            wellFormed = parser.nextToken() == JsonToken.START_OBJECT;
+            while (wellFormed && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "answer" -> answer = value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getText() : skip(parser);
+                    case "error" -> error = readError(parser, value);
+                    case "done" -> ended |= value == JsonToken.VALUE_TRUE;
+                    case "stop_reason" -> {
+                        ended |= value != JsonToken.VALUE_NULL;
+                        skip(parser);
+                    }
+                    default -> skip(parser);
+                }
+            }
+        } catch (IOException e) {
+            wellFormed = false;
+        }
+
+        if (!wellFormed) {
+            malformed(event, data, offset, length);
+            return;
+        }
+
+        if (error != null || "error".equals(event)) {
+            throw streamError(error != null ? error : new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+        if (answer != null) {
+            listener.onFragment(answer);
+        }
+    }
+
+    /**
+     * Descarta um evento que não é um objeto JSON válido, deixando-o registrado. Um evento {@code error} malformado
+     * ainda interrompe o stream, com o texto bruto como mensagem.
+     */
+    private static void malformed(String event, byte[] data, int offset, int length) throws IOException {
+        malformedEvents.increment();
+        if ("error".equals(event)) {
+            throw streamError(new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static IOException streamError(String message) {
+        return new IOException("A IA retornou um erro no stream: " + message);
+    }
+
+    /**
+     * Lê o campo {@code error}, que pode ser um texto ou um objeto com {@code message}.
+     */
+    private static String readError(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value.isScalarValue()) {
+            return parser.getText();
+        }
+        String message = null;
+        if (value == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken fieldValue = parser.nextToken();
+                if ("message".equals(field) && fieldValue.isScalarValue()) {
+                    message = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        return message != null ? message : "erro sem mensagem";
+    }
+
+    private static String skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+
+    private static boolean isDoneMarker(byte[] data, int offset, int length) {
+        return length == 6 && data[offset] == '[' && data[offset + 1] == 'D' && data[offset + 2] == 'O'
+                && data[offset + 3] == 'N' && data[offset + 4] == 'E' && data[offset + 5] == ']';
+    }
+
+    private static boolean isBlank(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] != ' ' && data[i] != '\t' && data[i] != '\n' && data[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package org.stackspotapi.service;
+
+/**
+ * Modo de conversa de uma requisição de chat.
+ */
+public enum ChatMode {
+    /**
+     * Sem sessão: a requisição usa as conversações compartilhadas do pool e não depende de perguntas anteriores.
+     */
+    STATELESS,
+    /**
+     * Com sessão: a requisição roda na conversação exclusiva da sessão, com o contexto acumulado.
+     */
+    CONVERSATIONAL;
+
+    public static ChatMode of(String sessionId) {
+        return sessionId != null && !sessionId.isBlank() ? CONVERSATIONAL : STATELESS;
+    }
+}
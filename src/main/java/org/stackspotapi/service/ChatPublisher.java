@@ -0,0 +1,319 @@
+package org.stackspotapi.service;
+
+import org.stackspotapi.transport.SseParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resposta do {@code /v3/chat} como um {@link Flow.Publisher} de fragmentos, com a demanda do assinante propagada
+ * até a leitura do corpo HTTP.
+ * <p>
+ * O pipeline tem três estágios, todos dirigidos pela demanda: o corpo SSE chega do {@code HttpClient}
+ * ({@code BodySubscribers.ofPublisher()}) em lotes de buffers; o {@link SseParser} e o {@link ChatEventDecoder}
+ * transformam cada lote em fragmentos {@code answer}; os fragmentos são entregues ao assinante conforme
+ * {@code request(n)}. Um novo lote só é pedido ao {@code HttpClient} quando o assinante quer mais fragmentos e os do
+ * lote anterior já foram entregues, então a memória por chat fica nos buffers do parser e em um lote, qualquer que
+ * seja o tamanho da resposta. Enquanto o assinante não pede mais, o {@code HttpClient} deixa de ler do socket e o
+ * controle de fluxo do TCP (ou do HTTP/2) segura a StackSpot.
+ * <p>
+ * A chamada só é aberta no primeiro {@code request(n)}. O cancelamento do assinante cancela a assinatura do corpo,
+ * o que fecha o stream com a StackSpot. Cada publisher aceita um único assinante.
+ */
+final class ChatPublisher implements Flow.Publisher<String> {
+
+    /**
+     * Abre a chamada ao chat.
+     */
+    @FunctionalInterface
+    interface Opener {
+        /**
+         * @return Um future com o corpo de uma resposta 200, ou completado com a falha.
+         */
+        CompletableFuture<Flow.Publisher<List<ByteBuffer>>> open();
+    }
+
+    /**
+     * Recebe o desfecho da chamada, uma única vez e só depois de a abertura terminar.
+     */
+    @FunctionalInterface
+    interface Completion {
+        /**
+         * @param error     A falha, ou nulo se a resposta chegou inteira ou o assinante cancelou.
+         * @param cancelled Se o assinante cancelou antes do fim da resposta.
+         */
+        void onFinish(Throwable error, boolean cancelled);
+    }
+
+    private final ChatTiming timing;
+    private final Opener opener;
+    private final Completion completion;
+    private final ChatEventDecoder decoder;
+    private final SseParser parser;
+
+    // Fragmentos do último lote ainda não entregues
+    private final ConcurrentLinkedQueue<String> fragments = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    // Serializa as entregas ao assinante: quem incrementa de 0 entrega, os demais só avisam que há trabalho
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private Flow.Subscriber<? super String> downstream;
+    private volatile Flow.Subscription upstream;
+    // Um lote foi pedido ao HttpClient e ainda não chegou
+    private volatile boolean upstreamPending;
+    private volatile boolean upstreamDone;
+    private volatile boolean openSettled;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    // Desfecho entregue ao assinante, repassado ao Completion quando a abertura também terminou
+    private volatile boolean terminated;
+    private volatile Throwable terminalError;
+    private volatile boolean terminalCancelled;
+    // Só acessado por quem está entregando
+    private boolean opened;
+
+    ChatPublisher(ChatTiming timing, Opener opener, Completion completion) {
+        this.timing = timing;
+        this.opener = opener;
+        this.completion = completion;
+        this.decoder = new ChatEventDecoder(fragment -> {
+            timing.onFragment(fragment);
+            fragments.add(fragment);
+        });
+        this.parser = new SseParser(decoder);
+    }
+
+    /**
+     * Um publisher que entrega uma resposta já conhecida (ex.: do cache) sem chamar a StackSpot.
+     */
+    static ChatPublisher completed(String answer) {
+        ChatPublisher publisher = new ChatPublisher(new ChatTiming(), null, (error, cancelled) -> {
+        });
+        publisher.fragments.add(answer);
+        publisher.opened = true;
+        publisher.openSettled = true;
+        publisher.upstreamDone = true;
+        return publisher;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A resposta do chat aceita um único assinante."));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fragments.clear();
+                    error = new IllegalArgumentException("request(n) exige n > 0, recebeu " + n);
+                } else {
+                    demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Entrega os fragmentos pendentes até onde a demanda permite e, quando eles acabam, pede o próximo lote, abre a
+     * chamada ou sinaliza o fim.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            emit();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit() {
+        while (!terminated) {
+            if (cancelled) {
+                terminalCancelled = true;
+                terminated = true;
+                fragments.clear();
+                cancelUpstream();
+                finish();
+                return;
+            }
+
+            long requested = demand.get();
+            long emitted = 0;
+            String fragment;
+            while (emitted < requested && !cancelled && (fragment = fragments.poll()) != null) {
+                downstream.onNext(fragment);
+                emitted++;
+            }
+            if (emitted > 0 && requested != Long.MAX_VALUE) {
+                demand.addAndGet(-emitted);
+            }
+            if (cancelled) {
+                continue;
+            }
+            if (!fragments.isEmpty()) {
+                return; // Espera por mais demanda
+            }
+
+            Throwable failure = error;
+            if (failure != null) {
+                terminalError = failure;
+                terminated = true;
+                cancelUpstream();
+                downstream.onError(failure);
+                finish();
+                return;
+            }
+            if (upstreamDone) {
+                terminated = true;
+                downstream.onComplete();
+                finish();
+                return;
+            }
+            if (demand.get() == 0) {
+                return;
+            }
+            if (!opened) {
+                opened = true;
+                open();
+                continue; // A abertura pode ter terminado nesta mesma thread
+            }
+            Flow.Subscription subscription = upstream;
+            if (subscription == null || upstreamPending) {
+                return; // O próximo lote ou a abertura chamam drain() de novo
+            }
+            upstreamPending = true;
+            subscription.request(1);
+            // Um lote entregue nesta mesma thread já chamou drain(), que repete esta volta
+            return;
+        }
+    }
+
+    private void open() {
+        CompletableFuture<Flow.Publisher<List<ByteBuffer>>> opening;
+        try {
+            opening = opener.open();
+        } catch (RuntimeException e) {
+            opening = CompletableFuture.failedFuture(e);
+        }
+        opening.whenComplete((body, failure) -> {
+            if (failure != null) {
+                error = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            } else {
+                body.subscribe(new BodySubscriber());
+            }
+            openSettled = true;
+            finish();
+            drain();
+        });
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Repassa o desfecho ao {@link Completion} quando o assinante já recebeu o fim e a abertura terminou, o que
+     * acontecer por último.
+     */
+    private void finish() {
+        if (terminated && openSettled && finished.compareAndSet(false, true)) {
+            completion.onFinish(terminalError, terminalCancelled);
+        }
+    }
+
+    /**
+     * Recebe os lotes do corpo SSE e os decodifica em fragmentos.
+     */
+    private final class BodySubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            upstream = subscription;
+            if (terminated || cancelled) {
+                subscription.cancel();
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (upstreamDone) {
+                return;
+            }
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    parser.feed(buffer);
+                }
+                if (decoder.isEnded()) {
+                    // Como no stream síncrono, o marcador de fim encerra a leitura sem esperar o corpo acabar
+                    timing.end();
+                    upstreamDone = true;
+                    upstream.cancel();
+                }
+            } catch (IOException e) {
+                error = e;
+                upstream.cancel();
+            }
+            upstreamPending = false;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!upstreamDone) {
+                error = throwable;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (!upstreamDone) {
+                try {
+                    if (!decoder.isEnded()) {
+                        parser.finish();
+                    }
+                    timing.end();
+                } catch (IOException e) {
+                    error = e;
+                }
+                upstreamDone = true;
+            }
+            drain();
+        }
+    }
+}
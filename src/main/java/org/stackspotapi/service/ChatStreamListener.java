@@ -0,0 +1,30 @@
+package org.stackspotapi.service;
+
+import java.io.IOException;
+
+/**
+ * Recebe os fragmentos de resposta da IA à medida que chegam pelo stream SSE do endpoint de chat.
+ */
+@FunctionalInterface
+public interface ChatStreamListener {
+
+    /**
+     * Chamado para cada fragmento de {@code answer} recebido.
+     *
+     * @param fragment O trecho de texto recebido.
+     * @throws IOException Se o consumidor não puder mais receber fragmentos (ex.: cliente desconectado).
+     *                     A exceção interrompe a leitura e fecha o stream com a StackSpot.
+     */
+    void onFragment(String fragment) throws IOException;
+
+    /**
+     * Chamado antes do primeiro fragmento quando a sessão passou para uma conversação nova (orçamento esgotado,
+     * client fora do rodízio ou conversação aposentada pela {@link RotationPolicy}): o histórico anterior da sessão
+     * não faz mais parte do contexto da IA.
+     *
+     * @param reason O motivo da troca ({@code budget}, {@code credential}, {@code latency} ou {@code context}).
+     * @throws IOException Se o consumidor não puder mais receber eventos; a chamada é abortada.
+     */
+    default void onRollover(String reason) throws IOException {
+    }
+}
@@ -0,0 +1,82 @@
+package org.stackspotapi.service;
+
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempos de uma chamada ao chat: do envio até o primeiro e o último fragmento, e o tamanho da resposta.
+ * <p>
+ * Preenchido por quem lê o stream (uma thread por vez) e lido pela {@link RotationPolicy} quando a chamada termina.
+ */
+final class ChatTiming {
+    private volatile long startNanos;
+    private volatile long firstTokenNanos = -1;
+    private volatile long endNanos = -1;
+    private volatile long answerChars;
+
+    ChatTiming() {
+    }
+
+    /**
+     * Tempos já medidos, em valores de {@link System#nanoTime()}; -1 no primeiro ou no último fragmento se não houve.
+     */
+    ChatTiming(long startNanos, long firstTokenNanos, long endNanos, long answerChars) {
+        this.startNanos = startNanos;
+        this.firstTokenNanos = firstTokenNanos;
+        this.endNanos = endNanos;
+        this.answerChars = answerChars;
+    }
+
+    /**
+     * Marca o envio da requisição ao chat.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Conta um fragmento da resposta; o primeiro também registra o tempo até o primeiro token.
+     */
+    void onFragment(String fragment) {
+        if (firstTokenNanos < 0) {
+            firstTokenNanos = System.nanoTime();
+            StackSpotMetrics.chatFirstToken(startNanos);
+        }
+        answerChars += fragment.length();
+    }
+
+    /**
+     * Marca o fim do stream e registra o tempo até o último token.
+     */
+    void end() {
+        endNanos = System.nanoTime();
+        StackSpotMetrics.chatLastToken(startNanos);
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getAnswerChars() {
+        return answerChars;
+    }
+
+    /**
+     * Tempo até o primeiro fragmento em milissegundos, ou -1 se nenhum fragmento chegou.
+     */
+    double getFirstTokenMillis() {
+        return firstTokenNanos < 0 ? -1 : (firstTokenNanos - startNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Tempo do primeiro ao último fragmento por caractere da resposta, em milissegundos, ou -1 se a resposta
+     * está vazia ou o stream não terminou.
+     */
+    double getGenerationMillisPerChar() {
+        if (firstTokenNanos < 0 || endNanos < 0 || answerChars == 0) {
+            return -1;
+        }
+        return (endNanos - firstTokenNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1) / answerChars;
+    }
+}
@@ -0,0 +1,173 @@
+package org.stackspotapi.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uma conversação da StackSpot AI com um orçamento fixo de requisições.
+ * <p>
+ * O orçamento é consumido com compare-and-set, então várias threads podem disputar a mesma
+ * conversação sem nunca ultrapassar o limite. A {@link RotationPolicy} pode aposentar a conversação antes do fim
+ * do orçamento, pelo custo medido do seu uso.
+ */
+public class Conversation {
+    private final String id;
+    private final String credential;
+    private final Instant createdAt;
+    private final AtomicInteger remaining;
+    private final AtomicReference<String> retireReason = new AtomicReference<>();
+    // Motivo pelo qual esta conversação substituiu a anterior de uma sessão, ainda não informado ao cliente
+    private final AtomicReference<String> rolloverReason = new AtomicReference<>();
+    private final AtomicInteger uses = new AtomicInteger();
+
+    // Uso medido pela RotationPolicy (protegido pelo lock da conversação)
+    private int exchanges;
+    private long contextChars;
+    private double firstTokenMillis;
+    private double generationMillisPerChar;
+
+    public Conversation(String id, int budget) {
+        this(id, budget, null);
+    }
+
+    /**
+     * @param credential Nome do client da StackSpot dono da conversação (ver {@link Credential#getName()}).
+     */
+    public Conversation(String id, int budget, String credential) {
+        this(id, budget, credential, Instant.now());
+    }
+
+    /**
+     * Recria uma conversação existente (ex.: restaurada do arquivo de estado) com o orçamento que lhe restava.
+     */
+    public Conversation(String id, int remaining, String credential, Instant createdAt) {
+        this.id = id;
+        this.credential = credential;
+        this.createdAt = createdAt;
+        this.remaining = new AtomicInteger(remaining);
+    }
+
+    /**
+     * Reserva uma requisição do orçamento da conversação.
+     *
+     * @return {@code true} se havia orçamento disponível; {@code false} se a conversação está esgotada.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = remaining.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (remaining.compareAndSet(current, current - 1)) {
+                uses.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Requisições que reservaram esta conversação neste processo.
+     */
+    int getUseCount() {
+        return uses.get();
+    }
+
+    /**
+     * Esgota o orçamento que resta, tirando a conversação de uso, e guarda o motivo.
+     *
+     * @return {@code false} se a conversação já estava esgotada.
+     */
+    boolean retire(String reason) {
+        // O motivo vem antes, para quem encontrar a conversação esgotada já o ler
+        retireReason.compareAndSet(null, reason);
+        while (true) {
+            int current = remaining.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (remaining.compareAndSet(current, 0)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * O motivo da aposentadoria antecipada, ou nulo se a conversação só gasta o orçamento.
+     */
+    String getRetireReason() {
+        return retireReason.get();
+    }
+
+    /**
+     * Marca a conversação como substituta da conversação anterior de uma sessão.
+     *
+     * @param reason O motivo da troca (ver {@link RotationPolicy}).
+     */
+    void markRollover(String reason) {
+        rolloverReason.set(reason);
+    }
+
+    /**
+     * O motivo da troca de conversação que trouxe a sessão para esta conversação, devolvido uma única vez, para só a
+     * primeira requisição nela avisar o cliente.
+     *
+     * @return O motivo, ou nulo se não houve troca ou ela já foi informada.
+     */
+    String takeRollover() {
+        return rolloverReason.getAndSet(null);
+    }
+
+    /**
+     * Acumula uma troca de prompt e resposta nas médias móveis da conversação.
+     *
+     * @param chars                   Caracteres do prompt e da resposta.
+     * @param firstTokenMillis        Tempo até o primeiro fragmento, ou negativo se não houve fragmento.
+     * @param generationMillisPerChar Tempo de geração por caractere da resposta, ou negativo se não se aplica.
+     * @param alpha                   O peso da nova amostra nas médias.
+     * @return O uso acumulado, incluindo esta troca.
+     */
+    synchronized Usage recordExchange(long chars, double firstTokenMillis, double generationMillisPerChar, double alpha) {
+        exchanges++;
+        contextChars += chars;
+        if (firstTokenMillis >= 0) {
+            this.firstTokenMillis = this.firstTokenMillis > 0 ? this.firstTokenMillis + alpha * (firstTokenMillis - this.firstTokenMillis) : firstTokenMillis;
+        }
+        if (generationMillisPerChar >= 0) {
+            this.generationMillisPerChar = this.generationMillisPerChar > 0
+                    ? this.generationMillisPerChar + alpha * (generationMillisPerChar - this.generationMillisPerChar)
+                    : generationMillisPerChar;
+        }
+        return new Usage(exchanges, contextChars, this.firstTokenMillis, this.generationMillisPerChar);
+    }
+
+    public boolean hasBudget() {
+        return remaining.get() > 0;
+    }
+
+    public int getRemaining() {
+        return remaining.get();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * O client da StackSpot que criou a conversação; as requisições nela precisam usar o token desse client.
+     */
+    public String getCredential() {
+        return credential;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * O uso acumulado de uma conversação: trocas concluídas, caracteres no contexto e as médias móveis do tempo até o
+     * primeiro fragmento e do tempo de geração por caractere (zero enquanto não houver amostra).
+     */
+    record Usage(int exchanges, long contextChars, double firstTokenMillis, double generationMillisPerChar) {
+    }
+}
@@ -0,0 +1,421 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.stackspotapi.dto.CreateExecutionRequestDto;
+import org.stackspotapi.transport.CircuitOpenException;
+import org.stackspotapi.transport.Endpoint;
+import org.stackspotapi.transport.StackSpotTransport;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pool de conversações criadas antecipadamente em segundo plano.
+ * <p>
+ * Quando o número de conversações novas prontas cai até o limite mínimo ({@code lowWater}), novas conversações
+ * são criadas até completar {@code poolSize}. Assim nenhuma requisição paga pela criação da execução e pela
+ * consulta do callback. A criação é toda assíncrona: nenhuma thread fica dormindo enquanto a execução roda.
+ * <p>
+ * As conversações novas são usadas de duas formas: as requisições sem sessão compartilham um rodízio de até
+ * {@code sharedWidth} conversações, cada uma com seu próprio orçamento, e as sessões recebem uma conversação
+ * exclusiva via {@link #takeExclusive(int)}. Conversações esgotadas, ou aposentadas pela {@link RotationPolicy}, são
+ * retiradas do rodízio.
+ */
+public class ConversationPool {
+    private static final Logger log = LoggerFactory.getLogger(ConversationPool.class);
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final String WARMUP_SLUG = "query.java";
+    private static final long MAX_FAILURE_BACKOFF_MS = 30_000;
+    private static final String EMPTY_POOL_MESSAGE = "Nenhuma conversação disponível no pool dentro do prazo.";
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "conversation-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String credential;
+    private final TokenManager tokenManager;
+    private final PollingSchedule pollingSchedule;
+    private final int poolSize;
+    private final int lowWater;
+    private final int requestBudget;
+    private final int sharedWidth;
+    private final long acquireTimeoutMs;
+    private final String warmupPrompt;
+
+    // Conversações novas, ainda sem uso
+    private final BlockingDeque<Conversation> ready = new LinkedBlockingDeque<>();
+    // Conversações em rodízio para as requisições sem sessão
+    private final BlockingDeque<Conversation> shared = new LinkedBlockingDeque<>();
+    // Requisições assíncronas esperando uma conversação nova enquanto o pool está vazio
+    private final Queue<CompletableFuture<Conversation>> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger creating = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // Fim do backoff depois de uma falha na criação (System.nanoTime()), válido enquanto refillPaused
+    private volatile long refillResumeAt;
+    private volatile boolean refillPaused;
+    private volatile Consumer<UpstreamUnavailableException> quotaListener = error -> {
+    };
+
+    /**
+     * @param credential   Nome do client da StackSpot cujo token cria as conversações (ver {@link Credential}).
+     * @param tokenManager O gerenciador do token desse client.
+     */
+    public ConversationPool(String credential, TokenManager tokenManager, PollingSchedule pollingSchedule, int poolSize, int lowWater,
+                            int requestBudget, int sharedWidth, long acquireTimeoutMs, String warmupPrompt) {
+        if (poolSize < 1 || requestBudget < 1 || sharedWidth < 1) {
+            throw new IllegalArgumentException("poolSize, requestBudget e sharedWidth devem ser >= 1");
+        }
+        this.credential = credential;
+        this.tokenManager = tokenManager;
+        this.pollingSchedule = pollingSchedule;
+        this.poolSize = poolSize;
+        this.lowWater = Math.min(Math.max(lowWater, 0), poolSize - 1);
+        this.requestBudget = requestBudget;
+        this.sharedWidth = sharedWidth;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.warmupPrompt = warmupPrompt;
+    }
+
+    /**
+     * Cria um pool configurado pelas chaves CONVERSATION_POOL_* do .env para um client da StackSpot.
+     */
+    public static ConversationPool fromEnv(String credential, TokenManager tokenManager) {
+        return new ConversationPool(
+                credential,
+                tokenManager,
+                PollingSchedule.fromEnv(),
+                Integer.parseInt(dotenv.get("CONVERSATION_POOL_SIZE", "4")),
+                Integer.parseInt(dotenv.get("CONVERSATION_POOL_LOW_WATER", "2")),
+                Integer.parseInt(dotenv.get("CONVERSATION_REQUEST_BUDGET", "10")),
+                Integer.parseInt(dotenv.get("CONVERSATION_SHARED_WIDTH", "2")),
+                Long.parseLong(dotenv.get("CONVERSATION_ACQUIRE_TIMEOUT_MS", "35000")),
+                dotenv.get("CONVERSATION_WARMUP_PROMPT", "Olá")
+        );
+    }
+
+    /**
+     * Começa a criar as conversações iniciais em segundo plano.
+     */
+    public void start() {
+        refillIfNeeded();
+    }
+
+    /**
+     * Registra quem deve ser avisado quando a criação de uma conversação esbarra na cota do client (429).
+     */
+    public void onQuotaExceeded(Consumer<UpstreamUnavailableException> listener) {
+        this.quotaListener = listener;
+    }
+
+    /**
+     * Reserva uma requisição em uma das conversações compartilhadas, esperando apenas se o pool estiver vazio.
+     *
+     * @return A conversação a ser usada nesta requisição.
+     * @throws IOException          Se nenhuma conversação ficar pronta dentro do prazo configurado.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public Conversation acquire() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        while (true) {
+            Conversation conversation = pollShared();
+            if (conversation == null) {
+                conversation = takeFresh(deadline);
+            }
+            if (claimShared(conversation)) {
+                return conversation;
+            }
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #acquire()}: quando o pool está vazio, o future é completado assim que uma
+     * conversação ficar pronta, sem ocupar a thread chamadora.
+     *
+     * @return Um future com a conversação, ou completado com {@link IOException} se o prazo se esgotar.
+     */
+    public CompletableFuture<Conversation> acquireAsync() {
+        while (true) {
+            Conversation conversation = pollShared();
+            if (conversation == null) {
+                return takeFreshAsync().thenCompose(fresh -> claimShared(fresh) ? CompletableFuture.completedFuture(fresh) : acquireAsync());
+            }
+            if (claimShared(conversation)) {
+                return CompletableFuture.completedFuture(conversation);
+            }
+        }
+    }
+
+    /**
+     * Retira do pool uma conversação nova, que passa a pertencer exclusivamente ao chamador.
+     *
+     * @param budget O orçamento de requisições da conversação entregue.
+     * @return Uma conversação ainda não usada, com o orçamento informado.
+     * @throws IOException          Se nenhuma conversação ficar pronta dentro do prazo configurado.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public Conversation takeExclusive(int budget) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        Conversation fresh = takeFresh(deadline);
+        refillIfNeeded();
+        return new Conversation(fresh.getId(), budget, credential);
+    }
+
+    /**
+     * Versão assíncrona de {@link #takeExclusive(int)}.
+     */
+    public CompletableFuture<Conversation> takeExclusiveAsync(int budget) {
+        return takeFreshAsync().thenApply(fresh -> {
+            refillIfNeeded();
+            return new Conversation(fresh.getId(), budget, credential);
+        });
+    }
+
+    /**
+     * Devolve ao pool conversações ainda válidas de uma execução anterior (ex.: restauradas do arquivo de estado).
+     * Deve ser chamado antes de {@link #start()}, para que o pool não crie conversações que já tem.
+     *
+     * @param fresh  Conversações ainda sem uso.
+     * @param inUse  Conversações que estavam no rodízio compartilhado, com o orçamento que lhes restava.
+     */
+    public void restore(List<Conversation> fresh, List<Conversation> inUse) {
+        for (Conversation conversation : fresh) {
+            if (ready.size() < poolSize && conversation.hasBudget()) {
+                ready.offerLast(conversation);
+            }
+        }
+        for (Conversation conversation : inUse) {
+            if (shared.size() < sharedWidth && conversation.hasBudget()) {
+                shared.offerLast(conversation);
+            }
+        }
+    }
+
+    /**
+     * Cópia das conversações novas prontas no pool.
+     */
+    public List<Conversation> getReadyConversations() {
+        return List.copyOf(ready);
+    }
+
+    /**
+     * Cópia das conversações no rodízio compartilhado.
+     */
+    public List<Conversation> getSharedConversations() {
+        return List.copyOf(shared);
+    }
+
+    /**
+     * O orçamento padrão de requisições por conversação.
+     */
+    public int getRequestBudget() {
+        return requestBudget;
+    }
+
+    /**
+     * Número de conversações novas prontas no pool.
+     */
+    public int getReadyCount() {
+        return ready.size();
+    }
+
+    /**
+     * Número de conversações no rodízio compartilhado.
+     */
+    public int getSharedCount() {
+        return shared.size();
+    }
+
+    /**
+     * Número de conversações sendo criadas neste momento.
+     */
+    public int getCreatingCount() {
+        return creating.get();
+    }
+
+    private Conversation pollShared() {
+        // Promove uma conversação nova ao rodízio enquanto ele estiver abaixo da largura configurada
+        Conversation conversation = shared.size() < sharedWidth ? ready.pollFirst() : null;
+        return conversation != null ? conversation : shared.pollFirst();
+    }
+
+    /**
+     * Consome uma requisição do orçamento e devolve a conversação ao fim do rodízio, ou a retira se esgotou.
+     *
+     * @return {@code false} se a conversação já não tinha orçamento (ela fica fora do pool).
+     */
+    private boolean claimShared(Conversation conversation) {
+        if (!conversation.tryAcquire()) {
+            // Só volta ao rodízio com orçamento; sem ele, foi aposentada pela RotationPolicy enquanto estava lá
+            String reason = conversation.getRetireReason();
+            if (reason != null) {
+                StackSpotMetrics.conversationRotation("shared", reason, conversation.getUseCount());
+                log.debug("Conversação {} aposentada ({}) e retirada do pool.", conversation.getId(), reason);
+                refillIfNeeded();
+            }
+            return false;
+        }
+        if (conversation.hasBudget()) {
+            shared.offerLast(conversation);
+        } else {
+            StackSpotMetrics.conversationRotation("shared", RotationPolicy.REASON_BUDGET, conversation.getUseCount());
+            log.debug("Conversação {} esgotou o orçamento e foi retirada do pool.", conversation.getId());
+        }
+        refillIfNeeded();
+        return true;
+    }
+
+    private Conversation takeFresh(long deadline) throws IOException, InterruptedException {
+        while (true) {
+            Conversation conversation = ready.pollFirst();
+            if (conversation != null) {
+                return conversation;
+            }
+            refillIfNeeded();
+            CircuitOpenException open = StackSpotTransport.circuitOpen(Endpoint.QUICK_COMMANDS);
+            if (open != null) {
+                throw open;
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new IOException(EMPTY_POOL_MESSAGE);
+            }
+            conversation = ready.pollFirst(remainingNanos, TimeUnit.NANOSECONDS);
+            if (conversation != null) {
+                return conversation;
+            }
+        }
+    }
+
+    private CompletableFuture<Conversation> takeFreshAsync() {
+        Conversation conversation = ready.pollFirst();
+        if (conversation != null) {
+            return CompletableFuture.completedFuture(conversation);
+        }
+        // Com o circuito dos quick commands aberto nenhuma conversação nova fica pronta; esperar o prazo seria inútil
+        CircuitOpenException open = StackSpotTransport.circuitOpen(Endpoint.QUICK_COMMANDS);
+        if (open != null) {
+            return CompletableFuture.failedFuture(open);
+        }
+
+        CompletableFuture<Conversation> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        waiter.orTimeout(acquireTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            if (error != null) {
+                waiters.remove(waiter);
+            }
+        });
+        refillIfNeeded();
+        // Uma conversação pode ter ficado pronta entre o pollFirst e o registro do waiter
+        drainWaiters();
+
+        return waiter.exceptionallyCompose(error -> CompletableFuture.failedFuture(error instanceof TimeoutException
+                ? new CompletionException(new IOException(EMPTY_POOL_MESSAGE))
+                : error));
+    }
+
+    private void drainWaiters() {
+        while (!waiters.isEmpty()) {
+            Conversation conversation = ready.pollFirst();
+            if (conversation == null) {
+                return;
+            }
+            CompletableFuture<Conversation> waiter;
+            do {
+                waiter = waiters.poll();
+            } while (waiter != null && !waiter.complete(conversation)); // Ignora waiters que já expiraram
+            if (waiter == null) {
+                ready.offerFirst(conversation);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Agenda a criação de conversações até o pool voltar acima do nível mínimo. Não faz nada durante o backoff que
+     * segue uma falha na criação, qualquer que seja o caminho que chamou.
+     */
+    private void refillIfNeeded() {
+        while (true) {
+            // Verificado a cada volta: uma criação pode falhar no scheduler enquanto este laço ainda agenda outras
+            if (refillPaused) {
+                if (System.nanoTime() - refillResumeAt < 0) {
+                    return;
+                }
+                refillPaused = false;
+            }
+            int inProgress = creating.get();
+            int readyCount = ready.size();
+            if (readyCount > lowWater || readyCount + inProgress >= poolSize) {
+                return;
+            }
+            if (creating.compareAndSet(inProgress, inProgress + 1)) {
+                scheduler.execute(this::bootstrapOne);
+            }
+        }
+    }
+
+    private void bootstrapOne() {
+        bootstrapAsync()
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof UpstreamUnavailableException unavailable && unavailable.isQuotaExceeded()) {
+                        quotaListener.accept(unavailable);
+                    } else {
+                        log.warn("Erro inesperado ao criar conversação: {}", cause.getMessage());
+                    }
+                    return null;
+                })
+                .thenAccept(conversation -> {
+                    creating.decrementAndGet();
+                    if (conversation != null) {
+                        consecutiveFailures.set(0);
+                        refillPaused = false;
+                        ready.offerLast(conversation);
+                        log.debug("Conversação {} pronta no pool ({}/{}).", conversation.getId(), ready.size(), poolSize);
+                        drainWaiters();
+                        refillIfNeeded();
+                    } else {
+                        // Backoff exponencial para não martelar a API enquanto ela está falhando
+                        int failures = consecutiveFailures.incrementAndGet();
+                        long backoff = Math.min(MAX_FAILURE_BACKOFF_MS, 500L << Math.min(failures, 16));
+                        refillResumeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+                        refillPaused = true;
+                        scheduler.schedule(this::refillIfNeeded, backoff, TimeUnit.MILLISECONDS);
+                    }
+                });
+    }
+
+    private CompletableFuture<Conversation> bootstrapAsync() {
+        return tokenManager.getTokenAsync().thenCompose(token -> {
+            if (token == null) {
+                log.warn("Sem token para criar conversação no pool.");
+                return CompletableFuture.completedFuture(null);
+            }
+            CreateExecutionRequestDto execRequest = new CreateExecutionRequestDto(WARMUP_SLUG, warmupPrompt);
+            return ExecutionService.createExecutionAsync(execRequest, token)
+                    .thenCompose(execResponse -> execResponse == null
+                            ? CompletableFuture.completedFuture(null)
+                            : ExecutionService.awaitConversationIdAsync(execResponse.getExecutionId(), token, pollingSchedule))
+                    .thenApply(conversationId -> conversationId != null ? new Conversation(conversationId, requestBudget, credential) : null);
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Um client da StackSpot (realm, client ID e secret) com o peso usado na distribuição das requisições.
+ * <p>
+ * O client principal vem de {@code STACKSPOT_REALM}/{@code STACKSPOT_CLIENT_ID}/{@code STACKSPOT_CLIENT_SECRET};
+ * clients adicionais usam as mesmas chaves com sufixo numérico a partir de 2 ({@code STACKSPOT_CLIENT_ID_2},
+ * {@code STACKSPOT_CLIENT_SECRET_2}, ...), herdando o realm principal se {@code STACKSPOT_REALM_<n>} não for informado.
+ */
+public final class Credential {
+    private static final Dotenv dotenv = Dotenv.load();
+    // Limite da varredura das chaves numeradas; uma lacuna na numeração encerra a lista
+    private static final int MAX_CREDENTIALS = 64;
+
+    private final String name;
+    private final String realm;
+    private final String clientId;
+    private final String clientSecret;
+    private final int weight;
+
+    public Credential(String name, String realm, String clientId, String clientSecret, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight deve ser >= 1");
+        }
+        this.name = name;
+        this.realm = realm;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.weight = weight;
+    }
+
+    /**
+     * O client principal configurado no .env (pode estar incompleto).
+     */
+    public static Credential primary() {
+        return new Credential("1", dotenv.get("STACKSPOT_REALM"), dotenv.get("STACKSPOT_CLIENT_ID"),
+                dotenv.get("STACKSPOT_CLIENT_SECRET"), Integer.parseInt(dotenv.get("STACKSPOT_CLIENT_WEIGHT", "1")));
+    }
+
+    /**
+     * Todos os clients configurados no .env, começando pelo principal.
+     */
+    public static List<Credential> fromEnv() {
+        List<Credential> credentials = new ArrayList<>();
+        Credential primary = primary();
+        credentials.add(primary);
+        for (int i = 2; i <= MAX_CREDENTIALS; i++) {
+            String clientId = dotenv.get("STACKSPOT_CLIENT_ID_" + i);
+            if (clientId == null || clientId.isBlank()) {
+                break;
+            }
+            credentials.add(new Credential(String.valueOf(i),
+                    dotenv.get("STACKSPOT_REALM_" + i, primary.realm),
+                    clientId,
+                    dotenv.get("STACKSPOT_CLIENT_SECRET_" + i),
+                    Integer.parseInt(dotenv.get("STACKSPOT_CLIENT_WEIGHT_" + i, "1"))));
+        }
+        return credentials;
+    }
+
+    /**
+     * Indica se realm, client ID e secret estão preenchidos.
+     */
+    public boolean isComplete() {
+        return realm != null && !realm.isBlank() && clientId != null && !clientId.isBlank()
+                && clientSecret != null && !clientSecret.isBlank();
+    }
+
+    /**
+     * Resumo (SHA-256) do realm e do client ID, para reconhecer o mesmo client entre reinícios sem gravar o client ID.
+     */
+    public String fingerprint() {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest((realm + "\n" + clientId).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    /**
+     * Identificador do client nas métricas e nos logs (nunca o client ID nem o secret).
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getClientSecret() {
+        return clientSecret;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return "Credential{" + name + "}";
+    }
+}
@@ -0,0 +1,220 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distribui as requisições entre os clients da StackSpot configurados (ver {@link Credential}), para que a vazão
+ * total não fique presa à cota de um único client.
+ * <p>
+ * Cada client é um {@link CredentialSlot} com token e conversações próprios. Uma requisição sem sessão escolhe um
+ * client disponível por menos requisições em andamento (ponderado pelo peso do client) ou por round robin
+ * ponderado, conforme {@code CREDENTIAL_BALANCING}; uma requisição de sessão fica no client da conversação da sessão.
+ * Clients fora do rodízio (cota esgotada ou autenticação falhando) não são escolhidos; se nenhum está disponível, a
+ * requisição falha na hora com {@link UpstreamUnavailableException}.
+ */
+public class CredentialPool {
+    private static final Logger log = LoggerFactory.getLogger(CredentialPool.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    /**
+     * Como escolher o client de uma requisição nova.
+     */
+    public enum Balancing {
+        LEAST_OUTSTANDING, WEIGHTED_ROUND_ROBIN
+    }
+
+    private final List<CredentialSlot> slots;
+    private final Map<String, CredentialSlot> slotsByName = new LinkedHashMap<>();
+    private final Balancing balancing;
+    // Desempate da escolha por menos requisições, para não favorecer sempre o primeiro client
+    private final AtomicInteger rotation = new AtomicInteger();
+    // Estado do round robin ponderado suave (protegido pelo lock do pool)
+    private final int[] currentWeights;
+
+    public CredentialPool(List<CredentialSlot> slots, Balancing balancing) {
+        if (slots.isEmpty()) {
+            throw new IllegalArgumentException("É preciso pelo menos um client da StackSpot");
+        }
+        this.slots = List.copyOf(slots);
+        this.balancing = balancing;
+        this.currentWeights = new int[slots.size()];
+        for (CredentialSlot slot : slots) {
+            slotsByName.put(slot.getCredential().getName(), slot);
+        }
+    }
+
+    /**
+     * Cria um pool com os clients do .env, balanceados por {@code CREDENTIAL_BALANCING}.
+     */
+    public static CredentialPool fromEnv() {
+        List<CredentialSlot> slots = new ArrayList<>();
+        for (Credential credential : Credential.fromEnv()) {
+            slots.add(new CredentialSlot(credential));
+        }
+        Balancing balancing = Balancing.valueOf(dotenv.get("CREDENTIAL_BALANCING", Balancing.LEAST_OUTSTANDING.name()));
+        log.info("{} client(s) da StackSpot configurado(s), balanceamento {}.", slots.size(), balancing);
+        return new CredentialPool(slots, balancing);
+    }
+
+    /**
+     * Obtém os tokens e começa a criar as conversações de todos os clients em segundo plano.
+     */
+    public void start() {
+        slots.forEach(CredentialSlot::start);
+    }
+
+    /**
+     * Escolhe um client para uma requisição nova.
+     *
+     * @throws UpstreamUnavailableException Se nenhum client está no rodízio, com o tempo até o primeiro voltar.
+     */
+    public CredentialSlot pick() throws UpstreamUnavailableException {
+        CredentialSlot picked = balancing == Balancing.WEIGHTED_ROUND_ROBIN ? pickWeighted() : pickLeastOutstanding();
+        if (picked == null) {
+            Duration retryAfter = slots.stream().map(CredentialSlot::getRemainingEjection).min(Duration::compareTo).orElse(Duration.ZERO);
+            throw new UpstreamUnavailableException("Nenhum client da StackSpot disponível no momento.", retryAfter);
+        }
+        return picked;
+    }
+
+    /**
+     * Reserva uma requisição em uma conversação compartilhada de um client escolhido por {@link #pick()}. A
+     * requisição conta como em andamento no client até {@link #end(Conversation, Throwable)}.
+     */
+    public Conversation acquire() throws IOException, InterruptedException {
+        CredentialSlot slot = pick();
+        slot.begin();
+        try {
+            return slot.getConversationPool().acquire();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            slot.end(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #acquire()}.
+     */
+    public CompletableFuture<Conversation> acquireAsync() {
+        CredentialSlot slot;
+        try {
+            slot = pick();
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        slot.begin();
+        return slot.getConversationPool().acquireAsync().whenComplete((conversation, error) -> {
+            if (error != null) {
+                slot.end(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+    }
+
+    /**
+     * Marca o início de uma requisição na conversação de uma sessão, no client dono da conversação.
+     *
+     * @return A própria conversação.
+     */
+    public Conversation begin(Conversation conversation) {
+        slotFor(conversation).begin();
+        return conversation;
+    }
+
+    /**
+     * Marca o fim de uma requisição iniciada com {@link #acquire()} ou {@link #begin(Conversation)}.
+     */
+    public void end(Conversation conversation, Throwable error) {
+        slotFor(conversation).end(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+    }
+
+    /**
+     * O client dono da conversação (o primeiro client para conversações sem dono).
+     */
+    public CredentialSlot slotFor(Conversation conversation) {
+        CredentialSlot slot = conversation.getCredential() != null ? slotsByName.get(conversation.getCredential()) : null;
+        return slot != null ? slot : slots.get(0);
+    }
+
+    /**
+     * O client com esse nome, ou nulo se ele não estiver configurado.
+     */
+    public CredentialSlot getSlot(String name) {
+        return slotsByName.get(name);
+    }
+
+    /**
+     * Indica se o client dono da conversação está no rodízio.
+     */
+    public boolean isAvailable(Conversation conversation) {
+        return slotFor(conversation).isAvailable();
+    }
+
+    /**
+     * O orçamento padrão de requisições por conversação.
+     */
+    public int getRequestBudget() {
+        return slots.get(0).getConversationPool().getRequestBudget();
+    }
+
+    public List<CredentialSlot> getSlots() {
+        return slots;
+    }
+
+    private CredentialSlot pickLeastOutstanding() {
+        int size = slots.size();
+        int offset = Math.floorMod(rotation.getAndIncrement(), size);
+        CredentialSlot best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            CredentialSlot slot = slots.get((offset + i) % size);
+            if (!slot.isAvailable()) {
+                continue;
+            }
+            double load = (double) slot.getOutstanding() / slot.getCredential().getWeight();
+            if (load < bestLoad) {
+                best = slot;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Round robin ponderado suave: a cada escolha, todo client disponível soma o seu peso, o maior vence e perde o
+     * total. Clients de peso 3 e 1 recebem a sequência A A B A, sem rajadas para o mais pesado.
+     */
+    private synchronized CredentialSlot pickWeighted() {
+        int total = 0;
+        int bestIndex = -1;
+        for (int i = 0; i < slots.size(); i++) {
+            CredentialSlot slot = slots.get(i);
+            if (!slot.isAvailable()) {
+                continue;
+            }
+            int weight = slot.getCredential().getWeight();
+            currentWeights[i] += weight;
+            total += weight;
+            if (bestIndex < 0 || currentWeights[i] > currentWeights[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        if (bestIndex < 0) {
+            return null;
+        }
+        currentWeights[bestIndex] -= total;
+        return slots.get(bestIndex);
+    }
+}
@@ -0,0 +1,142 @@
+package org.stackspotapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.dto.EnsureDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Um client da StackSpot com o seu próprio token ({@link TokenManager}) e as suas próprias conversações
+ * ({@link ConversationPool}), mais o estado usado pelo {@link CredentialPool} para distribuir as requisições.
+ * <p>
+ * O client sai do rodízio quando a StackSpot esgota a sua cota (429), até o fim do {@code Retry-After}, ou quando a
+ * autenticação falha sem um token válido em mãos, com espera crescente. No fim de uma exclusão por autenticação,
+ * uma renovação do token testa o client antes de ele voltar a receber requisições.
+ */
+public class CredentialSlot {
+    private static final Logger log = LoggerFactory.getLogger(CredentialSlot.class);
+    private static final long MIN_AUTH_BACKOFF_MS = 5_000;
+    private static final long MAX_AUTH_BACKOFF_MS = 300_000;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "credential-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Credential credential;
+    private final TokenManager tokenManager;
+    private final ConversationPool conversationPool;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger authFailures = new AtomicInteger();
+    private volatile long ejectedUntilNanos = System.nanoTime();
+
+    public CredentialSlot(Credential credential) {
+        this(credential, ConversationPool::fromEnv);
+    }
+
+    /**
+     * @param poolFactory Cria o pool de conversações a partir do nome do client e do seu token.
+     */
+    CredentialSlot(Credential credential, BiFunction<String, TokenManager, ConversationPool> poolFactory) {
+        this.credential = credential;
+        this.tokenManager = new TokenManager(this::fetchToken);
+        this.conversationPool = poolFactory.apply(credential.getName(), tokenManager);
+        conversationPool.onQuotaExceeded(this::onQuotaExceeded);
+    }
+
+    /**
+     * Obtém o primeiro token, se nenhum foi restaurado, e começa a criar as conversações em segundo plano.
+     */
+    public void start() {
+        if (!tokenManager.hasUsableToken()) {
+            tokenManager.refreshAsync();
+        }
+        conversationPool.start();
+    }
+
+    /**
+     * Indica se o client pode receber requisições agora.
+     */
+    public boolean isAvailable() {
+        return System.nanoTime() - ejectedUntilNanos >= 0;
+    }
+
+    /**
+     * Tempo até o client voltar ao rodízio (zero se já está disponível).
+     */
+    public Duration getRemainingEjection() {
+        return Duration.ofNanos(Math.max(0, ejectedUntilNanos - System.nanoTime()));
+    }
+
+    /**
+     * Marca o início de uma requisição neste client.
+     */
+    void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Marca o fim de uma requisição iniciada com {@link #begin()}. Um 429 tira o client do rodízio.
+     */
+    void end(Throwable error) {
+        outstanding.decrementAndGet();
+        if (error instanceof UpstreamUnavailableException unavailable && unavailable.isQuotaExceeded()) {
+            onQuotaExceeded(unavailable);
+        }
+    }
+
+    private void onQuotaExceeded(UpstreamUnavailableException error) {
+        eject(error.getRetryAfter(), "throttled");
+    }
+
+    private EnsureDto fetchToken() {
+        EnsureDto token = EnsureTokenService.fetchToken(credential);
+        if (token != null) {
+            authFailures.set(0);
+        } else if (!tokenManager.hasUsableToken()) {
+            // Sem token nenhuma requisição deste client funciona; testa de novo depois da exclusão
+            int failures = authFailures.incrementAndGet();
+            long backoffMs = Math.min(MAX_AUTH_BACKOFF_MS, MIN_AUTH_BACKOFF_MS << Math.min(failures - 1, 16));
+            eject(Duration.ofMillis(backoffMs), "auth");
+            scheduler.schedule(tokenManager::refreshAsync, backoffMs, TimeUnit.MILLISECONDS);
+        }
+        return token;
+    }
+
+    private void eject(Duration duration, String reason) {
+        long until = System.nanoTime() + duration.toNanos();
+        if (until - ejectedUntilNanos > 0) {
+            ejectedUntilNanos = until;
+        }
+        StackSpotMetrics.credentialEjection(credential.getName(), reason);
+        log.warn("Client {} da StackSpot fora do rodízio por {} ms ({}).", credential.getName(), duration.toMillis(), reason);
+    }
+
+    public Credential getCredential() {
+        return credential;
+    }
+
+    public TokenManager getTokenManager() {
+        return tokenManager;
+    }
+
+    public ConversationPool getConversationPool() {
+        return conversationPool;
+    }
+
+    /**
+     * Requisições em andamento neste client.
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+}
@@ -3,14 +3,16 @@ package org.stackspotapi.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stackspotapi.dto.CreateExecutionRequestDto;
 import org.stackspotapi.dto.CreateExecutionResponseDto;
 import org.stackspotapi.dto.EnsureDto;
+import org.stackspotapi.transport.Endpoint;
+import org.stackspotapi.transport.StackSpotTransport;
 
 import java.io.IOException;
-import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -19,10 +21,11 @@ import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static org.stackspotapi.service.ExecutionService.awaitConversationId;
 import static org.stackspotapi.service.ExecutionService.createExecution;
-import static org.stackspotapi.service.ExecutionService.getConversationId;
 
 public class EnsureTokenService {
+    private static final Logger log = LoggerFactory.getLogger(EnsureTokenService.class);
     // Configurações carregadas do .env permanecem estáticas e finais
     private static final Dotenv dotenv = Dotenv.load( );
     private static final String REALM = dotenv.get("STACKSPOT_REALM");
@@ -30,7 +33,6 @@ public class EnsureTokenService {
     private static final String CLIENT_SECRET = dotenv.get("STACKSPOT_CLIENT_SECRET");
 
     // Utilitários reutilizáveis
-    private static final HttpClient httpClient = HttpClient.newHttpClient( );
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -42,7 +44,7 @@ public class EnsureTokenService {
     public static EnsureDto ensureValidToken(EnsureDto currentTokenDto) { // CORREÇÃO 1: O parâmetro agora é do tipo EnsureDto
         // 1. Verifica se as credenciais essenciais estão configuradas
         if (REALM == null || REALM.isBlank() || CLIENT_ID == null || CLIENT_ID.isBlank() || CLIENT_SECRET == null || CLIENT_SECRET.isBlank()) {
-            System.err.println("Credenciais da StackSpot (REALM, CLIENT_ID, CLIENT_SECRET) não configuradas no .env!");
+            log.error("Credenciais da StackSpot (REALM, CLIENT_ID, CLIENT_SECRET) não configuradas no .env!");
             return null;
         }
 
@@ -51,32 +53,44 @@ public class EnsureTokenService {
         if (currentTokenDto != null && currentTokenDto.getJwt() != null && !currentTokenDto.getJwt().isBlank() && currentTokenDto.getTokenExpiry() != null) {
             Instant safeExpiryTime = currentTokenDto.getTokenExpiry().minus(5, ChronoUnit.MINUTES);
             if (Instant.now().isBefore(safeExpiryTime)) {
-                System.out.println("Token JWT do DTO ainda é válido. Nenhuma ação necessária.");
+                log.debug("Token JWT do DTO ainda é válido. Nenhuma ação necessária.");
                 return currentTokenDto; // Retorna o mesmo DTO, pois ele ainda é válido
             }
         }
 
         // 3. Se não há token ou se ele está prestes a expirar, obtém um novo.
-        System.out.println("Token inválido, expirado ou prestes a expirar. Obtendo um novo token...");
+        log.debug("Token inválido, expirado ou prestes a expirar. Obtendo um novo token...");
+        return fetchToken(Credential.primary());
+    }
+
+    /**
+     * Solicita um novo token para um client específico (ver {@link CredentialPool}).
+     *
+     * @return Um DTO com o novo token e sua expiração, ou nulo se a autenticação falhar.
+     */
+    public static EnsureDto fetchToken(Credential credential) {
+        if (!credential.isComplete()) {
+            log.error("Credenciais da StackSpot (REALM, CLIENT_ID, CLIENT_SECRET) do client {} não configuradas no .env!", credential.getName());
+            return null;
+        }
 
         try {
             // A lógica de requisição permanece a mesma
             Map<String, String> payloadMap = Map.of(
-                    "client_id", CLIENT_ID,
-                    "client_secret", CLIENT_SECRET,
+                    "client_id", credential.getClientId(),
+                    "client_secret", credential.getClientSecret(),
                     "grant_type", "client_credentials"
             );
             String formUrlEncodedPayload = payloadMap.entrySet().stream()
                     .map(entry -> entry.getKey() + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
                     .collect(Collectors.joining("&"));
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(String.format("https://auth.stackspot.com/realms/%s/protocol/openid-connect/token", REALM )))
+            HttpRequest request = StackSpotTransport.authRequest(String.format("/realms/%s/protocol/openid-connect/token", credential.getRealm()))
                     .header("Content-Type", "application/x-www-form-urlencoded")
                     .POST(HttpRequest.BodyPublishers.ofString(formUrlEncodedPayload))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString( ));
+            HttpResponse<String> response = StackSpotTransport.send(Endpoint.AUTH, request, HttpResponse.BodyHandlers.ofString( ));
 
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 JsonNode responseBody = objectMapper.readTree(response.body());
@@ -86,15 +100,18 @@ public class EnsureTokenService {
                 long expiresIn = responseBody.get("expires_in").asLong(3600);
                 Instant newExpiry = Instant.now().plusSeconds(expiresIn);
 
-                System.out.println("Token JWT obtido com sucesso. Expira em: " + newExpiry);
+                log.info("Token JWT obtido com sucesso. Expira em: {}", newExpiry);
                 return new EnsureDto(newJwt, newExpiry); // Retorna o novo DTO
             } else {
-                System.err.printf("Erro ao obter token JWT. Status: %d, Resposta: %s%n", response.statusCode(), response.body());
+                log.warn("Erro ao obter token JWT. Status: {}, Resposta: {}", response.statusCode(), response.body());
                 return null; // Falha na autenticação
             }
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Erro de comunicação ou interrupção ao obter token JWT: " + e.getMessage());
+        } catch (IOException e) {
+            log.warn("Erro de comunicação ao obter token JWT: {}", e.getMessage());
+            return null; // Falha na autenticação
+        } catch (InterruptedException e) {
+            log.warn("Interrupção ao obter token JWT: {}", e.getMessage());
             Thread.currentThread().interrupt(); // Boa prática ao capturar InterruptedException
             return null; // Falha na autenticação
         }
@@ -130,10 +147,7 @@ public class EnsureTokenService {
 
         // --- PASSO 3: OBTER O CONVERSATION ID ---
         System.out.println("\n--- Passo 3: Obtendo o ID da conversação ---");
-        System.out.println("Aguardando 5 segundos para a IA processar...");
-        Thread.sleep(5000); // Espera simulada
-
-        String conversationId = getConversationId(executionId, tokenState);
+        String conversationId = awaitConversationId(executionId, tokenState, PollingSchedule.fromEnv());
 
         if (conversationId != null) {
             System.out.println("SUCESSO! O ID da conversação é: " + conversationId);
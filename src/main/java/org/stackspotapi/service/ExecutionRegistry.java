@@ -0,0 +1,272 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.dto.GetConversationResponseDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registro em memória das execuções de quick commands disparadas por {@link QuickCommandService}, com um único
+ * agendador que consulta o callback de todas as execuções pendentes.
+ * <p>
+ * Em vez de uma thread ou tarefa agendada por execução, as execuções ficam em uma fila ordenada pela próxima consulta.
+ * A cada {@code EXECUTIONS_POLL_TICK_MS} o agendador dispara as consultas vencidas, com no máximo
+ * {@code EXECUTIONS_MAX_INFLIGHT_POLLS} em andamento, e reagenda cada execução pela agenda {@code EXECUTIONS_POLL_*}.
+ * <p>
+ * Cabem {@code EXECUTIONS_MAX_PENDING} execuções em andamento. As terminadas ficam disponíveis por
+ * {@code EXECUTIONS_RETENTION_SECONDS}, no máximo {@code EXECUTIONS_MAX_RETAINED}, e são descartadas da mais antiga.
+ */
+final class ExecutionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionRegistry.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    // Status informados antes da primeira consulta e quando a execução passa do prazo sem terminar
+    static final String STATUS_CREATED = "CREATED";
+    static final String STATUS_TIMEOUT = "TIMEOUT";
+
+    private final PollingSchedule schedule;
+    private final int maxPending;
+    private final int maxRetained;
+    private final long retentionNanos;
+    private final int maxInflightPolls;
+
+    private final ConcurrentHashMap<String, Execution> executions = new ConcurrentHashMap<>();
+    // Execuções pendentes que não têm consulta em andamento, pela hora da próxima consulta
+    private final DelayQueue<Execution> due = new DelayQueue<>();
+    // Execuções terminadas, da mais antiga para a mais nova; só a thread do agendador remove
+    private final ConcurrentLinkedQueue<Execution> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger retained = new AtomicInteger();
+    private final AtomicInteger inflightPolls = new AtomicInteger();
+
+    ExecutionRegistry(PollingSchedule schedule, int maxPending, int maxRetained, Duration retention, int maxInflightPolls,
+                      Duration tick) {
+        this.schedule = schedule;
+        this.maxPending = Math.max(1, maxPending);
+        this.maxRetained = Math.max(0, maxRetained);
+        this.retentionNanos = retention.toNanos();
+        this.maxInflightPolls = Math.max(1, maxInflightPolls);
+
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "execution-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMs = Math.max(10L, tick.toMillis());
+        poller.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cria o registro configurado pelas chaves EXECUTIONS_* do .env.
+     */
+    static ExecutionRegistry fromEnv() {
+        return new ExecutionRegistry(
+                PollingSchedule.fromEnv("EXECUTIONS_POLL_", 500, 1.5, 5000, 0.2, 300000),
+                Integer.parseInt(dotenv.get("EXECUTIONS_MAX_PENDING", "5000")),
+                Integer.parseInt(dotenv.get("EXECUTIONS_MAX_RETAINED", "10000")),
+                Duration.ofSeconds(Long.parseLong(dotenv.get("EXECUTIONS_RETENTION_SECONDS", "600"))),
+                Integer.parseInt(dotenv.get("EXECUTIONS_MAX_INFLIGHT_POLLS", "64")),
+                Duration.ofMillis(Long.parseLong(dotenv.get("EXECUTIONS_POLL_TICK_MS", "100"))));
+    }
+
+    /**
+     * Reserva uma vaga de execução pendente antes de criar a execução na StackSpot.
+     *
+     * @return {@code false} se o registro já tem {@code EXECUTIONS_MAX_PENDING} execuções pendentes.
+     */
+    boolean tryReserve() {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Devolve uma vaga reservada com {@link #tryReserve()} quando a execução não chegou a ser criada.
+     */
+    void release() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Registra uma execução criada na vaga reservada e agenda a primeira consulta ao callback.
+     *
+     * @param slot       O client que criou a execução; as consultas usam o token dele.
+     * @param startNanos Início da requisição, para a métrica de duração da execução.
+     */
+    void register(String executionId, CredentialSlot slot, long startNanos) {
+        Execution execution = new Execution(executionId, slot, startNanos, startNanos + schedule.getDeadline().toNanos());
+        execution.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(schedule.delayMillis(0));
+        executions.put(executionId, execution);
+        due.add(execution);
+    }
+
+    /**
+     * Espera a execução terminar por até {@code wait}.
+     *
+     * @return Um future com o status final, ou com o último status conhecido se o prazo acabar antes; nulo se a
+     * execução não existe ou já foi descartada.
+     */
+    CompletableFuture<GetConversationResponseDto> await(String executionId, Duration wait) {
+        Execution execution = executions.get(executionId);
+        if (execution == null) {
+            return null;
+        }
+        if (execution.done.isDone() || wait.isZero() || wait.isNegative()) {
+            return CompletableFuture.completedFuture(execution.current());
+        }
+        return execution.done.copy()
+                .completeOnTimeout(null, wait.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(status -> status != null ? status : execution.current());
+    }
+
+    int getPendingCount() {
+        return pending.get();
+    }
+
+    int getRetainedCount() {
+        return retained.get();
+    }
+
+    int getInflightPollCount() {
+        return inflightPolls.get();
+    }
+
+    private void tick() {
+        try {
+            Execution execution;
+            while (inflightPolls.get() < maxInflightPolls && (execution = due.poll()) != null) {
+                poll(execution);
+            }
+            purge(System.nanoTime());
+        } catch (RuntimeException e) {
+            // Uma exceção aqui cancelaria o agendamento e pararia todas as execuções
+            log.warn("Falha no agendador de execuções: {}", e.getMessage());
+        }
+    }
+
+    private void poll(Execution execution) {
+        inflightPolls.incrementAndGet();
+        execution.slot.getTokenManager().getTokenAsync()
+                .thenCompose(token -> ExecutionService.getExecutionStatusAsync(execution.id, token))
+                .whenComplete((status, error) -> {
+                    inflightPolls.decrementAndGet();
+                    onStatus(execution, error == null ? status : null);
+                });
+    }
+
+    private void onStatus(Execution execution, GetConversationResponseDto status) {
+        if (status != null) {
+            if (status.getExecutionId() == null) {
+                status.setExecutionId(execution.id);
+            }
+            execution.last = status;
+            if (isFinished(status)) {
+                finish(execution, status, status.isFailed() ? StackSpotMetrics.FAILURE : StackSpotMetrics.SUCCESS);
+                return;
+            }
+        }
+        long now = System.nanoTime();
+        long remaining = execution.deadlineNanos - now;
+        if (remaining <= 0) {
+            log.warn("Prazo de {} ms esgotado aguardando a execução {}.", schedule.getDeadline().toMillis(), execution.id);
+            finish(execution, timedOut(execution), "timeout");
+            return;
+        }
+        // A última consulta acontece no prazo, para não desistir de uma execução que terminou no fim da espera
+        execution.attempt++;
+        execution.dueNanos = now + Math.min(TimeUnit.MILLISECONDS.toNanos(schedule.delayMillis(execution.attempt)), remaining);
+        due.add(execution);
+    }
+
+    private static boolean isFinished(GetConversationResponseDto status) {
+        // Sem status informado, a presença do resultado indica que a execução terminou
+        return status.isCompleted() || status.isFailed() || (status.getStatus() == null && status.getResult() != null);
+    }
+
+    private void finish(Execution execution, GetConversationResponseDto status, String outcome) {
+        execution.last = status;
+        execution.finishedNanos = System.nanoTime();
+        pending.decrementAndGet();
+        retained.incrementAndGet();
+        finished.add(execution);
+        StackSpotMetrics.executionRun(outcome, execution.startNanos);
+        execution.done.complete(status);
+    }
+
+    private void purge(long now) {
+        Execution oldest;
+        while ((oldest = finished.peek()) != null
+                && (retained.get() > maxRetained || now - oldest.finishedNanos - retentionNanos >= 0)) {
+            finished.poll();
+            executions.remove(oldest.id, oldest);
+            retained.decrementAndGet();
+        }
+    }
+
+    private static GetConversationResponseDto timedOut(Execution execution) {
+        GetConversationResponseDto status = new GetConversationResponseDto();
+        status.setExecutionId(execution.id);
+        status.setStatus(STATUS_TIMEOUT);
+        if (execution.last != null) {
+            status.setConversationId(execution.last.getConversationId());
+        }
+        return status;
+    }
+
+    /**
+     * Uma execução acompanhada pelo registro. Os campos da agenda só mudam fora da fila {@code due}.
+     */
+    private static final class Execution implements Delayed {
+        final String id;
+        final CredentialSlot slot;
+        final long startNanos;
+        final long deadlineNanos;
+        final CompletableFuture<GetConversationResponseDto> done = new CompletableFuture<>();
+        int attempt;
+        volatile long dueNanos;
+        volatile long finishedNanos;
+        volatile GetConversationResponseDto last;
+
+        Execution(String id, CredentialSlot slot, long startNanos, long deadlineNanos) {
+            this.id = id;
+            this.slot = slot;
+            this.startNanos = startNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        GetConversationResponseDto current() {
+            GetConversationResponseDto status = last;
+            if (status != null) {
+                return status;
+            }
+            GetConversationResponseDto created = new GetConversationResponseDto();
+            created.setExecutionId(id);
+            created.setStatus(STATUS_CREATED);
+            return created;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.signum(dueNanos - ((Execution) other).dueNanos);
+        }
+    }
+}
@@ -1,28 +1,59 @@
 // No arquivo service/ExecutionService.java
 package org.stackspotapi.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.stackspotapi.dto.CreateExecutionRequestDto;
 import org.stackspotapi.dto.CreateExecutionResponseDto;
 import org.stackspotapi.dto.EnsureDto;
 import org.stackspotapi.dto.GetConversationResponseDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.stackspotapi.transport.Endpoint;
+import org.stackspotapi.transport.StackSpotTransport;
+import org.stackspotapi.transport.UpstreamUnavailableException;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExecutionService {
+    private static final Logger log = LoggerFactory.getLogger(ExecutionService.class);
     private static final Dotenv dotenv = Dotenv.load();
     private static final String QUICK_COMMAND_NAME = dotenv.get("QUICK_COMMAND_NAME");
-    private static final String API_URL = "https://genai-code-buddy-api.stackspot.com/v1/quick-commands/create-execution/" + QUICK_COMMAND_NAME;
-    private static final HttpClient httpClient = HttpClient.newHttpClient();
+    private static final String CREATE_EXECUTION_PATH = "/v1/quick-commands/create-execution/" + QUICK_COMMAND_NAME;
+    private static final String CALLBACK_PATH = "/v1/quick-commands/callback/";
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Novas tentativas de create-execution e callback, limitadas pelo orçamento global
+    private static final RetryPolicy retryPolicy = RetryPolicy.fromEnv();
+    private static final RetryBudget retryBudget = RetryBudget.shared();
+    private static final String OP_CREATE_EXECUTION = "create_execution";
+    private static final String OP_CALLBACK = "callback";
+
+    // Hedge do callback: segunda consulta após o p95 recente, se a primeira ainda não respondeu
+    private static final boolean HEDGE_ENABLED = Boolean.parseBoolean(dotenv.get("CALLBACK_HEDGE_ENABLED", "true"));
+    private static final long HEDGE_MIN_DELAY_MS = Long.parseLong(dotenv.get("CALLBACK_HEDGE_MIN_DELAY_MS", "50"));
+    private static final double HEDGE_PERCENTILE = 95.0;
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    private static final LatencyWindow callbackLatency = new LatencyWindow(256);
+
+    // Apenas agenda as próximas consultas assíncronas, novas tentativas e hedges; as requisições correm no executor do transporte
+    private static final ScheduledExecutorService pollScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "execution-poll-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Obtém o ID da conversação a partir de uma execução da StackSpot AI.
      *
@@ -31,111 +62,425 @@ public class ExecutionService {
      * @return A String do 'conversation_id' em caso de sucesso, ou nulo em caso de falha.
      */
     public static String getConversationId(String executionId, EnsureDto tokenDto) {
-        if (tokenDto == null || tokenDto.getJwt() == null || tokenDto.getJwt().isBlank()) {
-            System.err.println("Token JWT não disponível. A autenticação é necessária.");
+        GetConversationResponseDto status = getExecutionStatus(executionId, tokenDto);
+        if (status == null) {
             return null;
         }
-        if (executionId == null || executionId.isBlank()) {
-            System.err.println("Execution ID não pode ser nulo ou vazio.");
+        if (status.getConversationId() == null || status.getConversationId().isBlank()) {
+            log.warn("Resposta da API não contém o campo 'conversation_id'.");
             return null;
         }
+        log.debug("Conversation ID obtido com sucesso: {}", status.getConversationId());
+        return status.getConversationId();
+    }
 
-        System.out.println("Buscando 'conversation_id' para a execução ID: " + executionId);
+    /**
+     * Consulta o endpoint de callback até a execução terminar, seguindo a agenda de backoff informada.
+     * <p>
+     * Retorna assim que a execução é concluída, em vez de esperar um tempo fixo.
+     *
+     * @param executionId O ID da execução a ser consultada.
+     * @param tokenDto    O DTO contendo o token de autenticação.
+     * @param schedule    A agenda de consultas (primeira espera, backoff, jitter e prazo total).
+     * @return O 'conversation_id' da execução concluída, ou nulo se ela falhar ou o prazo se esgotar.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public static String awaitConversationId(String executionId, EnsureDto tokenDto, PollingSchedule schedule) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + schedule.getDeadline().toNanos();
 
-        try {
-            // Monta a URL do endpoint de callback
-            String url = "https://genai-code-buddy-api.stackspot.com/v1/quick-commands/callback/" + executionId;
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("execution_id", executionId)
-                    .header("Authorization", "Bearer " + tokenDto.getJwt())
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                // Parseia a resposta JSON para extrair apenas o campo 'conversation_id'
-                JsonNode responseBody = objectMapper.readTree(response.body());
-                if (responseBody.has("conversation_id")) {
-                    String conversationId = responseBody.get("conversation_id").asText();
-                    System.out.println("Conversation ID obtido com sucesso: " + conversationId);
-                    return conversationId;
-                } else {
-                    System.err.println("Resposta da API não contém o campo 'conversation_id'.");
+        for (int attempt = 0; ; attempt++) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                log.warn("Prazo de {} ms esgotado aguardando a execução {}.", schedule.getDeadline().toMillis(), executionId);
+                StackSpotMetrics.conversationResolve(StackSpotMetrics.FAILURE, start);
+                return null;
+            }
+            Thread.sleep(Math.min(schedule.delayMillis(attempt), remainingMillis));
+
+            GetConversationResponseDto status = getExecutionStatus(executionId, tokenDto);
+            if (status == null) {
+                continue; // Falha transitória: tenta de novo na próxima janela da agenda
+            }
+            if (status.isFailed()) {
+                log.warn("Execução {} terminou com falha: {}", executionId, status.getStatus());
+                StackSpotMetrics.conversationResolve(StackSpotMetrics.FAILURE, start);
+                return null;
+            }
+            String conversationId = completedConversationId(status);
+            if (conversationId != null) {
+                log.debug("Conversation ID obtido após {} consulta(s): {}", attempt + 1, conversationId);
+                StackSpotMetrics.conversationResolve(StackSpotMetrics.SUCCESS, start);
+                return conversationId;
+            }
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #awaitConversationId(String, EnsureDto, PollingSchedule)}: as esperas entre as
+     * consultas são agendadas em vez de dormir, então nenhuma thread fica presa durante a execução.
+     *
+     * @return Um future com o 'conversation_id' da execução concluída, ou com nulo se ela falhar ou o prazo se esgotar.
+     */
+    public static CompletableFuture<String> awaitConversationIdAsync(String executionId, EnsureDto tokenDto, PollingSchedule schedule) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        long deadline = start + schedule.getDeadline().toNanos();
+        schedulePoll(executionId, tokenDto, schedule, 0, deadline, result);
+        return result.whenComplete((conversationId, error) -> StackSpotMetrics.conversationResolve(
+                conversationId != null ? StackSpotMetrics.SUCCESS : StackSpotMetrics.FAILURE, start));
+    }
+
+    private static void schedulePoll(String executionId, EnsureDto tokenDto, PollingSchedule schedule, int attempt,
+                                     long deadline, CompletableFuture<String> result) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+            log.warn("Prazo de {} ms esgotado aguardando a execução {}.", schedule.getDeadline().toMillis(), executionId);
+            result.complete(null);
+            return;
+        }
+
+        pollScheduler.schedule(() -> getExecutionStatusAsync(executionId, tokenDto).whenComplete((status, error) -> {
+            if (status != null && status.isFailed()) {
+                log.warn("Execução {} terminou com falha: {}", executionId, status.getStatus());
+                result.complete(null);
+                return;
+            }
+            String conversationId = status != null ? completedConversationId(status) : null;
+            if (conversationId != null) {
+                result.complete(conversationId);
+            } else {
+                schedulePoll(executionId, tokenDto, schedule, attempt + 1, deadline, result);
+            }
+        }), Math.min(schedule.delayMillis(attempt), remainingMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return O 'conversation_id' se a execução já pode ser usada, ou nulo se ainda está em andamento.
+     */
+    private static String completedConversationId(GetConversationResponseDto status) {
+        boolean hasConversation = status.getConversationId() != null && !status.getConversationId().isBlank();
+        // Sem status informado, a presença do conversation_id indica que a execução já pode ser usada
+        return hasConversation && (status.isCompleted() || status.getStatus() == null) ? status.getConversationId() : null;
+    }
+
+    /**
+     * Consulta o endpoint de callback de uma execução, com as novas tentativas e o hedge de
+     * {@link #getExecutionStatusAsync(String, EnsureDto)}.
+     *
+     * @param executionId O ID da execução a ser consultada.
+     * @param tokenDto    O DTO contendo o token de autenticação.
+     * @return O status da execução (status, conversation_id e result), ou nulo em caso de falha.
+     */
+    public static GetConversationResponseDto getExecutionStatus(String executionId, EnsureDto tokenDto) {
+        return await(getExecutionStatusAsync(executionId, tokenDto), "Consulta da execução interrompida");
+    }
+
+    /**
+     * Versão assíncrona de {@link #getExecutionStatus(String, EnsureDto)}.
+     * <p>
+     * Falhas transitórias são repetidas segundo a {@link RetryPolicy}. Se a consulta não responder dentro do p95
+     * recente das consultas, uma segunda é enviada e vale a primeira resposta bem-sucedida. As novas tentativas e
+     * os hedges gastam o {@link RetryBudget} global.
+     *
+     * @return Um future com o status da execução, ou com nulo em caso de falha.
+     */
+    public static CompletableFuture<GetConversationResponseDto> getExecutionStatusAsync(String executionId, EnsureDto tokenDto) {
+        HttpRequest request = buildCallbackRequest(executionId, tokenDto);
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return sendHedged(request)
+                .thenApply(ExecutionService::parseExecutionStatus)
+                .exceptionally(error -> {
+                    log.warn("Erro de comunicação ao consultar a execução: {}", unwrap(error).getMessage());
                     return null;
+                });
+    }
+
+    /**
+     * Envia a consulta ao callback e, se ela passar do atraso do hedge sem resposta, envia uma segunda.
+     * A primeira resposta 2xx vence; se as duas falharem, vale o resultado da última. A consulta perdedora
+     * não é cancelada, apenas ignorada.
+     */
+    private static CompletableFuture<HttpResponse<String>> sendHedged(HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> primary = sendWithRetry(OP_CALLBACK, request, callbackLatency);
+        long hedgeDelay = HEDGE_ENABLED ? callbackLatency.percentileMillis(HEDGE_PERCENTILE, HEDGE_MIN_SAMPLES) : -1;
+        if (hedgeDelay < 0) {
+            return primary;
+        }
+
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        primary.whenComplete((response, error) -> settleHedged(result, pending, response, error, false));
+        pollScheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!retryBudget.tryWithdraw()) {
+                StackSpotMetrics.hedge("budget_exhausted");
+                return;
+            }
+            pending.incrementAndGet();
+            StackSpotMetrics.hedge("sent");
+            long start = System.nanoTime();
+            StackSpotTransport.sendAsync(Endpoint.QUICK_COMMANDS, request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        if (error == null) {
+                            callbackLatency.record(System.nanoTime() - start);
+                        }
+                        settleHedged(result, pending, response, error, true);
+                    });
+        }, Math.max(HEDGE_MIN_DELAY_MS, hedgeDelay), TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private static void settleHedged(CompletableFuture<HttpResponse<String>> result, AtomicInteger pending,
+                                     HttpResponse<String> response, Throwable error, boolean hedge) {
+        boolean succeeded = error == null && response.statusCode() >= 200 && response.statusCode() < 300;
+        if (succeeded) {
+            if (result.complete(response) && hedge) {
+                StackSpotMetrics.hedge("won");
+            }
+        } else if (pending.decrementAndGet() == 0) {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(response);
+            }
+        }
+    }
+
+    /**
+     * Envia a requisição de quick commands repetindo as falhas transitórias com backoff, enquanto houver tentativas
+     * na {@link RetryPolicy} e saldo no {@link RetryBudget}.
+     *
+     * @param latency Janela onde registrar a latência de cada tentativa respondida; pode ser nula.
+     * @return Um future com a última resposta recebida, ou completado com a última falha de comunicação.
+     */
+    private static CompletableFuture<HttpResponse<String>> sendWithRetry(String operation, HttpRequest request, LatencyWindow latency) {
+        return send(operation, request, latency, retryPolicy.getMaxAttempts());
+    }
+
+    /**
+     * Envia a requisição de quick commands uma única vez, para operações que não podem ser repetidas sem efeito
+     * colateral.
+     */
+    private static CompletableFuture<HttpResponse<String>> sendOnce(String operation, HttpRequest request) {
+        return send(operation, request, null, 1);
+    }
+
+    private static CompletableFuture<HttpResponse<String>> send(String operation, HttpRequest request, LatencyWindow latency,
+                                                                int maxAttempts) {
+        retryBudget.onRequest();
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        attempt(operation, request, latency, 1, maxAttempts, result);
+        return result;
+    }
+
+    private static void attempt(String operation, HttpRequest request, LatencyWindow latency, int attempt, int maxAttempts,
+                                CompletableFuture<HttpResponse<String>> result) {
+        long start = System.nanoTime();
+        StackSpotTransport.sendAsync(Endpoint.QUICK_COMMANDS, request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            Throwable cause = error != null ? unwrap(error) : null;
+            if (cause == null && latency != null) {
+                latency.record(System.nanoTime() - start);
+            }
+            boolean retryable = cause != null ? retryPolicy.isRetryable(cause) : retryPolicy.isRetryable(response.statusCode());
+            if (retryable && attempt < maxAttempts) {
+                if (retryBudget.tryWithdraw()) {
+                    long delay = retryPolicy.delayMillis(attempt);
+                    log.debug("Nova tentativa de {} em {} ms ({}).", operation, delay,
+                            cause != null ? cause.getMessage() : "status " + response.statusCode());
+                    StackSpotMetrics.retry(operation, "retried");
+                    pollScheduler.schedule(() -> attempt(operation, request, latency, attempt + 1, maxAttempts, result), delay, TimeUnit.MILLISECONDS);
+                    return;
                 }
+                StackSpotMetrics.retry(operation, "budget_exhausted");
+            }
+            if (cause != null) {
+                result.completeExceptionally(cause);
             } else {
-                System.err.printf("Erro ao obter 'conversation_id'. Status: %d, Resposta: %s%n", response.statusCode(), response.body());
-                return null;
+                result.complete(response);
             }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Espera o resultado de uma chamada assíncrona na thread atual.
+     *
+     * @return O resultado, ou nulo se a thread for interrompida.
+     */
+    private static <T> T await(CompletableFuture<T> future, String interruptedMessage) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("{}: {}", interruptedMessage, e.getMessage());
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Falha inesperada na chamada à StackSpot: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Erro de comunicação ao obter 'conversation_id': " + e.getMessage());
+    private static HttpRequest buildCallbackRequest(String executionId, EnsureDto tokenDto) {
+        if (tokenDto == null || tokenDto.getJwt() == null || tokenDto.getJwt().isBlank()) {
+            log.warn("Token JWT não disponível. A autenticação é necessária.");
             return null;
         }
+        if (executionId == null || executionId.isBlank()) {
+            log.warn("Execution ID não pode ser nulo ou vazio.");
+            return null;
+        }
+
+        log.debug("Consultando o status da execução ID: {}", executionId);
+
+        // Monta a requisição para o endpoint de callback
+        return StackSpotTransport.apiRequest(Endpoint.QUICK_COMMANDS, CALLBACK_PATH + executionId)
+                .header("execution_id", executionId)
+                .header("Authorization", "Bearer " + tokenDto.getJwt())
+                .GET()
+                .build();
+    }
+
+    private static GetConversationResponseDto parseExecutionStatus(HttpResponse<String> response) {
+        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            try {
+                return objectMapper.readValue(response.body(), GetConversationResponseDto.class);
+            } catch (IOException e) {
+                log.warn("Resposta inválida do callback da execução: {}", e.getMessage());
+                return null;
+            }
+        }
+        log.warn("Erro ao consultar a execução. Status: {}, Resposta: {}", response.statusCode(), response.body());
+        return null;
     }
 
 
     /**
-     * Envia um prompt para a StackSpot AI para criar uma execução.
+     * Envia um prompt para a StackSpot AI para criar uma execução, repetindo falhas transitórias como
+     * {@link #createExecutionAsync(CreateExecutionRequestDto, EnsureDto)}.
      *
      * @param requestDto O DTO contendo os dados da requisição (slug, prompt, etc.).
      * @param tokenDto   O DTO contendo o token de autenticação atual.
      * @return Um DTO com o ID da execução em caso de sucesso, ou nulo em caso de falha.
      */
     public static CreateExecutionResponseDto createExecution(CreateExecutionRequestDto requestDto, EnsureDto tokenDto) {
+        return await(createExecutionAsync(requestDto, tokenDto), "Criação da execução interrompida");
+    }
+
+    /**
+     * Versão assíncrona de {@link #createExecution(CreateExecutionRequestDto, EnsureDto)}.
+     * <p>
+     * Falhas transitórias são repetidas segundo a {@link RetryPolicy}. Uma nova tentativa depois de um timeout pode
+     * criar uma execução a mais na StackSpot, com o mesmo prompt. Só use este método quando uma execução duplicada não
+     * tem efeito (ex.: a execução que só cria uma conversação para o pool); para executar o prompt de um cliente, use
+     * {@link #submitExecutionAsync(CreateExecutionRequestDto, EnsureDto)}.
+     *
+     * @return Um future com o ID da execução, com nulo em caso de falha, ou completado com
+     * {@link UpstreamUnavailableException} se a requisição foi recusada por sobrecarga (cota do client esgotada,
+     * fila do limitador cheia ou circuito aberto), para quem chamou poder pausar o client ou devolver o
+     * {@code Retry-After}.
+     */
+    public static CompletableFuture<CreateExecutionResponseDto> createExecutionAsync(CreateExecutionRequestDto requestDto, EnsureDto tokenDto) {
+        HttpRequest request;
+        try {
+            request = buildCreateExecutionRequest(requestDto, tokenDto);
+        } catch (IOException e) {
+            log.warn("Erro ao montar a requisição de execução: {}", e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return createExecutionAsync(sendWithRetry(OP_CREATE_EXECUTION, request, null));
+    }
+
+    /**
+     * Como {@link #createExecutionAsync(CreateExecutionRequestDto, EnsureDto)}, mas sem repetir a requisição: depois
+     * de um timeout não se sabe se a StackSpot criou a execução, e repetir poderia executar o prompt duas vezes. Quem
+     * chamou recebe a falha e decide se reenvia.
+     */
+    public static CompletableFuture<CreateExecutionResponseDto> submitExecutionAsync(CreateExecutionRequestDto requestDto, EnsureDto tokenDto) {
+        HttpRequest request;
+        try {
+            request = buildCreateExecutionRequest(requestDto, tokenDto);
+        } catch (IOException e) {
+            log.warn("Erro ao montar a requisição de execução: {}", e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        if (request == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return createExecutionAsync(sendOnce(OP_CREATE_EXECUTION, request));
+    }
+
+    private static CompletableFuture<CreateExecutionResponseDto> createExecutionAsync(CompletableFuture<HttpResponse<String>> sending) {
+        long start = System.nanoTime();
+        return sending
+                .thenApply(ExecutionService::parseCreateExecution)
+                .exceptionally(error -> {
+                    Throwable cause = unwrap(error);
+                    log.warn("Erro de comunicação ao criar execução: {}", cause.getMessage());
+                    if (cause instanceof UpstreamUnavailableException) {
+                        throw new CompletionException(cause);
+                    }
+                    return null;
+                })
+                .whenComplete((execution, error) -> StackSpotMetrics.executionCreate(
+                        execution != null ? StackSpotMetrics.SUCCESS : StackSpotMetrics.FAILURE, start));
+    }
+
+    private static HttpRequest buildCreateExecutionRequest(CreateExecutionRequestDto requestDto, EnsureDto tokenDto) throws IOException {
         // 1. Garante que o token de autenticação é válido, renovando se necessário.
         // A responsabilidade é do chamador, mas poderíamos chamar aqui também.
         if (tokenDto == null || tokenDto.getJwt() == null || tokenDto.getJwt().isBlank()) {
-            System.err.println("Token JWT não disponível. A autenticação é necessária antes de chamar este método.");
+            log.warn("Token JWT não disponível. A autenticação é necessária antes de chamar este método.");
             return null;
         }
 
-        try {
-            // 2. Monta os cabeçalhos (headers) da requisição
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(URI.create(API_URL))
-                    .header("slug", requestDto.getSlug())
-                    .header("Authorization", "Bearer " + tokenDto.getJwt())
-                    .header("Content-Type", "application/json");
-
-            // Adiciona o conversation_id se ele existir no DTO
-            if (requestDto.getConversationId() != null && !requestDto.getConversationId().isBlank()) {
-                requestBuilder.header("conversation_id", requestDto.getConversationId());
-            }
+        // 2. Monta os cabeçalhos (headers) da requisição
+        HttpRequest.Builder requestBuilder = StackSpotTransport.apiRequest(Endpoint.QUICK_COMMANDS, CREATE_EXECUTION_PATH)
+                .header("slug", requestDto.getSlug())
+                .header("Authorization", "Bearer " + tokenDto.getJwt())
+                .header("Content-Type", "application/json");
 
-            // 3. Monta o corpo (payload) da requisição
-            ObjectNode payload = objectMapper.createObjectNode();
-            Object prompt = requestDto.getPrompt();
+        // Adiciona o conversation_id se ele existir no DTO
+        if (requestDto.getConversationId() != null && !requestDto.getConversationId().isBlank()) {
+            requestBuilder.header("conversation_id", requestDto.getConversationId());
+        }
 
-            // Lógica para tratar prompt como String ou como um objeto (Map/DTO)
-            if (prompt instanceof String) {
-                payload.putObject("input_data").put("text", (String) prompt);
-            } else {
-                // Se for um objeto (Map, DTO, etc.), o Jackson vai serializá-lo
-                payload.set("input_data", objectMapper.valueToTree(prompt));
-            }
-            String payloadJson = objectMapper.writeValueAsString(payload);
-
-            // 4. Constrói e envia a requisição POST
-            HttpRequest request = requestBuilder.POST(HttpRequest.BodyPublishers.ofString(payloadJson)).build();
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            // 5. Processa a resposta
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                // A API retorna o ID da execução como uma string simples com aspas.
-                String executionId = response.body().replace("\"", "");
-                System.out.println("Execução criada com sucesso. ID: " + executionId);
-                return new CreateExecutionResponseDto(executionId);
-            } else {
-                System.err.printf("Erro ao criar execução. Status: %d, Resposta: %s%n", response.statusCode(), response.body());
-                return null;
-            }
+        // 3. Monta o corpo (payload) da requisição
+        ObjectNode payload = objectMapper.createObjectNode();
+        Object prompt = requestDto.getPrompt();
+
+        // Lógica para tratar prompt como String ou como um objeto (Map/DTO)
+        if (prompt instanceof String) {
+            payload.putObject("input_data").put("text", (String) prompt);
+        } else {
+            // Se for um objeto (Map, DTO, etc.), o Jackson vai serializá-lo
+            payload.set("input_data", objectMapper.valueToTree(prompt));
+        }
+        String payloadJson = objectMapper.writeValueAsString(payload);
+
+        // 4. Constrói a requisição POST
+        return requestBuilder.POST(HttpRequest.BodyPublishers.ofString(payloadJson)).build();
+    }
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Erro de comunicação ao criar execução: " + e.getMessage());
+    private static CreateExecutionResponseDto parseCreateExecution(HttpResponse<String> response) {
+        // 5. Processa a resposta
+        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            // A API retorna o ID da execução como uma string simples com aspas.
+            String executionId = response.body().replace("\"", "");
+            log.debug("Execução criada com sucesso. ID: {}", executionId);
+            return new CreateExecutionResponseDto(executionId);
+        } else {
+            log.warn("Erro ao criar execução. Status: {}, Resposta: {}", response.statusCode(), response.body());
             return null;
         }
     }
@@ -0,0 +1,46 @@
+package org.stackspotapi.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * As últimas latências de uma operação, para estimar percentis recentes (ex.: o atraso do hedge).
+ * <p>
+ * A cópia ordenada é refeita a cada {@code RESORT_EVERY} amostras, não a cada consulta.
+ */
+class LatencyWindow {
+    private static final int RESORT_EVERY = 16;
+
+    private final long[] samples;
+    private int next;
+    private int size;
+    private int sinceSort;
+    private long[] sorted = new long[0];
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        sinceSort++;
+    }
+
+    /**
+     * O percentil das latências recentes em milissegundos, ou -1 se ainda há menos de {@code minSamples} amostras.
+     */
+    synchronized long percentileMillis(double percentile, int minSamples) {
+        if (size < minSamples) {
+            return -1;
+        }
+        if (sinceSort >= RESORT_EVERY || sorted.length != size) {
+            sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            sinceSort = 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(sorted.length - 1, rank))]);
+    }
+}
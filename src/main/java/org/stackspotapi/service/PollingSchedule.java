@@ -0,0 +1,66 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.time.Duration;
+
+/**
+ * Agenda de consultas ao endpoint de callback: uma primeira consulta rápida, seguida de backoff
+ * exponencial com jitter, limitada por um prazo total.
+ */
+public class PollingSchedule {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private final Backoff backoff;
+    private final Duration deadline;
+
+    /**
+     * @param initialDelay Espera antes da primeira consulta.
+     * @param multiplier   Fator aplicado à espera a cada nova tentativa (>= 1).
+     * @param maxDelay     Espera máxima entre duas consultas.
+     * @param jitter       Fração aleatória (0 a 1) somada ou subtraída de cada espera.
+     * @param deadline     Tempo total máximo aguardando a execução.
+     */
+    public PollingSchedule(Duration initialDelay, double multiplier, Duration maxDelay, double jitter, Duration deadline) {
+        this.backoff = new Backoff(initialDelay, multiplier, maxDelay, jitter);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Carrega a agenda da obtenção do {@code conversation_id} (chaves {@code CONVERSATION_POLL_*} do .env), usando
+     * valores padrão para as chaves ausentes.
+     */
+    public static PollingSchedule fromEnv() {
+        return fromEnv("CONVERSATION_POLL_", 300, 1.5, 2000, 0.2, 30000);
+    }
+
+    /**
+     * Carrega uma agenda das chaves {@code <prefix>INITIAL_MS}, {@code MULTIPLIER}, {@code MAX_DELAY_MS},
+     * {@code JITTER} e {@code DEADLINE_MS} do .env, com os padrões informados para as chaves ausentes.
+     */
+    public static PollingSchedule fromEnv(String prefix, long initialMs, double multiplier, long maxDelayMs, double jitter,
+                                          long deadlineMs) {
+        return new PollingSchedule(
+                Duration.ofMillis(Long.parseLong(dotenv.get(prefix + "INITIAL_MS", String.valueOf(initialMs)))),
+                Double.parseDouble(dotenv.get(prefix + "MULTIPLIER", String.valueOf(multiplier))),
+                Duration.ofMillis(Long.parseLong(dotenv.get(prefix + "MAX_DELAY_MS", String.valueOf(maxDelayMs)))),
+                Double.parseDouble(dotenv.get(prefix + "JITTER", String.valueOf(jitter))),
+                Duration.ofMillis(Long.parseLong(dotenv.get(prefix + "DEADLINE_MS", String.valueOf(deadlineMs))))
+        );
+    }
+
+    /**
+     * Calcula a espera antes da consulta de número {@code attempt} (começando em 0), já com jitter aplicado.
+     */
+    public long delayMillis(int attempt) {
+        return backoff.delayMillis(attempt);
+    }
+
+    public Backoff getBackoff() {
+        return backoff;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+}
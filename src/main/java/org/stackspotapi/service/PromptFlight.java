@@ -0,0 +1,171 @@
+package org.stackspotapi.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Uma chamada ao chat em andamento, compartilhada por todas as requisições stateless com o mesmo prompt que chegam
+ * antes de ela terminar.
+ * <p>
+ * Quem inicia a chamada (o líder) publica cada fragmento recebido; quem chega depois recebe primeiro os fragmentos
+ * já publicados e então os novos ({@link #follow(ChatStreamListener)}), ou só a resposta completa
+ * ({@link #answer()}). Se o cliente do líder desconecta, a chamada continua enquanto houver alguém esperando por ela.
+ * Se o líder desiste da chamada antes de alguém segui-la ({@link #abandon()}), quem chega depois faz a sua própria.
+ */
+final class PromptFlight {
+    private final List<String> fragments = new ArrayList<>();
+    private final CompletableFuture<String> answer = new CompletableFuture<>();
+    private boolean done;
+    private Throwable failure;
+    // Requisições que chegaram depois do líder e ainda esperam a chamada
+    private int sharers;
+    private boolean abandoned;
+
+    /**
+     * Registra uma requisição que espera apenas a resposta completa.
+     *
+     * @return Uma cópia do future da resposta, que pode ser cancelada sem afetar os demais, ou nulo se o líder
+     * desistiu da chamada.
+     */
+    CompletableFuture<String> answer() {
+        synchronized (this) {
+            if (abandoned) {
+                return null;
+            }
+            if (!done) {
+                sharers++;
+            }
+        }
+        return answer.copy();
+    }
+
+    /**
+     * Repassa ao {@code listener} os fragmentos já publicados e depois os novos, bloqueando até a chamada terminar.
+     *
+     * @return {@code false}, sem repassar nada, se o líder desistiu da chamada.
+     * @throws IOException Se a chamada falhar ou o {@code listener} abortar; só esta requisição deixa de esperar.
+     */
+    boolean follow(ChatStreamListener listener) throws IOException, InterruptedException {
+        synchronized (this) {
+            if (abandoned) {
+                return false;
+            }
+            sharers++;
+        }
+        try {
+            int next = 0;
+            while (true) {
+                String fragment;
+                synchronized (this) {
+                    while (next == fragments.size() && !done) {
+                        wait();
+                    }
+                    if (next == fragments.size()) {
+                        break;
+                    }
+                    fragment = fragments.get(next++);
+                }
+                listener.onFragment(fragment);
+            }
+        } finally {
+            synchronized (this) {
+                sharers--;
+            }
+        }
+        Throwable error;
+        synchronized (this) {
+            error = failure;
+        }
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        if (error != null) {
+            throw new IOException(error.getMessage(), error);
+        }
+        return true;
+    }
+
+    /**
+     * Publica um fragmento para quem está seguindo a chamada.
+     */
+    synchronized void publish(String fragment) {
+        fragments.add(fragment);
+        notifyAll();
+    }
+
+    /**
+     * Envolve o listener do líder: cada fragmento é publicado e repassado ao cliente do líder. Se o cliente do líder
+     * desconecta, a leitura continua para quem está esperando; só sem ninguém esperando a falha interrompe o stream.
+     */
+    Leader lead(ChatStreamListener listener) {
+        return new Leader(listener);
+    }
+
+    /**
+     * Encerra a chamada com a resposta completa ou com a falha, acordando quem está esperando.
+     */
+    void finish(String result, Throwable error) {
+        synchronized (this) {
+            done = true;
+            failure = error;
+            notifyAll();
+        }
+        if (error != null) {
+            answer.completeExceptionally(error);
+        } else {
+            answer.complete(result);
+        }
+    }
+
+    /**
+     * O cliente do líder desistiu: a chamada pode ser parada se ninguém a segue, e então ninguém mais pode segui-la.
+     *
+     * @return {@code true} se a chamada pode ser parada.
+     */
+    synchronized boolean abandon() {
+        if (sharers > 0) {
+            return false;
+        }
+        abandoned = true;
+        return true;
+    }
+
+    private synchronized boolean isShared() {
+        return sharers > 0;
+    }
+
+    final class Leader implements ChatStreamListener {
+        private final ChatStreamListener listener;
+        private IOException clientFailure;
+
+        private Leader(ChatStreamListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onFragment(String fragment) throws IOException {
+            publish(fragment);
+            if (clientFailure == null) {
+                try {
+                    listener.onFragment(fragment);
+                } catch (IOException e) {
+                    clientFailure = e;
+                }
+            }
+            if (clientFailure != null && !isShared()) {
+                throw clientFailure;
+            }
+        }
+
+        /**
+         * Relança a falha do cliente do líder que foi adiada para não interromper quem estava esperando.
+         */
+        void rethrowClientFailure() throws IOException {
+            if (clientFailure != null) {
+                throw clientFailure;
+            }
+        }
+    }
+}
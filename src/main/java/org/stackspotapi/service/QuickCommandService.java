@@ -0,0 +1,89 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.stackspotapi.dto.CreateExecutionRequestDto;
+import org.stackspotapi.dto.GetConversationResponseDto;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Executa quick commands diretamente, em volume, sem prender uma thread por execução.
+ * <p>
+ * {@link #submitAsync(String, Object)} cria a execução em um client do {@link CredentialPool} e devolve o ID assim
+ * que a StackSpot o informa; a partir daí o {@link ExecutionRegistry} acompanha a execução até ela terminar, e
+ * {@link #awaitAsync(String, Duration)} espera pelo resultado sem bloquear.
+ */
+public class QuickCommandService {
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final String DEFAULT_SLUG = "query.java";
+
+    /**
+     * Espera máxima de uma consulta de resultado (long polling).
+     */
+    public static final Duration MAX_WAIT = Duration.ofSeconds(Long.parseLong(dotenv.get("EXECUTIONS_MAX_WAIT_SECONDS", "30")));
+
+    static final ExecutionRegistry registry = ExecutionRegistry.fromEnv();
+
+    /**
+     * Cria uma execução do quick command {@code QUICK_COMMAND_NAME}. A criação não é repetida em falhas transitórias,
+     * para não executar o mesmo input duas vezes.
+     *
+     * @param slug  O slug da execução; nulo ou vazio usa o padrão.
+     * @param input O texto ou objeto enviado como {@code input_data}.
+     * @return Um future com o ID da execução, completado com {@link UpstreamUnavailableException} se o registro
+     * estiver cheio, nenhum client estiver disponível ou, sem token, o circuito da autenticação estiver aberto, ou com
+     * {@link IOException} se a StackSpot não criar a execução.
+     */
+    public static CompletableFuture<String> submitAsync(String slug, Object input) {
+        if (!registry.tryReserve()) {
+            return CompletableFuture.failedFuture(
+                    new UpstreamUnavailableException("Limite de execuções pendentes atingido.", Duration.ofSeconds(1)));
+        }
+        CredentialSlot slot;
+        try {
+            slot = AiChatService.getCredentialPool().pick();
+        } catch (UpstreamUnavailableException e) {
+            registry.release();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.nanoTime();
+        CreateExecutionRequestDto request = new CreateExecutionRequestDto(slug != null && !slug.isBlank() ? slug : DEFAULT_SLUG, input);
+        slot.begin();
+        return slot.getTokenManager().getTokenAsync()
+                .thenCompose(token -> {
+                    if (token == null) {
+                        throw new CompletionException(AiChatService.authenticationFailure());
+                    }
+                    return ExecutionService.submitExecutionAsync(request, token);
+                })
+                .whenComplete((execution, error) -> {
+                    slot.end(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    if (execution != null) {
+                        registry.register(execution.getExecutionId(), slot, start);
+                    } else {
+                        registry.release();
+                    }
+                })
+                .thenApply(execution -> {
+                    if (execution == null) {
+                        throw new CompletionException(new IOException("Não foi possível criar a execução na StackSpot."));
+                    }
+                    return execution.getExecutionId();
+                });
+    }
+
+    /**
+     * Espera a execução terminar por até {@code wait} (limitado a {@link #MAX_WAIT}).
+     *
+     * @return Um future com o status final (com o {@code result} completo do callback), ou com o último status
+     * conhecido se a espera acabar antes; nulo se a execução não existe ou já saiu do registro.
+     */
+    public static CompletableFuture<GetConversationResponseDto> awaitAsync(String executionId, Duration wait) {
+        return registry.await(executionId, wait.compareTo(MAX_WAIT) > 0 ? MAX_WAIT : wait);
+    }
+}
@@ -0,0 +1,65 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+/**
+ * Orçamento de requisições extras (novas tentativas e hedges) compartilhado por todas as chamadas.
+ * <p>
+ * Cada requisição original deposita {@code ratio} e cada requisição extra gasta 1, então as extras ficam limitadas
+ * a uma fração da carga original (com 0,2, no máximo 20% a mais), mesmo quando a StackSpot falha em massa. Uma
+ * reserva de {@code minPerSecond} é reposta com o tempo para que o tráfego baixo ainda possa repetir chamadas.
+ * O saldo acumula até dez segundos de reserva, o que limita rajadas depois de um período calmo.
+ */
+public class RetryBudget {
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final RetryBudget shared = new RetryBudget(
+            Double.parseDouble(dotenv.get("RETRY_BUDGET_RATIO", "0.2")),
+            Double.parseDouble(dotenv.get("RETRY_BUDGET_MIN_PER_SECOND", "5")));
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double maxBalance;
+    private double balance;
+    private long lastRefillNanos = System.nanoTime();
+
+    /**
+     * @param ratio        Requisições extras permitidas por requisição original.
+     * @param minPerSecond Requisições extras por segundo permitidas independentemente do tráfego.
+     */
+    public RetryBudget(double ratio, double minPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.maxBalance = Math.max(1.0, minPerSecond * 10);
+        this.balance = maxBalance;
+    }
+
+    /**
+     * O orçamento usado pelas chamadas de quick commands.
+     */
+    public static RetryBudget shared() {
+        return shared;
+    }
+
+    /**
+     * Registra uma requisição original.
+     */
+    public synchronized void onRequest() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * Reserva uma requisição extra, se houver saldo.
+     *
+     * @return Verdadeiro se a requisição extra pode ser enviada.
+     */
+    public synchronized boolean tryWithdraw() {
+        long now = System.nanoTime();
+        balance = Math.min(maxBalance, balance + minPerSecond * (now - lastRefillNanos) / 1e9);
+        lastRefillNanos = now;
+        if (balance < 1.0) {
+            return false;
+        }
+        balance -= 1.0;
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Política de novas tentativas para chamadas que podem ser repetidas com segurança: número máximo de tentativas,
+ * backoff exponencial com jitter e quais falhas são transitórias.
+ * <p>
+ * São transitórias as falhas de comunicação ({@link IOException}, inclusive timeouts) e os status 408 e 5xx, exceto
+ * 501. Sobrecarga da StackSpot ({@link UpstreamUnavailableException}) não é repetida aqui: quem decide quando voltar
+ * a enviar é o limitador do transporte, respeitando o {@code Retry-After}.
+ */
+public class RetryPolicy {
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private final int maxAttempts;
+    private final Backoff backoff;
+
+    /**
+     * @param maxAttempts  Total de tentativas, incluindo a primeira (>= 1).
+     * @param initialDelay Espera antes da segunda tentativa.
+     * @param multiplier   Fator aplicado à espera a cada nova tentativa (>= 1).
+     * @param maxDelay     Espera máxima entre duas tentativas.
+     * @param jitter       Fração aleatória (0 a 1) somada ou subtraída de cada espera.
+     */
+    public RetryPolicy(int maxAttempts, Duration initialDelay, double multiplier, Duration maxDelay, double jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts deve ser >= 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoff = new Backoff(initialDelay, multiplier, maxDelay, jitter);
+    }
+
+    /**
+     * Carrega a política das chamadas de quick commands do .env, usando valores padrão para as chaves ausentes.
+     */
+    public static RetryPolicy fromEnv() {
+        return new RetryPolicy(
+                Integer.parseInt(dotenv.get("QUICK_COMMAND_RETRY_MAX_ATTEMPTS", "3")),
+                Duration.ofMillis(Long.parseLong(dotenv.get("QUICK_COMMAND_RETRY_INITIAL_MS", "200"))),
+                Double.parseDouble(dotenv.get("QUICK_COMMAND_RETRY_MULTIPLIER", "2.0")),
+                Duration.ofMillis(Long.parseLong(dotenv.get("QUICK_COMMAND_RETRY_MAX_DELAY_MS", "2000"))),
+                Double.parseDouble(dotenv.get("QUICK_COMMAND_RETRY_JITTER", "0.5"))
+        );
+    }
+
+    /**
+     * Indica se a falha de comunicação é transitória.
+     */
+    public boolean isRetryable(Throwable error) {
+        return error instanceof IOException && !(error instanceof UpstreamUnavailableException);
+    }
+
+    /**
+     * Indica se o status HTTP da resposta é transitório.
+     */
+    public boolean isRetryable(int statusCode) {
+        return statusCode == 408 || (statusCode >= 500 && statusCode != 501);
+    }
+
+    /**
+     * Calcula a espera antes da nova tentativa que segue a tentativa de número {@code attempt} (começando em 1),
+     * já com jitter aplicado.
+     */
+    public long delayMillis(int attempt) {
+        return backoff.delayMillis(attempt - 1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Backoff getBackoff() {
+        return backoff;
+    }
+}
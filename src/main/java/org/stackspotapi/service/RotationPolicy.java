@@ -0,0 +1,142 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+/**
+ * Decide quando uma conversação deve dar lugar a uma nova pelo custo medido do seu uso, antes do fim do orçamento
+ * fixo de requisições ({@code CONVERSATION_REQUEST_BUDGET}), que continua valendo como limite.
+ * <p>
+ * O contexto de uma conversação cresce a cada prompt e resposta, e com ele o tempo até o primeiro token e o tempo de
+ * geração. A política mantém médias móveis desses tempos por conversação e compara com as de conversações novas
+ * (a primeira troca de cada conversação). A conversação é aposentada quando a maior das duas razões passa de
+ * {@code CONVERSATION_ROTATION_LATENCY_RATIO}, ou quando prompts e respostas somam mais de
+ * {@code CONVERSATION_ROTATION_MAX_CONTEXT_CHARS} caracteres.
+ * <p>
+ * As sessões dependem do contexto acumulado, então só trocam de conversação pelo volume e pelo orçamento; a latência
+ * só aposenta as conversações compartilhadas das requisições sem sessão, para as quais o contexto é só custo.
+ */
+final class RotationPolicy {
+    private static final Logger log = LoggerFactory.getLogger(RotationPolicy.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    static final String REASON_BUDGET = "budget";
+    static final String REASON_LATENCY = "latency";
+    static final String REASON_CONTEXT = "context";
+    static final String REASON_CREDENTIAL = "credential";
+
+    // Peso de cada nova amostra nas médias da conversação e na referência de conversações novas
+    private static final double CONVERSATION_ALPHA = 0.5;
+    private static final double BASELINE_ALPHA = 0.1;
+    // Conversações novas medidas antes de a latência poder aposentar alguma conversação
+    private static final int MIN_BASELINE_SAMPLES = 5;
+
+    private final boolean enabled;
+    private final double latencyRatio;
+    private final long maxContextChars;
+    private final int minExchanges;
+
+    // Médias da primeira troca de conversações novas (protegidas pelo lock da política)
+    private double baselineFirstTokenMillis;
+    private double baselineGenerationMillisPerChar;
+    private int baselineFirstTokenSamples;
+    private int baselineGenerationSamples;
+
+    /**
+     * @param latencyRatio    Razão sobre conversações novas a partir da qual a conversação é aposentada.
+     * @param maxContextChars Caracteres de prompt e resposta acumulados a partir dos quais a conversação é aposentada.
+     * @param minExchanges    Trocas na conversação antes de a latência poder aposentá-la.
+     */
+    RotationPolicy(boolean enabled, double latencyRatio, long maxContextChars, int minExchanges) {
+        if (latencyRatio <= 1 || maxContextChars < 1 || minExchanges < 1) {
+            throw new IllegalArgumentException("latencyRatio deve ser > 1; maxContextChars e minExchanges, >= 1");
+        }
+        this.enabled = enabled;
+        this.latencyRatio = latencyRatio;
+        this.maxContextChars = maxContextChars;
+        this.minExchanges = minExchanges;
+    }
+
+    /**
+     * Cria a política configurada pelas chaves CONVERSATION_ROTATION_* do .env.
+     */
+    static RotationPolicy fromEnv() {
+        return new RotationPolicy(
+                Boolean.parseBoolean(dotenv.get("CONVERSATION_ROTATION_ADAPTIVE", "true")),
+                Double.parseDouble(dotenv.get("CONVERSATION_ROTATION_LATENCY_RATIO", "2.0")),
+                Long.parseLong(dotenv.get("CONVERSATION_ROTATION_MAX_CONTEXT_CHARS", "60000")),
+                Integer.parseInt(dotenv.get("CONVERSATION_ROTATION_MIN_EXCHANGES", "2")));
+    }
+
+    /**
+     * Registra uma troca concluída na conversação e a aposenta se o custo passou do limite.
+     *
+     * @param session     Se a conversação é exclusiva de uma sessão.
+     * @param promptChars Caracteres do prompt enviado.
+     * @param timing      Os tempos da chamada ao chat.
+     */
+    void record(Conversation conversation, boolean session, int promptChars, ChatTiming timing) {
+        if (!enabled) {
+            return;
+        }
+        double firstTokenMillis = timing.getFirstTokenMillis();
+        double generationMillisPerChar = timing.getGenerationMillisPerChar();
+        Conversation.Usage usage = conversation.recordExchange(promptChars + timing.getAnswerChars(),
+                firstTokenMillis, generationMillisPerChar, CONVERSATION_ALPHA);
+        String scope = session ? "session" : "shared";
+
+        if (usage.exchanges() == 1) {
+            updateBaseline(firstTokenMillis, generationMillisPerChar);
+        }
+        double ratio = costRatio(usage);
+        if (ratio > 0) {
+            StackSpotMetrics.conversationCost(scope, ratio);
+        }
+
+        String reason = null;
+        if (usage.contextChars() >= maxContextChars) {
+            reason = REASON_CONTEXT;
+        } else if (!session && usage.exchanges() >= minExchanges && ratio >= latencyRatio) {
+            reason = REASON_LATENCY;
+        }
+        if (reason != null && conversation.hasBudget() && conversation.retire(reason)) {
+            log.debug("Conversação {} aposentada por {} após {} trocas ({} caracteres, custo {}).",
+                    conversation.getId(), reason, usage.exchanges(), usage.contextChars(), String.format("%.2f", ratio));
+        }
+    }
+
+    /**
+     * A maior razão entre as médias da conversação e as de conversações novas, ou 0 enquanto não há referência.
+     */
+    private synchronized double costRatio(Conversation.Usage usage) {
+        double ratio = 0;
+        if (baselineFirstTokenSamples >= MIN_BASELINE_SAMPLES && baselineFirstTokenMillis > 0 && usage.firstTokenMillis() > 0) {
+            ratio = usage.firstTokenMillis() / baselineFirstTokenMillis;
+        }
+        if (baselineGenerationSamples >= MIN_BASELINE_SAMPLES && baselineGenerationMillisPerChar > 0
+                && usage.generationMillisPerChar() > 0) {
+            ratio = Math.max(ratio, usage.generationMillisPerChar() / baselineGenerationMillisPerChar);
+        }
+        return ratio;
+    }
+
+    private synchronized void updateBaseline(double firstTokenMillis, double generationMillisPerChar) {
+        if (firstTokenMillis >= 0) {
+            baselineFirstTokenSamples++;
+            baselineFirstTokenMillis = average(baselineFirstTokenMillis, firstTokenMillis, baselineFirstTokenSamples);
+        }
+        if (generationMillisPerChar >= 0) {
+            baselineGenerationSamples++;
+            baselineGenerationMillisPerChar = average(baselineGenerationMillisPerChar, generationMillisPerChar, baselineGenerationSamples);
+        }
+    }
+
+    /**
+     * Média simples nas primeiras amostras, depois média móvel exponencial.
+     */
+    private static double average(double current, double sample, int samples) {
+        return current + Math.max(BASELINE_ALPHA, 1.0 / samples) * (sample - current);
+    }
+}
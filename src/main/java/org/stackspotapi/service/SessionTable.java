@@ -0,0 +1,318 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Associa cada sessão de cliente à sua própria conversação da StackSpot AI.
+ * <p>
+ * A tabela é dividida em segmentos, cada um um {@link LinkedHashMap} em ordem de acesso protegido pelo seu
+ * próprio lock, então sessões diferentes raramente disputam o mesmo lock. Cada segmento tem capacidade
+ * limitada e descarta a sessão usada há mais tempo (LRU). Sessões ociosas além do TTL são descartadas na
+ * consulta e por uma varredura periódica.
+ * <p>
+ * Cada sessão recebe uma conversação exclusiva de um dos clients do {@link CredentialPool} com o orçamento de
+ * requisições por sessão e fica nesse client; quando o orçamento acaba, quando o contexto passa do limite da
+ * {@link RotationPolicy} ou quando o client sai do rodízio, a sessão passa para uma conversação nova, escolhida pelo
+ * balanceamento do pool.
+ */
+public class SessionTable {
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final int SEGMENTS = 16;
+
+    private final CredentialPool credentialPool;
+    private final long idleTtlNanos;
+    private final int requestBudget;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SessionTable(CredentialPool credentialPool, int maxSessions, long idleTtlMs, int requestBudget) {
+        if (maxSessions < 1 || idleTtlMs < 1 || requestBudget < 1) {
+            throw new IllegalArgumentException("maxSessions, idleTtlMs e requestBudget devem ser >= 1");
+        }
+        this.credentialPool = credentialPool;
+        this.idleTtlNanos = TimeUnit.MILLISECONDS.toNanos(idleTtlMs);
+        this.requestBudget = requestBudget;
+        int perSegment = Math.max(1, (maxSessions + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepInterval = Math.max(1000L, idleTtlMs / 4);
+        sweeper.scheduleWithFixedDelay(this::sweepExpired, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cria uma tabela configurada pelas chaves SESSION_* do .env.
+     */
+    public static SessionTable fromEnv(CredentialPool credentialPool) {
+        return new SessionTable(
+                credentialPool,
+                Integer.parseInt(dotenv.get("SESSION_MAX", "10000")),
+                Long.parseLong(dotenv.get("SESSION_IDLE_TTL_SECONDS", "1800")) * 1000,
+                Integer.parseInt(dotenv.get("SESSION_REQUEST_BUDGET", String.valueOf(credentialPool.getRequestBudget())))
+        );
+    }
+
+    /**
+     * Reserva uma requisição na conversação da sessão, criando a sessão ou trocando a conversação se necessário.
+     *
+     * @param sessionId A chave de sessão informada pelo cliente.
+     * @return A conversação da sessão.
+     * @throws IOException          Se não houver conversação disponível no pool.
+     * @throws InterruptedException Se a thread for interrompida durante a espera.
+     */
+    public Conversation acquire(String sessionId) throws IOException, InterruptedException {
+        try {
+            return acquireAsync(sessionId).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Falha ao obter a conversação da sessão: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #acquire(String)}: se a sessão precisa de uma conversação nova e o pool está
+     * vazio, o future é completado quando ela ficar pronta, sem ocupar a thread chamadora.
+     */
+    public CompletableFuture<Conversation> acquireAsync(String sessionId) {
+        Session session = segmentFor(sessionId).getOrCreate(sessionId);
+        return session.acquireAsync();
+    }
+
+    /**
+     * Descarta a sessão, liberando o seu lugar na tabela antes do TTL de ociosidade (ex.: quando a conexão dona da
+     * sessão é fechada). A conversação da sessão não é reaproveitada.
+     */
+    public void remove(String sessionId) {
+        segmentFor(sessionId).remove(sessionId);
+    }
+
+    /**
+     * Número de sessões na tabela.
+     */
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    /**
+     * Total de sessões descartadas por capacidade ou por ociosidade.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Percorre as sessões ainda válidas que têm conversação (ex.: para gravar o estado).
+     */
+    void forEachSession(SessionVisitor visitor) {
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            segment.forEachValid(now, visitor);
+        }
+    }
+
+    /**
+     * Recria uma sessão de uma execução anterior com a sua conversação, se ela ainda não tiver expirado e a sessão
+     * ainda não existir.
+     *
+     * @param idleMillis Tempo desde o último acesso à sessão.
+     * @return {@code true} se a sessão foi recriada.
+     */
+    boolean restore(String sessionId, Conversation conversation, long idleMillis) {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleMillis));
+        if (idleNanos >= idleTtlNanos) {
+            return false;
+        }
+        return segmentFor(sessionId).restore(sessionId, conversation, System.nanoTime() - idleNanos);
+    }
+
+    private Segment segmentFor(String sessionId) {
+        int hash = sessionId.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private void sweepExpired() {
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            segment.removeExpired(now);
+        }
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now - session.lastAccessNanos > idleTtlNanos;
+    }
+
+    /**
+     * Um segmento da tabela: LRU limitado pelo seu próprio lock.
+     */
+    private final class Segment {
+        private final LinkedHashMap<String, Session> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                    if (size() > capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Session getOrCreate(String sessionId) {
+            long now = System.nanoTime();
+            Session session = entries.get(sessionId);
+            if (session == null || isExpired(session, now)) {
+                if (session != null) {
+                    evictions.incrementAndGet();
+                }
+                session = new Session();
+                entries.put(sessionId, session);
+            }
+            session.lastAccessNanos = now;
+            return session;
+        }
+
+        synchronized boolean restore(String sessionId, Conversation conversation, long lastAccessNanos) {
+            if (entries.containsKey(sessionId)) {
+                return false;
+            }
+            Session session = new Session();
+            session.conversation = conversation;
+            session.lastAccessNanos = lastAccessNanos;
+            entries.put(sessionId, session);
+            return true;
+        }
+
+        synchronized void forEachValid(long now, SessionVisitor visitor) {
+            // Percorre os valores sem get(), que mudaria a ordem de acesso do LRU
+            for (Map.Entry<String, Session> entry : entries.entrySet()) {
+                Session session = entry.getValue();
+                Conversation conversation;
+                synchronized (session) {
+                    conversation = session.conversation;
+                }
+                if (conversation != null && conversation.hasBudget() && !isExpired(session, now)) {
+                    visitor.visit(entry.getKey(), conversation, TimeUnit.NANOSECONDS.toMillis(now - session.lastAccessNanos));
+                }
+            }
+        }
+
+        synchronized void removeExpired(long now) {
+            Iterator<Session> iterator = entries.values().iterator();
+            // Em ordem de acesso, a primeira sessão ainda válida encerra a varredura
+            while (iterator.hasNext()) {
+                if (!isExpired(iterator.next(), now)) {
+                    return;
+                }
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        synchronized void remove(String sessionId) {
+            entries.remove(sessionId);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Recebe cada sessão percorrida por {@link #forEachSession(SessionVisitor)}.
+     */
+    interface SessionVisitor {
+        void visit(String sessionId, Conversation conversation, long idleMillis);
+    }
+
+    /**
+     * Estado de uma sessão. O lock da sessão só é disputado por requisições da mesma sessão e nunca é mantido
+     * durante a espera por uma conversação nova.
+     */
+    private final class Session {
+        private volatile long lastAccessNanos = System.nanoTime();
+        private Conversation conversation;
+        // Troca de conversação em andamento; requisições simultâneas da sessão esperam a mesma troca
+        private CompletableFuture<Conversation> pendingSwap;
+
+        CompletableFuture<Conversation> acquireAsync() {
+            CompletableFuture<Conversation> swap;
+            synchronized (this) {
+                if (conversation != null && credentialPool.isAvailable(conversation) && conversation.tryAcquire()) {
+                    return CompletableFuture.completedFuture(conversation);
+                }
+                if (pendingSwap == null) {
+                    CredentialSlot slot;
+                    try {
+                        slot = credentialPool.pick();
+                    } catch (IOException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    String reason = null;
+                    if (conversation != null) {
+                        reason = !credentialPool.isAvailable(conversation) ? RotationPolicy.REASON_CREDENTIAL
+                                : conversation.getRetireReason() != null ? conversation.getRetireReason() : RotationPolicy.REASON_BUDGET;
+                        StackSpotMetrics.conversationRotation("session", reason, conversation.getUseCount());
+                    }
+                    String rollover = reason;
+                    // Quem espera a troca só continua depois de a conversação nova estar na sessão; senão veria a
+                    // troca concluída sem conversação e tentaria de novo sem fim
+                    CompletableFuture<Conversation> started = new CompletableFuture<>();
+                    pendingSwap = started;
+                    slot.getConversationPool().takeExclusiveAsync(requestBudget).whenComplete((fresh, error) -> {
+                        synchronized (this) {
+                            if (fresh != null) {
+                                // O histórico da sessão fica na conversação anterior: o cliente precisa saber da troca
+                                if (rollover != null) {
+                                    fresh.markRollover(rollover);
+                                }
+                                conversation = fresh;
+                            }
+                            if (pendingSwap == started) {
+                                pendingSwap = null;
+                            }
+                        }
+                        if (error != null) {
+                            started.completeExceptionally(error);
+                        } else {
+                            started.complete(fresh);
+                        }
+                    });
+                }
+                swap = pendingSwap != null ? pendingSwap : CompletableFuture.completedFuture(conversation);
+            }
+            // Depois da troca, disputa o orçamento da conversação nova como qualquer outra requisição
+            return swap.thenCompose(ignored -> acquireAsync());
+        }
+    }
+}
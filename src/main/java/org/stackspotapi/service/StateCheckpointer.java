@@ -0,0 +1,184 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.dto.EnsureDto;
+import org.stackspotapi.state.StateSnapshot;
+import org.stackspotapi.state.StateStore;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grava periodicamente os tokens, as conversações dos pools e as conversações das sessões no {@link StateStore}, e
+ * os restaura na subida, para que um reinício não pague de novo pela autenticação e pela criação das conversações.
+ * <p>
+ * Na restauração só é aproveitado o que ainda vale: tokens fora da margem de expiração, conversações com orçamento
+ * e mais novas que {@code STATE_CONVERSATION_MAX_AGE_SECONDS}, sessões dentro do TTL de ociosidade, e apenas de
+ * clients ainda configurados com o mesmo realm e client ID. O estado também é gravado no desligamento da JVM.
+ */
+final class StateCheckpointer {
+    private static final Logger log = LoggerFactory.getLogger(StateCheckpointer.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private final StateStore store;
+    private final CredentialPool credentialPool;
+    private final SessionTable sessionTable;
+    private final Duration interval;
+    private final Duration maxConversationAge;
+
+    StateCheckpointer(StateStore store, CredentialPool credentialPool, SessionTable sessionTable, Duration interval,
+                      Duration maxConversationAge) {
+        this.store = store;
+        this.credentialPool = credentialPool;
+        this.sessionTable = sessionTable;
+        this.interval = interval;
+        this.maxConversationAge = maxConversationAge;
+    }
+
+    /**
+     * Cria o checkpointer configurado pelas chaves STATE_* do .env.
+     *
+     * @return O checkpointer, ou nulo se a persistência estiver desabilitada.
+     */
+    static StateCheckpointer fromEnv(CredentialPool credentialPool, SessionTable sessionTable) {
+        StateStore store = StateStore.fromEnv();
+        if (store == null) {
+            return null;
+        }
+        return new StateCheckpointer(store, credentialPool, sessionTable,
+                Duration.ofSeconds(Long.parseLong(dotenv.get("STATE_CHECKPOINT_INTERVAL_SECONDS", "10"))),
+                Duration.ofSeconds(Long.parseLong(dotenv.get("STATE_CONVERSATION_MAX_AGE_SECONDS", "21600"))));
+    }
+
+    /**
+     * Restaura o último estado gravado. Deve ser chamado antes de {@link CredentialPool#start()}.
+     */
+    void restore() {
+        StateSnapshot snapshot = store.load();
+        if (snapshot == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        int tokens = 0;
+        int conversations = 0;
+        int sessions = 0;
+
+        for (StateSnapshot.Token token : snapshot.getTokens()) {
+            CredentialSlot slot = validSlot(snapshot, token.getCredential());
+            if (slot != null && slot.getTokenManager().restore(new EnsureDto(token.getJwt(), token.getExpiresAt()))) {
+                tokens++;
+            }
+        }
+
+        Map<CredentialSlot, List<Conversation>> fresh = new LinkedHashMap<>();
+        Map<CredentialSlot, List<Conversation>> inUse = new LinkedHashMap<>();
+        for (StateSnapshot.SavedConversation saved : snapshot.getConversations()) {
+            CredentialSlot slot = validSlot(snapshot, saved.getCredential());
+            if (slot != null && isValid(saved, now)) {
+                (saved.isShared() ? inUse : fresh).computeIfAbsent(slot, s -> new ArrayList<>()).add(toConversation(saved));
+                conversations++;
+            }
+        }
+        for (CredentialSlot slot : credentialPool.getSlots()) {
+            slot.getConversationPool().restore(fresh.getOrDefault(slot, List.of()), inUse.getOrDefault(slot, List.of()));
+        }
+
+        for (StateSnapshot.Session session : snapshot.getSessions()) {
+            StateSnapshot.SavedConversation saved = session.getConversation();
+            if (validSlot(snapshot, saved.getCredential()) != null && isValid(saved, now)
+                    && sessionTable.restore(session.getSessionId(), toConversation(saved),
+                    Duration.between(session.getLastAccess(), now).toMillis())) {
+                sessions++;
+            }
+        }
+        log.info("Estado restaurado: {} token(s), {} conversação(ões) do pool e {} sessão(ões).", tokens, conversations, sessions);
+    }
+
+    /**
+     * Passa a gravar o estado a cada {@code STATE_CHECKPOINT_INTERVAL_SECONDS} e no desligamento da JVM.
+     */
+    void start() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "state-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(1000L, interval.toMillis());
+        scheduler.scheduleWithFixedDelay(this::checkpoint, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::checkpoint, "state-checkpoint-shutdown"));
+    }
+
+    /**
+     * Grava o estado atual.
+     */
+    void checkpoint() {
+        try {
+            store.save(capture());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Falha ao gravar o arquivo de estado: {}", e.getMessage());
+        }
+    }
+
+    private StateSnapshot capture() {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        List<StateSnapshot.Token> tokens = new ArrayList<>();
+        List<StateSnapshot.SavedConversation> conversations = new ArrayList<>();
+        for (CredentialSlot slot : credentialPool.getSlots()) {
+            String name = slot.getCredential().getName();
+            fingerprints.put(name, slot.getCredential().fingerprint());
+            EnsureDto token = slot.getTokenManager().peekToken();
+            if (token != null) {
+                tokens.add(new StateSnapshot.Token(name, token.getJwt(), token.getTokenExpiry()));
+            }
+            for (Conversation conversation : slot.getConversationPool().getReadyConversations()) {
+                conversations.add(toSaved(conversation, name, false));
+            }
+            for (Conversation conversation : slot.getConversationPool().getSharedConversations()) {
+                if (conversation.hasBudget()) {
+                    conversations.add(toSaved(conversation, name, true));
+                }
+            }
+        }
+
+        List<StateSnapshot.Session> sessions = new ArrayList<>();
+        Instant now = Instant.now();
+        sessionTable.forEachSession((sessionId, conversation, idleMillis) -> {
+            if (conversation.getCredential() != null) {
+                sessions.add(new StateSnapshot.Session(sessionId, toSaved(conversation, conversation.getCredential(), false),
+                        now.minusMillis(idleMillis)));
+            }
+        });
+        return new StateSnapshot(fingerprints, tokens, conversations, sessions);
+    }
+
+    /**
+     * O client com esse nome, se ele ainda estiver configurado com o mesmo realm e client ID da gravação.
+     */
+    private CredentialSlot validSlot(StateSnapshot snapshot, String name) {
+        CredentialSlot slot = credentialPool.getSlot(name);
+        return slot != null && slot.getCredential().fingerprint().equals(snapshot.getFingerprints().get(name)) ? slot : null;
+    }
+
+    private boolean isValid(StateSnapshot.SavedConversation saved, Instant now) {
+        return saved.getRemaining() > 0 && saved.getCreatedAt().plus(maxConversationAge).isAfter(now);
+    }
+
+    private static Conversation toConversation(StateSnapshot.SavedConversation saved) {
+        return new Conversation(saved.getId(), saved.getRemaining(), saved.getCredential(), saved.getCreatedAt());
+    }
+
+    private static StateSnapshot.SavedConversation toSaved(Conversation conversation, String credential, boolean shared) {
+        return new StateSnapshot.SavedConversation(credential, conversation.getId(), conversation.getRemaining(),
+                conversation.getCreatedAt(), shared);
+    }
+}
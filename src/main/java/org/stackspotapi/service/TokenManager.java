@@ -0,0 +1,229 @@
+package org.stackspotapi.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.dto.EnsureDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Mantém o token JWT atual e o renova em segundo plano.
+ * <p>
+ * O token fica em uma {@link AtomicReference}, então as threads de requisição apenas o leem.
+ * Renovações simultâneas são colapsadas em uma única chamada ao endpoint de autenticação, e uma
+ * renovação proativa é agendada antes da janela de segurança de {@link EnsureTokenService}.
+ * Se uma renovação falhar enquanto o token antigo ainda é válido, o antigo continua em uso e uma
+ * nova tentativa é agendada.
+ */
+public class TokenManager {
+    private static final Logger log = LoggerFactory.getLogger(TokenManager.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    // Antecedência da renovação proativa; deve ser maior que a janela de 5 minutos de EnsureTokenService
+    private static final Duration REFRESH_AHEAD = Duration.ofSeconds(Long.parseLong(dotenv.get("TOKEN_REFRESH_AHEAD_SECONDS", "600")));
+    // Espera antes de tentar de novo após uma renovação com falha
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(Long.parseLong(dotenv.get("TOKEN_REFRESH_RETRY_SECONDS", "15")));
+    // Margem para não usar um token que expira durante o trânsito da requisição
+    private static final Duration EXPIRY_SKEW = Duration.ofSeconds(30);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "token-refresh-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<EnsureDto> fetcher;
+    private final AtomicReference<EnsureDto> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<EnsureDto>> inFlight = new AtomicReference<>();
+    // Após uma falha, evita que cada requisição dispare uma nova tentativa antes de RETRY_DELAY
+    private volatile long retryNotBefore = System.nanoTime();
+
+    /**
+     * @param fetcher Busca um novo token no endpoint de autenticação; retorna nulo em caso de falha.
+     */
+    public TokenManager(Supplier<EnsureDto> fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Retorna um token utilizável sem bloquear, exceto quando ainda não existe nenhum token válido.
+     * <p>
+     * Se o token atual já entrou na janela de renovação, uma renovação em segundo plano é disparada
+     * e o token atual é devolvido mesmo assim. Sem token, uma renovação que falhou há menos de
+     * {@code TOKEN_REFRESH_RETRY_SECONDS} não é repetida: a chamada devolve nulo na hora.
+     *
+     * @return Um token válido, ou nulo se não houver token e a autenticação falhar.
+     */
+    public EnsureDto getToken() {
+        EnsureDto token = current.get();
+        if (isUsable(token)) {
+            if (isDueForRefresh(token) && System.nanoTime() - retryNotBefore >= 0) {
+                refreshAsync();
+            }
+            return token;
+        }
+
+        CompletableFuture<EnsureDto> refresh = refreshWithoutToken();
+        if (refresh == null) {
+            return null;
+        }
+        try {
+            return refresh.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Falha ao renovar o token: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #getToken()}: só espera (sem bloquear) quando ainda não existe token válido.
+     *
+     * @return Um future com um token válido, ou com nulo se não houver token e a autenticação falhar.
+     */
+    public CompletableFuture<EnsureDto> getTokenAsync() {
+        EnsureDto token = current.get();
+        if (isUsable(token)) {
+            if (isDueForRefresh(token) && System.nanoTime() - retryNotBefore >= 0) {
+                refreshAsync();
+            }
+            return CompletableFuture.completedFuture(token);
+        }
+        CompletableFuture<EnsureDto> refresh = refreshWithoutToken();
+        return refresh != null ? refresh : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * A renovação para quem não tem token utilizável: a que está em andamento, uma nova, ou nulo enquanto dura a
+     * espera depois de uma falha, para que as requisições não martelem a autenticação fora do ar.
+     */
+    private CompletableFuture<EnsureDto> refreshWithoutToken() {
+        CompletableFuture<EnsureDto> existing = inFlight.get();
+        if (existing != null) {
+            return existing;
+        }
+        if (System.nanoTime() - retryNotBefore < 0) {
+            return null;
+        }
+        return refreshAsync();
+    }
+
+    /**
+     * Dispara uma renovação, ou devolve a renovação que já está em andamento.
+     *
+     * @return Um future com o token resultante: o novo token, o antigo se a renovação falhar e ele
+     * ainda for válido, ou nulo se não houver token utilizável.
+     */
+    public CompletableFuture<EnsureDto> refreshAsync() {
+        while (true) {
+            CompletableFuture<EnsureDto> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<EnsureDto> refresh = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, refresh)) {
+                scheduler.execute(() -> runRefresh(refresh));
+                return refresh;
+            }
+        }
+    }
+
+    private void runRefresh(CompletableFuture<EnsureDto> refresh) {
+        EnsureDto result;
+        long start = System.nanoTime();
+        try {
+            EnsureDto fresh = fetcher.get();
+            if (fresh != null && isUsable(fresh)) {
+                StackSpotMetrics.tokenRefresh(StackSpotMetrics.SUCCESS, start);
+                current.set(fresh);
+                scheduleProactiveRefresh(fresh);
+                result = fresh;
+            } else {
+                StackSpotMetrics.tokenRefresh(StackSpotMetrics.FAILURE, start);
+                result = keepCurrentAfterFailure();
+            }
+        } catch (RuntimeException e) {
+            StackSpotMetrics.tokenRefresh(StackSpotMetrics.FAILURE, start);
+            log.error("Erro inesperado ao renovar o token", e);
+            result = keepCurrentAfterFailure();
+        }
+        // Libera a próxima renovação antes de acordar quem está esperando por esta
+        inFlight.set(null);
+        refresh.complete(result);
+    }
+
+    private EnsureDto keepCurrentAfterFailure() {
+        EnsureDto previous = current.get();
+        retryNotBefore = System.nanoTime() + RETRY_DELAY.toNanos();
+        if (isUsable(previous)) {
+            log.warn("Renovação do token falhou; mantendo o token atual até {}", previous.getTokenExpiry());
+            scheduler.schedule(this::refreshAsync, RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+            return previous;
+        }
+        return null;
+    }
+
+    private void scheduleProactiveRefresh(EnsureDto token) {
+        long untilExpiry = Duration.between(Instant.now(), token.getTokenExpiry()).toMillis();
+        // Tokens curtos são renovados na metade da vida útil em vez de imediatamente
+        long delay = Math.max(untilExpiry - REFRESH_AHEAD.toMillis(), untilExpiry / 2);
+        scheduler.schedule(() -> {
+            // Ignora agendamentos de tokens que já foram substituídos
+            if (current.get() == token) {
+                refreshAsync();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * O token atual se ainda for utilizável, sem disparar renovação.
+     */
+    public EnsureDto peekToken() {
+        EnsureDto token = current.get();
+        return isUsable(token) ? token : null;
+    }
+
+    /**
+     * Adota um token obtido antes (ex.: restaurado do arquivo de estado) se ele ainda for utilizável e nenhum outro
+     * tiver sido obtido, agendando a renovação proativa como para um token novo.
+     *
+     * @return {@code true} se o token foi adotado.
+     */
+    public boolean restore(EnsureDto token) {
+        if (!isUsable(token) || !current.compareAndSet(null, token)) {
+            return false;
+        }
+        scheduleProactiveRefresh(token);
+        return true;
+    }
+
+    /**
+     * Indica se há um token válido agora, sem disparar renovação.
+     */
+    public boolean hasUsableToken() {
+        return isUsable(current.get());
+    }
+
+    private static boolean isUsable(EnsureDto token) {
+        return token != null && token.getJwt() != null && !token.getJwt().isBlank() && token.getTokenExpiry() != null
+                && Instant.now().isBefore(token.getTokenExpiry().minus(EXPIRY_SKEW));
+    }
+
+    private static boolean isDueForRefresh(EnsureDto token) {
+        return !Instant.now().isBefore(token.getTokenExpiry().minus(REFRESH_AHEAD));
+    }
+}
@@ -0,0 +1,78 @@
+package org.stackspotapi.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Índice hash do conteúdo → {@code upload_id} dos arquivos já enviados à StackSpot, para que o mesmo conteúdo não
+ * seja enviado de novo enquanto o upload anterior ainda vale.
+ * <p>
+ * Cada entrada vence antes de o upload expirar na StackSpot. O índice guarda no máximo {@code maxEntries} entradas e
+ * descarta a usada há mais tempo. Envios simultâneos do mesmo conteúdo compartilham um único upload.
+ */
+final class UploadIndex {
+    private final int maxEntries;
+    // Em ordem de acesso, para descartar a entrada usada há mais tempo (protegido pelo lock do índice)
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, CompletableFuture<String>> inFlight = new HashMap<>();
+
+    UploadIndex(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > UploadIndex.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Reserva o envio do conteúdo {@code hash} para {@code upload}, a menos que ele já tenha um upload válido ou em
+     * andamento. Quem recebe nulo precisa fazer o envio e chamar {@link #settle}.
+     *
+     * @return Um future com o {@code upload_id} já existente ou do envio em andamento, ou nulo se o envio ficou com
+     * quem chamou.
+     */
+    synchronized CompletableFuture<String> claim(String hash, CompletableFuture<String> upload) {
+        Entry entry = entries.get(hash);
+        if (entry != null) {
+            if (entry.expiresAtMillis > System.currentTimeMillis()) {
+                return CompletableFuture.completedFuture(entry.uploadId);
+            }
+            entries.remove(hash);
+        }
+        CompletableFuture<String> existing = inFlight.get(hash);
+        if (existing != null) {
+            return existing;
+        }
+        inFlight.put(hash, upload);
+        return null;
+    }
+
+    /**
+     * Conclui o envio reservado com {@link #claim}: indexa o {@code upload_id} até {@code expiresAtMillis} e entrega o
+     * resultado a quem esperava pelo mesmo conteúdo.
+     */
+    void settle(String hash, CompletableFuture<String> upload, String uploadId, Throwable error, long expiresAtMillis) {
+        synchronized (this) {
+            inFlight.remove(hash, upload);
+            if (error == null && uploadId != null) {
+                entries.put(hash, new Entry(uploadId, expiresAtMillis));
+            }
+        }
+        if (error != null) {
+            upload.completeExceptionally(error);
+        } else {
+            upload.complete(uploadId);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(String uploadId, long expiresAtMillis) {
+    }
+}
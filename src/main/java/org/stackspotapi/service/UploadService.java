@@ -0,0 +1,338 @@
+package org.stackspotapi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.dto.EnsureDto;
+import org.stackspotapi.dto.UploadResponseDto;
+import org.stackspotapi.metrics.StackSpotMetrics;
+import org.stackspotapi.transport.Endpoint;
+import org.stackspotapi.transport.StackSpotTransport;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envia arquivos à StackSpot para anexá-los aos prompts ({@code upload_ids} do chat), sem carregar o conteúdo
+ * inteiro na memória e sem enviar duas vezes o mesmo conteúdo.
+ * <p>
+ * O arquivo vem do disco, dentro de {@code UPLOAD_ROOT}, ou do corpo da requisição. O corpo é copiado em blocos por
+ * canais NIO para um arquivo temporário, e o SHA-256 é calculado na mesma passada. Arquivos em disco têm o hash
+ * calculado sobre janelas mapeadas em memória, sem cópia para o heap. Se o hash já está no {@link UploadIndex}, o
+ * {@code upload_id} existente é devolvido e nada é transferido.
+ * <p>
+ * Um upload novo pede à API um formulário de envio ({@code /v1/file-upload/form}) e posta o arquivo na URL de
+ * armazenamento devolvida. O corpo multipart é montado com o arquivo lido em blocos pelo {@code HttpClient}.
+ */
+public class UploadService {
+    private static final Logger log = LoggerFactory.getLogger(UploadService.class);
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String FORM_PATH = "/v1/file-upload/form";
+    private static final String TARGET_TYPE = "CONTEXT";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Janela mapeada por vez no cálculo do hash de arquivos em disco
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    public static final long MAX_BYTES = Long.parseLong(dotenv.get("UPLOAD_MAX_BYTES", "52428800"));
+    private static final long EXPIRATION_MINUTES = Long.parseLong(dotenv.get("UPLOAD_EXPIRATION_MINUTES", "60"));
+    // O índice deixa de reaproveitar um upload um pouco antes de ele expirar na StackSpot
+    private static final long REUSE_MILLIS = TimeUnit.MINUTES.toMillis(EXPIRATION_MINUTES) * 9 / 10;
+    private static final Path ROOT = rootFromEnv();
+    private static final Path SPOOL_DIR = Path.of(dotenv.get("UPLOAD_SPOOL_DIR", System.getProperty("java.io.tmpdir")));
+
+    static final UploadIndex index = new UploadIndex(Integer.parseInt(dotenv.get("UPLOAD_INDEX_MAX_ENTRIES", "10000")));
+
+    // Leitura e hash dos arquivos em disco (I/O bloqueante) fora das threads do servlet e do transporte
+    private static final AtomicInteger ioThreadCount = new AtomicInteger();
+    private static final ExecutorService ioExecutor = Executors.newFixedThreadPool(
+            Integer.parseInt(dotenv.get("UPLOAD_IO_THREADS", "2")), runnable -> {
+                Thread thread = new Thread(runnable, "upload-io-" + ioThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Envia um arquivo de {@code UPLOAD_ROOT}.
+     *
+     * @param relativePath O caminho do arquivo relativo a {@code UPLOAD_ROOT}.
+     * @return Um future com o upload, completado com {@link UploadsDisabledException} se {@code UPLOAD_ROOT} não
+     * estiver configurado, {@link IllegalArgumentException} se o caminho sair dele ou não for um arquivo,
+     * {@link java.nio.file.NoSuchFileException} se o arquivo não existir, {@link UploadTooLargeException} ou as falhas
+     * de {@link #uploadStream(InputStream, String)}.
+     */
+    public static CompletableFuture<UploadResponseDto> uploadFile(String relativePath) {
+        if (ROOT == null) {
+            return CompletableFuture.failedFuture(new UploadsDisabledException());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Path file = resolve(ROOT, relativePath);
+                        long size = Files.size(file);
+                        if (size > MAX_BYTES) {
+                            throw new UploadTooLargeException(MAX_BYTES);
+                        }
+                        return new Spooled(file, sha256(file), size);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, ioExecutor)
+                .exceptionally(error -> {
+                    Throwable cause = unwrap(error);
+                    throw new CompletionException(cause instanceof UncheckedIOException unchecked ? unchecked.getCause() : cause);
+                })
+                .thenCompose(file -> upload(file, file.path().getFileName().toString(), false));
+    }
+
+    /**
+     * Envia o conteúdo lido de {@code body}. O corpo é copiado para um arquivo temporário na thread que chama, que é
+     * apagado quando o envio termina.
+     *
+     * @param fileName O nome do arquivo informado à StackSpot.
+     * @return Um future com o upload, completado com {@link UpstreamUnavailableException} se nenhum client estiver
+     * disponível ou a StackSpot estiver limitando as requisições, ou com {@link IOException} se o envio falhar.
+     * @throws UploadTooLargeException Se o corpo passar de {@code UPLOAD_MAX_BYTES}.
+     * @throws IOException             Se o corpo não puder ser lido ou gravado no arquivo temporário.
+     */
+    public static CompletableFuture<UploadResponseDto> uploadStream(InputStream body, String fileName) throws IOException {
+        return upload(spool(body), fileName, true);
+    }
+
+    private static CompletableFuture<UploadResponseDto> upload(Spooled file, String fileName, boolean temporary) {
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        CompletableFuture<String> existing = index.claim(file.sha256(), upload);
+        if (existing != null) {
+            if (temporary) {
+                deleteQuietly(file.path());
+            }
+            return existing.thenApply(uploadId -> {
+                StackSpotMetrics.upload("deduplicated", 0);
+                return new UploadResponseDto(uploadId, file.sha256(), file.size(), true);
+            });
+        }
+
+        long expiresAt = System.currentTimeMillis() + REUSE_MILLIS;
+        send(file, fileName).whenComplete((uploadId, error) -> {
+            if (temporary) {
+                deleteQuietly(file.path());
+            }
+            Throwable cause = unwrap(error);
+            if (cause != null) {
+                log.warn("Falha no upload de {}: {}", fileName, cause.getMessage());
+            }
+            StackSpotMetrics.upload(cause == null ? "uploaded" : "failed", cause == null ? file.size() : 0);
+            index.settle(file.sha256(), upload, uploadId, cause, expiresAt);
+        });
+        return upload.thenApply(uploadId -> new UploadResponseDto(uploadId, file.sha256(), file.size(), false));
+    }
+
+    private static CompletableFuture<String> send(Spooled file, String fileName) {
+        CredentialSlot slot;
+        try {
+            slot = AiChatService.getCredentialPool().pick();
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        slot.begin();
+        return slot.getTokenManager().getTokenAsync()
+                .thenCompose(token -> {
+                    if (token == null) {
+                        throw new CompletionException(AiChatService.authenticationFailure());
+                    }
+                    return requestForm(fileName, token);
+                })
+                .thenCompose(form -> sendToStorage(form, file, fileName))
+                .whenComplete((uploadId, error) -> slot.end(unwrap(error)));
+    }
+
+    /**
+     * Pede à API o formulário de envio: o {@code upload_id}, a URL de armazenamento e os campos que precisam ir
+     * junto com o arquivo.
+     */
+    private static CompletableFuture<JsonNode> requestForm(String fileName, EnsureDto token) {
+        ObjectNode payload = objectMapper.createObjectNode()
+                .put("file_name", fileName)
+                .put("target_type", TARGET_TYPE)
+                .put("expiration", EXPIRATION_MINUTES);
+        HttpRequest request = StackSpotTransport.apiRequest(Endpoint.UPLOAD, FORM_PATH)
+                .header("Authorization", "Bearer " + token.getJwt())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+        return StackSpotTransport.sendAsync(Endpoint.UPLOAD, request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new CompletionException(new IOException("Formulário de upload recusado com status " + response.statusCode()));
+            }
+            try {
+                JsonNode form = objectMapper.readTree(response.body());
+                if (!form.hasNonNull("id") || !form.hasNonNull("url")) {
+                    throw new IOException("Formulário de upload sem 'id' ou 'url'.");
+                }
+                return form;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Posta o arquivo na URL de armazenamento como {@code multipart/form-data}: os campos do formulário e, por último,
+     * o arquivo, lido do disco em blocos enquanto é enviado. A URL é pré-assinada, então o token não vai junto.
+     */
+    private static CompletableFuture<String> sendToStorage(JsonNode form, Spooled file, String fileName) {
+        String boundary = "----stackspot-" + UUID.randomUUID();
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = form.path("form").fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            head.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\n\r\n"
+                    + field.getValue().asText() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        head.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\""
+                + fileName.replaceAll("[\"\\r\\n]", "_") + "\"\r\nContent-Type: application/octet-stream\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8));
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        HttpRequest.BodyPublisher content;
+        try {
+            content = HttpRequest.BodyPublishers.ofFile(file.path());
+        } catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = StackSpotTransport.urlRequest(Endpoint.UPLOAD, URI.create(form.get("url").asText()))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofByteArray(head.toByteArray()),
+                        content,
+                        HttpRequest.BodyPublishers.ofByteArray(tail)))
+                .build();
+        String uploadId = form.get("id").asText();
+        return StackSpotTransport.sendAsync(Endpoint.UPLOAD, request, HttpResponse.BodyHandlers.discarding()).thenApply(response -> {
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new CompletionException(new IOException("Envio do arquivo recusado com status " + response.statusCode()));
+            }
+            log.debug("Arquivo {} enviado ({} bytes), upload_id {}", fileName, file.size(), uploadId);
+            return uploadId;
+        });
+    }
+
+    /**
+     * Copia o corpo para um arquivo temporário em blocos de {@link #CHUNK_SIZE}, calculando o SHA-256 na mesma passada.
+     */
+    private static Spooled spool(InputStream body) throws IOException {
+        Path file = Files.createTempFile(SPOOL_DIR, "upload-", ".part");
+        MessageDigest digest = sha256Digest();
+        long size = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        try (ReadableByteChannel in = Channels.newChannel(body);
+             FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > MAX_BYTES) {
+                    throw new UploadTooLargeException(MAX_BYTES);
+                }
+                buffer.mark();
+                digest.update(buffer);
+                buffer.reset();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+        return new Spooled(file, HexFormat.of().formatHex(digest.digest()), size);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = sha256Digest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * O arquivo de {@code root} no caminho informado, seguindo links simbólicos, desde que continue dentro dele.
+     *
+     * @param root O diretório absoluto e normalizado, como {@link #ROOT}.
+     */
+    static Path resolve(Path root, String relativePath) throws IOException {
+        Path file = root.resolve(relativePath).normalize();
+        if (!file.startsWith(root)) {
+            throw new IllegalArgumentException("Caminho fora de UPLOAD_ROOT: " + relativePath);
+        }
+        Path real = file.toRealPath();
+        if (!real.startsWith(root.toRealPath()) || !Files.isRegularFile(real)) {
+            throw new IllegalArgumentException("Caminho não é um arquivo dentro de UPLOAD_ROOT: " + relativePath);
+        }
+        return real;
+    }
+
+    private static Path rootFromEnv() {
+        String root = dotenv.get("UPLOAD_ROOT", "");
+        return root.isBlank() ? null : Path.of(root).toAbsolutePath().normalize();
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Não foi possível apagar o arquivo temporário {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Um arquivo pronto para envio, com o hash e o tamanho do conteúdo.
+     */
+    private record Spooled(Path path, String sha256, long size) {
+    }
+}
@@ -0,0 +1,19 @@
+package org.stackspotapi.service;
+
+import java.io.IOException;
+
+/**
+ * O arquivo passa de {@code UPLOAD_MAX_BYTES}; nada foi enviado à StackSpot.
+ */
+public class UploadTooLargeException extends IOException {
+    private final long maxBytes;
+
+    public UploadTooLargeException(long maxBytes) {
+        super("Arquivo maior que o limite de " + maxBytes + " bytes.");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,13 @@
+package org.stackspotapi.service;
+
+import java.io.IOException;
+
+/**
+ * {@code UPLOAD_ROOT} não está configurado, então não há arquivos em disco para enviar.
+ */
+public class UploadsDisabledException extends IOException {
+
+    public UploadsDisabledException() {
+        super("Upload de arquivos em disco desabilitado (UPLOAD_ROOT vazio).");
+    }
+}
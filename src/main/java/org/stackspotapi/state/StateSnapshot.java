@@ -0,0 +1,142 @@
+package org.stackspotapi.state;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * O estado que sobrevive a um reinício: tokens, conversações dos pools e conversações das sessões, cada um ligado ao
+ * client da StackSpot que o criou.
+ * <p>
+ * Cada client é identificado pelo nome e por uma impressão digital do realm e do client ID; na restauração, tudo o
+ * que pertence a um client cuja impressão digital mudou é descartado. Os tokens ficam em claro aqui e só são
+ * cifrados pelo {@link StateStore} ao gravar.
+ */
+public final class StateSnapshot {
+    private final Map<String, String> fingerprints;
+    private final List<Token> tokens;
+    private final List<SavedConversation> conversations;
+    private final List<Session> sessions;
+
+    /**
+     * @param fingerprints Impressão digital de cada client, por nome.
+     */
+    public StateSnapshot(Map<String, String> fingerprints, List<Token> tokens, List<SavedConversation> conversations, List<Session> sessions) {
+        this.fingerprints = Map.copyOf(fingerprints);
+        this.tokens = List.copyOf(tokens);
+        this.conversations = List.copyOf(conversations);
+        this.sessions = List.copyOf(sessions);
+    }
+
+    public Map<String, String> getFingerprints() {
+        return fingerprints;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    public List<SavedConversation> getConversations() {
+        return conversations;
+    }
+
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * O token atual de um client.
+     */
+    public static final class Token {
+        private final String credential;
+        private final String jwt;
+        private final Instant expiresAt;
+
+        public Token(String credential, String jwt, Instant expiresAt) {
+            this.credential = credential;
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getCredential() {
+            return credential;
+        }
+
+        public String getJwt() {
+            return jwt;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    /**
+     * Uma conversação com o orçamento que ainda lhe resta.
+     */
+    public static final class SavedConversation {
+        private final String credential;
+        private final String id;
+        private final int remaining;
+        private final Instant createdAt;
+        private final boolean shared;
+
+        /**
+         * @param shared Se a conversação estava no rodízio compartilhado (ou ainda sem uso, se falso).
+         */
+        public SavedConversation(String credential, String id, int remaining, Instant createdAt, boolean shared) {
+            this.credential = credential;
+            this.id = id;
+            this.remaining = remaining;
+            this.createdAt = createdAt;
+            this.shared = shared;
+        }
+
+        public String getCredential() {
+            return credential;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getRemaining() {
+            return remaining;
+        }
+
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        public boolean isShared() {
+            return shared;
+        }
+    }
+
+    /**
+     * Uma sessão de cliente e a conversação exclusiva dela.
+     */
+    public static final class Session {
+        private final String sessionId;
+        private final SavedConversation conversation;
+        private final Instant lastAccess;
+
+        public Session(String sessionId, SavedConversation conversation, Instant lastAccess) {
+            this.sessionId = sessionId;
+            this.conversation = conversation;
+            this.lastAccess = lastAccess;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public SavedConversation getConversation() {
+            return conversation;
+        }
+
+        public Instant getLastAccess() {
+            return lastAccess;
+        }
+    }
+}
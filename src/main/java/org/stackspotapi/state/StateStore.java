@@ -0,0 +1,268 @@
+package org.stackspotapi.state;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Grava e lê o {@link StateSnapshot} em um arquivo local, para que um reinício não jogue fora tokens e conversações
+ * ainda válidos.
+ * <p>
+ * O arquivo tem o formato {@code [magic:int][version:int][payloadLen:int][payload][crc32:int]} e é sempre reescrito
+ * inteiro: o conteúdo vai para um arquivo temporário, que é sincronizado no disco e então trocado pelo atual de forma
+ * atômica. Uma queda no meio da gravação deixa o arquivo anterior intacto; um arquivo truncado ou corrompido é
+ * ignorado na leitura. Gravações sem mudança no conteúdo são puladas.
+ * <p>
+ * Os tokens são cifrados com AES-GCM ({@link TokenCipher}) usando {@code STATE_ENCRYPTION_KEY}. Sem a chave, os
+ * tokens não são gravados; com uma chave diferente da usada na gravação, eles são descartados na leitura.
+ */
+public class StateStore {
+    private static final Logger log = LoggerFactory.getLogger(StateStore.class);
+    private static final Dotenv dotenv = Dotenv.load();
+    private static final int MAGIC = 0x53535354; // "SSST"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES * 3;
+
+    private final Path path;
+    private final TokenCipher cipher;
+    // Conteúdo da última gravação sem os tokens, e os tokens, para pular gravações sem mudança (acesso pelo lock do store)
+    private byte[] lastPlain;
+    private Map<String, String> lastTokens;
+
+    /**
+     * @param cipher Cifra dos tokens; se nula, os tokens não são gravados.
+     */
+    StateStore(Path path, TokenCipher cipher) {
+        this.path = path;
+        this.cipher = cipher;
+    }
+
+    /**
+     * Cria o store configurado pelas chaves STATE_* do .env.
+     *
+     * @return O store, ou nulo se {@code STATE_FILE_PATH} não estiver definido.
+     */
+    public static StateStore fromEnv() {
+        String file = dotenv.get("STATE_FILE_PATH", "");
+        if (file.isBlank()) {
+            return null;
+        }
+        String key = dotenv.get("STATE_ENCRYPTION_KEY", "");
+        TokenCipher cipher = null;
+        if (key.isBlank()) {
+            log.warn("STATE_ENCRYPTION_KEY não definida: os tokens não serão gravados em {}.", file);
+        } else {
+            try {
+                cipher = TokenCipher.fromBase64(key);
+            } catch (IllegalArgumentException e) {
+                log.warn("STATE_ENCRYPTION_KEY inválida ({}): os tokens não serão gravados em {}.", e.getMessage(), file);
+            }
+        }
+        return new StateStore(Path.of(file), cipher);
+    }
+
+    /**
+     * Lê o último estado gravado.
+     *
+     * @return O estado, ou nulo se o arquivo não existir ou não puder ser lido.
+     */
+    public synchronized StateSnapshot load() {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Falha ao ler o arquivo de estado {}: {}", path, e.getMessage());
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        if (content.length < HEADER_BYTES + Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            log.warn("Arquivo de estado {} ignorado: formato desconhecido.", path);
+            return null;
+        }
+        int payloadLength = buffer.getInt();
+        if (payloadLength < 0 || payloadLength != content.length - HEADER_BYTES - Integer.BYTES) {
+            log.warn("Arquivo de estado {} ignorado: tamanho inconsistente.", path);
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, HEADER_BYTES + payloadLength);
+        if ((int) crc.getValue() != ByteBuffer.wrap(content, HEADER_BYTES + payloadLength, Integer.BYTES).getInt()) {
+            log.warn("Arquivo de estado {} ignorado: checksum não confere.", path);
+            return null;
+        }
+
+        try {
+            return decode(new DataInputStream(new ByteArrayInputStream(content, HEADER_BYTES, payloadLength)));
+        } catch (IOException e) {
+            log.warn("Arquivo de estado {} ignorado: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Grava o estado de forma atômica, substituindo o anterior.
+     */
+    public synchronized void save(StateSnapshot snapshot) throws IOException {
+        byte[] plain = encodePlain(snapshot);
+        Map<String, String> tokens = new LinkedHashMap<>();
+        if (cipher != null) {
+            for (StateSnapshot.Token token : snapshot.getTokens()) {
+                tokens.put(token.getCredential(), token.getJwt() + "@" + token.getExpiresAt());
+            }
+        }
+        // O IV aleatório muda os tokens cifrados a cada gravação, então a comparação é feita antes de cifrar
+        if (Arrays.equals(plain, lastPlain) && tokens.equals(lastTokens)) {
+            return;
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(plain);
+        encodeTokens(snapshot, new DataOutputStream(payload));
+        byte[] payloadBytes = payload.toByteArray();
+        ByteBuffer content = ByteBuffer.allocate(HEADER_BYTES + payloadBytes.length + Integer.BYTES);
+        content.putInt(MAGIC).putInt(VERSION).putInt(payloadBytes.length).put(payloadBytes);
+        CRC32 crc = new CRC32();
+        crc.update(content.array(), 0, content.position());
+        content.putInt((int) crc.getValue());
+        content.flip();
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // Os IDs de sessão e de conversação ficam em claro: só o dono do processo pode ler o arquivo
+            Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastPlain = plain;
+        lastTokens = tokens;
+    }
+
+    /**
+     * Payload: seções de clients, conversações e sessões, seguidas da seção de tokens cifrados.
+     */
+    private static byte[] encodePlain(StateSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(snapshot.getFingerprints().size());
+        for (Map.Entry<String, String> entry : snapshot.getFingerprints().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue());
+        }
+        out.writeInt(snapshot.getConversations().size());
+        for (StateSnapshot.SavedConversation conversation : snapshot.getConversations()) {
+            writeConversation(out, conversation);
+        }
+        out.writeInt(snapshot.getSessions().size());
+        for (StateSnapshot.Session session : snapshot.getSessions()) {
+            out.writeUTF(session.getSessionId());
+            writeConversation(out, session.getConversation());
+            out.writeLong(session.getLastAccess().toEpochMilli());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void encodeTokens(StateSnapshot snapshot, DataOutputStream out) throws IOException {
+        List<StateSnapshot.Token> tokens = cipher != null ? snapshot.getTokens() : List.of();
+        out.writeInt(tokens.size());
+        for (StateSnapshot.Token token : tokens) {
+            byte[] sealed;
+            try {
+                sealed = cipher.encrypt(token.getJwt(), associatedData(token.getCredential(), snapshot.getFingerprints()));
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Falha ao cifrar o token do client " + token.getCredential(), e);
+            }
+            out.writeUTF(token.getCredential());
+            out.writeLong(token.getExpiresAt().toEpochMilli());
+            out.writeInt(sealed.length);
+            out.write(sealed);
+        }
+        out.flush();
+    }
+
+    private StateSnapshot decode(DataInputStream in) throws IOException {
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            fingerprints.put(in.readUTF(), in.readUTF());
+        }
+        List<StateSnapshot.SavedConversation> conversations = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            conversations.add(readConversation(in));
+        }
+        List<StateSnapshot.Session> sessions = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            sessions.add(new StateSnapshot.Session(in.readUTF(), readConversation(in), Instant.ofEpochMilli(in.readLong())));
+        }
+
+        List<StateSnapshot.Token> tokens = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String credential = in.readUTF();
+            Instant expiresAt = Instant.ofEpochMilli(in.readLong());
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw new IOException("token com tamanho inválido");
+            }
+            byte[] sealed = in.readNBytes(length);
+            if (cipher == null) {
+                continue;
+            }
+            try {
+                tokens.add(new StateSnapshot.Token(credential, cipher.decrypt(sealed, associatedData(credential, fingerprints)), expiresAt));
+            } catch (GeneralSecurityException e) {
+                log.warn("Token do client {} descartado: não foi possível decifrá-lo (STATE_ENCRYPTION_KEY mudou?).", credential);
+            }
+        }
+        return new StateSnapshot(fingerprints, tokens, conversations, sessions);
+    }
+
+    private static String associatedData(String credential, Map<String, String> fingerprints) {
+        return credential + ":" + fingerprints.getOrDefault(credential, "");
+    }
+
+    private static void writeConversation(DataOutputStream out, StateSnapshot.SavedConversation conversation) throws IOException {
+        out.writeUTF(conversation.getCredential());
+        out.writeUTF(conversation.getId());
+        out.writeInt(conversation.getRemaining());
+        out.writeLong(conversation.getCreatedAt().toEpochMilli());
+        out.writeBoolean(conversation.isShared());
+    }
+
+    private static StateSnapshot.SavedConversation readConversation(DataInputStream in) throws IOException {
+        return new StateSnapshot.SavedConversation(in.readUTF(), in.readUTF(), in.readInt(), Instant.ofEpochMilli(in.readLong()), in.readBoolean());
+    }
+}
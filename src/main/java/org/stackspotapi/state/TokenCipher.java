@@ -0,0 +1,68 @@
+package org.stackspotapi.state;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Cifra os tokens gravados no arquivo de estado com AES-GCM.
+ * <p>
+ * Cada token recebe um IV aleatório de 12 bytes, gravado antes do texto cifrado. O nome e a impressão digital do
+ * client entram como dados autenticados, então um token não pode ser trocado de client no arquivo sem que a
+ * decifragem falhe.
+ */
+final class TokenCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    private TokenCipher(byte[] key) {
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    /**
+     * @param base64Key Chave AES de 16, 24 ou 32 bytes em Base64.
+     * @throws IllegalArgumentException Se a chave não for Base64 válido ou tiver outro tamanho.
+     */
+    static TokenCipher fromBase64(String base64Key) {
+        byte[] key = Base64.getDecoder().decode(base64Key.strip());
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("a chave deve ter 16, 24 ou 32 bytes, tem " + key.length);
+        }
+        return new TokenCipher(key);
+    }
+
+    byte[] encrypt(String plaintext, String associatedData) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.allocate(IV_BYTES + ciphertext.length).put(iv).put(ciphertext).array();
+    }
+
+    /**
+     * @throws GeneralSecurityException Se a chave for outra, os dados autenticados não conferirem ou o conteúdo
+     *                                  tiver sido alterado.
+     */
+    String decrypt(byte[] sealed, String associatedData) throws GeneralSecurityException {
+        if (sealed.length <= IV_BYTES) {
+            throw new GeneralSecurityException("token cifrado truncado");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        byte[] plaintext = cipher.doFinal(Arrays.copyOfRange(sealed, IV_BYTES, sealed.length));
+        return new String(plaintext, StandardCharsets.UTF_8);
+    }
+}
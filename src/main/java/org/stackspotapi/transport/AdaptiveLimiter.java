@@ -0,0 +1,337 @@
+package org.stackspotapi.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limite de concorrência adaptativo de um grupo de endpoints da StackSpot, com fila de espera limitada.
+ * <p>
+ * O limite segue AIMD: cada resposta bem-sucedida com o limite em uso soma {@code 1/limite} (cerca de +1 a cada
+ * janela de requisições), e um 429, 502, 503 ou 504, uma falha de comunicação ou um tempo até os headers (suavizado)
+ * acima de {@code tolerância × linha de base} multiplicam o limite por {@code backoff}, no máximo uma vez por RTT.
+ * Os demais 5xx costumam ser erros da própria requisição, não sobrecarga, e não mexem no limite.
+ * A linha de base é uma média móvel longa (centenas de respostas) do tempo até os headers, então a variação natural
+ * da latência não reduz o limite; só uma fila se formando na StackSpot reduz. As médias são geométricas, para que
+ * a cauda longa de latência (uma resposta rara de segundos) não derrube o limite sozinha. A latência só é
+ * considerada com pelo menos metade do limite em uso.
+ * <p>
+ * Um 503 também pausa a admissão até o fim do {@code Retry-After}. Um 429 só reduz o limite: ele vale para a cota
+ * do client que fez a requisição, e pausar o grupo inteiro pararia também os outros clients. Requisições além do
+ * limite esperam em ordem de chegada por até {@code maxWait}; se a fila está cheia, o prazo acaba ou a pausa vai
+ * além do prazo, a requisição falha com {@link UpstreamUnavailableException} sem chegar à StackSpot.
+ */
+final class AdaptiveLimiter {
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+    // Média curta (~20 respostas) comparada à média longa (~500 respostas), ambas geométricas
+    private static final double SHORT_RTT_SMOOTHING = 0.05;
+    private static final double LONG_RTT_SMOOTHING = 0.002;
+    private static final int WARMUP_SAMPLES = 10;
+    // Um Retry-After absurdo não deve travar o endpoint indefinidamente
+    private static final long MAX_RETRY_AFTER_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final Endpoint endpoint;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final double backoff;
+    private final long defaultRetryAfterNanos;
+    private final ScheduledExecutorService scheduler;
+
+    // Estado protegido pelo lock do próprio limitador
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private boolean paused;
+    private long pausedUntilNanos;
+    // Médias do logaritmo do tempo até os headers: uma resposta rara e muito lenta pesa pouco
+    private double smoothedLogRtt;
+    private double baselineLogRtt;
+    private final double logTolerance;
+    private long samples;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    AdaptiveLimiter(Endpoint endpoint, int initialLimit, int minLimit, int maxLimit, int maxQueue, Duration maxWait,
+                    double backoff, double tolerance, Duration defaultRetryAfter, ScheduledExecutorService scheduler) {
+        this.endpoint = endpoint;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.backoff = backoff;
+        this.logTolerance = Math.log(tolerance);
+        this.defaultRetryAfterNanos = defaultRetryAfter.toNanos();
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Reserva uma vaga sem bloquear. O future completa com a vaga quando ela é liberada, ou com
+     * {@link UpstreamUnavailableException} se a requisição não puder ser admitida.
+     */
+    CompletableFuture<Permit> acquire() {
+        long now = System.nanoTime();
+        Waiter waiter;
+        synchronized (this) {
+            if (queue.isEmpty() && !isPaused(now) && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit(now));
+            }
+            long pauseLeft = isPaused(now) ? pausedUntilNanos - now : 0;
+            if (pauseLeft > maxWaitNanos) {
+                return rejected("paused", "StackSpot pediu para aguardar antes de novas requisições", pauseLeft);
+            }
+            if (queue.size() >= maxQueue) {
+                return rejected("queue_full", "fila de espera cheia", Math.max(pauseLeft, defaultRetryAfterNanos));
+            }
+            waiter = new Waiter(now);
+            queue.addLast(waiter);
+        }
+        waiter.timeout = scheduler.schedule(() -> expire(waiter), maxWaitNanos, TimeUnit.NANOSECONDS);
+        return waiter.future;
+    }
+
+    /**
+     * Reserva uma vaga bloqueando a thread por até {@code maxWait}.
+     *
+     * @throws UpstreamUnavailableException Se a requisição não puder ser admitida.
+     */
+    Permit acquireBlocking() throws IOException, InterruptedException {
+        CompletableFuture<Permit> pending = acquire();
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            if (!pending.cancel(false) && !pending.isCompletedExceptionally()) {
+                pending.join().release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * O tempo de espera pedido pela StackSpot no header {@code Retry-After} (segundos ou data HTTP), ou o padrão
+     * configurado se o header estiver ausente ou inválido.
+     */
+    Duration retryAfter(HttpHeaders headers) {
+        return Duration.ofNanos(retryAfterNanos(headers));
+    }
+
+    private long retryAfterNanos(HttpHeaders headers) {
+        Optional<String> header = headers.firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return defaultRetryAfterNanos;
+        }
+        String value = header.get().trim();
+        long nanos;
+        try {
+            nanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                nanos = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)).toNanos();
+            } catch (DateTimeParseException notDate) {
+                return defaultRetryAfterNanos;
+            }
+        }
+        return Math.min(MAX_RETRY_AFTER_NANOS, Math.max(0, nanos));
+    }
+
+    private CompletableFuture<Permit> rejected(String reason, String detail, long retryAfterNanos) {
+        StackSpotMetrics.limiterRejection(endpoint, reason);
+        return CompletableFuture.failedFuture(new UpstreamUnavailableException(
+                "StackSpot indisponível no momento (" + endpoint + "): " + detail + ".", Duration.ofNanos(retryAfterNanos)));
+    }
+
+    private void expire(Waiter waiter) {
+        long retryAfterNanos;
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+            long now = System.nanoTime();
+            retryAfterNanos = Math.max(isPaused(now) ? pausedUntilNanos - now : 0, defaultRetryAfterNanos);
+        }
+        if (waiter.future.completeExceptionally(new UpstreamUnavailableException(
+                "StackSpot indisponível no momento (" + endpoint + "): tempo de espera na fila esgotado.", Duration.ofNanos(retryAfterNanos)))) {
+            StackSpotMetrics.limiterRejection(endpoint, "timeout");
+        }
+    }
+
+    private boolean isPaused(long now) {
+        if (paused && now - pausedUntilNanos >= 0) {
+            paused = false;
+        }
+        return paused;
+    }
+
+    /**
+     * Admite as requisições da fila que cabem no limite atual. Os futures são completados fora do lock, porque
+     * completá-los já dispara o envio.
+     */
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && !isPaused(now) && inFlight < (int) limit) {
+                Waiter waiter = queue.pollFirst();
+                if (!waiter.future.isDone()) {
+                    inFlight++;
+                    admitted.add(waiter);
+                }
+            }
+        }
+        for (Waiter waiter : admitted) {
+            if (waiter.timeout != null) {
+                waiter.timeout.cancel(false);
+            }
+            StackSpotMetrics.limiterWait(endpoint, waiter.enqueuedNanos);
+            Permit permit = new Permit(System.nanoTime());
+            if (!waiter.future.complete(permit)) {
+                permit.release(); // Quem esperava desistiu (ex.: interrupção) entre a fila e a admissão
+            }
+        }
+    }
+
+    private synchronized void onSuccess(long rttNanos) {
+        long now = System.nanoTime();
+        double logRtt = Math.log(Math.max(1, rttNanos));
+        samples++;
+        if (samples <= WARMUP_SAMPLES) {
+            // Nas primeiras respostas as duas médias são a média simples, sem decisões de latência
+            baselineLogRtt += (logRtt - baselineLogRtt) / samples;
+            smoothedLogRtt = baselineLogRtt;
+            return;
+        }
+        smoothedLogRtt += SHORT_RTT_SMOOTHING * (logRtt - smoothedLogRtt);
+        baselineLogRtt += LONG_RTT_SMOOTHING * (logRtt - baselineLogRtt);
+
+        // Só faz sentido ajustar o limite quando ele está em uso; com poucas requisições, a latência
+        // não depende da nossa concorrência
+        if (inFlight * 2 < limit) {
+            return;
+        }
+        if (smoothedLogRtt - baselineLogRtt > logTolerance) {
+            decrease(now, "latência");
+        } else {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private synchronized void onDrop(String cause) {
+        decrease(System.nanoTime(), cause);
+    }
+
+    private synchronized void pause(long nanos) {
+        long now = System.nanoTime();
+        long until = now + nanos;
+        if (!isPaused(now) || until - pausedUntilNanos > 0) {
+            paused = true;
+            pausedUntilNanos = until;
+            scheduler.schedule(this::drain, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void decrease(long now, String cause) {
+        // Uma rajada de falhas da mesma janela conta uma vez só
+        if (samples > 0 && now - lastDecreaseNanos < (long) Math.exp(smoothedLogRtt)) {
+            return;
+        }
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoff);
+        lastDecreaseNanos = now;
+        if ((int) previous != (int) limit) {
+            log.debug("Limite de concorrência de {} reduzido de {} para {} ({}).", endpoint, (int) previous, (int) limit, cause);
+        }
+    }
+
+    /**
+     * Vaga de uma requisição em andamento. O transporte informa a chegada dos headers ou a falha do envio, e libera
+     * a vaga quando o corpo termina (inclusive por cancelamento).
+     */
+    final class Permit {
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean responded;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void onResponse(int status, HttpHeaders headers) {
+            responded = true;
+            if (status == 503) {
+                pause(retryAfterNanos(headers));
+                onDrop("status " + status);
+            } else if (status == 429 || status == 502 || status == 504) {
+                onDrop("status " + status);
+            } else if (status < 500) {
+                onSuccess(System.nanoTime() - startNanos);
+            }
+            drain();
+        }
+
+        /**
+         * Falha antes dos headers (conexão, timeout). Erros ao ler o corpo não indicam sobrecarga e são ignorados.
+         */
+        void onFailure() {
+            if (!responded) {
+                onDrop("falha de comunicação");
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                synchronized (AdaptiveLimiter.this) {
+                    inFlight--;
+                }
+                drain();
+            }
+        }
+    }
+
+    private final class Waiter {
+        private final long enqueuedNanos;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> timeout;
+
+        private Waiter(long enqueuedNanos) {
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.stackspotapi.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Disjuntor de um grupo de endpoints da StackSpot.
+ * <p>
+ * Fechado, deixa tudo passar e guarda o resultado das últimas {@code windowSize} chamadas; com pelo menos
+ * {@code minCalls} resultados e uma fração de falhas de {@code failureRate} ou mais, abre. Aberto, recusa as
+ * requisições na hora com {@link CircuitOpenException} por {@code openDuration}, sem ocupar threads nem vagas do
+ * limitador. Depois disso fica meio aberto: até {@code probes} requisições de teste passam, e o circuito fecha quando
+ * todas dão certo ou volta a abrir na primeira falha.
+ * <p>
+ * Contam como falha as falhas de comunicação (inclusive timeouts) e os status 5xx exceto 501. Um 429 é controle de
+ * vazão, tratado pelo {@link AdaptiveLimiter}, e não conta. Resultados de chamadas iniciadas antes da última mudança
+ * de estado são descartados.
+ */
+final class CircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Endpoint endpoint;
+    private final int minCalls;
+    private final double failureRate;
+    private final long openNanos;
+    private final int probes;
+
+    // Estado protegido pelo lock do próprio disjuntor
+    private final boolean[] outcomes;
+    private int next;
+    private int size;
+    private int failures;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openUntilNanos;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    CircuitBreaker(Endpoint endpoint, int windowSize, int minCalls, double failureRate, Duration openDuration, int probes) {
+        this.endpoint = endpoint;
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(minCalls, outcomes.length));
+        this.failureRate = failureRate;
+        this.openNanos = openDuration.toNanos();
+        this.probes = Math.max(1, probes);
+    }
+
+    /**
+     * Pede passagem para uma chamada. Quem recebe a {@link Call} deve informar o resultado ou cancelá-la.
+     *
+     * @throws CircuitOpenException Se o circuito está aberto, ou meio aberto com todas as chamadas de teste em andamento.
+     */
+    synchronized Call acquire() throws CircuitOpenException {
+        long now = System.nanoTime();
+        if (state == State.OPEN) {
+            if (now - openUntilNanos < 0) {
+                throw rejected(openUntilNanos - now);
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= probes) {
+                throw rejected(openNanos);
+            }
+            probesInFlight++;
+            return new Call(generation, true);
+        }
+        return new Call(generation, false);
+    }
+
+    /**
+     * A exceção que {@link #acquire()} lançaria agora se o circuito estiver aberto, ou nulo, sem reservar uma
+     * chamada de teste.
+     */
+    synchronized CircuitOpenException openError() {
+        long now = System.nanoTime();
+        return state == State.OPEN && now - openUntilNanos < 0 ? new CircuitOpenException(endpoint, Duration.ofNanos(openUntilNanos - now)) : null;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private CircuitOpenException rejected(long retryAfterNanos) {
+        StackSpotMetrics.breakerRejection(endpoint);
+        return new CircuitOpenException(endpoint, Duration.ofNanos(retryAfterNanos));
+    }
+
+    private synchronized void record(Call call, boolean failed) {
+        if (call.generation != generation) {
+            return;
+        }
+        if (call.probe) {
+            probesInFlight--;
+            if (failed) {
+                open();
+            } else if (++probeSuccesses >= probes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        if (size == outcomes.length && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failed;
+        next = (next + 1) % outcomes.length;
+        size = Math.min(size + 1, outcomes.length);
+        if (failed) {
+            failures++;
+        }
+        if (size >= minCalls && failures >= failureRate * size) {
+            open();
+        }
+    }
+
+    private synchronized void cancel(Call call) {
+        if (call.probe && call.generation == generation) {
+            probesInFlight--;
+        }
+    }
+
+    private void open() {
+        openUntilNanos = System.nanoTime() + openNanos;
+        transition(State.OPEN);
+    }
+
+    private void transition(State target) {
+        State previous = state;
+        state = target;
+        generation++;
+        next = 0;
+        size = 0;
+        failures = 0;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        StackSpotMetrics.breakerTransition(endpoint, previous.name(), target.name());
+        if (target == State.OPEN) {
+            log.warn("Circuito de {} aberto por {} ms ({}).", endpoint, Duration.ofNanos(openNanos).toMillis(),
+                    previous == State.HALF_OPEN ? "falha no teste" : "falhas seguidas");
+        } else {
+            log.info("Circuito de {}: {} -> {}.", endpoint, previous, target);
+        }
+    }
+
+    /**
+     * Uma chamada admitida pelo disjuntor. Só o primeiro resultado informado conta.
+     */
+    final class Call {
+        private final long generation;
+        private final boolean probe;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Call(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        void onResponse(int status) {
+            if (done.compareAndSet(false, true)) {
+                record(this, status >= 500 && status != 501);
+            }
+        }
+
+        void onFailure() {
+            if (done.compareAndSet(false, true)) {
+                record(this, true);
+            }
+        }
+
+        /**
+         * A chamada não chegou à StackSpot (ex.: recusada pelo limitador ou interrompida); não conta como resultado.
+         */
+        void cancel() {
+            if (done.compareAndSet(false, true)) {
+                CircuitBreaker.this.cancel(this);
+            }
+        }
+    }
+}
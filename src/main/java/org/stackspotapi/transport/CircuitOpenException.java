@@ -0,0 +1,23 @@
+package org.stackspotapi.transport;
+
+import java.time.Duration;
+
+/**
+ * O circuito do grupo de endpoints está aberto: as últimas chamadas falharam demais e a requisição foi recusada sem
+ * chegar à StackSpot. O tempo sugerido é o que falta para o circuito voltar a testar a StackSpot.
+ */
+public class CircuitOpenException extends UpstreamUnavailableException {
+    private final Endpoint endpoint;
+
+    public CircuitOpenException(Endpoint endpoint, Duration retryAfter) {
+        super("StackSpot indisponível no momento (" + endpoint + "): circuito aberto após falhas seguidas.", retryAfter);
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * O grupo de endpoints cujo circuito está aberto.
+     */
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+}
@@ -0,0 +1,82 @@
+package org.stackspotapi.transport;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link SSLContext} que delega a outro contexto já inicializado e conta os {@link SSLEngine} criados.
+ * <p>
+ * O {@code HttpClient} cria um engine por conexão TLS nova, então a contagem equivale ao número de handshakes,
+ * e comparada ao número de requisições mostra quanto as conexões estão sendo reaproveitadas.
+ */
+final class CountingSslContext extends SSLContext {
+
+    CountingSslContext(SSLContext delegate, LongAdder enginesCreated) {
+        super(new Spi(delegate, enginesCreated), delegate.getProvider(), delegate.getProtocol());
+    }
+
+    private static final class Spi extends SSLContextSpi {
+        private final SSLContext delegate;
+        private final LongAdder enginesCreated;
+
+        Spi(SSLContext delegate, LongAdder enginesCreated) {
+            this.delegate = delegate;
+            this.enginesCreated = enginesCreated;
+        }
+
+        @Override
+        protected void engineInit(javax.net.ssl.KeyManager[] km, javax.net.ssl.TrustManager[] tm, SecureRandom random) throws KeyManagementException {
+            throw new KeyManagementException("O contexto delegado já está inicializado");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            enginesCreated.increment();
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            enginesCreated.increment();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
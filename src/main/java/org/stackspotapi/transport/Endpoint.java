@@ -0,0 +1,51 @@
+package org.stackspotapi.transport;
+
+/**
+ * Grupos de endpoints da StackSpot, cada um com seu próprio timeout de requisição, limitador de concorrência e
+ * disjuntor. As configurações de um grupo podem ser sobrescritas no .env com o prefixo do grupo
+ * (ex.: {@code STACKSPOT_AUTH_LIMIT_MAX} sobrescreve {@code STACKSPOT_LIMIT_MAX} só para a autenticação).
+ */
+public enum Endpoint {
+    /**
+     * Endpoint de token do Keycloak ({@code /realms/{realm}/protocol/openid-connect/token}).
+     */
+    AUTH("STACKSPOT_AUTH", 10_000),
+    /**
+     * Endpoints de quick commands ({@code create-execution} e {@code callback}).
+     */
+    QUICK_COMMANDS("STACKSPOT_QUICK_COMMAND", 15_000),
+    /**
+     * Endpoint de chat com resposta em SSE ({@code /v3/chat}). O timeout vale até a chegada dos cabeçalhos da
+     * resposta, ou seja, limita o tempo até o primeiro byte e não a duração do stream.
+     */
+    CHAT("STACKSPOT_CHAT", 60_000),
+    /**
+     * Upload de arquivos: pedido do formulário ({@code /v1/file-upload/form}) e envio do conteúdo para a URL de
+     * armazenamento devolvida por ele. O timeout vale até a resposta do envio, então inclui a transferência do arquivo.
+     */
+    UPLOAD("STACKSPOT_UPLOAD", 120_000);
+
+    private final String envPrefix;
+    private final long defaultTimeoutMs;
+
+    Endpoint(String envPrefix, long defaultTimeoutMs) {
+        this.envPrefix = envPrefix;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+    }
+
+    String getTimeoutKey() {
+        return envKey("TIMEOUT_MS");
+    }
+
+    /**
+     * A chave do .env específica deste grupo para uma configuração (ex.: {@code LIMIT_MAX} vira
+     * {@code STACKSPOT_AUTH_LIMIT_MAX}).
+     */
+    String envKey(String setting) {
+        return envPrefix + "_" + setting;
+    }
+
+    long getDefaultTimeoutMs() {
+        return defaultTimeoutMs;
+    }
+}
@@ -0,0 +1,227 @@
+package org.stackspotapi.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parser incremental de Server-Sent Events que trabalha direto sobre os bytes recebidos.
+ * <p>
+ * Os blocos podem chegar cortados em qualquer ponto (inclusive no meio de um {@code \r\n} ou de um caractere
+ * UTF-8); o parser guarda o estado entre chamadas de {@link #feed(ByteBuffer)}. Segue as regras de
+ * enquadramento do SSE: linhas terminadas em CR, LF ou CRLF, várias linhas {@code data:} unidas por {@code \n},
+ * campos {@code event:} e {@code id:}, comentários iniciados por {@code :} e despacho do evento na linha vazia.
+ * Diferente da especificação, um evento com {@code event:} e sem {@code data:} (ex.: um {@code event: done} sem dados)
+ * também é despachado, com dados vazios, porque o nome do evento sozinho pode sinalizar o fim do stream.
+ * <p>
+ * Os buffers de linha e de dados são reaproveitados entre eventos; o {@link EventListener} recebe uma fatia do
+ * buffer interno, válida apenas durante a chamada. Uma linha ou um evento maior que o limite (1 MiB por padrão)
+ * interrompe o stream com {@link IOException}, para que um stream sem quebras de linha não esgote a memória.
+ * Uma instância atende um único stream e não é thread-safe.
+ */
+public final class SseParser {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final String DEFAULT_EVENT = "message";
+    private static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    /**
+     * Recebe cada evento completo do stream.
+     */
+    @FunctionalInterface
+    public interface EventListener {
+        /**
+         * @param event  O nome do evento ({@code "message"} quando o campo {@code event:} não foi enviado).
+         * @param data   Buffer com os dados do evento em UTF-8; não deve ser guardado após a chamada.
+         * @param offset Início dos dados em {@code data}.
+         * @param length Tamanho dos dados.
+         */
+        void onEvent(String event, byte[] data, int offset, int length) throws IOException;
+    }
+
+    private final EventListener listener;
+    private final int maxSize;
+
+    private byte[] line;
+    private int lineLength;
+    private byte[] data;
+    private int dataLength;
+    private boolean hasData;
+    // Um campo event: foi recebido no evento atual
+    private boolean hasEventName;
+    private String eventName;
+    private String lastEventId;
+
+    private boolean lastWasCarriageReturn;
+    private boolean firstLine = true;
+
+    public SseParser(EventListener listener) {
+        this(listener, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize Tamanho máximo, em bytes, de uma linha e dos dados de um evento.
+     */
+    SseParser(EventListener listener, int maxSize) {
+        this.listener = listener;
+        this.maxSize = maxSize;
+        this.line = new byte[Math.min(INITIAL_BUFFER_SIZE, maxSize)];
+        this.data = new byte[Math.min(INITIAL_BUFFER_SIZE, maxSize)];
+    }
+
+    /**
+     * Consome todos os bytes restantes de {@code buffer}, despachando os eventos que se completarem.
+     *
+     * @throws IOException Se o {@link EventListener} lançar ou uma linha ou evento passar do limite.
+     */
+    public void feed(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n') {
+                if (lastWasCarriageReturn) {
+                    lastWasCarriageReturn = false; // Segunda metade de um CRLF, a linha já foi processada
+                } else {
+                    endLine();
+                }
+            } else if (b == '\r') {
+                lastWasCarriageReturn = true;
+                endLine();
+            } else {
+                lastWasCarriageReturn = false;
+                appendToLine(b);
+            }
+        }
+    }
+
+    /**
+     * Sinaliza o fim do stream. Uma última linha sem terminador e um evento sem a linha vazia final ainda são
+     * despachados, já que a StackSpot nem sempre encerra o stream com uma linha em branco.
+     */
+    public void finish() throws IOException {
+        if (lineLength > 0) {
+            endLine();
+        }
+        dispatch();
+    }
+
+    /**
+     * O último {@code id:} recebido, ou nulo se o stream não enviou nenhum.
+     */
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    private void appendToLine(byte b) throws IOException {
+        if (lineLength == line.length) {
+            if (lineLength >= maxSize) {
+                throw tooLarge("linha");
+            }
+            line = Arrays.copyOf(line, Math.min(line.length * 2, maxSize));
+        }
+        line[lineLength++] = b;
+    }
+
+    private void endLine() throws IOException {
+        int start = 0;
+        if (firstLine) {
+            firstLine = false;
+            // Ignora o BOM UTF-8 no início do stream
+            if (lineLength >= 3 && (line[0] & 0xFF) == 0xEF && (line[1] & 0xFF) == 0xBB && (line[2] & 0xFF) == 0xBF) {
+                start = 3;
+            }
+        }
+
+        int length = lineLength - start;
+        lineLength = 0;
+
+        if (length == 0) {
+            dispatch();
+            return;
+        }
+        if (line[start] == ':') {
+            return; // Comentário (ex.: keep-alive)
+        }
+
+        int colon = indexOf(line, start, start + length, (byte) ':');
+        int fieldEnd = colon < 0 ? start + length : colon;
+        int valueStart = colon < 0 ? start + length : colon + 1;
+        if (valueStart < start + length && line[valueStart] == ' ') {
+            valueStart++;
+        }
+        int valueLength = start + length - valueStart;
+
+        if (fieldEquals(start, fieldEnd, "data")) {
+            appendData(valueStart, valueLength);
+        } else if (fieldEquals(start, fieldEnd, "event")) {
+            eventName = new String(line, valueStart, valueLength, StandardCharsets.UTF_8);
+            hasEventName = true;
+        } else if (fieldEquals(start, fieldEnd, "id")) {
+            if (indexOf(line, valueStart, valueStart + valueLength, (byte) 0) < 0) {
+                lastEventId = new String(line, valueStart, valueLength, StandardCharsets.UTF_8);
+            }
+        }
+        // "retry:" e campos desconhecidos são ignorados, como manda a especificação
+    }
+
+    private void appendData(int valueStart, int valueLength) throws IOException {
+        // Linhas data: consecutivas são unidas por \n
+        int required = dataLength + valueLength + 1;
+        if (required > maxSize) {
+            throw tooLarge("evento");
+        }
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.min(Math.max(data.length * 2, required), maxSize));
+        }
+        if (hasData) {
+            data[dataLength++] = '\n';
+        }
+        System.arraycopy(line, valueStart, data, dataLength, valueLength);
+        dataLength += valueLength;
+        hasData = true;
+    }
+
+    private void dispatch() throws IOException {
+        String event = eventName == null || eventName.isEmpty() ? DEFAULT_EVENT : eventName;
+        boolean pending = hasData || hasEventName;
+        int length = dataLength;
+
+        // Reseta antes de chamar o listener para que uma exceção não deixe o evento pela metade
+        hasData = false;
+        hasEventName = false;
+        dataLength = 0;
+        eventName = null;
+
+        if (pending) {
+            listener.onEvent(event, data, 0, length);
+        }
+    }
+
+    private IOException tooLarge(String what) {
+        // Descarta o que foi acumulado: o stream não pode mais ser lido
+        lineLength = 0;
+        dataLength = 0;
+        hasData = false;
+        return new IOException("Stream SSE inválido: " + what + " maior que " + maxSize + " bytes.");
+    }
+
+    private boolean fieldEquals(int start, int end, String field) {
+        if (end - start != field.length()) {
+            return false;
+        }
+        for (int i = 0; i < field.length(); i++) {
+            if (line[start + i] != field.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,389 @@
+package org.stackspotapi.transport;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stackspotapi.metrics.StackSpotMetrics;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transporte HTTP único usado por todas as chamadas à StackSpot.
+ * <p>
+ * Um só {@link HttpClient} atende autenticação, quick commands e chat, então as conexões com a API são
+ * reaproveitadas entre eles. A versão do HTTP, o timeout de conexão, o timeout de cada grupo de endpoints,
+ * o número de threads do executor e as URLs base (para apontar para um stub local) vêm do .env.
+ * <p>
+ * Cada grupo de endpoints passa por um {@link AdaptiveLimiter}: o número de requisições simultâneas se ajusta à
+ * latência e aos 429/5xx da StackSpot, o {@code Retry-After} de um 503 é respeitado e o excesso espera em uma fila
+ * limitada. Um 429 é a cota de um client esgotada, não da StackSpot inteira: quem pausa o client é o
+ * {@link org.stackspotapi.service.CredentialPool}.
+ * Respostas 429 e 503 viram {@link UpstreamUnavailableException}, com o tempo de espera sugerido.
+ * <p>
+ * Antes do limitador, cada grupo tem um {@link CircuitBreaker}: quando as chamadas de um grupo falham seguidamente,
+ * as seguintes são recusadas na hora com {@link CircuitOpenException}. Como limitador e disjuntor são separados por
+ * grupo, um Keycloak travado não segura as chamadas de chat, e vice-versa.
+ */
+public final class StackSpotTransport {
+    private static final Logger log = LoggerFactory.getLogger(StackSpotTransport.class);
+    private static final Dotenv dotenv = Dotenv.load();
+
+    private static final String API_BASE_URL = stripTrailingSlash(dotenv.get("STACKSPOT_API_BASE_URL", "https://genai-code-buddy-api.stackspot.com"));
+    private static final String AUTH_BASE_URL = stripTrailingSlash(dotenv.get("STACKSPOT_AUTH_BASE_URL", "https://auth.stackspot.com"));
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(Long.parseLong(dotenv.get("STACKSPOT_CONNECT_TIMEOUT_MS", "5000")));
+    private static final HttpClient.Version HTTP_VERSION = HttpClient.Version.valueOf(dotenv.get("STACKSPOT_HTTP_VERSION", "HTTP_2"));
+    private static final int HTTP_THREADS = Integer.parseInt(dotenv.get("STACKSPOT_HTTP_THREADS", "8"));
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofMillis(Long.parseLong(dotenv.get("STACKSPOT_DEFAULT_RETRY_AFTER_MS", "1000")));
+
+    private static final Map<Endpoint, Duration> requestTimeouts = new EnumMap<>(Endpoint.class);
+    private static final Map<Endpoint, LongAdder> requestCounts = new EnumMap<>(Endpoint.class);
+    private static final Map<Endpoint, AdaptiveLimiter> limiters = new EnumMap<>(Endpoint.class);
+    private static final Map<Endpoint, CircuitBreaker> breakers = new EnumMap<>(Endpoint.class);
+    private static final LongAdder tlsConnections = new LongAdder();
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(HTTP_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "stackspot-http-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService limiterScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stackspot-limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile HttpClient httpClient;
+
+    static {
+        for (Endpoint endpoint : Endpoint.values()) {
+            requestTimeouts.put(endpoint, Duration.ofMillis(Long.parseLong(dotenv.get(endpoint.getTimeoutKey(), String.valueOf(endpoint.getDefaultTimeoutMs())))));
+            requestCounts.put(endpoint, new LongAdder());
+            // Limite de concorrência adaptativo e fila de espera de cada grupo (o bulkhead do grupo)
+            limiters.put(endpoint, new AdaptiveLimiter(endpoint,
+                    Integer.parseInt(setting(endpoint, "LIMIT_INITIAL", "20")),
+                    Integer.parseInt(setting(endpoint, "LIMIT_MIN", "1")),
+                    Integer.parseInt(setting(endpoint, "LIMIT_MAX", "200")),
+                    Integer.parseInt(setting(endpoint, "LIMIT_QUEUE", "500")),
+                    Duration.ofMillis(Long.parseLong(setting(endpoint, "LIMIT_MAX_WAIT_MS", "10000"))),
+                    Double.parseDouble(setting(endpoint, "LIMIT_BACKOFF", "0.7")),
+                    Double.parseDouble(setting(endpoint, "LIMIT_LATENCY_TOLERANCE", "2.0")),
+                    DEFAULT_RETRY_AFTER, limiterScheduler));
+            breakers.put(endpoint, new CircuitBreaker(endpoint,
+                    Integer.parseInt(setting(endpoint, "BREAKER_WINDOW", "20")),
+                    Integer.parseInt(setting(endpoint, "BREAKER_MIN_CALLS", "5")),
+                    Double.parseDouble(setting(endpoint, "BREAKER_FAILURE_RATE", "0.5")),
+                    Duration.ofMillis(Long.parseLong(setting(endpoint, "BREAKER_OPEN_MS", "15000"))),
+                    Integer.parseInt(setting(endpoint, "BREAKER_PROBES", "2"))));
+        }
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HTTP_VERSION)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor);
+        try {
+            builder.sslContext(new CountingSslContext(SSLContext.getDefault(), tlsConnections));
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("Contexto TLS padrão indisponível; conexões TLS não serão contadas: {}", e.getMessage());
+        }
+        httpClient = builder.build();
+    }
+
+    private StackSpotTransport() {
+    }
+
+    /**
+     * Substitui o cliente usado por todas as chamadas, por exemplo por um cliente falso em memória nos benchmarks.
+     * Deve ser chamado antes das primeiras requisições; as contagens de requisições continuam valendo.
+     */
+    public static void install(HttpClient client) {
+        httpClient = client;
+    }
+
+    /**
+     * Cria um builder de requisição para um caminho da API (ex.: {@code /v3/chat}), já com o timeout do endpoint.
+     */
+    public static HttpRequest.Builder apiRequest(Endpoint endpoint, String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(API_BASE_URL + path))
+                .timeout(requestTimeouts.get(endpoint));
+    }
+
+    /**
+     * Cria um builder de requisição para uma URL absoluta devolvida pela API (ex.: a URL de armazenamento de um
+     * upload), já com o timeout do endpoint.
+     */
+    public static HttpRequest.Builder urlRequest(Endpoint endpoint, URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(requestTimeouts.get(endpoint));
+    }
+
+    /**
+     * Cria um builder de requisição para um caminho do servidor de autenticação, já com o timeout de {@link Endpoint#AUTH}.
+     */
+    public static HttpRequest.Builder authRequest(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(AUTH_BASE_URL + path))
+                .timeout(requestTimeouts.get(Endpoint.AUTH));
+    }
+
+    /**
+     * Envia a requisição de forma síncrona pelo cliente compartilhado, esperando uma vaga no limite do endpoint.
+     *
+     * @throws UpstreamUnavailableException Se a StackSpot responder 429/503, a requisição não for admitida a tempo
+     *                                      ou o circuito do endpoint estiver aberto ({@link CircuitOpenException}).
+     */
+    public static <T> HttpResponse<T> send(Endpoint endpoint, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        CircuitBreaker.Call call = breakers.get(endpoint).acquire();
+        requestCounts.get(endpoint).increment();
+        AdaptiveLimiter.Permit permit;
+        try {
+            permit = limiters.get(endpoint).acquireBlocking();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            call.cancel();
+            throw e;
+        }
+        long start = System.nanoTime();
+        HttpResponse<T> response;
+        try {
+            response = httpClient.send(request, observed(endpoint, start, call, permit, bodyHandler));
+        } catch (IOException e) {
+            call.onFailure();
+            permit.onFailure();
+            permit.release();
+            StackSpotMetrics.upstreamError(endpoint, e);
+            throw e;
+        } catch (InterruptedException | RuntimeException e) {
+            call.cancel();
+            permit.release();
+            throw e;
+        }
+        UpstreamUnavailableException throttled = throttled(endpoint, response);
+        if (throttled != null) {
+            throw throttled;
+        }
+        return response;
+    }
+
+    /**
+     * Envia a requisição de forma assíncrona pelo cliente compartilhado, sem bloquear a thread chamadora. Se o
+     * limite do endpoint estiver cheio, o envio acontece quando uma vaga for liberada.
+     *
+     * @return Um future completado com {@link UpstreamUnavailableException} se a StackSpot responder 429/503,
+     * a requisição não for admitida a tempo ou o circuito do endpoint estiver aberto ({@link CircuitOpenException}).
+     */
+    public static <T> CompletableFuture<HttpResponse<T>> sendAsync(Endpoint endpoint, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        CircuitBreaker.Call call;
+        try {
+            call = breakers.get(endpoint).acquire();
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        requestCounts.get(endpoint).increment();
+        return limiters.get(endpoint).acquire().whenComplete((permit, error) -> {
+            if (error != null) {
+                call.cancel();
+            }
+        }).thenCompose(permit -> {
+            long start = System.nanoTime();
+            return httpClient.sendAsync(request, observed(endpoint, start, call, permit, bodyHandler)).whenComplete((response, error) -> {
+                if (error != null) {
+                    call.onFailure();
+                    permit.onFailure();
+                    permit.release();
+                    StackSpotMetrics.upstreamError(endpoint, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                }
+            });
+        }).thenApply(response -> {
+            UpstreamUnavailableException throttled = throttled(endpoint, response);
+            if (throttled != null) {
+                throw new CompletionException(throttled);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Conta o status e mede o tempo até os headers assim que a resposta começa, antes de o corpo ser lido, e
+     * informa o disjuntor e o limitador. A vaga só é liberada quando o corpo termina, então streams longos ocupam a
+     * vaga até o fim. O corpo de respostas 429/503 é descartado.
+     */
+    private static <T> HttpResponse.BodyHandler<T> observed(Endpoint endpoint, long start, CircuitBreaker.Call call,
+                                                            AdaptiveLimiter.Permit permit, HttpResponse.BodyHandler<T> bodyHandler) {
+        return responseInfo -> {
+            int status = responseInfo.statusCode();
+            StackSpotMetrics.upstreamResponse(endpoint, String.valueOf(status), start);
+            call.onResponse(status);
+            permit.onResponse(status, responseInfo.headers());
+            HttpResponse.BodySubscriber<T> subscriber = isThrottled(status)
+                    ? HttpResponse.BodySubscribers.replacing(null)
+                    : bodyHandler.apply(responseInfo);
+            return new ReleasingSubscriber<>(subscriber, permit);
+        };
+    }
+
+    private static boolean isThrottled(int status) {
+        return status == 429 || status == 503;
+    }
+
+    private static UpstreamUnavailableException throttled(Endpoint endpoint, HttpResponse<?> response) {
+        if (!isThrottled(response.statusCode())) {
+            return null;
+        }
+        HttpHeaders headers = response.headers();
+        Duration retryAfter = limiters.get(endpoint).retryAfter(headers);
+        log.warn("StackSpot limitou a requisição ({}): status {}, nova tentativa em {} ms.", endpoint, response.statusCode(), retryAfter.toMillis());
+        return new UpstreamUnavailableException("StackSpot limitou as requisições (" + endpoint + "), status "
+                + response.statusCode() + ".", retryAfter, response.statusCode());
+    }
+
+    /**
+     * A falha que uma requisição ao grupo de endpoints receberia agora por circuito aberto, ou nulo se o circuito
+     * está fechado ou testando a StackSpot. Serve para quem espera por um recurso que depende do grupo (ex.: um token)
+     * desistir na hora em vez de esperar o prazo inteiro.
+     */
+    public static CircuitOpenException circuitOpen(Endpoint endpoint) {
+        return breakers.get(endpoint).openError();
+    }
+
+    /**
+     * Estado atual do disjuntor do grupo de endpoints: {@code CLOSED}, {@code OPEN} ou {@code HALF_OPEN}.
+     */
+    public static String getCircuitState(Endpoint endpoint) {
+        return breakers.get(endpoint).getState().name();
+    }
+
+    /**
+     * Limite de concorrência atual do grupo de endpoints.
+     */
+    public static int getConcurrencyLimit(Endpoint endpoint) {
+        return limiters.get(endpoint).getLimit();
+    }
+
+    /**
+     * Requisições do grupo de endpoints em andamento (do envio ao fim do corpo).
+     */
+    public static int getInFlight(Endpoint endpoint) {
+        return limiters.get(endpoint).getInFlight();
+    }
+
+    /**
+     * Requisições do grupo de endpoints esperando uma vaga.
+     */
+    public static int getQueued(Endpoint endpoint) {
+        return limiters.get(endpoint).getQueued();
+    }
+
+    /**
+     * Número de requisições enviadas para o grupo de endpoints.
+     */
+    public static long getRequestCount(Endpoint endpoint) {
+        return requestCounts.get(endpoint).sum();
+    }
+
+    /**
+     * Número de conexões TLS abertas (handshakes) desde o início da aplicação.
+     */
+    public static long getTlsConnectionCount() {
+        return tlsConnections.sum();
+    }
+
+    /**
+     * Fração das requisições que reaproveitaram uma conexão já aberta (0 a 1).
+     */
+    public static double getConnectionReuseRatio() {
+        long requests = 0;
+        for (LongAdder count : requestCounts.values()) {
+            requests += count.sum();
+        }
+        return requests == 0 ? 0.0 : Math.max(0.0, 1.0 - (double) tlsConnections.sum() / requests);
+    }
+
+    /**
+     * Configuração de um grupo de endpoints: a chave do próprio grupo (ex.: {@code STACKSPOT_AUTH_LIMIT_MAX}), senão a
+     * chave comum a todos ({@code STACKSPOT_LIMIT_MAX}), senão o padrão.
+     */
+    private static String setting(Endpoint endpoint, String name, String defaultValue) {
+        return dotenv.get(endpoint.envKey(name), dotenv.get("STACKSPOT_" + name, defaultValue));
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * Repassa o corpo ao subscriber original e libera a vaga do limitador quando o corpo termina, falha ou é cancelado
+     * (ex.: ao fechar o {@code InputStream} de um stream de chat).
+     */
+    private static final class ReleasingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final AdaptiveLimiter.Permit permit;
+
+        ReleasingSubscriber(HttpResponse.BodySubscriber<T> delegate, AdaptiveLimiter.Permit permit) {
+            this.delegate = delegate;
+            this.permit = permit;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    permit.release();
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            permit.release();
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            permit.release();
+            delegate.onComplete();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.stackspotapi.transport;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A StackSpot está limitando as requisições (429/503) ou a fila de admissão do transporte não conseguiu enviar a
+ * requisição dentro do prazo. Traz o tempo sugerido antes de tentar de novo, repassado ao cliente em
+ * {@code Retry-After}.
+ */
+public class UpstreamUnavailableException extends IOException {
+    private final Duration retryAfter;
+    private final int statusCode;
+
+    /**
+     * Requisição recusada localmente, sem chegar à StackSpot.
+     */
+    public UpstreamUnavailableException(String message, Duration retryAfter) {
+        this(message, retryAfter, 0);
+    }
+
+    /**
+     * Requisição recusada pela StackSpot com o status informado (429 ou 503).
+     */
+    public UpstreamUnavailableException(String message, Duration retryAfter, int statusCode) {
+        super(message);
+        this.retryAfter = retryAfter;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Tempo sugerido antes de uma nova tentativa.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * O tempo sugerido em segundos inteiros, arredondado para cima, como usado no header {@code Retry-After}.
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    /**
+     * O status da resposta da StackSpot, ou 0 se a requisição foi recusada localmente.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Indica um 429: a cota do client que fez a requisição se esgotou, não a StackSpot inteira.
+     */
+    public boolean isQuotaExceeded() {
+        return statusCode == 429;
+    }
+}
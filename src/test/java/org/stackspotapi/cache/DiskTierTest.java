@@ -0,0 +1,184 @@
+package org.stackspotapi.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskTierTest {
+    private static final long VALID = Long.MAX_VALUE;
+    private static final List<Map.Entry<String, DiskTier.Entry>> NO_HOT_ENTRIES = List.of();
+
+    private final Path dir = createDir();
+    private final Path file = dir.resolve("cache.bin");
+    private final List<DiskTier> opened = new ArrayList<>();
+
+    private DiskTier open(long maxBytes) throws IOException {
+        DiskTier tier = new DiskTier(file, maxBytes);
+        opened.add(tier);
+        return tier;
+    }
+
+    static Path createDir() {
+        try {
+            return Files.createTempDirectory("disk-tier-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void deleteDir(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Espera a thread de gravação deixar a chave legível.
+     */
+    static DiskTier.Entry awaitOnDisk(DiskTier tier, String key) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            DiskTier.Entry entry = tier.get(key, System.currentTimeMillis());
+            if (entry != null) {
+                return entry;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("chave não gravada: " + key);
+    }
+
+    @AfterEach
+    void deleteFiles() throws Exception {
+        for (DiskTier tier : opened) {
+            tier.close();
+        }
+        deleteDir(dir);
+    }
+
+    @Test
+    void entriesSurviveReopenWithTheirExpiry() throws Exception {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        DiskTier tier = open(1 << 20);
+        tier.putAsync("a", "resposta a", expiresAt, NO_HOT_ENTRIES);
+        tier.putAsync("b", "resposta b", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(tier, "b");
+
+        DiskTier reopened = open(1 << 20);
+        DiskTier.Entry a = reopened.get("a", System.currentTimeMillis());
+        assertEquals("resposta a", a.value);
+        assertEquals(expiresAt, a.expiresAtMillis);
+        assertEquals("resposta b", reopened.get("b", System.currentTimeMillis()).value);
+    }
+
+    @Test
+    void laterRecordOfSameKeyWins() throws Exception {
+        DiskTier tier = open(1 << 20);
+        tier.putAsync("a", "velha", VALID, NO_HOT_ENTRIES);
+        tier.putAsync("a", "nova", VALID, NO_HOT_ENTRIES);
+        tier.putAsync("fim", "x", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(tier, "fim");
+        assertEquals("nova", tier.get("a", System.currentTimeMillis()).value);
+
+        assertEquals("nova", open(1 << 20).get("a", System.currentTimeMillis()).value);
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() throws Exception {
+        DiskTier tier = open(1 << 20);
+        tier.putAsync("velha", "x", System.currentTimeMillis() - 1, NO_HOT_ENTRIES);
+        tier.putAsync("fim", "x", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(tier, "fim");
+
+        assertNull(tier.get("velha", System.currentTimeMillis()));
+        assertNull(open(1 << 20).get("velha", System.currentTimeMillis()));
+    }
+
+    @Test
+    void partialTailRecordIsTruncatedOnOpen() throws Exception {
+        DiskTier tier = open(1 << 20);
+        tier.putAsync("a", "resposta a", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(tier, "a");
+        long validSize = Files.size(file);
+
+        // Queda no meio da gravação: só o cabeçalho e parte da chave do próximo registro
+        ByteBuffer partial = ByteBuffer.allocate(20).putInt(5).putInt(100).putLong(VALID).put((byte) 'b').put((byte) 'c');
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(partial.flip());
+        }
+
+        DiskTier reopened = open(1 << 20);
+        assertEquals(validSize, Files.size(file));
+        assertEquals("resposta a", reopened.get("a", System.currentTimeMillis()).value);
+
+        // Gravações seguintes continuam no fim válido do arquivo
+        reopened.putAsync("b", "resposta b", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(reopened, "b");
+        assertEquals("resposta b", open(1 << 20).get("b", System.currentTimeMillis()).value);
+    }
+
+    @Test
+    void tailRecordWithBadChecksumIsTruncatedOnOpen() throws Exception {
+        DiskTier tier = open(1 << 20);
+        tier.putAsync("a", "resposta a", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(tier, "a");
+        long validSize = Files.size(file);
+        tier.putAsync("b", "resposta b", VALID, NO_HOT_ENTRIES);
+        awaitOnDisk(tier, "b");
+
+        // Corrompe o último byte do valor de "b"
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = channel.size() - Integer.BYTES - 1;
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (one.get(0) ^ 0x01)}), position);
+        }
+
+        DiskTier reopened = open(1 << 20);
+        assertEquals(validSize, Files.size(file));
+        assertEquals("resposta a", reopened.get("a", System.currentTimeMillis()).value);
+        assertNull(reopened.get("b", System.currentTimeMillis()));
+    }
+
+    @Test
+    void compactionKeepsOnlyHotEntries() throws Exception {
+        DiskTier tier = open(256);
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        List<Map.Entry<String, DiskTier.Entry>> hot = List.of(
+                Map.entry("quente", new DiskTier.Entry("resposta quente", expiresAt)),
+                Map.entry("vencida", new DiskTier.Entry("x", System.currentTimeMillis() - 1)));
+        tier.putAsync("quente", "resposta quente", expiresAt, hot);
+        for (int i = 0; i < 20; i++) {
+            tier.putAsync("fria" + i, "resposta fria " + i, VALID, hot);
+        }
+
+        tier.close();
+
+        // Sem compactação, os 21 registros passariam de 800 bytes
+        assertTrue(Files.size(file) < 400);
+        assertTrue(Files.notExists(file.resolveSibling("cache.bin.compact")));
+        DiskTier reopened = open(256);
+        DiskTier.Entry kept = reopened.get("quente", System.currentTimeMillis());
+        assertNotNull(kept);
+        assertEquals(expiresAt, kept.expiresAtMillis);
+        assertNull(reopened.get("vencida", System.currentTimeMillis()));
+        assertNull(reopened.get("fria0", System.currentTimeMillis()));
+    }
+}
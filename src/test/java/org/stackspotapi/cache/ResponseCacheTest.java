@@ -0,0 +1,128 @@
+package org.stackspotapi.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseCacheTest {
+    private static final List<Map.Entry<String, DiskTier.Entry>> NO_HOT_ENTRIES = List.of();
+
+    private final List<DiskTier> opened = new ArrayList<>();
+    private Path dir;
+
+    private DiskTier open(Path file) throws IOException {
+        DiskTier tier = new DiskTier(file, 1 << 20);
+        opened.add(tier);
+        return tier;
+    }
+
+    @AfterEach
+    void deleteFiles() throws Exception {
+        for (DiskTier tier : opened) {
+            tier.close();
+        }
+        if (dir != null) {
+            DiskTierTest.deleteDir(dir);
+        }
+    }
+
+    @Test
+    void keyNormalizesWhitespaceAndUploadOrder() {
+        assertEquals(ResponseCache.key("chat", "agente", "  olá\n  mundo "), ResponseCache.key("chat", "agente", "olá mundo"));
+        assertNotEquals(ResponseCache.key("chat", "agente", "olá"), ResponseCache.key("planning", "agente", "olá"));
+        assertEquals(ResponseCache.key("chat", "agente", "olá", List.of("b", "a")),
+                ResponseCache.key("chat", "agente", "olá", List.of("a", "b")));
+        assertEquals(ResponseCache.key("chat", "agente", "olá", List.of()), ResponseCache.key("chat", "agente", "olá"));
+    }
+
+    @Test
+    void returnsStoredAnswerAndCountsHitsAndMisses() {
+        ResponseCache cache = new ResponseCache(100, 60_000);
+        assertNull(cache.get("a"));
+        cache.put("a", "resposta");
+        assertEquals("resposta", cache.get("a"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1L, stats.getHits());
+        assertEquals(1L, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    void entryExpiresAfterTtl() throws InterruptedException {
+        ResponseCache cache = new ResponseCache(100, 50);
+        cache.put("a", "resposta");
+        Thread.sleep(100);
+
+        assertNull(cache.get("a"));
+        assertEquals(1L, cache.stats().getExpirations());
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    void burstOfOneOffPromptsDoesNotEvictFrequentPrompt() {
+        ResponseCache cache = new ResponseCache(100, 60_000);
+        // Perguntado várias vezes antes de a resposta chegar: frequência alta no sketch, sem passar pela região protegida
+        for (int i = 0; i < 5; i++) {
+            cache.get("frequente");
+        }
+        cache.put("frequente", "resposta");
+        for (int i = 0; i < 500; i++) {
+            cache.put("único" + i, "x");
+        }
+
+        assertEquals("resposta", cache.get("frequente"));
+        assertTrue(cache.stats().getSize() <= 100);
+        assertTrue(cache.stats().getEvictions() >= 400);
+    }
+
+    @Test
+    void sizeStaysWithinMaximum() {
+        ResponseCache cache = new ResponseCache(10, 60_000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, "v");
+            cache.get("k" + (i / 2));
+        }
+        assertTrue(cache.stats().getSize() <= 10);
+    }
+
+    @Test
+    void answerIsWrittenToDiskAndReadAfterRestart() throws Exception {
+        dir = DiskTierTest.createDir();
+        Path file = dir.resolve("cache.bin");
+        DiskTier tier = open(file);
+        new ResponseCache(100, 60_000, tier).put("a", "resposta");
+        DiskTierTest.awaitOnDisk(tier, "a");
+
+        ResponseCache restarted = new ResponseCache(100, 60_000, open(file));
+        assertEquals("resposta", restarted.get("a"));
+        assertEquals(1L, restarted.stats().getDiskHits());
+        // Promovida à memória: a próxima leitura não vai ao disco
+        assertEquals("resposta", restarted.get("a"));
+        assertEquals(1L, restarted.stats().getDiskHits());
+    }
+
+    @Test
+    void diskPromotionKeepsTheStoredExpiry() throws Exception {
+        dir = DiskTierTest.createDir();
+        DiskTier tier = open(dir.resolve("cache.bin"));
+        tier.putAsync("a", "resposta", System.currentTimeMillis() + 100, NO_HOT_ENTRIES);
+        DiskTierTest.awaitOnDisk(tier, "a");
+
+        // O TTL do cache é longo, mas a entrada promovida vence quando venceria no disco
+        ResponseCache cache = new ResponseCache(100, 3_600_000, tier);
+        assertEquals("resposta", cache.get("a"));
+        Thread.sleep(200);
+        assertNull(cache.get("a"));
+    }
+}
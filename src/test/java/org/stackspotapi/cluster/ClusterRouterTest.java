@@ -0,0 +1,104 @@
+package org.stackspotapi.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterRouterTest {
+    private static final String SELF = "http://a:8080";
+    private static final String OTHER = "http://b:8080";
+
+    private static ClusterRouter router(String self, List<String> members) {
+        return new ClusterRouter(self, members, 128, ClusterRouter.Routing.FORWARD, Duration.ofSeconds(5),
+                "/actuator/health", 2, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Uma sessão que o anel entrega à outra instância.
+     */
+    private static String remoteSession(ClusterRouter router) {
+        for (int i = 0; ; i++) {
+            if (router.ownerOf("sessao-" + i, null) != null) {
+                return "sessao-" + i;
+            }
+        }
+    }
+
+    @Test
+    void sessionsAreSplitBetweenThisInstanceAndItsOwner() {
+        ClusterRouter router = router(SELF, List.of(SELF, OTHER));
+        HashRing ring = new HashRing(List.of(SELF, OTHER), 128);
+        int remote = 0;
+        for (int i = 0; i < 1000; i++) {
+            String owner = router.ownerOf("sessao-" + i, null);
+            if (owner != null) {
+                assertEquals(OTHER, owner);
+                remote++;
+            } else {
+                assertEquals(SELF, ring.ownerOf("sessao-" + i));
+            }
+        }
+        assertTrue(remote > 300 && remote < 700, "sessões remotas: " + remote);
+    }
+
+    @Test
+    void forwardedRequestIsNeverForwardedAgain() {
+        ClusterRouter router = router(SELF, List.of(SELF, OTHER));
+        String session = remoteSession(router);
+
+        assertEquals(OTHER, router.ownerOf(session, null));
+        assertNull(router.ownerOf(session, OTHER));
+        // Mesmo que o anel da outra instância discorde do nosso, a requisição fica aqui
+        assertNull(router.ownerOf(session, "http://c:8080"));
+    }
+
+    @Test
+    void requestsWithoutSessionStayHere() {
+        ClusterRouter router = router(SELF, List.of(SELF, OTHER));
+        assertNull(router.ownerOf(null, null));
+        assertNull(router.ownerOf("  ", null));
+    }
+
+    @Test
+    void unreachableOwnerLeavesTheRing() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        String unreachable = "http://127.0.0.1:" + closedPort;
+        ClusterRouter router = router(SELF, List.of(SELF, unreachable));
+        String session = remoteSession(router);
+        assertEquals(2, router.getLiveMemberCount());
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> router.forward(unreachable, "/reactive", session, "X-Session-Id", "{}").join());
+        assertTrue(ClusterRouter.isUnreachable(error));
+
+        assertEquals(1, router.getLiveMemberCount());
+        assertNull(router.ownerOf(session, null));
+    }
+
+    @Test
+    void locationPointsAtTheOwner() {
+        ClusterRouter router = router(SELF, List.of(SELF, OTHER));
+        assertEquals(URI.create("http://b:8080/reactive"), router.locationOf(OTHER, "/reactive"));
+    }
+
+    @Test
+    void selfMustBeAMember() {
+        assertThrows(IllegalArgumentException.class, () -> router("http://x:8080", List.of(SELF, OTHER)));
+        assertNotNull(router(SELF, List.of(SELF)));
+        assertNull(router(SELF, List.of(SELF)).ownerOf("sessao", null));
+    }
+}
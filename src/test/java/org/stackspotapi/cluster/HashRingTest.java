@@ -0,0 +1,124 @@
+package org.stackspotapi.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+    private static final int KEYS = 20_000;
+    private static final List<String> MEMBERS = List.of("http://a:8080", "http://b:8080", "http://c:8080", "http://d:8080");
+
+    private static String key(int i) {
+        return "sessao-" + i;
+    }
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertNull(new HashRing(List.of(), 128).ownerOf("sessao"));
+    }
+
+    @Test
+    void ownerDoesNotDependOnMemberOrder() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        HashRing reversed = new HashRing(List.of(MEMBERS.get(3), MEMBERS.get(2), MEMBERS.get(1), MEMBERS.get(0)), 128);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.ownerOf(key(i)), reversed.ownerOf(key(i)));
+        }
+    }
+
+    @Test
+    void keysSpreadAcrossMembers() {
+        HashRing ring = new HashRing(MEMBERS, 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf(key(i)), 1, Integer::sum);
+        }
+        int fair = KEYS / MEMBERS.size();
+        for (String member : MEMBERS) {
+            int count = counts.getOrDefault(member, 0);
+            assertTrue(count > fair / 2 && count < fair * 3 / 2, member + " com " + count + " chaves");
+        }
+    }
+
+    @Test
+    void addingMemberMovesAboutOneNthOfKeysAllToIt() {
+        HashRing before = new HashRing(MEMBERS, 128);
+        String added = "http://e:8080";
+        HashRing after = new HashRing(List.of(MEMBERS.get(0), MEMBERS.get(1), MEMBERS.get(2), MEMBERS.get(3), added), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = after.ownerOf(key(i));
+            if (!owner.equals(before.ownerOf(key(i)))) {
+                assertEquals(added, owner);
+                moved++;
+            }
+        }
+        // Esperado: 1/5 das chaves
+        double fraction = (double) moved / KEYS;
+        assertTrue(fraction > 0.12 && fraction < 0.28, "fração movida: " + fraction);
+    }
+
+    @Test
+    void removingMemberMovesOnlyItsKeys() {
+        HashRing before = new HashRing(MEMBERS, 128);
+        String removed = MEMBERS.get(1);
+        HashRing after = new HashRing(List.of(MEMBERS.get(0), MEMBERS.get(2), MEMBERS.get(3)), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = before.ownerOf(key(i));
+            if (owner.equals(removed)) {
+                moved++;
+            } else {
+                assertEquals(owner, after.ownerOf(key(i)));
+            }
+        }
+        double fraction = (double) moved / KEYS;
+        assertTrue(fraction > 0.15 && fraction < 0.35, "fração movida: " + fraction);
+    }
+
+    @Test
+    void keyAfterLastPointWrapsToFirstPoint() {
+        // Um ponto por membro, com os dois pontos longe do maior hash possível
+        String low = null;
+        String high = null;
+        for (int i = 0; high == null; i++) {
+            String first = "http://m" + i;
+            String second = "http://m" + (i + 1);
+            long a = HashRing.hash(first + "#0");
+            long b = HashRing.hash(second + "#0");
+            if (a < Long.MAX_VALUE / 2 && b < Long.MAX_VALUE / 2 && a != b) {
+                low = a < b ? first : second;
+                high = a < b ? second : first;
+            }
+        }
+        HashRing ring = new HashRing(List.of(low, high), 1);
+        long lowPoint = HashRing.hash(low + "#0");
+        long highPoint = HashRing.hash(high + "#0");
+
+        boolean wrapped = false;
+        boolean before = false;
+        boolean between = false;
+        for (int i = 0; i < 10_000 && !(wrapped && before && between); i++) {
+            long hash = HashRing.hash(key(i));
+            if (hash > highPoint) {
+                assertEquals(low, ring.ownerOf(key(i)));
+                wrapped = true;
+            } else if (hash <= lowPoint) {
+                assertEquals(low, ring.ownerOf(key(i)));
+                before = true;
+            } else {
+                assertEquals(high, ring.ownerOf(key(i)));
+                between = true;
+            }
+        }
+        assertTrue(wrapped && before && between);
+    }
+}
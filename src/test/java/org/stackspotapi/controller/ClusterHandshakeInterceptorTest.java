@@ -0,0 +1,18 @@
+package org.stackspotapi.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClusterHandshakeInterceptorTest {
+
+    @Test
+    void redirectsToOwnerWithWebSocketScheme() {
+        assertEquals(URI.create("ws://node-b:8080/api/v1/chat/ws"),
+                ClusterHandshakeInterceptor.webSocketLocation(URI.create("http://node-b:8080/api/v1/chat/ws")));
+        assertEquals(URI.create("wss://node-b/api/v1/chat/ws"),
+                ClusterHandshakeInterceptor.webSocketLocation(URI.create("https://node-b/api/v1/chat/ws")));
+    }
+}
@@ -0,0 +1,52 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackoffTest {
+
+    @Test
+    void growsByMultiplierUpToMaxDelay() {
+        Backoff backoff = new Backoff(Duration.ofMillis(100), 2.0, Duration.ofMillis(500), 0.0);
+        assertEquals(100L, backoff.delayMillis(0));
+        assertEquals(200L, backoff.delayMillis(1));
+        assertEquals(400L, backoff.delayMillis(2));
+        assertEquals(500L, backoff.delayMillis(3));
+        assertEquals(500L, backoff.delayMillis(50));
+    }
+
+    @Test
+    void jitterStaysWithinFraction() {
+        Backoff backoff = new Backoff(Duration.ofMillis(1000), 1.0, Duration.ofMillis(1000), 0.2);
+        for (int i = 0; i < 1000; i++) {
+            long delay = backoff.delayMillis(0);
+            assertTrue(delay >= 800 && delay <= 1200, "espera fora do jitter: " + delay);
+        }
+    }
+
+    @Test
+    void retryPolicyStartsAtFirstRetryAndPollingAtFirstPoll() {
+        RetryPolicy retry = new RetryPolicy(3, Duration.ofMillis(100), 2.0, Duration.ofMillis(1000), 0.0);
+        PollingSchedule polling = new PollingSchedule(Duration.ofMillis(100), 2.0, Duration.ofMillis(1000), 0.0,
+                Duration.ofSeconds(1));
+        // A tentativa 1 já falhou quando o retry espera; a consulta 0 é a primeira
+        assertEquals(100L, retry.delayMillis(1));
+        assertEquals(100L, polling.delayMillis(0));
+        assertEquals(retry.delayMillis(3), polling.delayMillis(2));
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Backoff(Duration.ofMillis(100), 0.5, Duration.ofMillis(500), 0.0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Backoff(Duration.ofMillis(100), 2.0, Duration.ofMillis(500), 1.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RetryPolicy(0, Duration.ofMillis(100), 2.0, Duration.ofMillis(500), 0.0));
+    }
+}
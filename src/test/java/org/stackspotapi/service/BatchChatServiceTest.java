@@ -0,0 +1,172 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchChatServiceTest {
+    private final List<String> results = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Throwable> errors = new ConcurrentHashMap<>();
+
+    private void record(int index, String answer, Throwable error) {
+        results.add(index + "=" + answer);
+        if (error != null) {
+            errors.put(index, error);
+        }
+    }
+
+    private static List<String> prompts(int count) {
+        List<String> prompts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            prompts.add("p" + i);
+        }
+        return prompts;
+    }
+
+    @Test
+    void completedItemsAreDeliveredInOrderWithTheirIndex() {
+        CompletableFuture<Void> batch = BatchChatService.run(List.of("a", "b", "c"), 1, new AtomicBoolean(),
+                this::record, prompt -> CompletableFuture.completedFuture(prompt.toUpperCase()));
+
+        assertTrue(batch.isDone());
+        assertEquals(List.of("0=A", "1=B", "2=C"), results);
+    }
+
+    @Test
+    void pendingItemsAreDeliveredAsTheyFinishTaggedWithTheirIndex() {
+        Map<String, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+        CompletableFuture<Void> batch = BatchChatService.run(List.of("a", "b", "c"), 3, new AtomicBoolean(),
+                this::record, prompt -> calls.computeIfAbsent(prompt, p -> new CompletableFuture<>()));
+
+        assertEquals(3, calls.size());
+        calls.get("c").complete("C");
+        calls.get("a").complete("A");
+        assertFalse(batch.isDone());
+        calls.get("b").complete("B");
+
+        batch.join();
+        assertEquals(List.of("2=C", "0=A", "1=B"), results);
+    }
+
+    @Test
+    void failedItemsDoNotStopTheBatch() {
+        IOException failure = new IOException("falhou");
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        CompletableFuture<Void> batch = BatchChatService.run(Arrays.asList("a", "falha", " ", null, "tarde", "b"), 2,
+                new AtomicBoolean(), this::record, prompt -> switch (prompt) {
+                    case "falha" -> CompletableFuture.failedFuture(new CompletionException(failure));
+                    case "tarde" -> pending.thenApply(ignored -> {
+                        throw new IllegalStateException("depois");
+                    });
+                    default -> CompletableFuture.completedFuture(prompt);
+                });
+        pending.complete(null);
+
+        batch.join();
+        assertEquals(6, results.size());
+        assertTrue(results.containsAll(List.of("0=a", "1=null", "2=null", "3=null", "4=null", "5=b")));
+        // A falha chega ao listener sem o CompletionException em volta
+        assertSame(failure, errors.get(1));
+        assertInstanceOf(IllegalArgumentException.class, errors.get(2));
+        assertInstanceOf(IllegalArgumentException.class, errors.get(3));
+        assertInstanceOf(IllegalStateException.class, errors.get(4));
+    }
+
+    @Test
+    void laneCountIsLimitedByMaxConcurrencyAndBatchSize() {
+        List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+        int size = BatchChatService.MAX_CONCURRENCY * 3;
+        CompletableFuture<Void> batch = BatchChatService.run(prompts(size), Integer.MAX_VALUE, new AtomicBoolean(),
+                this::record, prompt -> {
+                    CompletableFuture<String> call = new CompletableFuture<>();
+                    calls.add(call);
+                    return call;
+                });
+        assertEquals(BatchChatService.MAX_CONCURRENCY, calls.size());
+
+        // Cada item que termina libera a faixa para o próximo
+        calls.get(0).complete("ok");
+        assertEquals(BatchChatService.MAX_CONCURRENCY + 1, calls.size());
+
+        for (int i = 1; i < size; i++) {
+            calls.get(i).complete("ok");
+        }
+        batch.join();
+        assertEquals(size, results.size());
+
+        AtomicInteger started = new AtomicInteger();
+        BatchChatService.run(prompts(2), 5, new AtomicBoolean(), this::record, prompt -> {
+            started.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    void cancelledBatchStartsNoNewItems() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<CompletableFuture<String>> calls = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> batch = BatchChatService.run(prompts(10), 2, cancelled, this::record, prompt -> {
+            CompletableFuture<String> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        });
+        assertEquals(2, calls.size());
+
+        cancelled.set(true);
+        calls.get(0).complete("a");
+        calls.get(1).complete("b");
+
+        batch.join();
+        assertEquals(2, calls.size());
+        assertEquals(2, results.size());
+    }
+
+    @Test
+    void listenerFailureFailsTheBatch() {
+        IllegalStateException failure = new IllegalStateException("listener");
+        CompletableFuture<Void> batch = BatchChatService.run(prompts(3), 1, new AtomicBoolean(), (index, answer, error) -> {
+            throw failure;
+        }, prompt -> CompletableFuture.completedFuture(prompt));
+
+        CompletionException error = assertThrows(CompletionException.class, batch::join);
+        assertSame(failure, error.getCause());
+    }
+
+    @Test
+    void longBatchOfCompletedItemsKeepsTheStackFlat() {
+        int size = 200_000;
+        int[] depths = new int[2];
+        CompletableFuture<Void> batch = BatchChatService.run(Collections.nCopies(size, "a"), 1, new AtomicBoolean(),
+                (index, answer, error) -> {
+                    assertNull(error);
+                    if (index == 0) {
+                        depths[0] = Thread.currentThread().getStackTrace().length;
+                    } else if (index == size - 1) {
+                        depths[1] = Thread.currentThread().getStackTrace().length;
+                    }
+                }, prompt -> CompletableFuture.completedFuture(prompt));
+
+        batch.join();
+        assertEquals(depths[0], depths[1]);
+    }
+}
@@ -0,0 +1,113 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatEventDecoderTest {
+    private final List<String> fragments = new ArrayList<>();
+    private final ChatEventDecoder decoder = new ChatEventDecoder(fragments::add);
+
+    private void event(String name, String data) throws IOException {
+        // Os dados ficam no meio de um buffer maior, como no parser
+        byte[] bytes = ("##" + data + "##").getBytes(StandardCharsets.UTF_8);
+        decoder.onEvent(name, bytes, 2, bytes.length - 4);
+    }
+
+    @Test
+    void forwardsAnswerFragmentsAndSkipsOtherFields() throws IOException {
+        event("message", "{\"type\":\"chunk\",\"sources\":[{\"a\":1}],\"answer\":\"Olá\",\"meta\":{\"x\":[1,2]}}");
+        event("message", "{\"answer\":null}");
+        event("message", "{\"answer\":\" mundo\"}");
+        assertEquals(List.of("Olá", " mundo"), fragments);
+        assertFalse(decoder.isEnded());
+    }
+
+    @Test
+    void doneMarkerEndsStream() throws IOException {
+        event("message", "[DONE]");
+        assertTrue(decoder.isEnded());
+
+        event("message", "{\"answer\":\"depois do fim\"}");
+        assertTrue(fragments.isEmpty());
+    }
+
+    @Test
+    void doneFieldEndsStreamAfterItsAnswer() throws IOException {
+        event("message", "{\"answer\":\"fim\",\"done\":false}");
+        assertFalse(decoder.isEnded());
+        event("message", "{\"answer\":\"!\",\"done\":true}");
+        assertTrue(decoder.isEnded());
+        assertEquals(List.of("fim", "!"), fragments);
+    }
+
+    @Test
+    void stopReasonEndsStreamOnlyWhenSet() throws IOException {
+        event("message", "{\"answer\":\"a\",\"stop_reason\":null}");
+        assertFalse(decoder.isEnded());
+        event("message", "{\"stop_reason\":{\"type\":\"end_turn\"}}");
+        assertTrue(decoder.isEnded());
+    }
+
+    @Test
+    void doneOrEndEventNameEndsStream() throws IOException {
+        event("end", "");
+        assertTrue(decoder.isEnded());
+
+        ChatEventDecoder other = new ChatEventDecoder(fragments::add);
+        other.onEvent("done", new byte[0], 0, 0);
+        assertTrue(other.isEnded());
+    }
+
+    @Test
+    void errorFieldAsStringFails() {
+        IOException error = assertThrows(IOException.class, () -> event("message", "{\"error\":\"cota excedida\"}"));
+        assertTrue(error.getMessage().contains("cota excedida"));
+    }
+
+    @Test
+    void errorFieldAsObjectUsesItsMessage() {
+        IOException error = assertThrows(IOException.class,
+                () -> event("message", "{\"error\":{\"code\":42,\"message\":\"modelo indisponível\",\"details\":[1]}}"));
+        assertTrue(error.getMessage().contains("modelo indisponível"));
+
+        IOException withoutMessage = assertThrows(IOException.class, () -> event("message", "{\"error\":{\"code\":42}}"));
+        assertTrue(withoutMessage.getMessage().contains("erro sem mensagem"));
+    }
+
+    @Test
+    void errorEventFailsWithItsData() {
+        IOException error = assertThrows(IOException.class, () -> event("error", "{\"detail\":\"falhou\"}"));
+        assertTrue(error.getMessage().contains("falhou"));
+
+        assertThrows(IOException.class, () -> event("error", ""));
+        assertThrows(IOException.class, () -> event("error", "não é json"));
+    }
+
+    @Test
+    void nullErrorIsIgnored() throws IOException {
+        event("message", "{\"error\":null,\"answer\":\"a\"}");
+        assertEquals(List.of("a"), fragments);
+    }
+
+    @Test
+    void malformedEventsAreCountedAndSkipped() throws IOException {
+        long before = ChatEventDecoder.getMalformedEventCount();
+        event("message", "{\"answer\":\"sem fim\"");
+        event("message", "texto solto");
+        event("message", "[1,2]");
+        event("message", "   ");
+        event("message", "{\"answer\":\"ok\"}");
+
+        assertEquals(before + 3, ChatEventDecoder.getMalformedEventCount());
+        assertEquals(List.of("ok"), fragments);
+    }
+}
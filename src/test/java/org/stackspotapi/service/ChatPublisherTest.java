@@ -0,0 +1,239 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatPublisherTest {
+
+    /**
+     * Corpo SSE controlado pelo teste: registra os lotes pedidos e entrega só o que o teste manda.
+     */
+    private static final class Body implements Flow.Publisher<List<ByteBuffer>> {
+        private Flow.Subscriber<? super List<ByteBuffer>> subscriber;
+        private long requested;
+        private boolean cancelled;
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super List<ByteBuffer>> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+
+        void send(String sse) {
+            subscriber.onNext(List.of(ByteBuffer.wrap(sse.getBytes(StandardCharsets.UTF_8))));
+        }
+
+        void complete() {
+            subscriber.onComplete();
+        }
+    }
+
+    private static final class Client implements Flow.Subscriber<String> {
+        private final List<String> fragments = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String fragment) {
+            fragments.add(fragment);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private final Body body = new Body();
+    private final AtomicInteger opens = new AtomicInteger();
+    private final List<Object> outcome = new ArrayList<>();
+
+    private ChatPublisher publisher(CompletableFuture<Flow.Publisher<List<ByteBuffer>>> opening) {
+        return new ChatPublisher(new ChatTiming(), () -> {
+            opens.incrementAndGet();
+            return opening;
+        }, (error, cancelled) -> {
+            outcome.add(error);
+            outcome.add(cancelled);
+        });
+    }
+
+    private Client subscribe(ChatPublisher publisher) {
+        Client client = new Client();
+        publisher.subscribe(client);
+        return client;
+    }
+
+    private static String answer(String text) {
+        return "data: {\"answer\":\"" + text + "\"}\n\n";
+    }
+
+    @Test
+    void opensCallOnFirstRequest() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        assertEquals(0, opens.get());
+
+        client.subscription.request(1);
+        assertEquals(1, opens.get());
+        assertEquals(1, body.requested);
+    }
+
+    @Test
+    void asksForNextBatchOnlyWhenFragmentsAreDrainedAndDemanded() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        client.subscription.request(1);
+
+        body.send(answer("a") + answer("b"));
+        assertEquals(List.of("a"), client.fragments);
+        assertEquals(1, body.requested);
+
+        client.subscription.request(1);
+        assertEquals(List.of("a", "b"), client.fragments);
+        assertEquals(1, body.requested);
+
+        client.subscription.request(1);
+        assertEquals(2, body.requested);
+        body.send(answer("c"));
+        assertEquals(List.of("a", "b", "c"), client.fragments);
+        assertEquals(2, body.requested);
+    }
+
+    @Test
+    void doneMarkerCompletesAndCancelsBody() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        client.subscription.request(Long.MAX_VALUE);
+
+        body.send(answer("a") + "data: [DONE]\n\n");
+        assertEquals(List.of("a"), client.fragments);
+        assertTrue(client.completed);
+        assertTrue(body.cancelled);
+        assertNull(outcome.get(0));
+        assertEquals(false, outcome.get(1));
+    }
+
+    @Test
+    void endOfBodyCompletes() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        client.subscription.request(Long.MAX_VALUE);
+
+        body.send(answer("a"));
+        body.complete();
+        assertEquals(List.of("a"), client.fragments);
+        assertTrue(client.completed);
+        assertFalse(body.cancelled);
+    }
+
+    @Test
+    void cancelCancelsBodyAndReportsCancellation() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        client.subscription.request(1);
+        body.send(answer("a") + answer("b"));
+
+        client.subscription.cancel();
+        assertTrue(body.cancelled);
+        assertFalse(client.completed);
+        assertNull(client.error);
+        assertEquals(List.of("a"), client.fragments);
+        assertNull(outcome.get(0));
+        assertEquals(true, outcome.get(1));
+    }
+
+    @Test
+    void cancelBeforeOpeningSettlesReportsOnlyAfterOpening() {
+        CompletableFuture<Flow.Publisher<List<ByteBuffer>>> opening = new CompletableFuture<>();
+        Client client = subscribe(publisher(opening));
+        client.subscription.request(1);
+
+        client.subscription.cancel();
+        assertTrue(outcome.isEmpty());
+
+        opening.complete(body);
+        assertTrue(body.cancelled);
+        assertEquals(true, outcome.get(1));
+    }
+
+    @Test
+    void openFailureIsSignalled() {
+        IOException failure = new IOException("falhou");
+        Client client = subscribe(publisher(CompletableFuture.failedFuture(failure)));
+        client.subscription.request(1);
+
+        assertSame(failure, client.error);
+        assertSame(failure, outcome.get(0));
+        assertEquals(false, outcome.get(1));
+    }
+
+    @Test
+    void errorEventFailsAndCancelsBody() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        client.subscription.request(Long.MAX_VALUE);
+
+        body.send(answer("a") + "event: error\ndata: {\"error\":\"boom\"}\n\n");
+        assertEquals(List.of("a"), client.fragments);
+        assertInstanceOf(IOException.class, client.error);
+        assertTrue(body.cancelled);
+    }
+
+    @Test
+    void invalidRequestFails() {
+        Client client = subscribe(publisher(CompletableFuture.completedFuture(body)));
+        client.subscription.request(0);
+
+        assertInstanceOf(IllegalArgumentException.class, client.error);
+        assertEquals(0, opens.get());
+    }
+
+    @Test
+    void completedPublisherDeliversAnswerWithoutCall() {
+        Client client = subscribe(ChatPublisher.completed("resposta"));
+        assertTrue(client.fragments.isEmpty());
+
+        client.subscription.request(1);
+        assertEquals(List.of("resposta"), client.fragments);
+        assertTrue(client.completed);
+    }
+
+    @Test
+    void acceptsSingleSubscriber() {
+        ChatPublisher publisher = publisher(CompletableFuture.completedFuture(body));
+        subscribe(publisher);
+        Client second = subscribe(publisher);
+        assertInstanceOf(IllegalStateException.class, second.error);
+    }
+}
@@ -0,0 +1,134 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.stackspotapi.dto.EnsureDto;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationPoolTest {
+    private static final long ACQUIRE_TIMEOUT_MS = 200;
+
+    /**
+     * Gerenciador sem token: toda criação de conversação falha sem ir à rede, e cada chamada conta uma tentativa.
+     * Com {@code hold}, a falha só chega quando o teste chama {@link #release()}.
+     */
+    private static final class CountingTokenManager extends TokenManager {
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final Queue<CompletableFuture<EnsureDto>> held = new ConcurrentLinkedQueue<>();
+        private volatile boolean hold;
+
+        CountingTokenManager() {
+            super(() -> null);
+        }
+
+        @Override
+        public CompletableFuture<EnsureDto> getTokenAsync() {
+            attempts.incrementAndGet();
+            if (hold) {
+                CompletableFuture<EnsureDto> token = new CompletableFuture<>();
+                held.add(token);
+                return token;
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        void release() {
+            CompletableFuture<EnsureDto> token;
+            while ((token = held.poll()) != null) {
+                token.complete(null);
+            }
+        }
+    }
+
+    private final CountingTokenManager tokenManager = new CountingTokenManager();
+
+    private ConversationPool pool(int poolSize, int lowWater) {
+        return new ConversationPool("cliente", tokenManager, new PollingSchedule(Duration.ofMillis(10), 1.0,
+                Duration.ofMillis(10), 0.0, Duration.ofSeconds(1)), poolSize, lowWater, 10, 1, ACQUIRE_TIMEOUT_MS, "Olá");
+    }
+
+    private static Conversation conversation(String id) {
+        return new Conversation(id, 10, "cliente");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condição não atingida no prazo");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void failedCreationPausesRefillOnEveryPath() throws InterruptedException {
+        ConversationPool pool = pool(2, 1);
+        Conversation inUse = conversation("compartilhada");
+        pool.restore(List.of(), List.of(inUse));
+        tokenManager.hold = true;
+        pool.start();
+        await(() -> tokenManager.attempts.get() == 2);
+        tokenManager.release();
+        await(() -> pool.getCreatingCount() == 0);
+
+        // claimShared
+        assertSame(inUse, pool.acquireAsync().join());
+        // takeFreshAsync
+        CompletionException error = assertThrows(CompletionException.class, () -> pool.takeExclusiveAsync(10).join());
+        assertInstanceOf(IOException.class, error.getCause());
+        // takeFresh
+        assertThrows(IOException.class, () -> pool.takeExclusive(10));
+
+        // Nenhum caminho começou uma criação durante o backoff
+        Thread.sleep(50);
+        assertEquals(2, tokenManager.attempts.get());
+        assertEquals(0, pool.getCreatingCount());
+    }
+
+    @Test
+    void refillResumesOnItsOwnAfterBackoff() throws InterruptedException {
+        ConversationPool pool = pool(1, 0);
+        pool.start();
+        await(() -> tokenManager.attempts.get() == 1 && pool.getCreatingCount() == 0);
+
+        // A primeira falha espera 1s antes da próxima tentativa, sem depender de requisições
+        Thread.sleep(500);
+        assertEquals(1, tokenManager.attempts.get());
+        await(() -> tokenManager.attempts.get() == 2);
+    }
+
+    @Test
+    void refillStartsOnlyAtLowWaterAndFillsToPoolSize() throws Exception {
+        ConversationPool pool = pool(4, 2);
+        pool.restore(List.of(conversation("a"), conversation("b"), conversation("c"), conversation("d")), List.of());
+        pool.start();
+
+        tokenManager.hold = true;
+        assertEquals("a", pool.takeExclusive(10).getId());
+        Thread.sleep(50);
+        assertEquals(0, tokenManager.attempts.get());
+
+        // Com 2 prontas o pool está no nível mínimo e cria as 2 que faltam para o tamanho configurado
+        assertEquals("b", pool.takeExclusiveAsync(10).join().getId());
+        await(() -> tokenManager.attempts.get() == 2);
+        Thread.sleep(50);
+        assertEquals(2, tokenManager.attempts.get());
+        assertEquals(2, pool.getCreatingCount());
+        assertEquals(2, pool.getReadyCount());
+        tokenManager.release();
+        await(() -> pool.getCreatingCount() == 0);
+    }
+}
@@ -0,0 +1,111 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialPoolTest {
+    private final CredentialSlot first = slot("1", 1);
+    private final CredentialSlot second = slot("2", 1);
+
+    // Os slots não são iniciados: nenhum token é buscado nem conversação criada
+    private static CredentialSlot slot(String name, int weight) {
+        return new CredentialSlot(new Credential(name, "realm", "client-" + name, "secret", weight));
+    }
+
+    private static UpstreamUnavailableException unavailable(int status, Duration retryAfter) {
+        return new UpstreamUnavailableException("StackSpot indisponível", retryAfter, status);
+    }
+
+    private static Conversation conversationOf(CredentialSlot slot) {
+        return new Conversation("conversa-" + slot.getCredential().getName(), 10, slot.getCredential().getName());
+    }
+
+    @Test
+    void quotaExceededEjectsOnlyTheOwningClient() throws UpstreamUnavailableException {
+        CredentialPool pool = new CredentialPool(List.of(first, second), CredentialPool.Balancing.LEAST_OUTSTANDING);
+        Conversation conversation = pool.begin(conversationOf(first));
+        pool.end(conversation, unavailable(429, Duration.ofMinutes(1)));
+
+        assertFalse(first.isAvailable());
+        assertFalse(pool.isAvailable(conversation));
+        assertTrue(second.isAvailable());
+        for (int i = 0; i < 4; i++) {
+            assertSame(second, pool.pick());
+        }
+    }
+
+    @Test
+    void wrappedQuotaErrorStillEjects() {
+        CredentialPool pool = new CredentialPool(List.of(first, second), CredentialPool.Balancing.LEAST_OUTSTANDING);
+        Conversation conversation = pool.begin(conversationOf(second));
+        pool.end(conversation, new CompletionException(unavailable(429, Duration.ofMinutes(1))));
+
+        assertFalse(second.isAvailable());
+    }
+
+    @Test
+    void otherFailuresDoNotEject() {
+        CredentialPool pool = new CredentialPool(List.of(first, second), CredentialPool.Balancing.LEAST_OUTSTANDING);
+        Conversation conversation = conversationOf(first);
+        for (Throwable error : List.of(unavailable(503, Duration.ofMinutes(1)),
+                new UpstreamUnavailableException("fila de espera cheia", Duration.ofMinutes(1)),
+                new IllegalStateException("falhou"))) {
+            pool.begin(conversation);
+            pool.end(conversation, error);
+        }
+        pool.begin(conversation);
+        pool.end(conversation, null);
+
+        assertTrue(first.isAvailable());
+        assertEquals(0, first.getOutstanding());
+    }
+
+    @Test
+    void pickFailsWithEarliestReturnWhenAllClientsAreEjected() {
+        CredentialPool pool = new CredentialPool(List.of(first, second), CredentialPool.Balancing.WEIGHTED_ROUND_ROBIN);
+        pool.end(pool.begin(conversationOf(first)), unavailable(429, Duration.ofMinutes(5)));
+        pool.end(pool.begin(conversationOf(second)), unavailable(429, Duration.ofMinutes(1)));
+
+        UpstreamUnavailableException error = assertThrows(UpstreamUnavailableException.class, pool::pick);
+        assertTrue(error.getRetryAfter().compareTo(Duration.ofMinutes(1)) <= 0);
+        assertTrue(error.getRetryAfter().compareTo(Duration.ofSeconds(30)) > 0);
+    }
+
+    @Test
+    void leastOutstandingPrefersIdleClient() throws UpstreamUnavailableException {
+        CredentialPool pool = new CredentialPool(List.of(first, second), CredentialPool.Balancing.LEAST_OUTSTANDING);
+        pool.begin(conversationOf(first));
+        for (int i = 0; i < 4; i++) {
+            assertSame(second, pool.pick());
+        }
+    }
+
+    @Test
+    void weightedRoundRobinSpreadsByWeightAndSkipsEjectedClients() throws UpstreamUnavailableException {
+        CredentialSlot heavy = slot("1", 3);
+        CredentialSlot light = slot("2", 1);
+        CredentialPool pool = new CredentialPool(List.of(heavy, light), CredentialPool.Balancing.WEIGHTED_ROUND_ROBIN);
+
+        List<CredentialSlot> picks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            picks.add(pool.pick());
+        }
+        assertEquals(List.of(heavy, heavy, light, heavy), picks);
+
+        pool.end(pool.begin(conversationOf(heavy)), unavailable(429, Duration.ofMinutes(1)));
+        for (int i = 0; i < 4; i++) {
+            assertSame(light, pool.pick());
+        }
+    }
+}
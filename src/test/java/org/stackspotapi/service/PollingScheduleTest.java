@@ -0,0 +1,72 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PollingScheduleTest {
+
+    @Test
+    void firstPollWaitsInitialDelayThenBacksOffUpToMax() {
+        PollingSchedule schedule = new PollingSchedule(Duration.ofMillis(300), 1.5, Duration.ofMillis(2000), 0.0,
+                Duration.ofSeconds(30));
+        assertEquals(300L, schedule.delayMillis(0));
+        assertEquals(450L, schedule.delayMillis(1));
+        assertEquals(675L, schedule.delayMillis(2));
+        assertEquals(2000L, schedule.delayMillis(10));
+    }
+
+    @Test
+    void everyDelayStaysWithinJitterOfItsNominalValue() {
+        PollingSchedule schedule = new PollingSchedule(Duration.ofMillis(300), 1.5, Duration.ofMillis(2000), 0.2,
+                Duration.ofSeconds(30));
+        double[] nominal = {300, 450, 675, 1012.5, 1518.75, 2000, 2000};
+        for (int attempt = 0; attempt < nominal.length; attempt++) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < 500; i++) {
+                long delay = schedule.delayMillis(attempt);
+                min = Math.min(min, delay);
+                max = Math.max(max, delay);
+            }
+            assertTrue(min >= Math.floor(nominal[attempt] * 0.8) && max <= Math.ceil(nominal[attempt] * 1.2),
+                    "consulta " + attempt + " fora do jitter: " + min + ".." + max);
+            // O jitter espalha as consultas de verdade, em vez de repetir o valor nominal
+            assertTrue(max > min, "consulta " + attempt + " sem jitter");
+        }
+    }
+
+    @Test
+    void fullJitterNeverGoesNegative() {
+        PollingSchedule schedule = new PollingSchedule(Duration.ofMillis(10), 1.0, Duration.ofMillis(10), 1.0,
+                Duration.ofSeconds(1));
+        for (int i = 0; i < 1000; i++) {
+            long delay = schedule.delayMillis(0);
+            assertTrue(delay >= 0 && delay <= 20, "espera: " + delay);
+        }
+    }
+
+    @Test
+    void fromEnvUsesDefaultsForMissingKeys() {
+        PollingSchedule schedule = PollingSchedule.fromEnv("TESTE_SEM_CHAVES_", 500, 1.5, 5000, 0.0, 300000);
+        assertEquals(Duration.ofMinutes(5), schedule.getDeadline());
+        assertEquals(500L, schedule.delayMillis(0));
+        assertEquals(5000L, schedule.delayMillis(20));
+
+        PollingSchedule conversation = PollingSchedule.fromEnv();
+        assertEquals(Duration.ofSeconds(30), conversation.getDeadline());
+        assertEquals(Duration.ofMillis(300), conversation.getBackoff().getInitialDelay());
+    }
+
+    @Test
+    void rejectsInvalidMultiplierAndJitter() {
+        assertThrows(IllegalArgumentException.class, () -> new PollingSchedule(Duration.ofMillis(300), 0.9,
+                Duration.ofMillis(2000), 0.2, Duration.ofSeconds(30)));
+        assertThrows(IllegalArgumentException.class, () -> new PollingSchedule(Duration.ofMillis(300), 1.5,
+                Duration.ofMillis(2000), -0.1, Duration.ofSeconds(30)));
+    }
+}
@@ -0,0 +1,121 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptFlightTest {
+
+    @Test
+    void followerReplaysPublishedFragmentsThenReceivesNewOnes() throws Exception {
+        PromptFlight flight = new PromptFlight();
+        flight.publish("a");
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        CompletableFuture<Boolean> following = new CompletableFuture<>();
+        Thread follower = new Thread(() -> {
+            try {
+                following.complete(flight.follow(received::add));
+            } catch (Exception e) {
+                following.completeExceptionally(e);
+            }
+        });
+        follower.start();
+
+        flight.publish("b");
+        flight.finish("ab", null);
+        assertTrue(following.get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b"), received);
+    }
+
+    @Test
+    void answerWaitersShareResultButCancelIndependently() {
+        PromptFlight flight = new PromptFlight();
+        CompletableFuture<String> first = flight.answer();
+        CompletableFuture<String> second = flight.answer();
+
+        first.cancel(false);
+        flight.finish("resposta", null);
+        assertEquals("resposta", second.join());
+        assertEquals("resposta", flight.answer().join());
+    }
+
+    @Test
+    void failureReachesEveryWaiter() {
+        PromptFlight flight = new PromptFlight();
+        CompletableFuture<String> waiting = flight.answer();
+        IOException failure = new IOException("falhou");
+        flight.finish(null, failure);
+
+        CompletionException error = assertThrows(CompletionException.class, waiting::join);
+        assertSame(failure, error.getCause());
+        assertSame(failure, assertThrows(IOException.class, () -> flight.follow(fragment -> {
+        })));
+    }
+
+    @Test
+    void abandonedFlightCannotBeShared() throws Exception {
+        PromptFlight flight = new PromptFlight();
+        assertTrue(flight.abandon());
+
+        assertNull(flight.answer());
+        assertFalse(flight.follow(fragment -> {
+        }));
+    }
+
+    @Test
+    void sharedFlightCannotBeAbandoned() {
+        PromptFlight flight = new PromptFlight();
+        flight.answer();
+        assertFalse(flight.abandon());
+    }
+
+    @Test
+    void finishedWaitersNoLongerHoldTheFlight() throws Exception {
+        PromptFlight flight = new PromptFlight();
+        flight.finish("resposta", null);
+        flight.follow(fragment -> {
+        });
+        assertTrue(flight.abandon());
+    }
+
+    @Test
+    void leaderClientFailureIsDeferredWhileShared() throws IOException {
+        PromptFlight flight = new PromptFlight();
+        IOException disconnected = new IOException("cliente desconectou");
+        PromptFlight.Leader leader = flight.lead(fragment -> {
+            throw disconnected;
+        });
+        CompletableFuture<String> waiting = flight.answer();
+
+        leader.onFragment("a");
+        leader.onFragment("b");
+        assertSame(disconnected, assertThrows(IOException.class, leader::rethrowClientFailure));
+
+        flight.finish("ab", null);
+        assertEquals("ab", waiting.join());
+    }
+
+    @Test
+    void leaderClientFailureStopsStreamWhenNobodyWaits() {
+        PromptFlight flight = new PromptFlight();
+        IOException disconnected = new IOException("cliente desconectou");
+        PromptFlight.Leader leader = flight.lead(fragment -> {
+            throw disconnected;
+        });
+
+        assertSame(disconnected, assertThrows(IOException.class, () -> leader.onFragment("a")));
+    }
+}
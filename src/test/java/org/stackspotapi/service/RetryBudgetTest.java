@@ -0,0 +1,40 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void startsWithOneRetryWithoutReserve() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void originalRequestsFundRetriesByRatio() {
+        RetryBudget budget = new RetryBudget(0.25, 0);
+        assertTrue(budget.tryWithdraw());
+
+        for (int i = 0; i < 3; i++) {
+            budget.onRequest();
+            assertFalse(budget.tryWithdraw());
+        }
+        budget.onRequest();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void balanceIsCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 0);
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+}
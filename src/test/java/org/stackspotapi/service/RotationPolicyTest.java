@@ -0,0 +1,104 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotationPolicyTest {
+    private static final double FAST_MS = 100;
+    private static final double SLOW_MS = 1000;
+
+    private final RotationPolicy policy = new RotationPolicy(true, 2.0, 1_000_000, 2);
+    private int created;
+
+    private static Conversation conversation() {
+        return new Conversation("conversa", 10, "cliente");
+    }
+
+    // Só o tempo até o primeiro token conta; sem fim de stream não há tempo de geração
+    private static ChatTiming timing(double firstTokenMillis, long answerChars) {
+        return new ChatTiming(0, (long) (firstTokenMillis * TimeUnit.MILLISECONDS.toNanos(1)), -1, answerChars);
+    }
+
+    // Cada primeira troca de uma conversação nova é uma amostra da referência
+    private void freshExchanges(int count) {
+        for (int i = 0; i < count; i++) {
+            policy.record(new Conversation("nova-" + created++, 10, "cliente"), false, 10, timing(FAST_MS, 10));
+        }
+    }
+
+    @Test
+    void latencyRetiresSharedConversationOnlyOnceBaselineHasEnoughSamples() {
+        Conversation shared = conversation();
+        freshExchanges(3);
+        policy.record(shared, false, 10, timing(FAST_MS, 10));
+
+        // 4 amostras: ainda sem referência, a conversação lenta continua no rodízio
+        policy.record(shared, false, 10, timing(SLOW_MS, 10));
+        assertNull(shared.getRetireReason());
+        assertTrue(shared.hasBudget());
+
+        freshExchanges(1);
+        policy.record(shared, false, 10, timing(SLOW_MS, 10));
+        assertEquals(RotationPolicy.REASON_LATENCY, shared.getRetireReason());
+        assertFalse(shared.hasBudget());
+    }
+
+    @Test
+    void latencyDoesNotRetireBeforeMinExchanges() {
+        freshExchanges(5);
+        Conversation shared = conversation();
+        policy.record(shared, false, 10, timing(SLOW_MS, 10));
+        assertNull(shared.getRetireReason());
+
+        policy.record(shared, false, 10, timing(SLOW_MS, 10));
+        assertEquals(RotationPolicy.REASON_LATENCY, shared.getRetireReason());
+    }
+
+    @Test
+    void latencyNeverRetiresSessionConversation() {
+        freshExchanges(5);
+        Conversation session = conversation();
+        policy.record(session, true, 10, timing(FAST_MS, 10));
+        for (int i = 0; i < 5; i++) {
+            policy.record(session, true, 10, timing(SLOW_MS, 10));
+        }
+        assertNull(session.getRetireReason());
+        assertTrue(session.hasBudget());
+    }
+
+    @Test
+    void contextSizeRetiresSessionConversation() {
+        RotationPolicy bounded = new RotationPolicy(true, 2.0, 1000, 2);
+        Conversation session = conversation();
+        bounded.record(session, true, 400, timing(FAST_MS, 100));
+        assertNull(session.getRetireReason());
+
+        // Prompts e respostas chegam a 1000 caracteres
+        bounded.record(session, true, 400, timing(FAST_MS, 100));
+        assertEquals(RotationPolicy.REASON_CONTEXT, session.getRetireReason());
+        assertFalse(session.hasBudget());
+    }
+
+    @Test
+    void disabledPolicyRetiresNothing() {
+        RotationPolicy disabled = new RotationPolicy(false, 2.0, 1000, 2);
+        Conversation session = conversation();
+        disabled.record(session, true, 5000, timing(SLOW_MS, 5000));
+        assertNull(session.getRetireReason());
+        assertTrue(session.hasBudget());
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new RotationPolicy(true, 1.0, 1000, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RotationPolicy(true, 2.0, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RotationPolicy(true, 2.0, 1000, 0));
+    }
+}
@@ -0,0 +1,251 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.stackspotapi.transport.UpstreamUnavailableException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionTableTest {
+    private static final long LONG_TTL_MS = 60_000;
+
+    /**
+     * Pool sem StackSpot: cada conversação exclusiva é criada na hora ou, com {@code hold}, quando o teste completa
+     * o future.
+     */
+    private static final class TestPool extends ConversationPool {
+        private final String credential;
+        private final AtomicInteger taken = new AtomicInteger();
+        private final Queue<CompletableFuture<Conversation>> held = new ConcurrentLinkedQueue<>();
+        private volatile boolean hold;
+
+        TestPool(String credential, TokenManager tokenManager) {
+            super(credential, tokenManager, new PollingSchedule(Duration.ofMillis(10), 1.0, Duration.ofMillis(10), 0.0,
+                    Duration.ofSeconds(1)), 1, 0, 10, 1, 1000, "Olá");
+            this.credential = credential;
+        }
+
+        @Override
+        public CompletableFuture<Conversation> takeExclusiveAsync(int budget) {
+            int n = taken.incrementAndGet();
+            if (hold) {
+                CompletableFuture<Conversation> swap = new CompletableFuture<>();
+                held.add(swap);
+                return swap;
+            }
+            return CompletableFuture.completedFuture(new Conversation(credential + "-" + n, budget, credential));
+        }
+    }
+
+    private static CredentialSlot slot(String name) {
+        return new CredentialSlot(new Credential(name, "realm", "client-" + name, "secret", 1), TestPool::new);
+    }
+
+    private static TestPool poolOf(CredentialSlot slot) {
+        return (TestPool) slot.getConversationPool();
+    }
+
+    private final CredentialSlot first = slot("1");
+    private final CredentialPool credentials = new CredentialPool(List.of(first), CredentialPool.Balancing.LEAST_OUTSTANDING);
+
+    private static Set<String> sessionIds(SessionTable table) {
+        Set<String> ids = new HashSet<>();
+        table.forEachSession((sessionId, conversation, idleMillis) -> ids.add(sessionId));
+        return ids;
+    }
+
+    // Mesmo espalhamento de SessionTable.segmentFor, para montar chaves que caem no mesmo segmento
+    private static int segmentOf(String sessionId) {
+        int hash = sessionId.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & 15;
+    }
+
+    @Test
+    void sessionKeepsItsConversationUntilTheBudgetRollsOver() throws Exception {
+        SessionTable table = new SessionTable(credentials, 100, LONG_TTL_MS, 3);
+        Conversation conversation = table.acquire("s");
+        assertSame(conversation, table.acquire("s"));
+        assertSame(conversation, table.acquire("s"));
+        assertNull(conversation.takeRollover());
+
+        Conversation next = table.acquire("s");
+        assertNotEquals(conversation.getId(), next.getId());
+        assertEquals(RotationPolicy.REASON_BUDGET, next.takeRollover());
+        assertEquals(2, poolOf(first).taken.get());
+
+        assertNotEquals(next.getId(), table.acquire("outra").getId());
+    }
+
+    @Test
+    void concurrentRequestsWaitForTheSameSwap() {
+        SessionTable table = new SessionTable(credentials, 100, LONG_TTL_MS, 2);
+        TestPool pool = poolOf(first);
+        pool.hold = true;
+
+        CompletableFuture<Conversation> a = table.acquireAsync("s");
+        CompletableFuture<Conversation> b = table.acquireAsync("s");
+        assertFalse(a.isDone());
+        assertFalse(b.isDone());
+        assertEquals(1, pool.taken.get());
+
+        Conversation fresh = new Conversation("nova", 2, "1");
+        pool.held.poll().complete(fresh);
+        assertSame(fresh, a.join());
+        assertSame(fresh, b.join());
+        assertFalse(fresh.hasBudget());
+
+        // Com o orçamento esgotado, a próxima requisição começa outra troca
+        CompletableFuture<Conversation> c = table.acquireAsync("s");
+        assertFalse(c.isDone());
+        assertEquals(2, pool.taken.get());
+        pool.held.poll().complete(new Conversation("outra", 2, "1"));
+        assertEquals("outra", c.join().getId());
+        assertEquals(RotationPolicy.REASON_BUDGET, c.join().takeRollover());
+    }
+
+    @Test
+    void failedSwapIsNotLeftPending() {
+        SessionTable table = new SessionTable(credentials, 100, LONG_TTL_MS, 2);
+        TestPool pool = poolOf(first);
+        pool.hold = true;
+
+        CompletableFuture<Conversation> failed = table.acquireAsync("s");
+        pool.held.poll().completeExceptionally(new java.io.IOException("pool vazio"));
+        assertTrue(failed.isCompletedExceptionally());
+
+        CompletableFuture<Conversation> retry = table.acquireAsync("s");
+        assertEquals(2, pool.taken.get());
+        pool.held.poll().complete(new Conversation("nova", 2, "1"));
+        assertEquals("nova", retry.join().getId());
+    }
+
+    @Test
+    void retiredConversationRollsOverWithItsReason() throws Exception {
+        SessionTable table = new SessionTable(credentials, 100, LONG_TTL_MS, 10);
+        Conversation conversation = table.acquire("s");
+        conversation.retire(RotationPolicy.REASON_CONTEXT);
+
+        Conversation next = table.acquire("s");
+        assertNotEquals(conversation.getId(), next.getId());
+        assertEquals(RotationPolicy.REASON_CONTEXT, next.takeRollover());
+    }
+
+    @Test
+    void ejectedCredentialMovesTheSessionToAnotherClient() throws Exception {
+        CredentialSlot second = slot("2");
+        CredentialPool pool = new CredentialPool(List.of(first, second), CredentialPool.Balancing.LEAST_OUTSTANDING);
+        SessionTable table = new SessionTable(pool, 100, LONG_TTL_MS, 10);
+
+        Conversation conversation = table.acquire("s");
+        pool.end(pool.begin(conversation), new UpstreamUnavailableException("cota", Duration.ofMinutes(1), 429));
+
+        Conversation next = table.acquire("s");
+        assertNotEquals(conversation.getCredential(), next.getCredential());
+        assertEquals(RotationPolicy.REASON_CREDENTIAL, next.takeRollover());
+    }
+
+    @Test
+    void tableStaysWithinMaxSessions() throws Exception {
+        // 16 segmentos com uma sessão cada
+        SessionTable table = new SessionTable(credentials, 16, LONG_TTL_MS, 10);
+        for (int i = 0; i < 200; i++) {
+            table.acquire("s" + i);
+        }
+        assertTrue(table.size() <= 16);
+        assertEquals(200 - table.size(), table.getEvictionCount());
+    }
+
+    @Test
+    void segmentEvictsItsLeastRecentlyUsedSession() throws Exception {
+        Map<Integer, List<String>> bySegment = new ConcurrentHashMap<>();
+        List<String> keys = null;
+        for (int i = 0; keys == null; i++) {
+            List<String> sameSegment = bySegment.computeIfAbsent(segmentOf("k" + i), segment -> new ArrayList<>());
+            sameSegment.add("k" + i);
+            if (sameSegment.size() == 3) {
+                keys = sameSegment;
+            }
+        }
+        // Dois lugares por segmento
+        SessionTable table = new SessionTable(credentials, 32, LONG_TTL_MS, 10);
+        table.acquire(keys.get(0));
+        table.acquire(keys.get(1));
+        table.acquire(keys.get(0));
+        table.acquire(keys.get(2));
+
+        assertEquals(Set.of(keys.get(0), keys.get(2)), sessionIds(table));
+        assertEquals(1, table.getEvictionCount());
+    }
+
+    @Test
+    void idleSessionExpiresOnLookup() throws Exception {
+        SessionTable table = new SessionTable(credentials, 100, 50, 10);
+        Conversation conversation = table.acquire("s");
+        Thread.sleep(100);
+
+        Conversation next = table.acquire("s");
+        assertNotEquals(conversation.getId(), next.getId());
+        // A sessão expirada é outra sessão: não há troca a informar
+        assertNull(next.takeRollover());
+        assertEquals(1, table.getEvictionCount());
+    }
+
+    @Test
+    void sweeperRemovesIdleSessions() throws Exception {
+        SessionTable table = new SessionTable(credentials, 100, 50, 10);
+        table.acquire("a");
+        table.acquire("b");
+        assertEquals(2, table.size());
+
+        // A varredura roda a cada segundo, no mínimo
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (table.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, table.size());
+        assertEquals(2L, table.getEvictionCount());
+    }
+
+    @Test
+    void restoreRecreatesSessionWithItsConversation() throws Exception {
+        SessionTable table = new SessionTable(credentials, 100, LONG_TTL_MS, 10);
+        Conversation restored = new Conversation("restaurada", 5, "1");
+        assertTrue(table.restore("s", restored, 1000));
+        assertFalse(table.restore("s", new Conversation("outra", 5, "1"), 0));
+        assertFalse(table.restore("velha", new Conversation("velha", 5, "1"), LONG_TTL_MS));
+
+        List<Long> idle = new ArrayList<>();
+        table.forEachSession((sessionId, conversation, idleMillis) -> idle.add(idleMillis));
+        assertEquals(1, idle.size());
+        assertTrue(idle.get(0) >= 1000);
+
+        assertSame(restored, table.acquire("s"));
+        assertEquals(0, poolOf(first).taken.get());
+    }
+
+    @Test
+    void restoredSessionKeepsItsRemainingIdleTime() throws Exception {
+        SessionTable table = new SessionTable(credentials, 100, 200, 10);
+        assertTrue(table.restore("s", new Conversation("restaurada", 5, "1"), 150));
+        Thread.sleep(100);
+
+        assertNotEquals("restaurada", table.acquire("s").getId());
+    }
+}
@@ -0,0 +1,88 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+import org.stackspotapi.dto.EnsureDto;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenManagerTest {
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private static EnsureDto token(Duration lifetime) {
+        return new EnsureDto("jwt", Instant.now().plus(lifetime));
+    }
+
+    @Test
+    void usableTokenIsReturnedWithoutFetching() {
+        EnsureDto token = token(Duration.ofHours(1));
+        TokenManager manager = new TokenManager(() -> {
+            fetches.incrementAndGet();
+            return null;
+        });
+        assertTrue(manager.restore(token));
+
+        assertSame(token, manager.getToken());
+        assertSame(token, manager.getTokenAsync().join());
+        assertEquals(0, fetches.get());
+    }
+
+    @Test
+    void concurrentCallersShareOneFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        EnsureDto fresh = token(Duration.ofHours(1));
+        TokenManager manager = new TokenManager(() -> {
+            fetches.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fresh;
+        });
+
+        CompletableFuture<EnsureDto> first = manager.getTokenAsync();
+        CompletableFuture<EnsureDto> second = manager.getTokenAsync();
+        release.countDown();
+        assertSame(fresh, first.get(10, TimeUnit.SECONDS));
+        assertSame(fresh, second.get(10, TimeUnit.SECONDS));
+        assertSame(fresh, manager.getToken());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void failedFetchIsNotRepeatedBeforeRetryDelay() {
+        TokenManager manager = new TokenManager(() -> {
+            fetches.incrementAndGet();
+            return null;
+        });
+
+        assertNull(manager.getToken());
+        assertEquals(1, fetches.get());
+
+        // Dentro de TOKEN_REFRESH_RETRY_SECONDS, sem token: falha na hora, sem chamar a autenticação de novo
+        for (int i = 0; i < 5; i++) {
+            assertNull(manager.getToken());
+            assertNull(manager.getTokenAsync().join());
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void expiredTokenIsNotUsable() {
+        TokenManager manager = new TokenManager(() -> null);
+        assertFalse(manager.restore(token(Duration.ofSeconds(10))));
+        assertFalse(manager.hasUsableToken());
+        assertNull(manager.peekToken());
+    }
+}
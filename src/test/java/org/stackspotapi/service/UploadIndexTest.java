@@ -0,0 +1,135 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadIndexTest {
+    private static final long VALID = Long.MAX_VALUE;
+
+    private static void upload(UploadIndex index, String hash, String uploadId) {
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        assertNull(index.claim(hash, upload));
+        index.settle(hash, upload, uploadId, null, VALID);
+    }
+
+    @Test
+    void settledContentIsReusedWithoutNewUpload() {
+        UploadIndex index = new UploadIndex(10);
+        upload(index, "a", "upload-a");
+
+        CompletableFuture<String> existing = index.claim("a", new CompletableFuture<>());
+        assertNotNull(existing);
+        assertEquals("upload-a", existing.join());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void concurrentSendOfSameContentSharesTheUpload() {
+        UploadIndex index = new UploadIndex(10);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        assertNull(index.claim("a", first));
+
+        CompletableFuture<String> follower = index.claim("a", new CompletableFuture<>());
+        assertSame(first, follower);
+
+        index.settle("a", first, "upload-a", null, VALID);
+        assertEquals("upload-a", follower.join());
+    }
+
+    @Test
+    void failedUploadIsNotIndexed() {
+        UploadIndex index = new UploadIndex(10);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        index.claim("a", first);
+        CompletableFuture<String> follower = index.claim("a", new CompletableFuture<>());
+
+        IOException failure = new IOException("falhou");
+        index.settle("a", first, null, failure, VALID);
+        CompletionException error = assertThrows(CompletionException.class, follower::join);
+        assertSame(failure, error.getCause());
+
+        // O próximo envio do mesmo conteúdo tenta de novo
+        assertNull(index.claim("a", new CompletableFuture<>()));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void expiredEntryIsDroppedAndSentAgain() {
+        UploadIndex index = new UploadIndex(10);
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        index.claim("a", upload);
+        index.settle("a", upload, "upload-a", null, System.currentTimeMillis() - 1);
+
+        assertNull(index.claim("a", new CompletableFuture<>()));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedAtBound() {
+        UploadIndex index = new UploadIndex(2);
+        upload(index, "a", "upload-a");
+        upload(index, "b", "upload-b");
+        // Usar "a" faz de "b" a entrada mais antiga
+        assertNotNull(index.claim("a", new CompletableFuture<>()));
+        upload(index, "c", "upload-c");
+
+        assertEquals(2, index.size());
+        assertNull(index.claim("b", new CompletableFuture<>()));
+        assertEquals("upload-a", index.claim("a", new CompletableFuture<>()).join());
+    }
+
+    @Test
+    void exactlyOneConcurrentClaimOwnsTheUpload() throws Exception {
+        UploadIndex index = new UploadIndex(10);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    CompletableFuture<String> upload = new CompletableFuture<>();
+                    start.await();
+                    CompletableFuture<String> existing = index.claim("a", upload);
+                    if (existing != null) {
+                        return existing.get(10, TimeUnit.SECONDS);
+                    }
+                    index.settle("a", upload, "upload-a", null, VALID);
+                    return "owner";
+                }));
+            }
+            start.countDown();
+
+            int owners = 0;
+            for (Future<String> result : results) {
+                String value = result.get(10, TimeUnit.SECONDS);
+                if ("owner".equals(value)) {
+                    owners++;
+                } else {
+                    assertEquals("upload-a", value);
+                }
+            }
+            assertEquals(1, owners);
+            assertEquals(1, index.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.stackspotapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UploadServiceTest {
+    private final Path base = createBase();
+    private final Path root = base.resolve("root");
+    private final Path outside = base.resolve("fora.txt");
+
+    private static Path createBase() {
+        try {
+            return Files.createTempDirectory("upload-test").toRealPath();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void setUp() throws IOException {
+        Files.createDirectories(root.resolve("docs"));
+        Files.writeString(root.resolve("docs/a.txt"), "a");
+        Files.writeString(outside, "fora");
+    }
+
+    @AfterEach
+    void deleteBase() throws IOException {
+        try (Stream<Path> files = Files.walk(base)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void resolvesFileInsideRoot() throws IOException {
+        setUp();
+        assertEquals(root.resolve("docs/a.txt"), UploadService.resolve(root, "docs/a.txt"));
+        assertEquals(root.resolve("docs/a.txt"), UploadService.resolve(root, "docs/../docs/./a.txt"));
+    }
+
+    @Test
+    void rejectsPathsThatLeaveRoot() throws IOException {
+        setUp();
+        assertThrows(IllegalArgumentException.class, () -> UploadService.resolve(root, "../fora.txt"));
+        assertThrows(IllegalArgumentException.class, () -> UploadService.resolve(root, "docs/../../fora.txt"));
+        assertThrows(IllegalArgumentException.class, () -> UploadService.resolve(root, outside.toString()));
+    }
+
+    @Test
+    void rejectsSymbolicLinkPointingOutsideRoot() throws IOException {
+        setUp();
+        Files.createSymbolicLink(root.resolve("link.txt"), outside);
+        Files.createSymbolicLink(root.resolve("pasta"), base);
+
+        assertThrows(IllegalArgumentException.class, () -> UploadService.resolve(root, "link.txt"));
+        assertThrows(IllegalArgumentException.class, () -> UploadService.resolve(root, "pasta/fora.txt"));
+    }
+
+    @Test
+    void followsSymbolicLinkThatStaysInsideRoot() throws IOException {
+        setUp();
+        Files.createSymbolicLink(root.resolve("atalho.txt"), root.resolve("docs/a.txt"));
+        assertEquals(root.resolve("docs/a.txt"), UploadService.resolve(root, "atalho.txt"));
+    }
+
+    @Test
+    void rejectsDirectoriesAndMissingFiles() throws IOException {
+        setUp();
+        assertThrows(IllegalArgumentException.class, () -> UploadService.resolve(root, "docs"));
+        assertThrows(NoSuchFileException.class, () -> UploadService.resolve(root, "docs/b.txt"));
+    }
+}
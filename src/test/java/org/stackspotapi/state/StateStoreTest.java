@@ -0,0 +1,193 @@
+package org.stackspotapi.state;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateStoreTest {
+    private static final Instant EXPIRES = Instant.ofEpochMilli(1_900_000_000_000L);
+    private static final Instant CREATED = Instant.ofEpochMilli(1_800_000_000_000L);
+
+    private final Path dir = createDir();
+    private final Path file = dir.resolve("state.bin");
+    private final String key = TokenCipherTest.newKey();
+
+    private static Path createDir() {
+        try {
+            return Files.createTempDirectory("state-store-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private StateStore store(String base64Key) {
+        return new StateStore(file, base64Key != null ? TokenCipher.fromBase64(base64Key) : null);
+    }
+
+    private static StateSnapshot snapshot(String jwt) {
+        StateSnapshot.SavedConversation shared = new StateSnapshot.SavedConversation("client-1", "conversa-1", 7, CREATED, true);
+        StateSnapshot.SavedConversation owned = new StateSnapshot.SavedConversation("client-2", "conversa-2", 3, CREATED, false);
+        return new StateSnapshot(
+                Map.of("client-1", "fp-1", "client-2", "fp-2"),
+                List.of(new StateSnapshot.Token("client-1", jwt, EXPIRES), new StateSnapshot.Token("client-2", jwt + "-2", EXPIRES)),
+                List.of(shared),
+                List.of(new StateSnapshot.Session("sessão", owned, CREATED)));
+    }
+
+    /**
+     * Troca bytes do arquivo por outros do mesmo tamanho e recalcula o checksum, como faria quem editasse o arquivo.
+     */
+    private void replaceLast(String from, String to) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        byte[] target = from.getBytes(StandardCharsets.UTF_8);
+        int at = -1;
+        for (int i = content.length - target.length; i >= 0 && at < 0; i--) {
+            if (Arrays.equals(content, i, i + target.length, target, 0, target.length)) {
+                at = i;
+            }
+        }
+        assertTrue(at >= 0);
+        System.arraycopy(to.getBytes(StandardCharsets.UTF_8), 0, content, at, target.length);
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length - Integer.BYTES);
+        ByteBuffer.wrap(content).putInt(content.length - Integer.BYTES, (int) crc.getValue());
+        Files.write(file, content);
+    }
+
+    @Test
+    void loadsWhatWasSaved() throws IOException {
+        store(key).save(snapshot("jwt"));
+        StateSnapshot loaded = store(key).load();
+
+        assertEquals(Map.of("client-1", "fp-1", "client-2", "fp-2"), loaded.getFingerprints());
+        assertEquals(2, loaded.getTokens().size());
+        assertEquals("jwt", loaded.getTokens().get(0).getJwt());
+        assertEquals(EXPIRES, loaded.getTokens().get(0).getExpiresAt());
+        StateSnapshot.SavedConversation shared = loaded.getConversations().get(0);
+        assertEquals("conversa-1", shared.getId());
+        assertEquals(7, shared.getRemaining());
+        assertTrue(shared.isShared());
+        StateSnapshot.Session session = loaded.getSessions().get(0);
+        assertEquals("sessão", session.getSessionId());
+        assertEquals("client-2", session.getConversation().getCredential());
+        assertEquals(CREATED, session.getLastAccess());
+    }
+
+    @Test
+    void missingFileLoadsNothing() {
+        assertNull(store(key).load());
+    }
+
+    @Test
+    void truncatedOrCorruptedFileIsIgnored() throws IOException {
+        store(key).save(snapshot("jwt"));
+        byte[] content = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+        assertNull(store(key).load());
+
+        Files.write(file, Arrays.copyOf(content, 10));
+        assertNull(store(key).load());
+
+        byte[] flipped = content.clone();
+        flipped[content.length / 2] ^= 1;
+        Files.write(file, flipped);
+        assertNull(store(key).load());
+
+        byte[] otherMagic = content.clone();
+        otherMagic[0] ^= 1;
+        Files.write(file, otherMagic);
+        assertNull(store(key).load());
+    }
+
+    @Test
+    void otherKeyDropsTokensButKeepsConversations() throws IOException {
+        store(key).save(snapshot("jwt"));
+        StateSnapshot loaded = store(TokenCipherTest.newKey()).load();
+
+        assertTrue(loaded.getTokens().isEmpty());
+        assertEquals(1, loaded.getConversations().size());
+        assertEquals(1, loaded.getSessions().size());
+    }
+
+    @Test
+    void withoutKeyTokensAreNeitherWrittenNorRead() throws IOException {
+        store(key).save(snapshot("jwt"));
+        StateSnapshot loaded = store(null).load();
+        assertTrue(loaded.getTokens().isEmpty());
+        assertEquals(1, loaded.getConversations().size());
+
+        store(null).save(snapshot("jwt-sem-chave"));
+        assertFalse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("jwt-sem-chave"));
+        assertTrue(store(key).load().getTokens().isEmpty());
+    }
+
+    @Test
+    void tokensAreNotStoredInClear() throws IOException {
+        store(key).save(snapshot("segredo-do-token"));
+        assertFalse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("segredo-do-token"));
+    }
+
+    @Test
+    void changedFingerprintDropsThatClientsToken() throws IOException {
+        store(key).save(snapshot("jwt"));
+        // A impressão digital de client-1 fica só na seção de clients
+        replaceLast("fp-1", "fp-9");
+        StateSnapshot loaded = store(key).load();
+
+        assertEquals(1, loaded.getTokens().size());
+        assertEquals("client-2", loaded.getTokens().get(0).getCredential());
+        assertEquals(1, loaded.getConversations().size());
+    }
+
+    @Test
+    void tokenMovedToAnotherClientFailsDecryption() throws IOException {
+        store(key).save(snapshot("jwt"));
+        // A última ocorrência de client-2 é o nome no seu token cifrado
+        replaceLast("client-2", "client-1");
+        StateSnapshot loaded = store(key).load();
+
+        assertEquals(1, loaded.getTokens().size());
+        assertEquals("jwt", loaded.getTokens().get(0).getJwt());
+    }
+
+    @Test
+    void unchangedSnapshotSkipsTheWrite() throws IOException {
+        StateStore store = store(key);
+        store.save(snapshot("jwt"));
+        Files.delete(file);
+
+        store.save(snapshot("jwt"));
+        assertFalse(Files.exists(file));
+
+        // Só o token mudou: grava de novo
+        store.save(snapshot("jwt-renovado"));
+        assertEquals("jwt-renovado", store(key).load().getTokens().get(0).getJwt());
+    }
+}
@@ -0,0 +1,65 @@
+package org.stackspotapi.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenCipherTest {
+
+    static String newKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+    @Test
+    void decryptsWhatItEncryptsWithFreshIvEachTime() throws GeneralSecurityException {
+        TokenCipher cipher = TokenCipher.fromBase64(newKey());
+        byte[] first = cipher.encrypt("jwt", "client:fp");
+        byte[] second = cipher.encrypt("jwt", "client:fp");
+
+        assertFalse(Arrays.equals(first, second));
+        assertEquals("jwt", cipher.decrypt(first, "client:fp"));
+        assertEquals("jwt", cipher.decrypt(second, "client:fp"));
+    }
+
+    @Test
+    void otherKeyFails() throws GeneralSecurityException {
+        byte[] sealed = TokenCipher.fromBase64(newKey()).encrypt("jwt", "client:fp");
+        assertThrows(GeneralSecurityException.class, () -> TokenCipher.fromBase64(newKey()).decrypt(sealed, "client:fp"));
+    }
+
+    @Test
+    void otherAssociatedDataFails() throws GeneralSecurityException {
+        TokenCipher cipher = TokenCipher.fromBase64(newKey());
+        byte[] sealed = cipher.encrypt("jwt", "client-1:fp");
+
+        assertThrows(GeneralSecurityException.class, () -> cipher.decrypt(sealed, "client-2:fp"));
+        assertThrows(GeneralSecurityException.class, () -> cipher.decrypt(sealed, "client-1:outro"));
+    }
+
+    @Test
+    void tamperedOrTruncatedTokenFails() throws GeneralSecurityException {
+        TokenCipher cipher = TokenCipher.fromBase64(newKey());
+        byte[] sealed = cipher.encrypt("jwt", "client:fp");
+        byte[] tampered = sealed.clone();
+        tampered[tampered.length - 1] ^= 1;
+
+        assertThrows(GeneralSecurityException.class, () -> cipher.decrypt(tampered, "client:fp"));
+        assertThrows(GeneralSecurityException.class, () -> cipher.decrypt(Arrays.copyOf(sealed, 12), "client:fp"));
+        assertThrows(GeneralSecurityException.class, () -> cipher.decrypt(Arrays.copyOf(sealed, sealed.length - 1), "client:fp"));
+    }
+
+    @Test
+    void rejectsKeysOfWrongSize() {
+        assertThrows(IllegalArgumentException.class, () -> TokenCipher.fromBase64(Base64.getEncoder().encodeToString(new byte[20])));
+        assertThrows(IllegalArgumentException.class, () -> TokenCipher.fromBase64("não é base64"));
+    }
+}
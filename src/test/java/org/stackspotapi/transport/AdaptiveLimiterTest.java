@@ -0,0 +1,170 @@
+package org.stackspotapi.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+    private static final HttpHeaders NO_HEADERS = HttpHeaders.of(Map.of(), (name, value) -> true);
+    // Prazo de fila longo: nenhum timeout dispara durante os testes
+    private static final Duration MAX_WAIT = Duration.ofMinutes(1);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private AdaptiveLimiter limiter(int initialLimit, int minLimit, int maxLimit, int maxQueue) {
+        // Tolerância enorme: a latência medida nunca reduz o limite
+        return new AdaptiveLimiter(Endpoint.CHAT, initialLimit, minLimit, maxLimit, maxQueue, MAX_WAIT,
+                0.5, 1e9, Duration.ofSeconds(1), scheduler);
+    }
+
+    private static AdaptiveLimiter.Permit admitted(CompletableFuture<AdaptiveLimiter.Permit> future) {
+        assertTrue(future.isDone(), "a vaga deveria ter sido concedida na hora");
+        return future.join();
+    }
+
+    private static UpstreamUnavailableException rejection(CompletableFuture<AdaptiveLimiter.Permit> future) {
+        CompletionException error = assertThrows(CompletionException.class, future::join);
+        return assertInstanceOf(UpstreamUnavailableException.class, error.getCause());
+    }
+
+    @Test
+    void queuesBeyondLimitAndAdmitsInArrivalOrder() {
+        AdaptiveLimiter limiter = limiter(2, 1, 10, 2);
+        AdaptiveLimiter.Permit first = admitted(limiter.acquire());
+        admitted(limiter.acquire());
+
+        CompletableFuture<AdaptiveLimiter.Permit> third = limiter.acquire();
+        CompletableFuture<AdaptiveLimiter.Permit> fourth = limiter.acquire();
+        assertFalse(third.isDone());
+        assertFalse(fourth.isDone());
+        assertEquals(2, limiter.getQueued());
+
+        first.release();
+        assertTrue(third.isDone());
+        assertFalse(fourth.isDone());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getQueued());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        AdaptiveLimiter limiter = limiter(1, 1, 10, 1);
+        admitted(limiter.acquire());
+        CompletableFuture<AdaptiveLimiter.Permit> queued = limiter.acquire();
+
+        UpstreamUnavailableException error = rejection(limiter.acquire());
+        assertEquals(0, error.getStatusCode());
+        assertEquals(Duration.ofSeconds(1), error.getRetryAfter());
+        assertFalse(queued.isDone());
+    }
+
+    @Test
+    void releaseIsIdempotent() {
+        AdaptiveLimiter limiter = limiter(2, 1, 10, 0);
+        AdaptiveLimiter.Permit permit = admitted(limiter.acquire());
+        permit.release();
+        permit.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void overloadStatusesDecreaseLimitDownToMinimum() {
+        AdaptiveLimiter limiter = limiter(10, 3, 10, 0);
+        AdaptiveLimiter.Permit permit = admitted(limiter.acquire());
+
+        // Sem amostras de latência ainda, toda redução vale
+        permit.onResponse(429, NO_HEADERS);
+        assertEquals(5, limiter.getLimit());
+        permit.onResponse(502, NO_HEADERS);
+        assertEquals(3, limiter.getLimit());
+        permit.onResponse(504, NO_HEADERS);
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void requestErrorsDoNotChangeLimit() {
+        AdaptiveLimiter limiter = limiter(10, 1, 10, 0);
+        AdaptiveLimiter.Permit permit = admitted(limiter.acquire());
+        permit.onResponse(500, NO_HEADERS);
+        permit.onResponse(501, NO_HEADERS);
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void communicationFailureCountsOnlyBeforeResponse() {
+        AdaptiveLimiter limiter = limiter(8, 1, 10, 0);
+        AdaptiveLimiter.Permit failed = admitted(limiter.acquire());
+        failed.onFailure();
+        assertEquals(4, limiter.getLimit());
+
+        AdaptiveLimiter.Permit responded = admitted(limiter.acquire());
+        responded.onResponse(500, NO_HEADERS);
+        responded.onFailure();
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void successesGrowLimitOncePerWindowAfterWarmup() {
+        AdaptiveLimiter limiter = limiter(1, 1, 2, 0);
+        AdaptiveLimiter.Permit permit = admitted(limiter.acquire());
+
+        // As 10 primeiras respostas só formam a linha de base
+        for (int i = 0; i < 10; i++) {
+            permit.onResponse(200, NO_HEADERS);
+        }
+        assertEquals(1, limiter.getLimit());
+
+        permit.onResponse(200, NO_HEADERS);
+        assertEquals(2, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            permit.onResponse(200, NO_HEADERS);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void serviceUnavailablePausesAdmissionForRetryAfter() {
+        AdaptiveLimiter limiter = limiter(4, 1, 10, 10);
+        AdaptiveLimiter.Permit permit = admitted(limiter.acquire());
+        permit.onResponse(503, HttpHeaders.of(Map.of("Retry-After", List.of("600")), (name, value) -> true));
+        permit.release();
+
+        // A pausa vai além do prazo da fila: recusa na hora, com o tempo que falta
+        UpstreamUnavailableException error = rejection(limiter.acquire());
+        assertTrue(error.getRetryAfter().compareTo(MAX_WAIT) > 0);
+        assertTrue(error.getRetryAfter().compareTo(Duration.ofSeconds(600)) <= 0);
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    void parsesRetryAfterHeader() {
+        AdaptiveLimiter limiter = limiter(1, 1, 1, 0);
+        assertEquals(Duration.ofSeconds(30), limiter.retryAfter(headers("30")));
+        assertEquals(Duration.ofMinutes(10), limiter.retryAfter(headers("86400")));
+        assertEquals(Duration.ofSeconds(1), limiter.retryAfter(headers("logo")));
+        assertEquals(Duration.ofSeconds(1), limiter.retryAfter(NO_HEADERS));
+    }
+
+    private static HttpHeaders headers(String retryAfter) {
+        return HttpHeaders.of(Map.of("Retry-After", List.of(retryAfter)), (name, value) -> true);
+    }
+}
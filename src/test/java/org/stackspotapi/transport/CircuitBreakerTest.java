@@ -0,0 +1,112 @@
+package org.stackspotapi.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static void respond(CircuitBreaker breaker, int... statuses) throws CircuitOpenException {
+        for (int status : statuses) {
+            breaker.acquire().onResponse(status);
+        }
+    }
+
+    @Test
+    void opensWhenFailureRateIsReachedWithEnoughCalls() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 4, 4, 0.5, Duration.ofMinutes(1), 1);
+        respond(breaker, 500, 503, 200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.acquire().onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        CircuitOpenException error = assertThrows(CircuitOpenException.class, breaker::acquire);
+        assertEquals(Endpoint.CHAT, error.getEndpoint());
+        assertTrue(error.getRetryAfter().compareTo(Duration.ofMinutes(1)) <= 0);
+        assertNotNull(breaker.openError());
+    }
+
+    @Test
+    void oldFailuresLeaveTheWindow() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 4, 4, 0.75, Duration.ofMinutes(1), 1);
+        respond(breaker, 500, 500, 200, 200, 200, 200, 500, 500);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void throttlingAndNotImplementedAreNotFailures() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 4, 2, 0.5, Duration.ofMinutes(1), 1);
+        respond(breaker, 429, 501, 429, 501, 404);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNull(breaker.openError());
+    }
+
+    @Test
+    void onlyFirstOutcomeOfCallCounts() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 2, 2, 1.0, Duration.ofMinutes(1), 1);
+        CircuitBreaker.Call call = breaker.acquire();
+        call.onResponse(200);
+        call.onFailure();
+        call.onFailure();
+        breaker.acquire().onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenClosesAfterAllProbesSucceed() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 1, 1, 1.0, Duration.ZERO, 2);
+        respond(breaker, 500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        CircuitBreaker.Call first = breaker.acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        CircuitBreaker.Call second = breaker.acquire();
+        assertThrows(CircuitOpenException.class, breaker::acquire);
+
+        first.onResponse(200);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        second.onResponse(200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void probeFailureReopens() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 1, 1, 1.0, Duration.ZERO, 2);
+        respond(breaker, 500);
+
+        CircuitBreaker.Call probe = breaker.acquire();
+        probe.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void cancelledProbeFreesItsSlot() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 1, 1, 1.0, Duration.ZERO, 1);
+        respond(breaker, 500);
+
+        breaker.acquire().cancel();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.acquire().onResponse(200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void discardsOutcomesOfCallsFromBeforeTransition() throws CircuitOpenException {
+        CircuitBreaker breaker = new CircuitBreaker(Endpoint.CHAT, 1, 1, 1.0, Duration.ZERO, 1);
+        CircuitBreaker.Call stale = breaker.acquire();
+        respond(breaker, 500);
+
+        CircuitBreaker.Call probe = breaker.acquire();
+        stale.onResponse(500);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        probe.onResponse(200);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
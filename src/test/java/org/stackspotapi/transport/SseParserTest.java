@@ -0,0 +1,148 @@
+package org.stackspotapi.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseParserTest {
+    private final List<String> events = new ArrayList<>();
+    private final SseParser parser = new SseParser(this::record);
+
+    private void record(String event, byte[] data, int offset, int length) {
+        events.add(event + "=" + new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
+    private static void feed(SseParser parser, String... chunks) throws IOException {
+        for (String chunk : chunks) {
+            parser.feed(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void dispatchesOnBlankLineWithEachTerminator() throws IOException {
+        feed(parser, "data: lf\n\n", "data: cr\r\r", "data: crlf\r\n\r\n");
+        assertEquals(List.of("message=lf", "message=cr", "message=crlf"), events);
+    }
+
+    @Test
+    void crlfSplitAcrossFeedsIsOneTerminator() throws IOException {
+        feed(parser, "data: a\r", "\n", "data: b\r", "\n\r", "\n");
+        assertEquals(List.of("message=a\nb"), events);
+    }
+
+    @Test
+    void eventsSplitAtEveryByteParseTheSame() throws IOException {
+        String stream = "event: answer\r\ndata: {\"answer\":\"olá\"}\r\n\r\ndata: fim\n\n";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            parser.feed(ByteBuffer.wrap(new byte[]{b}));
+        }
+        assertEquals(List.of("answer={\"answer\":\"olá\"}", "message=fim"), events);
+    }
+
+    @Test
+    void skipsByteOrderMarkSplitAcrossFeeds() throws IOException {
+        parser.feed(ByteBuffer.wrap(new byte[]{(byte) 0xEF, (byte) 0xBB}));
+        parser.feed(ByteBuffer.wrap(new byte[]{(byte) 0xBF}));
+        feed(parser, "data: a\n\n");
+        assertEquals(List.of("message=a"), events);
+    }
+
+    @Test
+    void byteOrderMarkAfterFirstLineIsNotSkipped() throws IOException {
+        feed(parser, "data: a\n\n");
+        parser.feed(ByteBuffer.wrap(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF}));
+        feed(parser, "data: b\n\n");
+        assertEquals(List.of("message=a"), events);
+    }
+
+    @Test
+    void joinsMultiLineDataAndKeepsEmptyDataLines() throws IOException {
+        feed(parser, "data: um\ndata:dois\ndata\ndata: três\n\n");
+        assertEquals(List.of("message=um\ndois\n\ntrês"), events);
+    }
+
+    @Test
+    void ignoresCommentsRetryAndUnknownFields() throws IOException {
+        feed(parser, ": keep-alive\n\n", "retry: 100\nfoo: bar\n\n", ":comentário\ndata: a\n\n");
+        assertEquals(List.of("message=a"), events);
+    }
+
+    @Test
+    void eventNameIsResetBetweenEvents() throws IOException {
+        feed(parser, "event: answer\ndata: a\n\ndata: b\n\n");
+        assertEquals(List.of("answer=a", "message=b"), events);
+    }
+
+    @Test
+    void dispatchesEventThatCarriesOnlyAName() throws IOException {
+        feed(parser, "event: done\n\n", "\n\n", "id: 7\n\n");
+        assertEquals(List.of("done="), events);
+    }
+
+    @Test
+    void tracksLastEventId() throws IOException {
+        assertNull(parser.getLastEventId());
+        feed(parser, "id: 1\ndata: a\n\nid: 2\n\n");
+        assertEquals("2", parser.getLastEventId());
+    }
+
+    @Test
+    void finishDispatchesPendingEventWithoutTrailingBlankLine() throws IOException {
+        feed(parser, "data: a\n\n", "event: end\ndata: b");
+        assertEquals(List.of("message=a"), events);
+
+        parser.finish();
+        assertEquals(List.of("message=a", "end=b"), events);
+    }
+
+    @Test
+    void finishWithoutPendingEventDispatchesNothing() throws IOException {
+        feed(parser, "data: a\n\n: comentário");
+        parser.finish();
+        assertEquals(List.of("message=a"), events);
+    }
+
+    @Test
+    void listenerFailureDoesNotLeaveEventHalfParsed() throws IOException {
+        SseParser failing = new SseParser((event, data, offset, length) -> {
+            if ("error".equals(event)) {
+                throw new IOException("falhou");
+            }
+            record(event, data, offset, length);
+        });
+        assertThrows(IOException.class, () -> feed(failing, "event: error\ndata: x\n\n"));
+        feed(failing, "data: y\n\n");
+        assertEquals(List.of("message=y"), events);
+    }
+
+    @Test
+    void lineWithoutTerminatorFailsAtLimit() {
+        SseParser bounded = new SseParser(this::record, 64);
+        IOException error = assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 10; i++) {
+                feed(bounded, "data: " + "x".repeat(10));
+            }
+        });
+        assertTrue(error.getMessage().contains("64"));
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void eventAccumulatingTooManyDataLinesFails() throws IOException {
+        SseParser bounded = new SseParser(this::record, 64);
+        feed(bounded, ("data: " + "x".repeat(40) + "\n\n").repeat(3));
+        assertEquals(3, events.size());
+
+        assertThrows(IOException.class, () -> feed(bounded, ("data: " + "x".repeat(40) + "\n").repeat(2)));
+    }
+}